@@ -0,0 +1,61 @@
+package frc1318.vision.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import frc1318.apriltag.AprilTagDetection;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.filters.LargestAprilTagFilter;
+import frc1318.vision.pipeline.AprilTagPipeline;
+
+public class AprilTagPipelineBenchmark extends FrameBenchmarkBase
+{
+    @Param({ "false", "true" })
+    public boolean fusedPreprocessing;
+
+    private AprilTagPipeline<AprilTagDetection> pipeline;
+    private long captureTime;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole)
+    {
+        this.loadFrames();
+
+        this.pipeline =
+            new AprilTagPipeline<AprilTagDetection>(
+                new BlackholeWriter<AprilTagDetection>(blackhole),
+                null,
+                this.createUndistorter(VisionConstants.UNDISTORT_FIXED_POINT_MAPS),
+                false,
+                new LargestAprilTagFilter(
+                    VisionConstants.PRIMARY_PIPELINE_APRILTAG_MIN_AREA,
+                    VisionConstants.PRIMARY_PIPELINE_APRILTAG_MIN_DECISION_MARGIN),
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_DETECTION_FAMILY,
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE,
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_PROCESSING_THREADS,
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_QUAD_DECIMATE,
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_QUAD_SIGMA,
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_REFINE_EDGES,
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                this.fusedPreprocessing,
+                false,
+                false,
+                false);
+
+        this.pipeline.open();
+        this.captureTime = 0L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.pipeline.close();
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public void process()
+    {
+        this.pipeline.process(this.nextFrame(), this.captureTime++);
+    }
+}
@@ -0,0 +1,32 @@
+package frc1318.vision.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.Point;
+
+import frc1318.vision.helpers.AreaHelper;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AreaHelperBenchmark
+{
+    private Point[] tagVertices;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        // the four corners of a detected tag, which is what the AprilTag filters calculate the area of
+        this.tagVertices = new Point[] { new Point(600.0, 380.0), new Point(680.0, 378.0), new Point(682.0, 300.0), new Point(598.0, 302.0) };
+    }
+
+    @Benchmark
+    public double findArea()
+    {
+        return AreaHelper.findArea(this.tagVertices);
+    }
+}
@@ -0,0 +1,51 @@
+package frc1318.vision.benchmark;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.infra.Blackhole;
+
+import frc1318.vision.IResultWriter;
+
+public class BlackholeWriter<T> implements IResultWriter<T>
+{
+    private final Blackhole blackhole;
+
+    /**
+     * Initializes a new instance of the BlackholeWriter class.
+     * The writer hands every result to JMH so that the work producing it can't be optimized away.
+     * @param blackhole to consume results
+     */
+    public BlackholeWriter(Blackhole blackhole)
+    {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public boolean open()
+    {
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    @Override
+    public void write(T result, long captureTime, Mat sourceFrame)
+    {
+        this.blackhole.consume(result);
+        this.blackhole.consume(sourceFrame);
+    }
+
+    @Override
+    public void write(T result, long captureTime)
+    {
+        this.blackhole.consume(result);
+    }
+
+    @Override
+    public void outputDebugFrame(Mat frame)
+    {
+        this.blackhole.consume(frame);
+    }
+}
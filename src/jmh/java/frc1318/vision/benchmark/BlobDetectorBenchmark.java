@@ -0,0 +1,125 @@
+package frc1318.vision.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.IBlobFilter;
+import frc1318.vision.IContourFilter;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.filters.LargestBlobCenterFilter;
+import frc1318.vision.filters.LargestBlobCircleFilter;
+import frc1318.vision.filters.LargestBlobFilter;
+import frc1318.vision.filters.LargestCenterFilter;
+import frc1318.vision.filters.LargestCircleFilter;
+import frc1318.vision.filters.LargestContourFilter;
+import frc1318.vision.helpers.BlobDetector;
+import frc1318.vision.helpers.HSVFilter;
+
+public class BlobDetectorBenchmark extends FrameBenchmarkBase
+{
+    private static final double MinCircleRatio = 0.0; // accept every contour/blob, so that each one is fully evaluated
+
+    @Param({ "center", "largest", "circle" })
+    public String filterName;
+
+    private Mat[] filteredFrames;
+    private int frameIndex;
+
+    private IContourFilter<?> contourFilter;
+    private List<MatOfPoint> contours;
+    private Mat hierarchy;
+
+    private IBlobFilter<?> blobFilter;
+    private BlobDetector blobDetector;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        // filter each frame once, the same way the HSV pipeline does
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        this.filteredFrames = new Mat[this.getFrameCount()];
+        for (int i = 0; i < this.getFrameCount(); i++)
+        {
+            this.filteredFrames[i] = new Mat();
+            hsvFilter.filterHSV(this.getFrame(i), this.filteredFrames[i]);
+        }
+
+        this.frameIndex = 0;
+
+        switch (this.filterName)
+        {
+            case "center":
+                this.contourFilter = new LargestCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                this.blobFilter = new LargestBlobCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                break;
+
+            case "largest":
+                this.contourFilter = new LargestContourFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                this.blobFilter = new LargestBlobFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                break;
+
+            default:
+                this.contourFilter = new LargestCircleFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA, BlobDetectorBenchmark.MinCircleRatio);
+                this.blobFilter = new LargestBlobCircleFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA, BlobDetectorBenchmark.MinCircleRatio);
+                break;
+        }
+
+        this.contours = new ArrayList<MatOfPoint>();
+        this.hierarchy = new Mat();
+        this.blobDetector = new BlobDetector();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (Mat filteredFrame : this.filteredFrames)
+        {
+            filteredFrame.release();
+        }
+
+        this.hierarchy.release();
+        this.releaseFrames();
+    }
+
+    /**
+     * Find and filter the contours the way the HSV pipeline does by default (through OpenCV's findContours)
+     * @return filter result
+     */
+    @Benchmark
+    public Object findContours()
+    {
+        Imgproc.findContours(this.nextFilteredFrame(), this.contours, this.hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_TC89_KCOS);
+        Object result = this.contourFilter.filter(this.contours);
+        this.contours.clear();
+        if (result instanceof Mat)
+        {
+            ((Mat)result).release();
+        }
+
+        return result;
+    }
+
+    /**
+     * Find and filter the blobs (connected components) instead
+     * @return filter result
+     */
+    @Benchmark
+    public Object blobDetector()
+    {
+        this.blobDetector.detect(this.nextFilteredFrame());
+        return this.blobFilter.filter(this.blobDetector);
+    }
+
+    private Mat nextFilteredFrame()
+    {
+        Mat filteredFrame = this.filteredFrames[this.frameIndex];
+        this.frameIndex = (this.frameIndex + 1) % this.filteredFrames.length;
+        return filteredFrame;
+    }
+}
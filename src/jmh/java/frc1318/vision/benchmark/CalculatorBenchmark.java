@@ -0,0 +1,123 @@
+package frc1318.vision.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.Core;
+import org.opencv.core.Point;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.calculator.DistanceAngleMeasurements;
+import frc1318.vision.calculator.DistanceAngleVisionCalculator;
+import frc1318.vision.calculator.OffsetDistanceAngleMeasurements;
+import frc1318.vision.calculator.OffsetDistanceAngleVisionCalculator;
+import frc1318.vision.helpers.TagPoseEstimator;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculatorBenchmark
+{
+    private static final double TargetVerticalOffset = 57.13; // height of the speaker tags, in inches
+    private static final double TargetHorizontalOffset = 0.0;
+
+    // the detected corners of a tag a few feet in front of the camera, in the same order as the apriltag library returns them
+    private static final Point[] TagVertices = new Point[] { new Point(600.0, 380.0), new Point(680.0, 378.0), new Point(682.0, 300.0), new Point(598.0, 302.0) };
+    private static final double[] TagPose = new double[] { 180.0, 0.0, 0.0, -327.12, 215.00, 57.13 }; // blue speaker center tag
+
+    private DistanceAngleVisionCalculator distanceAngleCalculator;
+    private OffsetDistanceAngleVisionCalculator offsetDistanceAngleCalculator;
+    private TagPoseEstimator poseEstimator;
+    private Point center;
+    private double[] offset;
+    private double[] ypr;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        this.distanceAngleCalculator =
+            new DistanceAngleVisionCalculator(
+                null,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+                VisionConstants.PRIMARY_CAMERA_YAW,
+                VisionConstants.PRIMARY_CAMERA_PITCH,
+                VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                CalculatorBenchmark.TargetVerticalOffset);
+
+        this.offsetDistanceAngleCalculator =
+            new OffsetDistanceAngleVisionCalculator(
+                null,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+                VisionConstants.PRIMARY_CAMERA_YAW,
+                VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                VisionConstants.PRIMARY_CAMERA_PITCH,
+                VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                CalculatorBenchmark.TargetHorizontalOffset,
+                CalculatorBenchmark.TargetVerticalOffset);
+
+        // the AprilTag calculators' native pose estimation needs a real detection, so this covers their undistorted-corners path
+        this.poseEstimator =
+            new TagPoseEstimator(
+                VisionConstants.PRIMARY_PIPELINE_APRILTAG_SIZE,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF,
+                VisionConstants.PRIMARY_CAMERA_ROLL,
+                VisionConstants.PRIMARY_CAMERA_PITCH,
+                VisionConstants.PRIMARY_CAMERA_YAW,
+                VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET);
+
+        this.center = new Point(640.0, 340.0);
+        this.offset = new double[3];
+        this.ypr = new double[3];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.poseEstimator.release();
+    }
+
+    @Benchmark
+    public DistanceAngleMeasurements distanceAngleCalculator()
+    {
+        return this.distanceAngleCalculator.calculate(this.center);
+    }
+
+    @Benchmark
+    public OffsetDistanceAngleMeasurements offsetDistanceAngleCalculator()
+    {
+        return this.offsetDistanceAngleCalculator.calculate(this.center);
+    }
+
+    @Benchmark
+    public double[] tagPoseFromDistortedCorners()
+    {
+        this.poseEstimator.estimateTagPose(CalculatorBenchmark.TagVertices, this.offset, this.ypr);
+        return this.offset;
+    }
+
+    @Benchmark
+    public double[] absolutePoseFromDistortedCorners()
+    {
+        this.poseEstimator.estimateAbsolutePose(CalculatorBenchmark.TagVertices, CalculatorBenchmark.TagPose, this.offset, this.ypr);
+        return this.offset;
+    }
+}
@@ -0,0 +1,132 @@
+package frc1318.vision.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.IContourBufferFilter;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.filters.LargestBallDistanceAngleFilter;
+import frc1318.vision.filters.LargestCenterFilter;
+import frc1318.vision.filters.LargestCircleFilter;
+import frc1318.vision.filters.LargestRectangleFilter;
+import frc1318.vision.helpers.ContourBuffer;
+import frc1318.vision.helpers.HSVFilter;
+
+public class ContourBufferBenchmark extends FrameBenchmarkBase
+{
+    private static final double MinCircleRatio = 0.0; // accept every contour, so that each one is fully evaluated
+    private static final double BallDiameter = 14.0; // inches
+    private static final double MaxDistanceDifference = 1000.0; // accept every distance estimate
+
+    @Param({ "center", "circle", "rectangle", "ball" })
+    public String filterName;
+
+    private Mat[] filteredFrames;
+    private int frameIndex;
+
+    private IContourBufferFilter<?> filter;
+    private List<MatOfPoint> contours;
+    private Mat hierarchy;
+    private ContourBuffer contourBuffer;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        // filter each frame once, the same way the HSV pipeline does
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        this.filteredFrames = new Mat[this.getFrameCount()];
+        for (int i = 0; i < this.getFrameCount(); i++)
+        {
+            this.filteredFrames[i] = new Mat();
+            hsvFilter.filterHSV(this.getFrame(i), this.filteredFrames[i]);
+        }
+
+        this.frameIndex = 0;
+
+        switch (this.filterName)
+        {
+            case "center":
+                this.filter = new LargestCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                break;
+
+            case "circle":
+                this.filter = new LargestCircleFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA, ContourBufferBenchmark.MinCircleRatio);
+                break;
+
+            case "rectangle":
+                this.filter = new LargestRectangleFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                break;
+
+            default:
+                this.filter =
+                    new LargestBallDistanceAngleFilter(
+                        VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA,
+                        ContourBufferBenchmark.MinCircleRatio,
+                        this.centerX,
+                        this.centerY,
+                        this.focalX,
+                        this.focalY,
+                        VisionConstants.PRIMARY_CAMERA_YAW,
+                        VisionConstants.PRIMARY_CAMERA_PITCH,
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                        ContourBufferBenchmark.BallDiameter,
+                        ContourBufferBenchmark.MaxDistanceDifference);
+                break;
+        }
+
+        this.contours = new ArrayList<MatOfPoint>();
+        this.hierarchy = new Mat();
+        this.contourBuffer = new ContourBuffer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (Mat filteredFrame : this.filteredFrames)
+        {
+            filteredFrame.release();
+        }
+
+        this.hierarchy.release();
+        this.releaseFrames();
+    }
+
+    /**
+     * Find and filter the contours through OpenCV's findContours, which allocates a MatOfPoint for each contour.
+     * Run with -PjmhProfilers=gc to compare the allocation per frame (gc.alloc.rate.norm) with contourBuffer.
+     * @return filter result
+     */
+    @Benchmark
+    public Object findContours()
+    {
+        Imgproc.findContours(this.nextFilteredFrame(), this.contours, this.hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_TC89_KCOS);
+        Object result = this.filter.filter(this.contours);
+        this.contours.clear();
+        return result;
+    }
+
+    /**
+     * Find and filter the contours into the reused ContourBuffer, which shouldn't allocate anything other than the result
+     * @return filter result
+     */
+    @Benchmark
+    public Object contourBuffer()
+    {
+        this.contourBuffer.findExternalContours(this.nextFilteredFrame());
+        return this.filter.filter(this.contourBuffer);
+    }
+
+    private Mat nextFilteredFrame()
+    {
+        Mat filteredFrame = this.filteredFrames[this.frameIndex];
+        this.frameIndex = (this.frameIndex + 1) % this.filteredFrames.length;
+        return filteredFrame;
+    }
+}
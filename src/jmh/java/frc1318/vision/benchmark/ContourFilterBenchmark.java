@@ -0,0 +1,130 @@
+package frc1318.vision.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.calculator.Circle;
+import frc1318.vision.calculator.DistanceAngleMeasurements;
+import frc1318.vision.filters.LargestBallDistanceAngleFilter;
+import frc1318.vision.filters.LargestCircleFilter;
+import frc1318.vision.filters.LargestRectangleFilter;
+import frc1318.vision.helpers.HSVFilter;
+
+public class ContourFilterBenchmark extends FrameBenchmarkBase
+{
+    private static final double MinCircleRatio = 0.0; // accept every contour, so that each one is fully evaluated
+    private static final double BallDiameter = 14.0; // inches
+    private static final double MaxDistanceDifference = 1000.0; // accept every distance estimate
+
+    private List<List<MatOfPoint>> frameContours;
+    private int frameIndex;
+    private List<MatOfPoint> contours;
+
+    private LargestCircleFilter circleFilter;
+    private LargestRectangleFilter rectangleFilter;
+    private LargestBallDistanceAngleFilter ballFilter;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        // find the contours in each frame once, the same way the HSV pipeline does
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        Mat filteredFrame = new Mat();
+        Mat hierarchy = new Mat();
+        this.frameContours = new ArrayList<List<MatOfPoint>>(this.getFrameCount());
+        for (int i = 0; i < this.getFrameCount(); i++)
+        {
+            List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+            hsvFilter.filterHSV(this.getFrame(i), filteredFrame);
+            Imgproc.findContours(filteredFrame, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_TC89_KCOS);
+            this.frameContours.add(contours);
+        }
+
+        filteredFrame.release();
+        hierarchy.release();
+        this.frameIndex = 0;
+
+        this.circleFilter = new LargestCircleFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA, ContourFilterBenchmark.MinCircleRatio);
+        this.rectangleFilter = new LargestRectangleFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+        this.ballFilter =
+            new LargestBallDistanceAngleFilter(
+                VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA,
+                ContourFilterBenchmark.MinCircleRatio,
+                this.centerX,
+                this.centerY,
+                this.focalX,
+                this.focalY,
+                VisionConstants.PRIMARY_CAMERA_YAW,
+                VisionConstants.PRIMARY_CAMERA_PITCH,
+                VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                ContourFilterBenchmark.BallDiameter,
+                ContourFilterBenchmark.MaxDistanceDifference);
+    }
+
+    /**
+     * The filters release the contours that they don't select, so each invocation needs its own copy of them
+     */
+    @Setup(Level.Invocation)
+    public void copyContours()
+    {
+        List<MatOfPoint> source = this.frameContours.get(this.frameIndex);
+        this.frameIndex = (this.frameIndex + 1) % this.frameContours.size();
+
+        this.contours = new ArrayList<MatOfPoint>(source.size());
+        for (MatOfPoint contour : source)
+        {
+            MatOfPoint copy = new MatOfPoint();
+            contour.copyTo(copy);
+            this.contours.add(copy);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void releaseContours()
+    {
+        for (MatOfPoint contour : this.contours)
+        {
+            contour.release();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (List<MatOfPoint> contours : this.frameContours)
+        {
+            for (MatOfPoint contour : contours)
+            {
+                contour.release();
+            }
+        }
+
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public Circle largestCircleFilter()
+    {
+        return this.circleFilter.filter(this.contours);
+    }
+
+    @Benchmark
+    public RotatedRect largestRectangleFilter()
+    {
+        return this.rectangleFilter.filter(this.contours);
+    }
+
+    @Benchmark
+    public DistanceAngleMeasurements largestBallDistanceAngleFilter()
+    {
+        return this.ballFilter.filter(this.contours);
+    }
+}
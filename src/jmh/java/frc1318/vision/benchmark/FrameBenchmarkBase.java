@@ -0,0 +1,135 @@
+package frc1318.vision.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.ImageUndistorter;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class FrameBenchmarkBase
+{
+    private static final int CaptureCount = 7;
+
+    @Param({ "640x360", "1280x720", "1920x1080" })
+    public String resolution;
+
+    protected int width;
+    protected int height;
+    protected double centerX;
+    protected double centerY;
+    protected double focalX;
+    protected double focalY;
+
+    private Mat[] frames;
+    private int frameIndex;
+
+    /**
+     * Load the recorded frames (from src/test/resources) at the benchmark's resolution,
+     * and scale the camera calibration to match
+     */
+    protected void loadFrames()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        String[] dimensions = this.resolution.split("x");
+        this.width = Integer.parseInt(dimensions[0]);
+        this.height = Integer.parseInt(dimensions[1]);
+
+        // the calibration is for 1280x720, so scale it to the frame size
+        double scaleX = (double)this.width / VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X;
+        double scaleY = (double)this.height / VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y;
+        this.centerX = VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X * scaleX;
+        this.centerY = VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y * scaleY;
+        this.focalX = VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X * scaleX;
+        this.focalY = VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y * scaleY;
+
+        String resourcePath = System.getProperty("benchmark.resources", "src/test/resources/");
+        Size size = new Size(this.width, this.height);
+
+        this.frames = new Mat[FrameBenchmarkBase.CaptureCount];
+        for (int i = 0; i < FrameBenchmarkBase.CaptureCount; i++)
+        {
+            Mat capture = Imgcodecs.imread(resourcePath + "Capture" + (i + 1) + ".PNG");
+            if (capture.empty())
+            {
+                throw new RuntimeException("Unable to load " + resourcePath + "Capture" + (i + 1) + ".PNG");
+            }
+
+            this.frames[i] = new Mat();
+            Imgproc.resize(capture, this.frames[i], size);
+            capture.release();
+        }
+
+        this.frameIndex = 0;
+    }
+
+    /**
+     * Release the recorded frames
+     */
+    protected void releaseFrames()
+    {
+        for (Mat frame : this.frames)
+        {
+            frame.release();
+        }
+    }
+
+    /**
+     * Gets the number of recorded frames
+     * @return frame count
+     */
+    protected int getFrameCount()
+    {
+        return this.frames.length;
+    }
+
+    /**
+     * Gets a recorded frame
+     * @param index of the frame
+     * @return frame at the benchmark's resolution
+     */
+    protected Mat getFrame(int index)
+    {
+        return this.frames[index];
+    }
+
+    /**
+     * Gets the next recorded frame, cycling through all of them
+     * @return frame at the benchmark's resolution
+     */
+    protected Mat nextFrame()
+    {
+        Mat frame = this.frames[this.frameIndex];
+        this.frameIndex = (this.frameIndex + 1) % this.frames.length;
+        return frame;
+    }
+
+    /**
+     * Create an undistorter for the benchmark's resolution
+     * @param fixedPoint whether to use fixed-point remap tables
+     * @return undistorter
+     */
+    protected ImageUndistorter createUndistorter(boolean fixedPoint)
+    {
+        return new ImageUndistorter(
+            this.width,
+            this.height,
+            this.centerX,
+            this.centerY,
+            this.focalX,
+            this.focalY,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF,
+            fixedPoint,
+            null);
+    }
+}
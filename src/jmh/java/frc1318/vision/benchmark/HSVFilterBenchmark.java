@@ -0,0 +1,36 @@
+package frc1318.vision.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.Mat;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.HSVFilter;
+
+public class HSVFilterBenchmark extends FrameBenchmarkBase
+{
+    private HSVFilter hsvFilter;
+    private Mat filteredFrame;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        this.hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        this.filteredFrame = new Mat();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.filteredFrame.release();
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public Mat filterHSV()
+    {
+        this.hsvFilter.filterHSV(this.nextFrame(), this.filteredFrame);
+        return this.filteredFrame;
+    }
+}
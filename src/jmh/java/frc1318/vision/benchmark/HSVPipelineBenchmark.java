@@ -0,0 +1,64 @@
+package frc1318.vision.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opencv.core.Point;
+
+import frc1318.vision.IHSVFilter;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.filters.LargestCenterFilter;
+import frc1318.vision.helpers.CoarseToFineHSVFilter;
+import frc1318.vision.helpers.HSVFilter;
+import frc1318.vision.pipeline.HSVPipeline;
+
+public class HSVPipelineBenchmark extends FrameBenchmarkBase
+{
+    @Param({ "false", "true" })
+    public boolean undistort;
+
+    @Param({ "0", "2" })
+    public int coarseLevels;
+
+    private HSVPipeline<Point> pipeline;
+    private long captureTime;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole)
+    {
+        this.loadFrames();
+
+        IHSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        if (this.coarseLevels > 0)
+        {
+            hsvFilter =
+                new CoarseToFineHSVFilter(
+                    hsvFilter,
+                    this.coarseLevels,
+                    VisionConstants.HSV_COARSE_REGION_PADDING,
+                    VisionConstants.HSV_COARSE_MAX_CANDIDATES,
+                    VisionConstants.HSV_COARSE_MAX_REGION_FRACTION);
+        }
+
+        this.pipeline =
+            new HSVPipeline<Point>(
+                new BlackholeWriter<Point>(blackhole),
+                null,
+                this.undistort ? this.createUndistorter(VisionConstants.UNDISTORT_FIXED_POINT_MAPS) : null,
+                hsvFilter,
+                new LargestCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA));
+
+        this.captureTime = 0L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public void process()
+    {
+        this.pipeline.process(this.nextFrame(), this.captureTime++);
+    }
+}
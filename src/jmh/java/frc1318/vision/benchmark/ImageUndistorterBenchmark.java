@@ -0,0 +1,38 @@
+package frc1318.vision.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.Mat;
+
+import frc1318.vision.helpers.ImageUndistorter;
+
+public class ImageUndistorterBenchmark extends FrameBenchmarkBase
+{
+    @Param({ "false", "true" })
+    public boolean fixedPoint;
+
+    private ImageUndistorter undistorter;
+    private Mat undistortedFrame;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        this.undistorter = this.createUndistorter(this.fixedPoint);
+        this.undistortedFrame = new Mat();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.undistortedFrame.release();
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public Mat undistortFrame()
+    {
+        this.undistorter.undistortFrame(this.nextFrame(), this.undistortedFrame);
+        return this.undistortedFrame;
+    }
+}
@@ -0,0 +1,135 @@
+package frc1318.vision.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.HSVFilter;
+import frc1318.vision.helpers.LookupTableHSVFilter;
+
+public class LookupTableHSVFilterBenchmark extends FrameBenchmarkBase
+{
+    @Param({ "5", "8" })
+    public int bitsPerChannel;
+
+    private HSVFilter hsvFilter;
+    private LookupTableHSVFilter lookupFilter;
+    private LookupTableHSVFilter yuyvLookupFilter;
+    private LookupTableHSVFilter i420LookupFilter;
+
+    private Mat[] yuyvFrames;
+    private int yuyvFrameIndex;
+    private Mat[] i420Frames;
+    private int i420FrameIndex;
+    private Mat bgrFrame;
+    private Mat filteredFrame;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        this.hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        this.lookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, this.bitsPerChannel, LookupTableHSVFilter.Layout.BGR);
+        this.yuyvLookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, this.bitsPerChannel, LookupTableHSVFilter.Layout.YUYV);
+        this.i420LookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, this.bitsPerChannel, LookupTableHSVFilter.Layout.I420);
+
+        // the same frames, as a YUYV camera would deliver them
+        this.yuyvFrames = new Mat[this.getFrameCount()];
+        for (int i = 0; i < this.getFrameCount(); i++)
+        {
+            this.yuyvFrames[i] = new Mat();
+            Imgproc.cvtColor(this.getFrame(i), this.yuyvFrames[i], Imgproc.COLOR_BGR2YUV_YUYV);
+        }
+
+        // and as libcamera would deliver them in YUV420
+        this.i420Frames = new Mat[this.getFrameCount()];
+        for (int i = 0; i < this.getFrameCount(); i++)
+        {
+            this.i420Frames[i] = new Mat();
+            Imgproc.cvtColor(this.getFrame(i), this.i420Frames[i], Imgproc.COLOR_BGR2YUV_I420);
+        }
+
+        this.yuyvFrameIndex = 0;
+        this.i420FrameIndex = 0;
+        this.bgrFrame = new Mat();
+        this.filteredFrame = new Mat();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (Mat yuyvFrame : this.yuyvFrames)
+        {
+            yuyvFrame.release();
+        }
+
+        for (Mat i420Frame : this.i420Frames)
+        {
+            i420Frame.release();
+        }
+
+        this.bgrFrame.release();
+        this.filteredFrame.release();
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public Mat filterHSV()
+    {
+        this.hsvFilter.filterHSV(this.nextFrame(), this.filteredFrame);
+        return this.filteredFrame;
+    }
+
+    @Benchmark
+    public Mat lookupTable()
+    {
+        this.lookupFilter.filterHSV(this.nextFrame(), this.filteredFrame);
+        return this.filteredFrame;
+    }
+
+    @Benchmark
+    public Mat convertYUYVThenFilterHSV()
+    {
+        Imgproc.cvtColor(this.nextYUYVFrame(), this.bgrFrame, Imgproc.COLOR_YUV2BGR_YUYV);
+        this.hsvFilter.filterHSV(this.bgrFrame, this.filteredFrame);
+        return this.filteredFrame;
+    }
+
+    @Benchmark
+    public Mat lookupTableYUYV()
+    {
+        this.yuyvLookupFilter.filterHSV(this.nextYUYVFrame(), this.filteredFrame);
+        return this.filteredFrame;
+    }
+
+    @Benchmark
+    public Mat convertI420ThenFilterHSV()
+    {
+        Imgproc.cvtColor(this.nextI420Frame(), this.bgrFrame, Imgproc.COLOR_YUV2BGR_I420);
+        this.hsvFilter.filterHSV(this.bgrFrame, this.filteredFrame);
+        return this.filteredFrame;
+    }
+
+    @Benchmark
+    public Mat lookupTableI420()
+    {
+        this.i420LookupFilter.filterHSV(this.nextI420Frame(), this.filteredFrame);
+        return this.filteredFrame;
+    }
+
+    private Mat nextYUYVFrame()
+    {
+        Mat yuyvFrame = this.yuyvFrames[this.yuyvFrameIndex];
+        this.yuyvFrameIndex = (this.yuyvFrameIndex + 1) % this.yuyvFrames.length;
+        return yuyvFrame;
+    }
+
+    private Mat nextI420Frame()
+    {
+        Mat i420Frame = this.i420Frames[this.i420FrameIndex];
+        this.i420FrameIndex = (this.i420FrameIndex + 1) % this.i420Frames.length;
+        return i420Frame;
+    }
+}
@@ -0,0 +1,80 @@
+package frc1318.vision.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.MjpegDecoder;
+
+public class MjpegDecodeBenchmark extends FrameBenchmarkBase
+{
+    private MatOfByte[] jpegFrames;
+    private int jpegFrameIndex;
+
+    private MjpegDecoder colorDecoder;
+    private MjpegDecoder grayscaleDecoder;
+    private Mat decodedFrame;
+    private Mat grayFrame;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.loadFrames();
+
+        // the same frames, as an MJPEG camera would deliver them
+        MatOfInt parameters = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, VisionConstants.STREAMING_COMPRESSION);
+        this.jpegFrames = new MatOfByte[this.getFrameCount()];
+        for (int i = 0; i < this.getFrameCount(); i++)
+        {
+            this.jpegFrames[i] = new MatOfByte();
+            Imgcodecs.imencode(".jpg", this.getFrame(i), this.jpegFrames[i], parameters);
+        }
+
+        parameters.release();
+
+        this.jpegFrameIndex = 0;
+        this.colorDecoder = new MjpegDecoder(MjpegDecoder.Mode.Color);
+        this.grayscaleDecoder = new MjpegDecoder(MjpegDecoder.Mode.Grayscale);
+        this.decodedFrame = new Mat();
+        this.grayFrame = new Mat();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (MatOfByte jpegFrame : this.jpegFrames)
+        {
+            jpegFrame.release();
+        }
+
+        this.decodedFrame.release();
+        this.grayFrame.release();
+        this.releaseFrames();
+    }
+
+    @Benchmark
+    public Mat decodeColorThenConvertToGray()
+    {
+        this.colorDecoder.decode(this.nextJpegFrame(), this.decodedFrame);
+        Imgproc.cvtColor(this.decodedFrame, this.grayFrame, Imgproc.COLOR_BGR2GRAY);
+        return this.grayFrame;
+    }
+
+    @Benchmark
+    public Mat decodeGrayscale()
+    {
+        this.grayscaleDecoder.decode(this.nextJpegFrame(), this.decodedFrame);
+        return this.decodedFrame;
+    }
+
+    private Mat nextJpegFrame()
+    {
+        MatOfByte jpegFrame = this.jpegFrames[this.jpegFrameIndex];
+        this.jpegFrameIndex = (this.jpegFrameIndex + 1) % this.jpegFrames.length;
+        return jpegFrame;
+    }
+}
@@ -0,0 +1,129 @@
+package frc1318.vision.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.*;
+
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.TagPoseEstimator;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiTagPoseBenchmark
+{
+    private static final double TagSize = VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_SIZE;
+    private static final double TagDistance = 120.0; // inches in front of the robot
+    private static final double[][] TagOffsets = new double[][] // y, z of each tag
+    {
+        { -10.0, 10.0 }, { 10.0, 10.0 }, { -10.0, -10.0 }, { 10.0, -10.0 },
+        { -30.0, 10.0 }, { 30.0, 10.0 }, { -30.0, -10.0 }, { 30.0, -10.0 },
+    };
+
+    @Param({ "1", "2", "4", "8" })
+    public int tagCount;
+
+    private TagPoseEstimator poseEstimator;
+    private Point[][] tagVertices;
+    private double[][] tagPoses;
+    private double[] offset;
+    private double[] ypr;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // the camera is at the robot's origin, looking straight ahead at a wall of tags (so the robot is at the field's origin)
+        this.poseEstimator =
+            new TagPoseEstimator(
+                MultiTagPoseBenchmark.TagSize,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+                VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF,
+                0.0,
+                0.0,
+                0.0,
+                0.0,
+                0.0,
+                0.0);
+
+        Mat intrinsicMatrix = new Mat(3, 3, CvType.CV_64FC1);
+        intrinsicMatrix.put(
+            0,
+            0,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X, 0.0, VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+            0.0, VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y, VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+            0.0, 0.0, 1.0);
+        MatOfDouble distortionCoeffs = new MatOfDouble(VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF);
+        Mat zero = Mat.zeros(3, 1, CvType.CV_64FC1);
+
+        double halfSize = MultiTagPoseBenchmark.TagSize / 2.0;
+        double[][] corners = new double[][] { { -halfSize, halfSize }, { halfSize, halfSize }, { halfSize, -halfSize }, { -halfSize, -halfSize } };
+
+        this.tagVertices = new Point[this.tagCount][];
+        this.tagPoses = new double[this.tagCount][];
+        for (int t = 0; t < this.tagCount; t++)
+        {
+            double y = MultiTagPoseBenchmark.TagOffsets[t][0];
+            double z = MultiTagPoseBenchmark.TagOffsets[t][1];
+
+            // tags face back toward the robot (yaw 180), so the tag's corner (0, -cx, -cy) is at (x, y + cx, z - cy) on the field
+            this.tagPoses[t] = new double[] { 180.0, 0.0, 0.0, MultiTagPoseBenchmark.TagDistance, y, z };
+
+            Point3[] cameraPoints = new Point3[4];
+            for (int c = 0; c < 4; c++)
+            {
+                double fieldX = MultiTagPoseBenchmark.TagDistance;
+                double fieldY = y + corners[c][0];
+                double fieldZ = z - corners[c][1];
+
+                // from our frame (x forward, y left, z up) to OpenCV's (x right, y down, z forward)
+                cameraPoints[c] = new Point3(-fieldY, -fieldZ, fieldX);
+            }
+
+            MatOfPoint3f objectPoints = new MatOfPoint3f(cameraPoints);
+            MatOfPoint2f imagePoints = new MatOfPoint2f();
+            Calib3d.projectPoints(objectPoints, zero, zero, intrinsicMatrix, distortionCoeffs, imagePoints);
+            this.tagVertices[t] = imagePoints.toArray();
+
+            objectPoints.release();
+            imagePoints.release();
+        }
+
+        intrinsicMatrix.release();
+        distortionCoeffs.release();
+        zero.release();
+
+        this.offset = new double[3];
+        this.ypr = new double[3];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.poseEstimator.release();
+    }
+
+    @Benchmark
+    public double[] multiTagAbsolutePose()
+    {
+        this.poseEstimator.estimateMultiTagAbsolutePose(this.tagVertices, this.tagPoses, this.tagCount, this.offset, this.ypr);
+        return this.offset;
+    }
+
+    @Benchmark
+    public double[] largestTagAbsolutePose()
+    {
+        // the single-tag solve that the multi-tag solve replaces, for comparison
+        this.poseEstimator.estimateAbsolutePose(this.tagVertices[0], this.tagPoses[0], this.offset, this.ypr);
+        return this.offset;
+    }
+}
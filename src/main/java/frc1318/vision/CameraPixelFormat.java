@@ -0,0 +1,48 @@
+package frc1318.vision;
+
+import org.opencv.core.CvType;
+
+public enum CameraPixelFormat
+{
+    MJPEG('M', 'J', 'P', 'G', CvType.CV_8UC3), // compressed, decoded to 3-channel BGR
+    YUYV('Y', 'U', 'Y', 'V', CvType.CV_8UC2), // uncompressed 4:2:2, delivered as-is (Y0 U Y1 V)
+    GREY('G', 'R', 'E', 'Y', CvType.CV_8UC1), // uncompressed luma only, delivered as-is
+    YUV420('Y', 'U', '1', '2', CvType.CV_8UC1); // uncompressed 4:2:0 planes (I420), delivered as-is with 3/2 as many rows
+
+    private final char[] fourcc;
+    private final int type;
+
+    private CameraPixelFormat(char c1, char c2, char c3, char c4, int type)
+    {
+        this.fourcc = new char[] { c1, c2, c3, c4 };
+        this.type = type;
+    }
+
+    /**
+     * Gets the FOURCC code that V4L2 uses for this pixel format
+     * @return four character code
+     */
+    public int getFourcc()
+    {
+        return this.fourcc[0] | (this.fourcc[1] << 8) | (this.fourcc[2] << 16) | (this.fourcc[3] << 24);
+    }
+
+    /**
+     * Gets the type of the frames that a camera reader provides in this pixel format
+     * @return OpenCV mat type
+     */
+    public int getFrameType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Gets the number of rows in the frames that a camera reader provides in this pixel format
+     * @param resolutionY the height of the image
+     * @return number of rows
+     */
+    public int getFrameRows(int resolutionY)
+    {
+        return this == CameraPixelFormat.YUV420 ? resolutionY * 3 / 2 : resolutionY;
+    }
+}
@@ -7,6 +7,7 @@ public class CameraSettings
     public final int ResolutionX;
     public final int ResolutionY;
     public final int FramesPerSecond;
+    public final CameraPixelFormat PixelFormat;
 
     /**
      * Initializes a new instance of the CameraSettings class.
@@ -22,12 +23,33 @@ public class CameraSettings
         int resolutionX,
         int resolutionY,
         int framesPerSecond)
+    {
+        this(exposure, brightness, resolutionX, resolutionY, framesPerSecond, CameraPixelFormat.MJPEG);
+    }
+
+    /**
+     * Initializes a new instance of the CameraSettings class.
+     * @param exposure
+     * @param brightness
+     * @param resolutionX
+     * @param resolutionY
+     * @param framesPerSecond
+     * @param pixelFormat format the camera should deliver frames in
+     */
+    public CameraSettings(
+        double exposure,
+        double brightness,
+        int resolutionX,
+        int resolutionY,
+        int framesPerSecond,
+        CameraPixelFormat pixelFormat)
     {
         this.Exposure = exposure;
         this.Brightness = brightness;
         this.ResolutionX = resolutionX;
         this.ResolutionY = resolutionY;
         this.FramesPerSecond = framesPerSecond;
+        this.PixelFormat = pixelFormat;
     }
 
     @Override
@@ -56,6 +78,7 @@ public class CameraSettings
             other.Brightness == this.Brightness &&
             other.ResolutionX == this.ResolutionX &&
             other.ResolutionY == this.ResolutionY &&
-            other.FramesPerSecond == this.FramesPerSecond;
+            other.FramesPerSecond == this.FramesPerSecond &&
+            other.PixelFormat == this.PixelFormat;
     }
 }
@@ -32,24 +32,34 @@ public class FieldLayout
     //// (So we are effectively tracking the direction of the rear face of the tag.)
     public static Map<Integer, Mat4> AprilTagIdToAffineTransformationMap;
 
+    // the same poses as above, as (yaw, pitch, roll, x, y, z), for calculating positions without the native transformations
+    public static Map<Integer, double[]> AprilTagIdToPoseMap;
+
     static
     {
         FieldLayout.AprilTagIdToAffineTransformationMap = new HashMap<Integer, Mat4>(16);
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(1,  Mat4.createAffine(180.0 + 120.0, 0.0, 0.0,  268.07,   6.26, 53.38, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(2,  Mat4.createAffine(180.0 + 120.0, 0.0, 0.0,  311.59,  31.37, 53.38, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(3,  Mat4.createAffine(180.0 + 180.0, 0.0, 0.0,  327.12, 192.75, 57.13, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(4,  Mat4.createAffine(180.0 + 180.0, 0.0, 0.0,  327.12, 215.00, 57.13, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(5,  Mat4.createAffine(180.0 + 270.0, 0.0, 0.0,  253.16, 319.58, 53.38, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(6,  Mat4.createAffine(180.0 + 270.0, 0.0, 0.0, -253.16, 319.58, 53.38, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(7,  Mat4.createAffine(180.0 +   0.0, 0.0, 0.0, -327.12, 215.00, 57.13, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(8,  Mat4.createAffine(180.0 +   0.0, 0.0, 0.0, -327.12, 192.75, 57.13, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(9,  Mat4.createAffine(180.0 +  60.0, 0.0, 0.0, -311.59,  31.37, 53.38, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(10, Mat4.createAffine(180.0 +  60.0, 0.0, 0.0, -268.07,   6.26, 53.38, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(11, Mat4.createAffine(180.0 + 300.0, 0.0, 0.0,  143.00, 142.77, 52.00, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(12, Mat4.createAffine(180.0 +  60.0, 0.0, 0.0,  143.00, 173.68, 52.00, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(13, Mat4.createAffine(180.0 + 180.0, 0.0, 0.0,  116.13, 158.50, 52.00, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(14, Mat4.createAffine(180.0 +   0.0, 0.0, 0.0, -116.13, 158.50, 52.00, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(15, Mat4.createAffine(180.0 + 120.0, 0.0, 0.0, -143.00, 173.68, 52.00, 1));
-        FieldLayout.AprilTagIdToAffineTransformationMap.put(16, Mat4.createAffine(180.0 + 240.0, 0.0, 0.0, -143.00, 142.77, 52.00, 1));
+        FieldLayout.AprilTagIdToPoseMap = new HashMap<Integer, double[]>(16);
+        FieldLayout.addAprilTag(1,  180.0 + 120.0,  268.07,   6.26, 53.38);
+        FieldLayout.addAprilTag(2,  180.0 + 120.0,  311.59,  31.37, 53.38);
+        FieldLayout.addAprilTag(3,  180.0 + 180.0,  327.12, 192.75, 57.13);
+        FieldLayout.addAprilTag(4,  180.0 + 180.0,  327.12, 215.00, 57.13);
+        FieldLayout.addAprilTag(5,  180.0 + 270.0,  253.16, 319.58, 53.38);
+        FieldLayout.addAprilTag(6,  180.0 + 270.0, -253.16, 319.58, 53.38);
+        FieldLayout.addAprilTag(7,  180.0 +   0.0, -327.12, 215.00, 57.13);
+        FieldLayout.addAprilTag(8,  180.0 +   0.0, -327.12, 192.75, 57.13);
+        FieldLayout.addAprilTag(9,  180.0 +  60.0, -311.59,  31.37, 53.38);
+        FieldLayout.addAprilTag(10, 180.0 +  60.0, -268.07,   6.26, 53.38);
+        FieldLayout.addAprilTag(11, 180.0 + 300.0,  143.00, 142.77, 52.00);
+        FieldLayout.addAprilTag(12, 180.0 +  60.0,  143.00, 173.68, 52.00);
+        FieldLayout.addAprilTag(13, 180.0 + 180.0,  116.13, 158.50, 52.00);
+        FieldLayout.addAprilTag(14, 180.0 +   0.0, -116.13, 158.50, 52.00);
+        FieldLayout.addAprilTag(15, 180.0 + 120.0, -143.00, 173.68, 52.00);
+        FieldLayout.addAprilTag(16, 180.0 + 240.0, -143.00, 142.77, 52.00);
+    }
+
+    private static void addAprilTag(int id, double yaw, double x, double y, double z)
+    {
+        FieldLayout.AprilTagIdToAffineTransformationMap.put(id, Mat4.createAffine(yaw, 0.0, 0.0, x, y, z, 1));
+        FieldLayout.AprilTagIdToPoseMap.put(id, new double[] { yaw, 0.0, 0.0, x, y, z });
     }
 }
@@ -0,0 +1,13 @@
+package frc1318.vision;
+
+import frc1318.vision.helpers.BlobDetector;
+
+public interface IBlobFilter<TResult>
+{
+    /**
+     * Filter the blobs that were detected and select one based on some criteria
+     * @param blobs detector holding the blobs to filter
+     * @return result of the filter (or null)
+     */
+    public TResult filter(BlobDetector blobs);
+}
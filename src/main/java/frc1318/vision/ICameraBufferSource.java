@@ -0,0 +1,81 @@
+package frc1318.vision;
+
+import java.nio.ByteBuffer;
+
+public interface ICameraBufferSource
+{
+    /**
+     * Configure the camera, (re)allocating its buffers
+     * @param width of the frames, in pixels
+     * @param height of the frames, in pixels
+     * @param framesPerSecond to capture
+     * @param type of the frames' pixels (as an OpenCV Mat type, e.g. CvType.CV_8UC1)
+     * @return true if successful
+     */
+    public boolean configure(int width, int height, int framesPerSecond, int type);
+
+    /**
+     * Update the camera's brightness and exposure
+     * @param brightness to use
+     * @param exposure to use
+     */
+    public void updateSettings(float brightness, float exposure);
+
+    /**
+     * Start capturing into the queued buffers
+     * @return true if successful
+     */
+    public boolean start();
+
+    /**
+     * Stop capturing
+     */
+    public void stop();
+
+    /**
+     * Release the camera and its buffers
+     */
+    public void release();
+
+    /**
+     * Gets the number of buffers that the camera captures into
+     * @return buffer count
+     */
+    public int getBufferCount();
+
+    /**
+     * Gets a buffer's memory, which stays valid (and at the same address) until the camera is reconfigured or released
+     * @param index of the buffer
+     * @return direct byte buffer mapping the buffer's memory
+     */
+    public ByteBuffer getBuffer(int index);
+
+    /**
+     * Gets the number of bytes between the start of each row in the buffers (which may include padding)
+     * @return row stride, in bytes
+     */
+    public int getStride();
+
+    /**
+     * Wait for the camera to finish capturing into one of the queued buffers.
+     * The buffer then belongs to the caller until it is requeued.
+     * @param timeoutMillis how long to wait
+     * @return index of the captured buffer, or -1 if no buffer was captured in time
+     * @throws InterruptedException
+     */
+    public int waitForBuffer(long timeoutMillis)
+        throws InterruptedException;
+
+    /**
+     * Gets when a buffer was captured
+     * @param index of the buffer
+     * @return capture time, in nanoseconds (from System.nanoTime())
+     */
+    public long getCaptureTime(int index);
+
+    /**
+     * Return a buffer to the camera, so that it can be captured into again
+     * @param index of the buffer
+     */
+    public void requeueBuffer(int index);
+}
@@ -0,0 +1,13 @@
+package frc1318.vision;
+
+import frc1318.vision.helpers.ContourBuffer;
+
+public interface IContourBufferFilter<TResult> extends IContourFilter<TResult>
+{
+    /**
+     * Filter the contours in the buffer and select one based on some criteria, without allocating a MatOfPoint for each contour
+     * @param contours buffer holding the contours to filter
+     * @return result of the filter (or null)
+     */
+    public TResult filter(ContourBuffer contours);
+}
@@ -0,0 +1,13 @@
+package frc1318.vision;
+
+import frc1318.vision.pipeline.AprilTagDetectionScheduler;
+
+public interface IDetectionScheduled
+{
+    /**
+     * Sets the shared scheduler that the object should run its tag detection on, instead of its own detector
+     * @param scheduler to run detection on
+     * @param priority of the object's detection jobs (lower values run first)
+     */
+    public void setDetectionScheduler(AprilTagDetectionScheduler scheduler, int priority);
+}
@@ -7,7 +7,7 @@ public interface IFramePipeline
     /**
      * Process a single image frame
      * @param frame image to process, or null if this pipeline is disabled
-     * @param captureTime when the image was captured
+     * @param captureTime when the image was captured, in nanoseconds (from System.nanoTime())
      */
     public void process(Mat frame, long captureTime);
 }
@@ -14,9 +14,15 @@ public interface IFrameReader extends IOpenable
 
     /**
      * Retrieve an image frame
-     * @return frame of an image and when it was captured
+     * @return frame of an image and when it was captured, in nanoseconds (from System.nanoTime())
      * @throws InterruptedException
      */
     public Pair<Mat, Long> getCurrentFrame()
         throws InterruptedException;
+
+    /**
+     * Return an image frame retrieved from getCurrentFrame once we are done with it, so that its buffer can be reused
+     * @param frame to return
+     */
+    public void releaseFrame(Mat frame);
 }
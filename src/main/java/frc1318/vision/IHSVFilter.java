@@ -0,0 +1,21 @@
+package frc1318.vision;
+
+import org.opencv.core.Mat;
+
+import frc1318.vision.helpers.LookupTableHSVFilter;
+
+public interface IHSVFilter
+{
+    /**
+     * Filter the provided frame for HSVs within the filter's bounds.
+     * @param sourceFrame to filter
+     * @param targetFrame to hold the result of the filtering (255 for pixels within the bounds, otherwise 0)
+     */
+    public void filterHSV(Mat sourceFrame, Mat targetFrame);
+
+    /**
+     * Gets the layout of the frames that the filter expects
+     * @return frame layout
+     */
+    public LookupTableHSVFilter.Layout getLayout();
+}
@@ -0,0 +1,12 @@
+package frc1318.vision;
+
+import frc1318.vision.helpers.VisionMetrics;
+
+public interface IInstrumented
+{
+    /**
+     * Sets the metrics that the object should record how long each of its stages take into
+     * @param metrics to record into, or null to stop recording
+     */
+    public void setMetrics(VisionMetrics metrics);
+}
@@ -0,0 +1,47 @@
+package frc1318.vision;
+
+import org.opencv.core.Mat;
+
+import frc1318.libcamera.ImageFormat;
+
+public interface ILibCamera
+{
+    /**
+     * Configure the camera
+     * @param width of the frames, in pixels
+     * @param height of the frames, in pixels
+     * @param framesPerSecond to capture
+     * @param format of the frames
+     * @return true if successful
+     */
+    public boolean configure(int width, int height, int framesPerSecond, ImageFormat format);
+
+    /**
+     * Update the camera's brightness and exposure
+     * @param brightness to use
+     * @param exposure to use
+     */
+    public void updateSettings(float brightness, float exposure);
+
+    /**
+     * Start capturing
+     * @return true if successful
+     */
+    public boolean start();
+
+    /**
+     * Stop capturing
+     */
+    public void stop();
+
+    /**
+     * Wait for the camera to complete its next capture request
+     * @return the captured frame, which belongs to the caller (or null if no frame was captured)
+     */
+    public Mat read();
+
+    /**
+     * Release the camera
+     */
+    public void release();
+}
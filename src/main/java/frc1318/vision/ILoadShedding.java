@@ -0,0 +1,12 @@
+package frc1318.vision;
+
+import frc1318.vision.helpers.LoadShedder;
+
+public interface ILoadShedding
+{
+    /**
+     * Sets how much optional work the object should skip because frames are taking too long to process
+     * @param level of work to shed (all of the work up to and including this level should be skipped)
+     */
+    public void setShedLevel(LoadShedder.Level level);
+}
@@ -0,0 +1,12 @@
+package frc1318.vision;
+
+public interface IRegionAware
+{
+    /**
+     * Sets the top-left corner of the region of the frame that the following results were detected in, so that their image
+     * coordinates can be shifted back into the full frame
+     * @param regionX x coordinate of the region within the full frame
+     * @param regionY y coordinate of the region within the full frame
+     */
+    public void setRegionOffset(int regionX, int regionY);
+}
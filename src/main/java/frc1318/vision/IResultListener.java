@@ -0,0 +1,12 @@
+package frc1318.vision;
+
+public interface IResultListener
+{
+    /**
+     * Called when the result for a frame has been written
+     * @param captureTime when the frame was captured, in nanoseconds (from System.nanoTime())
+     * @param processingNanos how long it took from starting to process the frame until its result was written, in nanoseconds
+     * @param resultTime when the result was written, in nanoseconds (from System.nanoTime())
+     */
+    public void resultReady(long captureTime, long processingNanos, long resultTime);
+}
@@ -0,0 +1,11 @@
+package frc1318.vision;
+
+public interface IResultTimed
+{
+    /**
+     * Sets the listener that the object should tell when it writes the result for each frame
+     * @param listener to tell, or null to stop telling it
+     * @return true if the object will tell the listener, or false if its results are always written before process() returns
+     */
+    public boolean setResultListener(IResultListener listener);
+}
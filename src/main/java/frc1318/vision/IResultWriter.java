@@ -7,7 +7,7 @@ public interface IResultWriter<T> extends IOpenable
     /**
      * Write a result
      * @param result to write
-     * @param captureTime when the image was captured
+     * @param captureTime when the image was captured, in nanoseconds (from System.nanoTime())
      * @param sourceFrame that it came from
      */
     public void write(T result, long captureTime, Mat sourceFrame);
@@ -15,7 +15,7 @@ public interface IResultWriter<T> extends IOpenable
     /**
      * Write a result
      * @param result to write
-     * @param captureTime when the image was captured
+     * @param captureTime when the image was captured, in nanoseconds (from System.nanoTime())
      */
     public void write(T result, long captureTime);
 
@@ -19,9 +19,13 @@ import frc1318.apriltag.AprilTagDetection;
 import frc1318.vision.calculator.*;
 import frc1318.vision.controller.*;
 import frc1318.vision.filters.*;
+import frc1318.vision.helpers.CoarseToFineHSVFilter;
 import frc1318.vision.helpers.HSVFilter;
 import frc1318.vision.helpers.ImageUndistorter;
+import frc1318.vision.helpers.LookupTableHSVFilter;
+import frc1318.vision.helpers.MjpegDecoder;
 import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
 import frc1318.vision.pipeline.*;
 import frc1318.vision.reader.*;
 import frc1318.vision.writer.*;
@@ -90,10 +94,12 @@ public class Program
         String targetFileName = null;
         String maskFileName = null;
         boolean grayscaleCamera = false;
+        boolean yuyvCamera = false;
         boolean useLibCamera = false;
         boolean diagnostic = false;
         boolean show = false;
         boolean skipUndistort = false;
+        boolean compareUndistort = false;
         boolean sb2 = false;
         boolean skipApplyingSettings = false;
         double exposure = VisionConstants.PRIMARY_PIPELINE_VISION_EXPOSURE;
@@ -132,6 +138,17 @@ public class Program
                 continue;
             }
 
+            if (arg.equalsIgnoreCase("/yuyv"))
+            {
+                if (yuyvCamera)
+                {
+                    System.out.println("Warning: multiple /yuyv arguments");
+                }
+
+                yuyvCamera = true;
+                continue;
+            }
+
             if (arg.equalsIgnoreCase("/libcamera"))
             {
                 if (useLibCamera)
@@ -215,6 +232,17 @@ public class Program
                 continue;
             }
 
+            if (arg.equalsIgnoreCase("/compareundistort"))
+            {
+                if (compareUndistort)
+                {
+                    System.out.println("Warning: multiple /compareUndistort arguments");
+                }
+
+                compareUndistort = true;
+                continue;
+            }
+
             if (arg.equalsIgnoreCase("/controls"))
             {
                 if (selectedMode != Mode.None)
@@ -382,6 +410,13 @@ public class Program
                     return;
                 }
 
+                if (grayscaleCamera)
+                {
+                    System.err.println("Error: /gray not supported for HSV mode");
+                    printUsage();
+                    return;
+                }
+
                 break;
 
             case ImageSaver:
@@ -424,7 +459,17 @@ public class Program
 
             case AprilTagRelative:
             case AprilTagAbsolute:
+                break;
+
             case Switched:
+                if (grayscaleCamera)
+                {
+                    // the HSV pipeline needs the color frames
+                    System.err.println("Error: /gray not supported for switched mode");
+                    printUsage();
+                    return;
+                }
+
                 break;
 
             case DeviceEnumeration:
@@ -479,6 +524,13 @@ public class Program
                 break;
         }
 
+        if (compareUndistort && (selectedMode != Mode.AprilTagRelative || skipUndistort || diagnostic || show))
+        {
+            System.err.println("Error: /compareundistort only supports /apriltag mode, and doesn't support /skipundistort, /diagnostic or /show");
+            printUsage();
+            return;
+        }
+
         if (sourceFileName != null && cameraId != null)
         {
             System.err.println("Error: don't support /c and /s together");
@@ -551,11 +603,11 @@ public class Program
                     cameraIdNum = Integer.parseInt(cameraId);
                     cameraId = null;
 
-                    frameReader = new CameraReader(controller, cameraIdNum);
+                    frameReader = new CameraReader(controller, cameraIdNum, grayscaleCamera ? MjpegDecoder.Mode.Grayscale : MjpegDecoder.Mode.Color);
                 }
                 else
                 {
-                    frameReader = new CameraReader(controller, cameraId);
+                    frameReader = new CameraReader(controller, cameraId, grayscaleCamera ? MjpegDecoder.Mode.Grayscale : MjpegDecoder.Mode.Color);
                 }
             }
         }
@@ -729,6 +781,95 @@ public class Program
 
                 outputs.add(aprilTagCalculator);
             }
+            else if (compareUndistort)
+            {
+                DistancesAnglesVisionCalculator frameCalculator =
+                    new DistancesAnglesVisionCalculator(
+                        null,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_SIZE,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_Y_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_Y_720P,
+                        VisionConstants.PRIMARY_CAMERA_ROLL,
+                        VisionConstants.PRIMARY_CAMERA_PITCH,
+                        VisionConstants.PRIMARY_CAMERA_YAW,
+                        VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                        null);
+
+                DistancesAnglesVisionCalculator cornerCalculator =
+                    new DistancesAnglesVisionCalculator(
+                        null,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_SIZE,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_Y_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_Y_720P,
+                        VisionConstants.PRIMARY_CAMERA_ROLL,
+                        VisionConstants.PRIMARY_CAMERA_PITCH,
+                        VisionConstants.PRIMARY_CAMERA_YAW,
+                        VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_DIFF_COEF : VisionConstants.ELP_GS_COLOR_CAMERA_C_DIFF_COEF_720P);
+
+                AbsolutePositionVisionCalculator nativePoseCalculator =
+                    new AbsolutePositionVisionCalculator(
+                        null,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_SIZE,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_Y_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_Y_720P,
+                        VisionConstants.PRIMARY_CAMERA_ROLL,
+                        VisionConstants.PRIMARY_CAMERA_PITCH,
+                        VisionConstants.PRIMARY_CAMERA_YAW,
+                        VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET);
+
+                MultiTagAbsolutePositionVisionCalculator solverPoseCalculator =
+                    new MultiTagAbsolutePositionVisionCalculator(
+                        null,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_SIZE,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_CENTER_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_CENTER_Y_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_X : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_X_720P,
+                        sb2 ? VisionConstants.SB2_CAMERA_A_FOCAL_LENGTH_Y : VisionConstants.ELP_GS_COLOR_CAMERA_C_FOCAL_LENGTH_Y_720P,
+                        VisionConstants.PRIMARY_CAMERA_ROLL,
+                        VisionConstants.PRIMARY_CAMERA_PITCH,
+                        VisionConstants.PRIMARY_CAMERA_YAW,
+                        VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                        null);
+
+                framePipelines.add(
+                    new UndistortionComparisonPipeline(
+                        undistorter,
+                        grayscaleCamera,
+                        frameCalculator,
+                        cornerCalculator,
+                        nativePoseCalculator,
+                        solverPoseCalculator,
+                        new LargestAprilTagFilter(
+                            VisionConstants.PRIMARY_PIPELINE_APRILTAG_MIN_AREA,
+                            VisionConstants.PRIMARY_PIPELINE_APRILTAG_MIN_DECISION_MARGIN),
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_DETECTION_FAMILY,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_PROCESSING_THREADS,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_QUAD_DECIMATE,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_QUAD_SIGMA,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_REFINE_EDGES,
+                        VisionConstants.PRIMARY_PIPELINE_APRILTAG_DECODE_SHARPENING));
+
+                outputs.add(frameCalculator);
+                outputs.add(cornerCalculator);
+                outputs.add(nativePoseCalculator);
+                outputs.add(solverPoseCalculator);
+            }
             else if (diagnostic)
             {
                 AprilTagDiagnosticWriter aprilTagWriter =
@@ -826,16 +967,60 @@ public class Program
 
         if (selectedMode == Mode.HSV || selectedMode == Mode.Switched)
         {
-            IContourFilter<Point> frameFilter = new LargestCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
-            framePipelines.add(
-                new HSVPipeline<Point>(
-                    pointWriter,
-                    mask,
-                    undistorter,
+            // YUYV (and libcamera's YUV420) frames are filtered through a lookup table directly, without converting them to BGR
+            boolean yuv420Camera = frameReader instanceof LibCameraReader;
+            IHSVFilter hsvFilter;
+            if (VisionConstants.EXAMPLE_VISIONTARGET_USE_HSV_LOOKUP_TABLE || yuyvCamera || yuv420Camera)
+            {
+                hsvFilter =
+                    new LookupTableHSVFilter(
+                        VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW,
+                        VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH,
+                        VisionConstants.HSV_LOOKUP_TABLE_BITS,
+                        yuv420Camera ? LookupTableHSVFilter.Layout.I420 : yuyvCamera ? LookupTableHSVFilter.Layout.YUYV : LookupTableHSVFilter.Layout.BGR);
+            }
+            else
+            {
+                hsvFilter =
                     new HSVFilter(
                         VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW,
-                        VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH),
-                    frameFilter));
+                        VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+            }
+
+            // (downscaling YUYV or YUV420 frames would mix up their interleaved or planar chroma)
+            if (VisionConstants.EXAMPLE_VISIONTARGET_COARSE_PYRAMID_LEVELS > 0 && !yuyvCamera && !yuv420Camera)
+            {
+                hsvFilter =
+                    new CoarseToFineHSVFilter(
+                        hsvFilter,
+                        VisionConstants.EXAMPLE_VISIONTARGET_COARSE_PYRAMID_LEVELS,
+                        VisionConstants.HSV_COARSE_REGION_PADDING,
+                        VisionConstants.HSV_COARSE_MAX_CANDIDATES,
+                        VisionConstants.HSV_COARSE_MAX_REGION_FRACTION);
+            }
+
+            if (VisionConstants.EXAMPLE_VISIONTARGET_USE_BLOBS)
+            {
+                IBlobFilter<Point> blobFilter = new LargestBlobCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                framePipelines.add(
+                    new HSVPipeline<Point>(
+                        pointWriter,
+                        mask,
+                        undistorter,
+                        hsvFilter,
+                        blobFilter));
+            }
+            else
+            {
+                IContourFilter<Point> frameFilter = new LargestCenterFilter(VisionConstants.EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA);
+                framePipelines.add(
+                    new HSVPipeline<Point>(
+                        pointWriter,
+                        mask,
+                        undistorter,
+                        hsvFilter,
+                        frameFilter));
+            }
 
             outputs.add(pointWriter);
         }
@@ -862,15 +1047,18 @@ public class Program
                     brightness,
                     VisionConstants.PRIMARY_CAMERA_RESOLUTION_X,
                     VisionConstants.PRIMARY_CAMERA_RESOLUTION_Y,
-                    VisionConstants.PRIMARY_CAMERA_FPS);
+                    VisionConstants.PRIMARY_CAMERA_FPS,
+                    frameReader instanceof LibCameraReader && selectedMode == Mode.HSV ? CameraPixelFormat.YUV420 : yuyvCamera ? CameraPixelFormat.YUYV : CameraPixelFormat.MJPEG);
 
+            // (the secondary settings are only used for the HSV pipeline in switched mode)
             secondarySettings =
                 new CameraSettings(
                     VisionConstants.EXAMPLE_PIPELINE_VISION_EXPOSURE,
                     VisionConstants.EXAMPLE_PIPELINE_VISION_BRIGHTNESS,
                     VisionConstants.PRIMARY_CAMERA_RESOLUTION_X,
                     VisionConstants.PRIMARY_CAMERA_RESOLUTION_Y,
-                    VisionConstants.PRIMARY_CAMERA_FPS);
+                    VisionConstants.PRIMARY_CAMERA_FPS,
+                    frameReader instanceof LibCameraReader ? CameraPixelFormat.YUV420 : yuyvCamera ? CameraPixelFormat.YUYV : CameraPixelFormat.MJPEG);
 
             frameReader.setSettings(primarySettings);
         }
@@ -1022,14 +1210,15 @@ public class Program
         System.out.println("VisionSystem.jar                                                       -- run full primary vision system pipelines");
         System.out.println("VisionSystem.jar [/hsv] /s:file [/t:directory] [/show] [/mask]         -- test hsv filtering for that file, outputting result to console (or directory)");
         System.out.println("VisionSystem.jar [/hsv] /s:directory [/t:directory] [/show] [/mask]    -- test hsv filtering for files in that directory, outputting results to console (or directory)");
-        System.out.println("VisionSystem.jar [/hsv] /c:camera [/t:directory] [/show] [/mask]       -- test hsv filtering using the provided camera, outputting results to console (or directory)");
-        System.out.println("VisionSystem.jar /switched /c:camera [/t:directory] [/diagnostic] [/show] [/gray] [/mask] [/libcamera]   -- test switched camera functionality for both apriltag filtering and hsv filtering using the provided camera, results to console (or directory)");
+        System.out.println("VisionSystem.jar [/hsv] /c:camera [/t:directory] [/show] [/yuyv] [/mask] [/libcamera] -- test hsv filtering using the provided camera, outputting results to console (or directory)");
+        System.out.println("VisionSystem.jar /switched /c:camera [/t:directory] [/diagnostic] [/show] [/yuyv] [/mask] [/libcamera]   -- test switched camera functionality for both apriltag filtering and hsv filtering using the provided camera, results to console (or directory)");
         System.out.println("VisionSystem.jar /absolute /c:camera [/t:directory] [/gray] [/mask]            -- test absolute position detection from apriltags using the provided camera, results to console (or directory)");
         System.out.println("VisionSystem.jar /absolute /s:file [/t:directory] [/gray] [/mask]              -- test absolute position detection from apriltags for that file, outputting result to console (or directory)");
         System.out.println("VisionSystem.jar /absolute /s:directory [/t:directory] [/gray] [/mask]         -- test absolute position detection from apriltags for files in that directory, outputting results to console (or directory)");
-        System.out.println("VisionSystem.jar /apriltag /c:camera [/t:directory] [/diagnostic] [/show] [/gray] [/mask] [/libcamera]   -- test apriltag detection using the provided camera, results to console (or directory)");
+        System.out.println("VisionSystem.jar /apriltag /c:camera [/t:directory] [/diagnostic] [/show] [/gray] [/yuyv] [/mask] [/libcamera]   -- test apriltag detection using the provided camera, results to console (or directory)");
         System.out.println("VisionSystem.jar /apriltag /s:file [/t:directory] [/diagnostic] [/show] [/gray] [/mask]      -- test apriltag detection for that file, outputting result to console (or directory)");
         System.out.println("VisionSystem.jar /apriltag /s:directory [/t:directory] [/diagnostic] [/show] [/gray] [/mask] -- test apriltag detection for files in that directory, outputting results to console (or directory)");
+        System.out.println("VisionSystem.jar /apriltag /s:directory /compareundistort [/gray] [/sb2]   -- compare undistorting the whole frame with undistorting just the corners of the detected apriltags, for files in that directory");
         System.out.println("VisionSystem.jar /calibrate /c:camera [/t:directory] [/show] [/libcamera]            -- calibrate camera based on the provided camera");
         System.out.println("VisionSystem.jar /calibrate /s:directory [/t:directory] [/show]        -- calibrate camera based on the provided images");
         System.out.println("VisionSystem.jar /deviceEnumeration [/t:directory] [/libcamera]        -- run device enumeration");
@@ -1133,11 +1322,33 @@ public class Program
 
         toClose.add(controller);
 
+        AprilTagDetectionScheduler detectionScheduler = null;
+        if (VisionConstants.USE_DETECTION_SCHEDULER)
+        {
+            detectionScheduler = new AprilTagDetectionScheduler(VisionConstants.DETECTION_SCHEDULER_WORKERS);
+            if (!detectionScheduler.open())
+            {
+                Logger.writeError("unable to open detection scheduler!");
+                for (IOpenable openable : toClose)
+                {
+                    openable.close();
+                }
+
+                System.exit(1);
+            }
+
+            toClose.add(detectionScheduler);
+        }
+
         IRunnableFrameReader primaryCameraReader;
         CameraSettings primarySettings = null;
         if (VisionConstants.USE_PRIMARY_CAMERA)
         {
-            primaryCameraReader = new CameraReader(controller, VisionConstants.PRIMARY_CAMERA_ID);
+            primaryCameraReader =
+                new CameraReader(
+                    controller,
+                    VisionConstants.PRIMARY_CAMERA_ID,
+                    VisionConstants.PRIMARY_CAMERA_GRAYSCALE ? MjpegDecoder.Mode.Grayscale : MjpegDecoder.Mode.Color);
             String cameraStringPrimary = "" + VisionConstants.PRIMARY_CAMERA_ID;
             if (!primaryCameraReader.open())
             {
@@ -1156,7 +1367,8 @@ public class Program
                     VisionConstants.PRIMARY_PIPELINE_VISION_BRIGHTNESS,
                     VisionConstants.PRIMARY_CAMERA_RESOLUTION_X,
                     VisionConstants.PRIMARY_CAMERA_RESOLUTION_Y,
-                    VisionConstants.PRIMARY_CAMERA_FPS);
+                    VisionConstants.PRIMARY_CAMERA_FPS,
+                    VisionConstants.PRIMARY_CAMERA_PIXEL_FORMAT);
 
             primaryCameraReader.setSettings(primarySettings);
             toClose.add(primaryCameraReader);
@@ -1170,7 +1382,11 @@ public class Program
         CameraSettings secondarySettings = null;
         if (VisionConstants.USE_SECONDARY_CAMERA)
         {
-            secondaryCameraReader = new CameraReader(controller, VisionConstants.SECONDARY_CAMERA_ID);
+            secondaryCameraReader =
+                new CameraReader(
+                    controller,
+                    VisionConstants.SECONDARY_CAMERA_ID,
+                    VisionConstants.SECONDARY_CAMERA_GRAYSCALE ? MjpegDecoder.Mode.Grayscale : MjpegDecoder.Mode.Color);
             String cameraStringSecondary = "" + VisionConstants.SECONDARY_CAMERA_ID;
             if (!secondaryCameraReader.open())
             {
@@ -1189,7 +1405,8 @@ public class Program
                     VisionConstants.SECONDARY_PIPELINE_VISION_BRIGHTNESS,
                     VisionConstants.SECONDARY_CAMERA_RESOLUTION_X,
                     VisionConstants.SECONDARY_CAMERA_RESOLUTION_Y,
-                    VisionConstants.SECONDARY_CAMERA_FPS);
+                    VisionConstants.SECONDARY_CAMERA_FPS,
+                    VisionConstants.SECONDARY_CAMERA_PIXEL_FORMAT);
 
             secondaryCameraReader.setSettings(secondarySettings);
             toClose.add(secondaryCameraReader);
@@ -1203,7 +1420,11 @@ public class Program
         CameraSettings tertiarySettings = null;
         if (VisionConstants.USE_TERTIARY_CAMERA)
         {
-            tertiaryCameraReader = new CameraReader(controller, VisionConstants.TERTIARY_CAMERA_ID);
+            tertiaryCameraReader =
+                new CameraReader(
+                    controller,
+                    VisionConstants.TERTIARY_CAMERA_ID,
+                    VisionConstants.TERTIARY_CAMERA_GRAYSCALE ? MjpegDecoder.Mode.Grayscale : MjpegDecoder.Mode.Color);
             String cameraStringTertiary = "" + VisionConstants.TERTIARY_CAMERA_ID;
             if (!tertiaryCameraReader.open())
             {
@@ -1222,7 +1443,8 @@ public class Program
                     VisionConstants.TERTIARY_PIPELINE_VISION_BRIGHTNESS,
                     VisionConstants.TERTIARY_CAMERA_RESOLUTION_X,
                     VisionConstants.TERTIARY_CAMERA_RESOLUTION_Y,
-                    VisionConstants.TERTIARY_CAMERA_FPS);
+                    VisionConstants.TERTIARY_CAMERA_FPS,
+                    VisionConstants.TERTIARY_CAMERA_PIXEL_FORMAT);
 
             tertiaryCameraReader.setSettings(tertiarySettings);
             toClose.add(tertiaryCameraReader);
@@ -1346,6 +1568,7 @@ public class Program
 
         IResultWriter<AprilTagDetection> primaryCalculator;
         IResultWriter<AprilTagDetection> primaryAbsolutePositionCalculator;
+        IResultWriter<AprilTagDetection[]> primaryMultiTagCalculator;
         if (VisionConstants.USE_PRIMARY_CAMERA)
         {
             primaryCalculator =
@@ -1361,7 +1584,8 @@ public class Program
                     VisionConstants.PRIMARY_CAMERA_YAW,
                     VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
                     VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
-                    VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET);
+                    VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                    VisionConstants.PRIMARY_PIPELINE_SHOULD_UNDISTORT && VisionConstants.PRIMARY_PIPELINE_UNDISTORT_POINTS ? VisionConstants.PRIMARY_CAMERA_DIFF_COEF : null);
 
             if (!primaryCalculator.open())
             {
@@ -1376,7 +1600,39 @@ public class Program
 
             toClose.add(primaryCalculator);
 
-            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
+            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES && VisionConstants.ABSOLUTE_PIPELINE_MULTI_TAG)
+            {
+                primaryAbsolutePositionCalculator = null;
+                primaryMultiTagCalculator =
+                    new MultiTagAbsolutePositionVisionCalculator(
+                        absolutePositionWriter,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_SIZE,
+                        VisionConstants.PRIMARY_CAMERA_CENTER_X,
+                        VisionConstants.PRIMARY_CAMERA_CENTER_Y,
+                        VisionConstants.PRIMARY_CAMERA_FOCAL_LENGTH_X,
+                        VisionConstants.PRIMARY_CAMERA_FOCAL_LENGTH_Y,
+                        VisionConstants.PRIMARY_CAMERA_ROLL,
+                        VisionConstants.PRIMARY_CAMERA_PITCH,
+                        VisionConstants.PRIMARY_CAMERA_YAW,
+                        VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? VisionConstants.PRIMARY_CAMERA_DIFF_COEF : null);
+
+                if (!primaryMultiTagCalculator.open())
+                {
+                    Logger.writeError("unable to open primary multi-tag absolute position calculator!");
+                    for (IOpenable openable : toClose)
+                    {
+                        openable.close();
+                    }
+
+                    System.exit(1);
+                }
+
+                toClose.add(primaryMultiTagCalculator);
+            }
+            else if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
             {
                 primaryAbsolutePositionCalculator =
                     new AbsolutePositionVisionCalculator(
@@ -1391,7 +1647,8 @@ public class Program
                         VisionConstants.PRIMARY_CAMERA_YAW,
                         VisionConstants.PRIMARY_CAMERA_FORWARD_OFFSET,
                         VisionConstants.PRIMARY_CAMERA_PORT_OFFSET,
-                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET);
+                        VisionConstants.PRIMARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? VisionConstants.PRIMARY_CAMERA_DIFF_COEF : null);
 
                 if (!primaryAbsolutePositionCalculator.open())
                 {
@@ -1405,20 +1662,24 @@ public class Program
                 }
 
                 toClose.add(primaryAbsolutePositionCalculator);
+                primaryMultiTagCalculator = null;
             }
             else
             {
                 primaryAbsolutePositionCalculator = null;
+                primaryMultiTagCalculator = null;
             }
         }
         else
         {
             primaryCalculator = null;
             primaryAbsolutePositionCalculator = null;
+            primaryMultiTagCalculator = null;
         }
 
         IResultWriter<AprilTagDetection> secondaryCalculator;
         IResultWriter<AprilTagDetection> secondaryAbsolutePositionCalculator;
+        IResultWriter<AprilTagDetection[]> secondaryMultiTagCalculator;
         if (VisionConstants.USE_SECONDARY_CAMERA)
         {
             secondaryCalculator =
@@ -1434,7 +1695,8 @@ public class Program
                     VisionConstants.SECONDARY_CAMERA_YAW,
                     VisionConstants.SECONDARY_CAMERA_FORWARD_OFFSET,
                     VisionConstants.SECONDARY_CAMERA_PORT_OFFSET,
-                    VisionConstants.SECONDARY_CAMERA_VERTICAL_OFFSET);
+                    VisionConstants.SECONDARY_CAMERA_VERTICAL_OFFSET,
+                    VisionConstants.SECONDARY_PIPELINE_SHOULD_UNDISTORT && VisionConstants.SECONDARY_PIPELINE_UNDISTORT_POINTS ? VisionConstants.SECONDARY_CAMERA_DIFF_COEF : null);
 
             if (!secondaryCalculator.open())
             {
@@ -1449,7 +1711,39 @@ public class Program
 
             toClose.add(secondaryCalculator);
 
-            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
+            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES && VisionConstants.ABSOLUTE_PIPELINE_MULTI_TAG)
+            {
+                secondaryAbsolutePositionCalculator = null;
+                secondaryMultiTagCalculator =
+                    new MultiTagAbsolutePositionVisionCalculator(
+                        absolutePositionWriter,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_SIZE,
+                        VisionConstants.SECONDARY_CAMERA_CENTER_X,
+                        VisionConstants.SECONDARY_CAMERA_CENTER_Y,
+                        VisionConstants.SECONDARY_CAMERA_FOCAL_LENGTH_X,
+                        VisionConstants.SECONDARY_CAMERA_FOCAL_LENGTH_Y,
+                        VisionConstants.SECONDARY_CAMERA_ROLL,
+                        VisionConstants.SECONDARY_CAMERA_PITCH,
+                        VisionConstants.SECONDARY_CAMERA_YAW,
+                        VisionConstants.SECONDARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.SECONDARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.SECONDARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? VisionConstants.SECONDARY_CAMERA_DIFF_COEF : null);
+
+                if (!secondaryMultiTagCalculator.open())
+                {
+                    Logger.writeError("unable to open secondary multi-tag absolute position calculator!");
+                    for (IOpenable openable : toClose)
+                    {
+                        openable.close();
+                    }
+
+                    System.exit(1);
+                }
+
+                toClose.add(secondaryMultiTagCalculator);
+            }
+            else if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
             {
                 secondaryAbsolutePositionCalculator =
                     new AbsolutePositionVisionCalculator(
@@ -1464,7 +1758,8 @@ public class Program
                         VisionConstants.SECONDARY_CAMERA_YAW,
                         VisionConstants.SECONDARY_CAMERA_FORWARD_OFFSET,
                         VisionConstants.SECONDARY_CAMERA_PORT_OFFSET,
-                        VisionConstants.SECONDARY_CAMERA_VERTICAL_OFFSET);
+                        VisionConstants.SECONDARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? VisionConstants.SECONDARY_CAMERA_DIFF_COEF : null);
     
                 if (!secondaryAbsolutePositionCalculator.open())
                 {
@@ -1478,20 +1773,24 @@ public class Program
                 }
 
                 toClose.add(secondaryAbsolutePositionCalculator);
+                secondaryMultiTagCalculator = null;
             }
             else
             {
                 secondaryAbsolutePositionCalculator = null;
+                secondaryMultiTagCalculator = null;
             }
         }
         else
         {
             secondaryCalculator = null;
             secondaryAbsolutePositionCalculator = null;
+            secondaryMultiTagCalculator = null;
         }
 
         IResultWriter<AprilTagDetection> tertiaryCalculator;
         IResultWriter<AprilTagDetection> tertiaryAbsolutePositionCalculator;
+        IResultWriter<AprilTagDetection[]> tertiaryMultiTagCalculator;
         if (VisionConstants.USE_TERTIARY_CAMERA)
         {
             tertiaryCalculator =
@@ -1507,7 +1806,8 @@ public class Program
                     VisionConstants.TERTIARY_CAMERA_YAW,
                     VisionConstants.TERTIARY_CAMERA_FORWARD_OFFSET,
                     VisionConstants.TERTIARY_CAMERA_PORT_OFFSET,
-                    VisionConstants.TERTIARY_CAMERA_VERTICAL_OFFSET);
+                    VisionConstants.TERTIARY_CAMERA_VERTICAL_OFFSET,
+                    VisionConstants.TERTIARY_PIPELINE_SHOULD_UNDISTORT && VisionConstants.TERTIARY_PIPELINE_UNDISTORT_POINTS ? VisionConstants.TERTIARY_CAMERA_DIFF_COEF : null);
 
             if (!tertiaryCalculator.open())
             {
@@ -1522,7 +1822,39 @@ public class Program
 
             toClose.add(tertiaryCalculator);
 
-            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
+            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES && VisionConstants.ABSOLUTE_PIPELINE_MULTI_TAG)
+            {
+                tertiaryAbsolutePositionCalculator = null;
+                tertiaryMultiTagCalculator =
+                    new MultiTagAbsolutePositionVisionCalculator(
+                        absolutePositionWriter,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_SIZE,
+                        VisionConstants.TERTIARY_CAMERA_CENTER_X,
+                        VisionConstants.TERTIARY_CAMERA_CENTER_Y,
+                        VisionConstants.TERTIARY_CAMERA_FOCAL_LENGTH_X,
+                        VisionConstants.TERTIARY_CAMERA_FOCAL_LENGTH_Y,
+                        VisionConstants.TERTIARY_CAMERA_ROLL,
+                        VisionConstants.TERTIARY_CAMERA_PITCH,
+                        VisionConstants.TERTIARY_CAMERA_YAW,
+                        VisionConstants.TERTIARY_CAMERA_FORWARD_OFFSET,
+                        VisionConstants.TERTIARY_CAMERA_PORT_OFFSET,
+                        VisionConstants.TERTIARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? VisionConstants.TERTIARY_CAMERA_DIFF_COEF : null);
+
+                if (!tertiaryMultiTagCalculator.open())
+                {
+                    Logger.writeError("unable to open tertiary multi-tag absolute position calculator!");
+                    for (IOpenable openable : toClose)
+                    {
+                        openable.close();
+                    }
+
+                    System.exit(1);
+                }
+
+                toClose.add(tertiaryMultiTagCalculator);
+            }
+            else if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
             {
                 tertiaryAbsolutePositionCalculator =
                     new AbsolutePositionVisionCalculator(
@@ -1537,7 +1869,8 @@ public class Program
                         VisionConstants.TERTIARY_CAMERA_YAW,
                         VisionConstants.TERTIARY_CAMERA_FORWARD_OFFSET,
                         VisionConstants.TERTIARY_CAMERA_PORT_OFFSET,
-                        VisionConstants.TERTIARY_CAMERA_VERTICAL_OFFSET);
+                        VisionConstants.TERTIARY_CAMERA_VERTICAL_OFFSET,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? VisionConstants.TERTIARY_CAMERA_DIFF_COEF : null);
 
                 if (!tertiaryAbsolutePositionCalculator.open())
                 {
@@ -1551,16 +1884,19 @@ public class Program
                 }
 
                 toClose.add(tertiaryAbsolutePositionCalculator);
+                tertiaryMultiTagCalculator = null;
             }
             else
             {
                 tertiaryAbsolutePositionCalculator = null;
+                tertiaryMultiTagCalculator = null;
             }
         }
         else
         {
             tertiaryCalculator = null;
             tertiaryAbsolutePositionCalculator = null;
+            tertiaryMultiTagCalculator = null;
         }
 
         SwitchedVisionSystem primaryVisionSystem;
@@ -1575,13 +1911,15 @@ public class Program
                 VisionConstants.PRIMARY_CAMERA_CENTER_Y,
                 VisionConstants.PRIMARY_CAMERA_FOCAL_LENGTH_X,
                 VisionConstants.PRIMARY_CAMERA_FOCAL_LENGTH_Y,
-                VisionConstants.PRIMARY_CAMERA_DIFF_COEF);
+                VisionConstants.PRIMARY_CAMERA_DIFF_COEF,
+                VisionConstants.UNDISTORT_FIXED_POINT_MAPS,
+                VisionConstants.UNDISTORT_MAP_CACHE_FOLDER);
 
             IFramePipeline primaryFramePipeline =
                 new AprilTagPipeline<AprilTagDetection>(
                     primaryCalculator,
                     VisionConstants.PRIMARY_PIPELINE_SHOULD_MASK ? primaryCameraMask : null,
-                    VisionConstants.PRIMARY_PIPELINE_SHOULD_UNDISTORT ? primaryUndistorter : null,
+                    VisionConstants.PRIMARY_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.PRIMARY_PIPELINE_UNDISTORT_POINTS ? primaryUndistorter : null,
                     VisionConstants.PRIMARY_CAMERA_GRAYSCALE,
                     new DesiredAprilTagFilter(
                         VisionConstants.PRIMARY_PIPELINE_APRILTAG_MIN_AREA,
@@ -1593,7 +1931,11 @@ public class Program
                     VisionConstants.PRIMARY_PIPELINE_APRILTAG_QUAD_DECIMATE,
                     VisionConstants.PRIMARY_PIPELINE_APRILTAG_QUAD_SIGMA,
                     VisionConstants.PRIMARY_PIPELINE_APRILTAG_REFINE_EDGES,
-                    VisionConstants.PRIMARY_PIPELINE_APRILTAG_DECODE_SHARPENING);
+                    VisionConstants.PRIMARY_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                    VisionConstants.PRIMARY_PIPELINE_FUSED_PREPROCESSING,
+                    VisionConstants.PRIMARY_PIPELINE_PIPELINED,
+                    VisionConstants.PRIMARY_PIPELINE_TRACKING,
+                    VisionConstants.PRIMARY_PIPELINE_ADAPTIVE_DECIMATION);
 
             // optionally log frames from pipelines
             if (imageLoggingDirectory != null && VisionConstants.LOG_IMAGES)
@@ -1602,13 +1944,36 @@ public class Program
             }
 
             IFramePipeline primaryAbsolutePositionFramePipeline;
-            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
+            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES && VisionConstants.ABSOLUTE_PIPELINE_MULTI_TAG)
+            {
+                primaryAbsolutePositionFramePipeline =
+                    new AprilTagPipeline<AprilTagDetection[]>(
+                        primaryMultiTagCalculator,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_MASK ? primaryCameraMask : null,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? primaryUndistorter : null,
+                        VisionConstants.PRIMARY_CAMERA_GRAYSCALE,
+                        new AllAprilTagsFilter(
+                            VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_AREA,
+                            VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_DECISION_MARGIN),
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DETECTION_FAMILY,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_PROCESSING_THREADS,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_DECIMATE,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_SIGMA,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_REFINE_EDGES,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                        VisionConstants.ABSOLUTE_PIPELINE_FUSED_PREPROCESSING,
+                        VisionConstants.ABSOLUTE_PIPELINE_PIPELINED,
+                        VisionConstants.ABSOLUTE_PIPELINE_TRACKING,
+                        VisionConstants.ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION);
+            }
+            else if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
             {
                 primaryAbsolutePositionFramePipeline =
                     new AprilTagPipeline<AprilTagDetection>(
                         primaryAbsolutePositionCalculator,
                         VisionConstants.ABSOLUTE_PIPELINE_SHOULD_MASK ? primaryCameraMask : null,
-                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT ? primaryUndistorter : null,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? primaryUndistorter : null,
                         VisionConstants.PRIMARY_CAMERA_GRAYSCALE,
                         new LargestAprilTagFilter(
                             VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_AREA,
@@ -1619,7 +1984,11 @@ public class Program
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_DECIMATE,
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_SIGMA,
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_REFINE_EDGES,
-                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING);
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                        VisionConstants.ABSOLUTE_PIPELINE_FUSED_PREPROCESSING,
+                        VisionConstants.ABSOLUTE_PIPELINE_PIPELINED,
+                        VisionConstants.ABSOLUTE_PIPELINE_TRACKING,
+                        VisionConstants.ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION);
             }
             else
             {
@@ -1637,6 +2006,18 @@ public class Program
                 VisionConstants.PRIMARY_CAMERA_RESOLUTION_X,
                 VisionConstants.PRIMARY_CAMERA_RESOLUTION_Y);
 
+            if (detectionScheduler != null)
+            {
+                primaryVisionSystem.setDetectionScheduler(detectionScheduler, VisionConstants.PRIMARY_CAMERA_DETECTION_PRIORITY);
+            }
+
+            if (VisionConstants.PUBLISH_STAGE_METRICS)
+            {
+                NetworkTableMetricsWriter primaryMetricsWriter = new NetworkTableMetricsWriter(new VisionMetrics(VisionConstants.PRIMARY_CAMERA_STREAM_NAME));
+                primaryMetricsWriter.open();
+                primaryVisionSystem.setMetricsWriter(primaryMetricsWriter);
+            }
+
             if (!primaryVisionSystem.open())
             {
                 Logger.writeError("unable to open vision system!");
@@ -1667,13 +2048,15 @@ public class Program
                 VisionConstants.SECONDARY_CAMERA_CENTER_Y,
                 VisionConstants.SECONDARY_CAMERA_FOCAL_LENGTH_X,
                 VisionConstants.SECONDARY_CAMERA_FOCAL_LENGTH_Y,
-                VisionConstants.SECONDARY_CAMERA_DIFF_COEF);
+                VisionConstants.SECONDARY_CAMERA_DIFF_COEF,
+                VisionConstants.UNDISTORT_FIXED_POINT_MAPS,
+                VisionConstants.UNDISTORT_MAP_CACHE_FOLDER);
 
             IFramePipeline secondaryFramePipeline =
                 new AprilTagPipeline<AprilTagDetection>(
                     secondaryCalculator,
                     VisionConstants.SECONDARY_PIPELINE_SHOULD_MASK ? secondaryCameraMask : null,
-                    VisionConstants.SECONDARY_PIPELINE_SHOULD_UNDISTORT ? secondaryUndistorter : null,
+                    VisionConstants.SECONDARY_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.SECONDARY_PIPELINE_UNDISTORT_POINTS ? secondaryUndistorter : null,
                     VisionConstants.SECONDARY_CAMERA_GRAYSCALE,
                     new DesiredAprilTagFilter(
                         VisionConstants.SECONDARY_PIPELINE_APRILTAG_MIN_AREA,
@@ -1685,7 +2068,11 @@ public class Program
                     VisionConstants.SECONDARY_PIPELINE_APRILTAG_QUAD_DECIMATE,
                     VisionConstants.SECONDARY_PIPELINE_APRILTAG_QUAD_SIGMA,
                     VisionConstants.SECONDARY_PIPELINE_APRILTAG_REFINE_EDGES,
-                    VisionConstants.SECONDARY_PIPELINE_APRILTAG_DECODE_SHARPENING);
+                    VisionConstants.SECONDARY_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                    VisionConstants.SECONDARY_PIPELINE_FUSED_PREPROCESSING,
+                    VisionConstants.SECONDARY_PIPELINE_PIPELINED,
+                    VisionConstants.SECONDARY_PIPELINE_TRACKING,
+                    VisionConstants.SECONDARY_PIPELINE_ADAPTIVE_DECIMATION);
 
             // optionally log frames from pipelines
             if (imageLoggingDirectory != null && VisionConstants.LOG_IMAGES)
@@ -1694,13 +2081,36 @@ public class Program
             }
 
             IFramePipeline secondaryAbsolutePositionFramePipeline;
-            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
+            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES && VisionConstants.ABSOLUTE_PIPELINE_MULTI_TAG)
+            {
+                secondaryAbsolutePositionFramePipeline =
+                    new AprilTagPipeline<AprilTagDetection[]>(
+                        secondaryMultiTagCalculator,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_MASK ? secondaryCameraMask : null,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? secondaryUndistorter : null,
+                        VisionConstants.SECONDARY_CAMERA_GRAYSCALE,
+                        new AllAprilTagsFilter(
+                            VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_AREA,
+                            VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_DECISION_MARGIN),
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DETECTION_FAMILY,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_PROCESSING_THREADS,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_DECIMATE,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_SIGMA,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_REFINE_EDGES,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                        VisionConstants.ABSOLUTE_PIPELINE_FUSED_PREPROCESSING,
+                        VisionConstants.ABSOLUTE_PIPELINE_PIPELINED,
+                        VisionConstants.ABSOLUTE_PIPELINE_TRACKING,
+                        VisionConstants.ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION);
+            }
+            else if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
             {
                 secondaryAbsolutePositionFramePipeline =
                     new AprilTagPipeline<AprilTagDetection>(
                         secondaryAbsolutePositionCalculator,
                         VisionConstants.ABSOLUTE_PIPELINE_SHOULD_MASK ? secondaryCameraMask : null,
-                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT ? secondaryUndistorter : null,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? secondaryUndistorter : null,
                         VisionConstants.SECONDARY_CAMERA_GRAYSCALE,
                         new LargestAprilTagFilter(
                             VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_AREA,
@@ -1711,7 +2121,11 @@ public class Program
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_DECIMATE,
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_SIGMA,
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_REFINE_EDGES,
-                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING);
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                        VisionConstants.ABSOLUTE_PIPELINE_FUSED_PREPROCESSING,
+                        VisionConstants.ABSOLUTE_PIPELINE_PIPELINED,
+                        VisionConstants.ABSOLUTE_PIPELINE_TRACKING,
+                        VisionConstants.ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION);
             }
             else
             {
@@ -1729,6 +2143,18 @@ public class Program
                 VisionConstants.SECONDARY_CAMERA_RESOLUTION_X,
                 VisionConstants.SECONDARY_CAMERA_RESOLUTION_Y);
 
+            if (detectionScheduler != null)
+            {
+                secondaryVisionSystem.setDetectionScheduler(detectionScheduler, VisionConstants.SECONDARY_CAMERA_DETECTION_PRIORITY);
+            }
+
+            if (VisionConstants.PUBLISH_STAGE_METRICS)
+            {
+                NetworkTableMetricsWriter secondaryMetricsWriter = new NetworkTableMetricsWriter(new VisionMetrics(VisionConstants.SECONDARY_CAMERA_STREAM_NAME));
+                secondaryMetricsWriter.open();
+                secondaryVisionSystem.setMetricsWriter(secondaryMetricsWriter);
+            }
+
             if (!secondaryVisionSystem.open())
             {
                 Logger.writeError("unable to open vision system!");
@@ -1759,13 +2185,15 @@ public class Program
                 VisionConstants.TERTIARY_CAMERA_CENTER_Y,
                 VisionConstants.TERTIARY_CAMERA_FOCAL_LENGTH_X,
                 VisionConstants.TERTIARY_CAMERA_FOCAL_LENGTH_Y,
-                VisionConstants.TERTIARY_CAMERA_DIFF_COEF);
+                VisionConstants.TERTIARY_CAMERA_DIFF_COEF,
+                VisionConstants.UNDISTORT_FIXED_POINT_MAPS,
+                VisionConstants.UNDISTORT_MAP_CACHE_FOLDER);
 
             IFramePipeline tertiaryFramePipeline =
                 new AprilTagPipeline<AprilTagDetection>(
                     tertiaryCalculator,
                     VisionConstants.TERTIARY_PIPELINE_SHOULD_MASK ? tertiaryCameraMask : null,
-                    VisionConstants.TERTIARY_PIPELINE_SHOULD_UNDISTORT ? tertiaryUndistorter : null,
+                    VisionConstants.TERTIARY_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.TERTIARY_PIPELINE_UNDISTORT_POINTS ? tertiaryUndistorter : null,
                     VisionConstants.TERTIARY_CAMERA_GRAYSCALE,
                     new DesiredAprilTagFilter(
                         VisionConstants.TERTIARY_PIPELINE_APRILTAG_MIN_AREA,
@@ -1777,7 +2205,11 @@ public class Program
                     VisionConstants.TERTIARY_PIPELINE_APRILTAG_QUAD_DECIMATE,
                     VisionConstants.TERTIARY_PIPELINE_APRILTAG_QUAD_SIGMA,
                     VisionConstants.TERTIARY_PIPELINE_APRILTAG_REFINE_EDGES,
-                    VisionConstants.TERTIARY_PIPELINE_APRILTAG_DECODE_SHARPENING);
+                    VisionConstants.TERTIARY_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                    VisionConstants.TERTIARY_PIPELINE_FUSED_PREPROCESSING,
+                    VisionConstants.TERTIARY_PIPELINE_PIPELINED,
+                    VisionConstants.TERTIARY_PIPELINE_TRACKING,
+                    VisionConstants.TERTIARY_PIPELINE_ADAPTIVE_DECIMATION);
 
             // optionally log frames from pipelines
             if (imageLoggingDirectory != null && VisionConstants.LOG_IMAGES)
@@ -1786,13 +2218,36 @@ public class Program
             }
 
             IFramePipeline tertiaryAbsolutePositionFramePipeline;
-            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
+            if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES && VisionConstants.ABSOLUTE_PIPELINE_MULTI_TAG)
+            {
+                tertiaryAbsolutePositionFramePipeline =
+                    new AprilTagPipeline<AprilTagDetection[]>(
+                        tertiaryMultiTagCalculator,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_MASK ? tertiaryCameraMask : null,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? tertiaryUndistorter : null,
+                        VisionConstants.TERTIARY_CAMERA_GRAYSCALE,
+                        new AllAprilTagsFilter(
+                            VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_AREA,
+                            VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_DECISION_MARGIN),
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DETECTION_FAMILY,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_PROCESSING_THREADS,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_DECIMATE,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_SIGMA,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_REFINE_EDGES,
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                        VisionConstants.ABSOLUTE_PIPELINE_FUSED_PREPROCESSING,
+                        VisionConstants.ABSOLUTE_PIPELINE_PIPELINED,
+                        VisionConstants.ABSOLUTE_PIPELINE_TRACKING,
+                        VisionConstants.ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION);
+            }
+            else if (VisionConstants.USE_ABSOLUTE_POSITION_PIPELINES)
             {
                 tertiaryAbsolutePositionFramePipeline =
                     new AprilTagPipeline<AprilTagDetection>(
                         tertiaryAbsolutePositionCalculator,
                         VisionConstants.ABSOLUTE_PIPELINE_SHOULD_MASK ? tertiaryCameraMask : null,
-                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT ? tertiaryUndistorter : null,
+                        VisionConstants.ABSOLUTE_PIPELINE_SHOULD_UNDISTORT && !VisionConstants.ABSOLUTE_PIPELINE_UNDISTORT_POINTS ? tertiaryUndistorter : null,
                         VisionConstants.TERTIARY_CAMERA_GRAYSCALE,
                         new LargestAprilTagFilter(
                             VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_MIN_AREA,
@@ -1803,7 +2258,11 @@ public class Program
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_DECIMATE,
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_QUAD_SIGMA,
                         VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_REFINE_EDGES,
-                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING);
+                        VisionConstants.ABSOLUTE_PIPELINE_APRILTAG_DECODE_SHARPENING,
+                        VisionConstants.ABSOLUTE_PIPELINE_FUSED_PREPROCESSING,
+                        VisionConstants.ABSOLUTE_PIPELINE_PIPELINED,
+                        VisionConstants.ABSOLUTE_PIPELINE_TRACKING,
+                        VisionConstants.ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION);
             }
             else
             {
@@ -1821,6 +2280,18 @@ public class Program
                 VisionConstants.TERTIARY_CAMERA_RESOLUTION_X,
                 VisionConstants.TERTIARY_CAMERA_RESOLUTION_Y);
 
+            if (detectionScheduler != null)
+            {
+                tertiaryVisionSystem.setDetectionScheduler(detectionScheduler, VisionConstants.TERTIARY_CAMERA_DETECTION_PRIORITY);
+            }
+
+            if (VisionConstants.PUBLISH_STAGE_METRICS)
+            {
+                NetworkTableMetricsWriter tertiaryMetricsWriter = new NetworkTableMetricsWriter(new VisionMetrics(VisionConstants.TERTIARY_CAMERA_STREAM_NAME));
+                tertiaryMetricsWriter.open();
+                tertiaryVisionSystem.setMetricsWriter(tertiaryMetricsWriter);
+            }
+
             if (!tertiaryVisionSystem.open())
             {
                 Logger.writeError("unable to open vision system!");
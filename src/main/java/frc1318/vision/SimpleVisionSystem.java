@@ -2,9 +2,14 @@ package frc1318.vision;
 
 import org.opencv.core.*;
 
-public class SimpleVisionSystem extends VisionSystemBase
+import frc1318.vision.helpers.LoadShedder;
+import frc1318.vision.helpers.VisionMetrics;
+import frc1318.vision.pipeline.AprilTagDetectionScheduler;
+
+public class SimpleVisionSystem extends VisionSystemBase implements IDetectionScheduled
 {
     private IFramePipeline framePipeline;
+    private boolean pipelineReportsResults;
 
     /**
      * Initializes a new instance of the SimpleVisionSystem class.
@@ -27,16 +32,95 @@ public class SimpleVisionSystem extends VisionSystemBase
         super(frameReader, controller, cameraName, streamResolutionX, streamResolutionY);
 
         this.framePipeline = framePipeline;
+        this.pipelineReportsResults = framePipeline instanceof IResultTimed && ((IResultTimed)framePipeline).setResultListener(this);
+    }
+
+    /**
+     * Opens the vision system and its pipeline (if it needs to be opened)
+     * @return true if successful
+     */
+    @Override
+    public boolean open()
+    {
+        if (!super.open())
+        {
+            return false;
+        }
+
+        if (this.framePipeline instanceof IOpenable)
+        {
+            return ((IOpenable)this.framePipeline).open();
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the vision system and its pipeline (if it needs to be closed)
+     */
+    @Override
+    public void close()
+    {
+        if (this.framePipeline instanceof IOpenable)
+        {
+            ((IOpenable)this.framePipeline).close();
+        }
+
+        super.close();
+    }
+
+    /**
+     * Sets the metrics that this vision system and its pipeline (if it is instrumented) should record into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        super.setMetrics(metrics);
+        if (this.framePipeline instanceof IInstrumented)
+        {
+            ((IInstrumented)this.framePipeline).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets how much optional work this vision system and its pipeline (if it can shed work) should skip
+     * @param level of work to shed
+     */
+    @Override
+    public void setShedLevel(LoadShedder.Level level)
+    {
+        super.setShedLevel(level);
+        if (this.framePipeline instanceof ILoadShedding)
+        {
+            ((ILoadShedding)this.framePipeline).setShedLevel(level);
+        }
+    }
+
+    /**
+     * Sets the shared scheduler that this vision system's pipeline (if it detects tags) should run its detection on
+     * @param scheduler to run detection on
+     * @param priority of the pipeline's detection jobs (lower values run first)
+     */
+    @Override
+    public void setDetectionScheduler(AprilTagDetectionScheduler scheduler, int priority)
+    {
+        if (this.framePipeline instanceof IDetectionScheduled)
+        {
+            ((IDetectionScheduled)this.framePipeline).setDetectionScheduler(scheduler, priority);
+        }
     }
 
     /**
      * Extension method for processing the image (without disposing it)
      * @param image to process
      * @param captureTime when the image was captured
+     * @return true if the frame's result has been written, or false if the pipeline will report it through resultReady once it has
      */
     @Override
-    protected void process(Mat image, long captureTime)
+    protected boolean process(Mat image, long captureTime)
     {
         this.framePipeline.process(image, captureTime);
+        return !this.pipelineReportsResults;
     }
 }
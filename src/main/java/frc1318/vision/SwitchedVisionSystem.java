@@ -3,13 +3,17 @@ package frc1318.vision;
 import org.opencv.core.*;
 
 import frc1318.vision.helpers.Assert;
+import frc1318.vision.helpers.LoadShedder;
+import frc1318.vision.helpers.VisionMetrics;
+import frc1318.vision.pipeline.AprilTagDetectionScheduler;
 
-public class SwitchedVisionSystem extends VisionSystemBase
+public class SwitchedVisionSystem extends VisionSystemBase implements IDetectionScheduled
 {
     private final IFramePipeline[] framePipelines;
     private final int[] pipelineProcessingModes;
     private final CameraSettings[] cameraSettings;
     private final CameraSettings defaultCameraSettings;
+    private final boolean[] pipelineReportsResults;
 
     private int prevProcessingMode;
     private CameraSettings currentCameraSettings;
@@ -51,17 +55,115 @@ public class SwitchedVisionSystem extends VisionSystemBase
         this.cameraSettings = cameraSettings;
         this.defaultCameraSettings = defaultCameraSettings;
 
+        this.pipelineReportsResults = new boolean[framePipelines.length];
+        for (int i = 0; i < framePipelines.length; i++)
+        {
+            this.pipelineReportsResults[i] = framePipelines[i] instanceof IResultTimed && ((IResultTimed)framePipelines[i]).setResultListener(this);
+        }
+
         this.prevProcessingMode = 0;
         this.currentCameraSettings = this.defaultCameraSettings;
     }
 
+    /**
+     * Opens the vision system and any of its pipelines that need to be opened
+     * @return true if successful
+     */
+    @Override
+    public boolean open()
+    {
+        if (!super.open())
+        {
+            return false;
+        }
+
+        for (IFramePipeline pipeline : this.framePipelines)
+        {
+            if (pipeline instanceof IOpenable && !((IOpenable)pipeline).open())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the vision system and any of its pipelines that need to be closed
+     */
+    @Override
+    public void close()
+    {
+        for (IFramePipeline pipeline : this.framePipelines)
+        {
+            if (pipeline instanceof IOpenable)
+            {
+                ((IOpenable)pipeline).close();
+            }
+        }
+
+        super.close();
+    }
+
+    /**
+     * Sets the metrics that this vision system and any of its pipelines that are instrumented should record into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        super.setMetrics(metrics);
+        for (IFramePipeline pipeline : this.framePipelines)
+        {
+            if (pipeline instanceof IInstrumented)
+            {
+                ((IInstrumented)pipeline).setMetrics(metrics);
+            }
+        }
+    }
+
+    /**
+     * Sets how much optional work this vision system and any of its pipelines that can shed work should skip
+     * @param level of work to shed
+     */
+    @Override
+    public void setShedLevel(LoadShedder.Level level)
+    {
+        super.setShedLevel(level);
+        for (IFramePipeline pipeline : this.framePipelines)
+        {
+            if (pipeline instanceof ILoadShedding)
+            {
+                ((ILoadShedding)pipeline).setShedLevel(level);
+            }
+        }
+    }
+
+    /**
+     * Sets the shared scheduler that any of this vision system's pipelines that detect tags should run their detection on
+     * @param scheduler to run detection on
+     * @param priority of the pipelines' detection jobs (lower values run first)
+     */
+    @Override
+    public void setDetectionScheduler(AprilTagDetectionScheduler scheduler, int priority)
+    {
+        for (IFramePipeline pipeline : this.framePipelines)
+        {
+            if (pipeline instanceof IDetectionScheduled)
+            {
+                ((IDetectionScheduled)pipeline).setDetectionScheduler(scheduler, priority);
+            }
+        }
+    }
+
     /**
      * Extension method for processing the image (without disposing it)
      * @param image to process
      * @param captureTime when the image was captured
+     * @return true if the frame's result has been written, or false if the pipeline will report it through resultReady once it has
      */
     @Override
-    protected void process(Mat image, long captureTime)
+    protected boolean process(Mat image, long captureTime)
     {
         int currProcessingMode = this.controller.getProcessingMode();
         boolean updateSettings = false;
@@ -72,6 +174,7 @@ public class SwitchedVisionSystem extends VisionSystemBase
         }
 
         boolean foundMode = false;
+        boolean resultWritten = true;
         for (int i = 0; i < this.framePipelines.length; i++)
         {
             IFramePipeline currPipeline = this.framePipelines[i];
@@ -91,6 +194,7 @@ public class SwitchedVisionSystem extends VisionSystemBase
                     }
 
                     foundMode = true;
+                    resultWritten = !this.pipelineReportsResults[i];
                     currPipeline.process(image, captureTime);
                 }
                 else
@@ -111,5 +215,7 @@ public class SwitchedVisionSystem extends VisionSystemBase
                 }
             }
         }
+
+        return resultWritten;
     }
 }
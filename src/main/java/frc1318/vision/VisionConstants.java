@@ -24,9 +24,28 @@ public class VisionConstants
     public static final int SAME_VALUE_PUBLISHING_INTERVAL = 50;
     public static final boolean USE_ADVANTAGE_KIT = true; // whether the vision system is connected to a robot logging data to AK instead of SmartDashboard
     public static final long ABSOLUTE_POSITION_AVOID_NULL_GAP_TIME = 100; // in ms
+    public static final long MAX_CAPTURE_TIMESTAMP_AGE_NANOS = 1000000000L; // ignore camera-provided timestamps that claim the frame is older than this (1s)
     public static final int STREAMING_COMPRESSION = 80; // value between 0 and 100, -1 for "default"
     public static final double MAX_STREAM_FPS = 25.0;
-    public static final long STREAM_FRAME_GAP_MILLIS = (long)(1000.0 * (1.0 / VisionConstants.MAX_STREAM_FPS));
+    public static final int FRAME_POOL_SIZE = 3; // number of reusable frame buffers per camera (being captured, waiting, being processed)
+    public static final boolean CAMERA_DECODE_ON_DEMAND = true; // whether OpenCV camera readers grab every frame but only decode the ones the vision thread will take
+    public static final int LIBCAMERA_QUEUE_DEPTH = 3; // number of completed libcamera frames that can wait to be handed to the vision thread (older ones are recycled)
+    public static final int PIPELINED_FRAMES_IN_FLIGHT = 3; // number of frames a pipelined pipeline works on at once (preprocessing, detecting, outputting)
+    public static final int TRACKING_MAX_TAGS = 16; // maximum number of tags a tracking pipeline follows from frame to frame
+    public static final int TRACKING_FULL_SEARCH_INTERVAL = 10; // number of frames between full-frame searches while a tracking pipeline is following tags
+    public static final double TRACKING_REGION_PADDING_RATIO = 0.5; // how much to pad each tag's predicted bounds, as a fraction of the tag's size in pixels
+    public static final int TRACKING_REGION_MIN_PADDING = 24; // in pixels
+    public static final double TRACKING_MAX_REGION_FRACTION = 0.5; // search the full frame instead when the tracked region covers more than this fraction of it
+    public static final float[] ADAPTIVE_DECIMATION_LEVELS = new float[] { 1.0f, 1.5f, 2.0f, 3.0f, 4.0f }; // quad decimation values an adaptive pipeline chooses between
+    public static final double ADAPTIVE_DECIMATION_MIN_TAG_SIZE = 24.0; // smallest side length (in pixels) a tag should have after decimation
+    public static final long ADAPTIVE_DECIMATION_FRAME_BUDGET_NANOS = 20000000L; // target time to detect tags in a frame (20ms)
+    public static final int ADAPTIVE_DECIMATION_SETTLE_FRAMES = 10; // number of frames in a row a new decimation must be wanted for before rebuilding the detector
+    public static final int ADAPTIVE_DECIMATION_LOST_FRAMES = 15; // number of frames without tags before searching at full resolution again
+    public static final boolean USE_DETECTION_SCHEDULER = false; // run all cameras' tag detection on one shared set of workers, instead of each pipeline's own detector threads
+    public static final int DETECTION_SCHEDULER_WORKERS = 3; // number of shared detection workers (leaving a core for capture, streaming, and NetworkTables)
+    public static final int PRIMARY_CAMERA_DETECTION_PRIORITY = 0; // lower values are detected first when the shared workers are busy
+    public static final int SECONDARY_CAMERA_DETECTION_PRIORITY = 1;
+    public static final int TERTIARY_CAMERA_DETECTION_PRIORITY = 2;
     public static final boolean LOG_IMAGES = false;
     public static final int FRAME_OUTPUT_GAP = 30; // the number of frames to wait between saving images to file system
     public static final boolean DEBUG = true;
@@ -34,9 +53,21 @@ public class VisionConstants
     public static final boolean DEBUG_PRINT_OUTPUT = VisionConstants.DEBUG && false;
     public static final boolean DEBUG_PRINT_PIPELINE_DATA = VisionConstants.DEBUG && false;
     public static final int DEBUG_FPS_AVERAGING_INTERVAL = 100;
+    public static final boolean PUBLISH_STAGE_METRICS = true; // whether to publish per-stage latency percentiles to vision/metrics/<camera>
+    public static final long METRICS_PUBLISH_INTERVAL_MILLIS = 1000; // how often to publish (and reset) the per-stage latency percentiles
+    public static final long LOAD_SHEDDING_MAX_LATENCY_MILLIS = 100; // bound on the time from capturing a frame to its result, beyond which optional work is shed (0 to never shed)
+    public static final double LOAD_SHEDDING_RECOVER_RATIO = 0.7; // only restore shed work once the latency is under this fraction of the bound
+    public static final int LOAD_SHEDDING_SETTLE_FRAMES = 10; // number of frames in a row over (or under) the bound before shedding (or restoring) work
+    public static final float LOAD_SHEDDING_DECIMATION_FACTOR = 2.0f; // how much to increase AprilTag quad decimation by when shedding detection resolution
     public static final boolean DEBUG_FRAME_STREAM = VisionConstants.DEBUG && false;
     public static final boolean DEBUG_FRAME_OUTPUT = VisionConstants.DEBUG && false;
     public static final String DEBUG_OUTPUT_FOLDER = "/home/irs/vision/";
+    public static final boolean UNDISTORT_FIXED_POINT_MAPS = false; // whether to convert the undistortion maps to fixed-point (CV_16SC2 + CV_16UC1), which is faster but rounds the remap coordinates to 1/32 of a pixel
+    public static final String UNDISTORT_MAP_CACHE_FOLDER = null; // where to save computed undistortion maps (e.g. "/home/irs/vision/undistort/"), or null to always recompute them
+    public static final int HSV_LOOKUP_TABLE_BITS = 8; // bits per color channel in HSV lookup tables (8 matches converting to HSV exactly, with a 2MB table)
+    public static final int HSV_COARSE_REGION_PADDING = 2; // in downscaled pixels, how much to pad each candidate region found by a coarse-to-fine HSV filter
+    public static final int HSV_COARSE_MAX_CANDIDATES = 8; // maximum number of candidate regions a coarse-to-fine HSV filter refines at full resolution
+    public static final double HSV_COARSE_MAX_REGION_FRACTION = 0.5; // filter the full frame instead when the candidate regions cover more than this fraction of it
 
     // Information about Microsoft LifeCam HD-3000 USB-based camera:
     public static final int LIFECAM_CAMERA_RESOLUTION_X = 1280;
@@ -201,6 +232,9 @@ public class VisionConstants
     public static final Scalar EXAMPLE_VISIONTARGET_HSV_FILTER_LOW = new Scalar(60, 100, 90); // 2022: new Scalar(60, 90, 70);
     public static final Scalar EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH = new Scalar(95, 255, 255); // 2022: new Scalar(90, 255, 255);
     public static final int EXAMPLE_VISIONTARGET_CONTOUR_MIN_AREA = 0;
+    public static final boolean EXAMPLE_VISIONTARGET_USE_BLOBS = false; // find blobs (connected components) instead of contours
+    public static final boolean EXAMPLE_VISIONTARGET_USE_HSV_LOOKUP_TABLE = false; // threshold through a color lookup table instead of converting to HSV
+    public static final int EXAMPLE_VISIONTARGET_COARSE_PYRAMID_LEVELS = 0; // halve the resolution this many times to find candidates before filtering them at full resolution (0 to filter the full frame)
     public static final int EXAMPLE_PIPELINE_VISION_BRIGHTNESS = 1;
     public static final int EXAMPLE_PIPELINE_VISION_EXPOSURE = 1;
 
@@ -215,6 +249,7 @@ public class VisionConstants
     public static final String PRIMARY_CAMERA_STREAM_NAME = "IRS-1";
     public static final int PRIMARY_CAMERA_ID = 0;
     public static final boolean PRIMARY_CAMERA_GRAYSCALE = false;
+    public static final CameraPixelFormat PRIMARY_CAMERA_PIXEL_FORMAT = CameraPixelFormat.MJPEG; // YUYV or GREY skip decoding (GREY cameras should also set GRAYSCALE)
     // public static final String PRIMARY_CAMERA_ID = "/base/axi/pcie@120000/rp1/i2c@88000/ov9281@60";
     public static final int PRIMARY_CAMERA_RESOLUTION_X = 1280;
     public static final int PRIMARY_CAMERA_RESOLUTION_Y = 800;
@@ -239,6 +274,7 @@ public class VisionConstants
     public static final String SECONDARY_CAMERA_STREAM_NAME = "IRS-2";
     public static final int SECONDARY_CAMERA_ID = 2;
     public static final boolean SECONDARY_CAMERA_GRAYSCALE = false;
+    public static final CameraPixelFormat SECONDARY_CAMERA_PIXEL_FORMAT = CameraPixelFormat.MJPEG; // YUYV or GREY skip decoding (GREY cameras should also set GRAYSCALE)
     // public static final String SECONDARY_CAMERA_ID = "/dev/v4l/by-id/usb-yyyy_yyyy_yyyy-video-index0";
     public static final int SECONDARY_CAMERA_RESOLUTION_X = VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X;
     public static final int SECONDARY_CAMERA_RESOLUTION_Y = VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y;
@@ -263,6 +299,7 @@ public class VisionConstants
     public static final String TERTIARY_CAMERA_STREAM_NAME = "IRS-frontright";
     public static final int TERTIARY_CAMERA_ID = 4;
     public static final boolean TERTIARY_CAMERA_GRAYSCALE = false;
+    public static final CameraPixelFormat TERTIARY_CAMERA_PIXEL_FORMAT = CameraPixelFormat.MJPEG; // YUYV or GREY skip decoding (GREY cameras should also set GRAYSCALE)
     // public static final String TERTIARY_CAMERA_ID = "/dev/v4l/by-id/usb-zzzz_zzzz_zzzz-video-index0";
     public static final int TERTIARY_CAMERA_RESOLUTION_X = VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X;
     public static final int TERTIARY_CAMERA_RESOLUTION_Y = VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y;
@@ -290,6 +327,11 @@ public class VisionConstants
     public static final int PRIMARY_PIPELINE_VISION_MODE = 1;
     public static final boolean PRIMARY_PIPELINE_SHOULD_MASK = false;
     public static final boolean PRIMARY_PIPELINE_SHOULD_UNDISTORT = true;
+    public static final boolean PRIMARY_PIPELINE_FUSED_PREPROCESSING = false; // convert to gray first, then mask + undistort in a single remap pass
+    public static final boolean PRIMARY_PIPELINE_PIPELINED = false; // run preprocessing, detection, and output as separate stages on separate threads
+    public static final boolean PRIMARY_PIPELINE_TRACKING = false; // only search for tags around where they were in the previous frames, with a periodic full-frame search
+    public static final boolean PRIMARY_PIPELINE_ADAPTIVE_DECIMATION = false; // adjust the quad decimation to the size of the recent tags and the frame budget
+    public static final boolean PRIMARY_PIPELINE_UNDISTORT_POINTS = false; // detect tags in the distorted frame, and then undistort just their corners instead of the whole frame
     public static final AprilTagFamily PRIMARY_PIPELINE_APRILTAG_DETECTION_FAMILY = AprilTagFamily.tag36h11;
     public static final double PRIMARY_PIPELINE_APRILTAG_SIZE = 6.5; // in inches, 8.125" overall, with a 6.5" internal black square
     public static final int PRIMARY_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE = 0;
@@ -310,6 +352,11 @@ public class VisionConstants
     public static final int SECONDARY_PIPELINE_VISION_MODE = 2;
     public static final boolean SECONDARY_PIPELINE_SHOULD_MASK = false;
     public static final boolean SECONDARY_PIPELINE_SHOULD_UNDISTORT = true;
+    public static final boolean SECONDARY_PIPELINE_FUSED_PREPROCESSING = false; // convert to gray first, then mask + undistort in a single remap pass
+    public static final boolean SECONDARY_PIPELINE_PIPELINED = false; // run preprocessing, detection, and output as separate stages on separate threads
+    public static final boolean SECONDARY_PIPELINE_TRACKING = false; // only search for tags around where they were in the previous frames, with a periodic full-frame search
+    public static final boolean SECONDARY_PIPELINE_ADAPTIVE_DECIMATION = false; // adjust the quad decimation to the size of the recent tags and the frame budget
+    public static final boolean SECONDARY_PIPELINE_UNDISTORT_POINTS = false; // detect tags in the distorted frame, and then undistort just their corners instead of the whole frame
     public static final AprilTagFamily SECONDARY_PIPELINE_APRILTAG_DETECTION_FAMILY = AprilTagFamily.tag36h11;
     public static final double SECONDARY_PIPELINE_APRILTAG_SIZE = 6.5; // in inches, 8.125" overall, with a 6.5" internal black square
     public static final int SECONDARY_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE = 0;
@@ -330,6 +377,11 @@ public class VisionConstants
     public static final int TERTIARY_PIPELINE_VISION_MODE = 2;
     public static final boolean TERTIARY_PIPELINE_SHOULD_MASK = false;
     public static final boolean TERTIARY_PIPELINE_SHOULD_UNDISTORT = true;
+    public static final boolean TERTIARY_PIPELINE_FUSED_PREPROCESSING = false; // convert to gray first, then mask + undistort in a single remap pass
+    public static final boolean TERTIARY_PIPELINE_PIPELINED = false; // run preprocessing, detection, and output as separate stages on separate threads
+    public static final boolean TERTIARY_PIPELINE_TRACKING = false; // only search for tags around where they were in the previous frames, with a periodic full-frame search
+    public static final boolean TERTIARY_PIPELINE_ADAPTIVE_DECIMATION = false; // adjust the quad decimation to the size of the recent tags and the frame budget
+    public static final boolean TERTIARY_PIPELINE_UNDISTORT_POINTS = false; // detect tags in the distorted frame, and then undistort just their corners instead of the whole frame
     public static final AprilTagFamily TERTIARY_PIPELINE_APRILTAG_DETECTION_FAMILY = AprilTagFamily.tag36h11;
     public static final double TERTIARY_PIPELINE_APRILTAG_SIZE = 6.5; // in inches, 8.125" overall, with a 6.5" internal black square
     public static final int TERTIARY_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE = 0;
@@ -347,6 +399,12 @@ public class VisionConstants
     public static final int ABSOLUTE_PIPELINE_VISION_MODE = 3;
     public static final boolean ABSOLUTE_PIPELINE_SHOULD_MASK = false;
     public static final boolean ABSOLUTE_PIPELINE_SHOULD_UNDISTORT = true;
+    public static final boolean ABSOLUTE_PIPELINE_FUSED_PREPROCESSING = false; // convert to gray first, then mask + undistort in a single remap pass
+    public static final boolean ABSOLUTE_PIPELINE_PIPELINED = false; // run preprocessing, detection, and output as separate stages on separate threads
+    public static final boolean ABSOLUTE_PIPELINE_ADAPTIVE_DECIMATION = false; // adjust the quad decimation to the size of the recent tags and the frame budget
+    public static final boolean ABSOLUTE_PIPELINE_UNDISTORT_POINTS = false; // detect tags in the distorted frame, and then undistort just their corners instead of the whole frame
+    public static final boolean ABSOLUTE_PIPELINE_MULTI_TAG = false; // solve for the robot's position from the corners of all visible tags at once, instead of from the largest tag
+    public static final boolean ABSOLUTE_PIPELINE_TRACKING = false; // only search for tags around where they were in the previous frames, with a periodic full-frame search
     public static final AprilTagFamily ABSOLUTE_PIPELINE_APRILTAG_DETECTION_FAMILY = AprilTagFamily.tag36h11;
     public static final double ABSOLUTE_PIPELINE_APRILTAG_SIZE = 6.5; // in inches, 8.125" overall, with a 6.5" internal black square
     public static final int ABSOLUTE_PIPELINE_APRILTAG_MAX_HAMMING_DISTANCE = 0;
@@ -2,14 +2,14 @@ package frc1318.vision;
 
 import org.opencv.core.*;
 
-import edu.wpi.first.cameraserver.CameraServer;
-import edu.wpi.first.cscore.CvSource;
-import edu.wpi.first.cscore.MjpegServer;
-import edu.wpi.first.util.PixelFormat;
 import frc1318.vision.helpers.Assert;
+import frc1318.vision.helpers.LoadShedder;
 import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
+import frc1318.vision.writer.AsyncFrameStreamer;
+import frc1318.vision.writer.NetworkTableMetricsWriter;
 
-public abstract class VisionSystemBase implements Runnable, IOpenable
+public abstract class VisionSystemBase implements Runnable, IOpenable, IInstrumented, ILoadShedding, IResultListener
 {
     protected final IFrameReader frameReader;
     protected final IController controller;
@@ -17,9 +17,12 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
     private final String cameraName;
     private final int streamResolutionX;
     private final int streamResolutionY;
+    private final LoadShedder loadShedder;
 
-    private CvSource rawFrameWriter;
-    private long lastFrameSent;
+    private AsyncFrameStreamer rawFrameStreamer;
+
+    private VisionMetrics metrics;
+    private NetworkTableMetricsWriter metricsWriter;
 
     private volatile boolean shouldStop;
 
@@ -49,8 +52,22 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
         this.streamResolutionX = streamResolutionX;
         this.streamResolutionY = streamResolutionY;
 
-        this.rawFrameWriter = null;
-        this.lastFrameSent = 0L;
+        this.rawFrameStreamer = null;
+
+        this.metrics = null;
+        this.metricsWriter = null;
+
+        if (VisionConstants.LOAD_SHEDDING_MAX_LATENCY_MILLIS > 0)
+        {
+            this.loadShedder = new LoadShedder(
+                VisionConstants.LOAD_SHEDDING_MAX_LATENCY_MILLIS * 1000000L,
+                VisionConstants.LOAD_SHEDDING_RECOVER_RATIO,
+                VisionConstants.LOAD_SHEDDING_SETTLE_FRAMES);
+        }
+        else
+        {
+            this.loadShedder = null;
+        }
 
         this.shouldStop = false;
     }
@@ -67,6 +84,7 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
         try
         {
             long lastMeasured = System.currentTimeMillis();
+            long lastMetricsPublished = lastMeasured;
             while (!this.shouldStop && !Thread.interrupted())
             {
                 long capturedTime = this.captureAndProcess();
@@ -75,6 +93,13 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
                     break;
                 }
 
+                if (this.metricsWriter != null &&
+                    capturedTime - lastMetricsPublished >= VisionConstants.METRICS_PUBLISH_INTERVAL_MILLIS)
+                {
+                    this.metricsWriter.write();
+                    lastMetricsPublished = capturedTime;
+                }
+
                 processedFrames++;
                 if (VisionConstants.DEBUG_FRAME_RATE &&
                     processedFrames >= VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL)
@@ -110,9 +135,13 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
     {
         if (this.cameraName != null)
         {
-            this.rawFrameWriter = new CvSource(this.cameraName, PixelFormat.kMJPEG, this.streamResolutionX, this.streamResolutionY, 25);
-            MjpegServer mjpegServer = CameraServer.startAutomaticCapture(this.rawFrameWriter);
-            mjpegServer.setCompression(VisionConstants.STREAMING_COMPRESSION);
+            // the raw stream is encoded on its own thread, so that the vision thread only pays for copying the frame
+            this.rawFrameStreamer = new AsyncFrameStreamer(this.cameraName, this.streamResolutionX, this.streamResolutionY, VisionConstants.MAX_STREAM_FPS);
+            this.rawFrameStreamer.setMetrics(this.metrics);
+            if (!this.rawFrameStreamer.open())
+            {
+                return false;
+            }
         }
 
         return true;
@@ -120,6 +149,58 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
 
     public void close()
     {
+        if (this.rawFrameStreamer != null)
+        {
+            this.rawFrameStreamer.close();
+            this.rawFrameStreamer = null;
+        }
+
+        if (this.metricsWriter != null)
+        {
+            this.metricsWriter.close();
+        }
+    }
+
+    /**
+     * Sets the metrics that this vision system (and its pipelines) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.frameReader instanceof IInstrumented)
+        {
+            ((IInstrumented)this.frameReader).setMetrics(metrics);
+        }
+
+        if (this.rawFrameStreamer != null)
+        {
+            this.rawFrameStreamer.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets how much optional work this vision system (and its pipelines) should skip because frames are taking too long to process
+     * @param level of work to shed
+     */
+    @Override
+    public void setShedLevel(LoadShedder.Level level)
+    {
+        if (this.metrics != null)
+        {
+            this.metrics.setShedLevel(level);
+        }
+    }
+
+    /**
+     * Sets the writer that periodically publishes the metrics this vision system (and its pipelines) record
+     * @param metricsWriter to publish the metrics, which should already be open
+     */
+    public void setMetricsWriter(NetworkTableMetricsWriter metricsWriter)
+    {
+        this.metricsWriter = metricsWriter;
+        this.setMetrics(metricsWriter != null ? metricsWriter.getMetrics() : null);
     }
 
     /**
@@ -130,39 +211,84 @@ public abstract class VisionSystemBase implements Runnable, IOpenable
      */
     public long captureAndProcess() throws InterruptedException
     {
+        long startNanos = System.nanoTime();
         Pair<Mat, Long> image = this.frameReader.getCurrentFrame();
         if (image == null)
         {
             return 0L;
         }
 
+        long processingStartNanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.CaptureWait, startNanos);
+
         long currTime = System.currentTimeMillis();
-        if (this.rawFrameWriter != null && this.controller.getStreamEnabled())
+        if (this.rawFrameStreamer != null && this.controller.getStreamEnabled())
         {
-            long elapsedTime = currTime - this.lastFrameSent;
-            if (VisionConstants.MAX_STREAM_FPS <= 0.0 ||
-                elapsedTime >= VisionConstants.STREAM_FRAME_GAP_MILLIS)
+            if (this.shouldShed(LoadShedder.Level.RawStream))
             {
-                this.lastFrameSent = currTime;
-                this.rawFrameWriter.putFrame(image.first);
+                VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.RawStream);
             }
-            else if (this.lastFrameSent > currTime + VisionConstants.STREAM_FRAME_GAP_MILLIS)
+            else
             {
-                // check for weirdness...
-                this.lastFrameSent = currTime;
+                // skipped if it is too soon after the last frame, or the previous frames are still being encoded
+                this.rawFrameStreamer.offer(image.first);
             }
         }
 
-        this.process(image.first, image.second);
+        // pipelined pipelines write the result later on their own thread, and tell us when through resultReady
+        if (this.process(image.first, image.second))
+        {
+            long resultNanos = System.nanoTime();
+            this.resultReady(image.second, resultNanos - processingStartNanos, resultNanos);
+        }
 
-        image.first.release();
+        this.frameReader.releaseFrame(image.first);
         return currTime;
     }
 
+    /**
+     * Record that the result for a frame has been written, and shed or restore work based on how long it took
+     * @param captureTime when the frame was captured, in nanoseconds (from System.nanoTime())
+     * @param processingNanos how long it took from starting to process the frame until its result was written, in nanoseconds
+     * @param resultTime when the result was written, in nanoseconds (from System.nanoTime())
+     */
+    @Override
+    public synchronized void resultReady(long captureTime, long processingNanos, long resultTime)
+    {
+        VisionMetrics.recordDuration(this.metrics, VisionMetrics.Stage.ResultLatency, resultTime - captureTime);
+        if (this.loadShedder != null &&
+            this.loadShedder.update(captureTime, processingNanos, resultTime))
+        {
+            LoadShedder.Level level = this.loadShedder.getLevel();
+            if (VisionConstants.DEBUG_FRAME_RATE)
+            {
+                Logger.write(
+                    String.format(
+                        "Shedding work up to %s (processing %f ms, frame interval %f ms, latency %f ms)",
+                        level.toString(),
+                        this.loadShedder.getAverageProcessingNanos() / 1000000.0,
+                        this.loadShedder.getAverageIntervalNanos() / 1000000.0,
+                        this.loadShedder.getAverageLatencyNanos() / 1000000.0));
+            }
+
+            this.setShedLevel(level);
+        }
+    }
+
+    /**
+     * Checks whether a piece of work should currently be shed
+     * @param work the level that sheds the piece of work
+     * @return true if the work should be skipped
+     */
+    private synchronized boolean shouldShed(LoadShedder.Level work)
+    {
+        return this.loadShedder != null && this.loadShedder.shouldShed(work);
+    }
+
     /**
      * Extension method for processing the image (without disposing it)
      * @param image to process
      * @param captureTime when the image was captured
+     * @return true if the frame's result has been written, or false if the pipeline will report it through resultReady once it has
      */
-    protected abstract void process(Mat image, long captureTime);
+    protected abstract boolean process(Mat image, long captureTime);
 }
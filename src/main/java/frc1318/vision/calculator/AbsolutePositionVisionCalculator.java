@@ -5,11 +5,15 @@ import org.opencv.core.Mat;
 import frc1318.apriltag.*;
 import frc1318.opencv.*;
 import frc1318.vision.FieldLayout;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.IRegionAware;
 import frc1318.vision.IResultWriter;
 import frc1318.vision.Logger;
 import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.TagPoseEstimator;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagDetection>
+public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagDetection>, IInstrumented, IRegionAware
 {
     private final IResultWriter<AbsolutePositionMeasurement> writer;
 
@@ -24,11 +28,17 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
     private final double cameraXOffset;
     private final double cameraYOffset;
     private final double cameraZOffset;
+    private final double[] diffCoef;
 
     private final double[] offset;
     private final double[] ypr;
 
     private Mat4 t_robot_rel_camera;
+    private TagPoseEstimator poseEstimator;
+
+    private int regionX;
+    private int regionY;
+    private VisionMetrics metrics;
 
     /**
      * Initializes a new instance of the AbsolutePositionVisionCalculator class.
@@ -58,6 +68,40 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
         double cameraXOffset,
         double cameraYOffset,
         double cameraZOffset)
+    {
+        this(writer, tagSize, cameraCenterX, cameraCenterY, cameraFocalX, cameraFocalY, cameraRoll, cameraPitch, cameraYaw, cameraXOffset, cameraYOffset, cameraZOffset, null);
+    }
+
+    /**
+     * Initializes a new instance of the AbsolutePositionVisionCalculator class.
+     * @param writer of results
+     * @param tagSize in inches
+     * @param centerX center point of the image frame (x component)
+     * @param centerY center point of the image frame (y component)
+     * @param focalX focal length along the x axis
+     * @param focalY focal length along the y axis
+     * @param cameraRoll mounting twist along the x axis (front to back, front positive) of the camera, in degrees
+     * @param cameraPitch mounting tilt along the y axis (left to right, left positive) of the camera, in degrees
+     * @param cameraYaw mounting angle along the z axis (up to down, up positive) of the camera, in degrees
+     * @param cameraDepthOffset mounting distance of the camera along the x axis (forward positive)
+     * @param cameraHorizontalOffset mounting distance of the camera along the y axis (left positive)
+     * @param cameraVerticalOffset mounting distance of the camera along the z axis (up positive)
+     * @param diffCoef distortion coefficients of the camera, to undistort just the corners of the detected tags (or null if the frames are already undistorted)
+     */
+    public AbsolutePositionVisionCalculator(
+        IResultWriter<AbsolutePositionMeasurement> writer,
+        double tagSize,
+        double cameraCenterX,
+        double cameraCenterY,
+        double cameraFocalX,
+        double cameraFocalY,
+        double cameraRoll,
+        double cameraPitch,
+        double cameraYaw,
+        double cameraXOffset,
+        double cameraYOffset,
+        double cameraZOffset,
+        double[] diffCoef)
     {
         this.writer = writer;
 
@@ -72,9 +116,12 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
         this.cameraXOffset = cameraXOffset;
         this.cameraYOffset = cameraYOffset;
         this.cameraZOffset = cameraZOffset;
+        this.diffCoef = diffCoef;
 
         this.offset = new double[3];
         this.ypr = new double[3];
+        this.regionX = 0;
+        this.regionY = 0;
     }
 
     public AbsolutePositionMeasurement calculate(AprilTagDetection detection)
@@ -84,6 +131,11 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
             return null;
         }
 
+        if (this.diffCoef != null)
+        {
+            return this.calculateFromDistortedCorners(detection);
+        }
+
         if (this.t_robot_rel_camera == null)
         {
             Mat4 t_camera_rel_robot = Mat4.createAffine(
@@ -105,8 +157,8 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
             this.tagSize,
             this.cameraFocalX,
             this.cameraFocalY,
-            this.cameraCenterX,
-            this.cameraCenterY,
+            this.cameraCenterX - this.regionX,
+            this.cameraCenterY - this.regionY,
             this.t_robot_rel_camera,
             t_apriltag_rel_field,
             this.offset,
@@ -123,6 +175,47 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
         return new AbsolutePositionMeasurement(this.offset[0], this.offset[1], this.offset[2], this.ypr[0], this.ypr[1], this.ypr[2], detection.getId(), detection.getDecisionMargin(), robotPose.getError());
     }
 
+    /**
+     * Calculate the measurements by undistorting just the corners of the detected tag (for when the frame wasn't undistorted)
+     * @param detection of the tag in the distorted frame
+     * @return measurements, or null if no pose could be found
+     */
+    private AbsolutePositionMeasurement calculateFromDistortedCorners(AprilTagDetection detection)
+    {
+        if (this.poseEstimator == null)
+        {
+            this.poseEstimator = new TagPoseEstimator(
+                this.tagSize,
+                this.cameraCenterX,
+                this.cameraCenterY,
+                this.cameraFocalX,
+                this.cameraFocalY,
+                this.diffCoef,
+                this.cameraRoll,
+                this.cameraPitch,
+                this.cameraYaw,
+                this.cameraXOffset,
+                this.cameraYOffset,
+                this.cameraZOffset);
+        }
+
+        this.poseEstimator.setRegionOffset(this.regionX, this.regionY);
+        double[] tagPose = FieldLayout.AprilTagIdToPoseMap.get(detection.getId());
+        if (tagPose == null ||
+            !this.poseEstimator.estimateAbsolutePose(detection.getVertices(), tagPose, this.offset, this.ypr))
+        {
+            return null;
+        }
+
+        if (VisionConstants.DEBUG_PRINT_OUTPUT)
+        {
+            Logger.write(String.format("Undistorted corners, error: %f", this.poseEstimator.getError()));
+            Logger.write(String.format("Offsets: (%f, %f, %f), Yaw: %f, Pitch: %f, Roll: %f", this.offset[0], this.offset[1], this.offset[2], this.ypr[0], this.ypr[1], this.ypr[2]));
+        }
+
+        return new AbsolutePositionMeasurement(this.offset[0], this.offset[1], this.offset[2], this.ypr[0], this.ypr[1], this.ypr[2], detection.getId(), detection.getDecisionMargin(), this.poseEstimator.getError());
+    }
+
     @Override
     public boolean open()
     {
@@ -137,18 +230,66 @@ public class AbsolutePositionVisionCalculator implements IResultWriter<AprilTagD
             this.t_robot_rel_camera.release();
             this.t_robot_rel_camera = null;
         }
+
+        if (this.poseEstimator != null)
+        {
+            this.poseEstimator.release();
+            this.poseEstimator = null;
+        }
+    }
+
+    /**
+     * Sets the metrics that the calculator and its writer (if it is instrumented) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.writer instanceof IInstrumented)
+        {
+            ((IInstrumented)this.writer).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets the top-left corner of the region of the frame that the following detections were found in
+     * @param regionX x coordinate of the region within the full frame
+     * @param regionY y coordinate of the region within the full frame
+     */
+    @Override
+    public void setRegionOffset(int regionX, int regionY)
+    {
+        this.regionX = regionX;
+        this.regionY = regionY;
     }
 
     @Override
     public void write(AprilTagDetection result, long captureTime, Mat mat)
     {
-        this.writer.write(this.calculate(result), captureTime, mat);
+        long nanos = System.nanoTime();
+        AbsolutePositionMeasurement measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime, mat);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
     }
 
     @Override
     public void write(AprilTagDetection result, long captureTime)
     {
-        this.writer.write(this.calculate(result), captureTime);
+        long nanos = System.nanoTime();
+        AbsolutePositionMeasurement measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
     }
 
     @Override
@@ -3,10 +3,12 @@ package frc1318.vision.calculator;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 
+import frc1318.vision.IInstrumented;
 import frc1318.vision.IResultWriter;
 import frc1318.vision.helpers.Angle;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class DistanceAngleVisionCalculator implements IResultWriter<Point>
+public class DistanceAngleVisionCalculator implements IResultWriter<Point>, IInstrumented
 {
     private final IResultWriter<DistanceAngleMeasurements> writer;
 
@@ -24,6 +26,8 @@ public class DistanceAngleVisionCalculator implements IResultWriter<Point>
 
     private final double cameraToTargetVerticalOffset;
 
+    private VisionMetrics metrics;
+
     public DistanceAngleVisionCalculator(
         IResultWriter<DistanceAngleMeasurements> writer,
         double centerX,
@@ -60,16 +64,31 @@ public class DistanceAngleVisionCalculator implements IResultWriter<Point>
             return null;
         }
 
-        double x = center.x;
-        double y = center.y;
-        double xOffset = x - this.centerX;
+        return new DistanceAngleMeasurements(this.calculateDistance(center.y), this.calculateHorizontalAngle(center.x));
+    }
+
+    /**
+     * Calculate the distance to a target from its position in the image
+     * @param y coordinate of the target's center in the image
+     * @return distance to the target
+     */
+    public double calculateDistance(double y)
+    {
         double yOffset = this.centerY - y;
-        double horizontalAngle = Angle.atan2d(xOffset, this.focalX) - this.cameraYaw;
         double verticalAngle = Angle.atan2d(yOffset, this.focalY);
 
-        double distance = (this.cameraToTargetVerticalOffset / Angle.tand(verticalAngle + this.cameraPitch)) - this.cameraDepthOffset;
+        return (this.cameraToTargetVerticalOffset / Angle.tand(verticalAngle + this.cameraPitch)) - this.cameraDepthOffset;
+    }
 
-        return new DistanceAngleMeasurements(distance, horizontalAngle);
+    /**
+     * Calculate the horizontal angle to a target from its position in the image
+     * @param x coordinate of the target's center in the image
+     * @return horizontal angle to the target
+     */
+    public double calculateHorizontalAngle(double x)
+    {
+        double xOffset = x - this.centerX;
+        return Angle.atan2d(xOffset, this.focalX) - this.cameraYaw;
     }
 
     @Override
@@ -83,16 +102,46 @@ public class DistanceAngleVisionCalculator implements IResultWriter<Point>
     {
     }
 
+    /**
+     * Sets the metrics that the calculator and its writer (if it is instrumented) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.writer instanceof IInstrumented)
+        {
+            ((IInstrumented)this.writer).setMetrics(metrics);
+        }
+    }
+
     @Override
     public void write(Point result, long captureTime, Mat sourceFrame)
     {
-        this.writer.write(this.calculate(result), captureTime, sourceFrame);
+        long nanos = System.nanoTime();
+        DistanceAngleMeasurements measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime, sourceFrame);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
     }
 
     @Override
     public void write(Point result, long captureTime)
     {
-        this.writer.write(this.calculate(result), captureTime);
+        long nanos = System.nanoTime();
+        DistanceAngleMeasurements measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
     }
 
     @Override
@@ -0,0 +1,241 @@
+package frc1318.vision.calculator;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+import frc1318.apriltag.*;
+import frc1318.vision.FieldLayout;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.IRegionAware;
+import frc1318.vision.IResultWriter;
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.TagPoseEstimator;
+import frc1318.vision.helpers.VisionMetrics;
+
+public class MultiTagAbsolutePositionVisionCalculator implements IResultWriter<AprilTagDetection[]>, IInstrumented, IRegionAware
+{
+    private final IResultWriter<AbsolutePositionMeasurement> writer;
+
+    private final double tagSize;
+    private final double cameraFocalX;
+    private final double cameraFocalY;
+    private final double cameraCenterX;
+    private final double cameraCenterY;
+    private final double cameraYaw;
+    private final double cameraPitch;
+    private final double cameraRoll;
+    private final double cameraXOffset;
+    private final double cameraYOffset;
+    private final double cameraZOffset;
+    private final double[] diffCoef;
+
+    private final double[] offset;
+    private final double[] ypr;
+
+    private Point[][] tagVertices;
+    private double[][] tagPoses;
+    private TagPoseEstimator poseEstimator;
+
+    private int regionX;
+    private int regionY;
+    private VisionMetrics metrics;
+
+    /**
+     * Initializes a new instance of the MultiTagAbsolutePositionVisionCalculator class.
+     * Rather than using only the largest tag, the calculator looks up the field position of every detected tag's corners and
+     * solves for the robot's position from all of them at once, which gives a more stable position from each frame.
+     * @param writer of results
+     * @param tagSize in inches
+     * @param cameraCenterX center point of the image frame (x component)
+     * @param cameraCenterY center point of the image frame (y component)
+     * @param cameraFocalX focal length along the x axis
+     * @param cameraFocalY focal length along the y axis
+     * @param cameraRoll mounting twist along the x axis (front to back, front positive) of the camera, in degrees
+     * @param cameraPitch mounting tilt along the y axis (left to right, left positive) of the camera, in degrees
+     * @param cameraYaw mounting angle along the z axis (up to down, up positive) of the camera, in degrees
+     * @param cameraXOffset mounting distance of the camera along the x axis (forward positive)
+     * @param cameraYOffset mounting distance of the camera along the y axis (left positive)
+     * @param cameraZOffset mounting distance of the camera along the z axis (up positive)
+     * @param diffCoef distortion coefficients of the camera, to undistort just the corners of the detected tags (or null if the frames are already undistorted)
+     */
+    public MultiTagAbsolutePositionVisionCalculator(
+        IResultWriter<AbsolutePositionMeasurement> writer,
+        double tagSize,
+        double cameraCenterX,
+        double cameraCenterY,
+        double cameraFocalX,
+        double cameraFocalY,
+        double cameraRoll,
+        double cameraPitch,
+        double cameraYaw,
+        double cameraXOffset,
+        double cameraYOffset,
+        double cameraZOffset,
+        double[] diffCoef)
+    {
+        this.writer = writer;
+
+        this.tagSize = tagSize;
+        this.cameraFocalX = cameraFocalX;
+        this.cameraFocalY = cameraFocalY;
+        this.cameraCenterX = cameraCenterX;
+        this.cameraCenterY = cameraCenterY;
+        this.cameraYaw = cameraYaw;
+        this.cameraPitch = cameraPitch;
+        this.cameraRoll = cameraRoll;
+        this.cameraXOffset = cameraXOffset;
+        this.cameraYOffset = cameraYOffset;
+        this.cameraZOffset = cameraZOffset;
+        this.diffCoef = diffCoef != null ? diffCoef : new double[5];
+
+        this.offset = new double[3];
+        this.ypr = new double[3];
+        this.regionX = 0;
+        this.regionY = 0;
+
+        this.tagVertices = new Point[0][];
+        this.tagPoses = new double[0][];
+    }
+
+    public AbsolutePositionMeasurement calculate(AprilTagDetection[] detections)
+    {
+        if (detections == null || detections.length == 0)
+        {
+            return null;
+        }
+
+        if (this.poseEstimator == null)
+        {
+            this.poseEstimator = new TagPoseEstimator(
+                this.tagSize,
+                this.cameraCenterX,
+                this.cameraCenterY,
+                this.cameraFocalX,
+                this.cameraFocalY,
+                this.diffCoef,
+                this.cameraRoll,
+                this.cameraPitch,
+                this.cameraYaw,
+                this.cameraXOffset,
+                this.cameraYOffset,
+                this.cameraZOffset);
+        }
+
+        if (this.tagVertices.length < detections.length)
+        {
+            this.tagVertices = new Point[detections.length][];
+            this.tagPoses = new double[detections.length][];
+        }
+
+        // skip any tags that aren't on the field, and report the most confidently-decoded tag that we used
+        int tagCount = 0;
+        AprilTagDetection bestDetection = null;
+        for (AprilTagDetection detection : detections)
+        {
+            double[] tagPose = FieldLayout.AprilTagIdToPoseMap.get(detection.getId());
+            if (tagPose != null)
+            {
+                this.tagVertices[tagCount] = detection.getVertices();
+                this.tagPoses[tagCount] = tagPose;
+                tagCount++;
+
+                if (bestDetection == null || detection.getDecisionMargin() > bestDetection.getDecisionMargin())
+                {
+                    bestDetection = detection;
+                }
+            }
+        }
+
+        this.poseEstimator.setRegionOffset(this.regionX, this.regionY);
+        if (tagCount == 0 ||
+            !this.poseEstimator.estimateMultiTagAbsolutePose(this.tagVertices, this.tagPoses, tagCount, this.offset, this.ypr))
+        {
+            return null;
+        }
+
+        if (VisionConstants.DEBUG_PRINT_OUTPUT)
+        {
+            Logger.write(String.format("Multi-tag (%d tags), error: %f", tagCount, this.poseEstimator.getError()));
+            Logger.write(String.format("Offsets: (%f, %f, %f), Yaw: %f, Pitch: %f, Roll: %f", this.offset[0], this.offset[1], this.offset[2], this.ypr[0], this.ypr[1], this.ypr[2]));
+        }
+
+        return new AbsolutePositionMeasurement(this.offset[0], this.offset[1], this.offset[2], this.ypr[0], this.ypr[1], this.ypr[2], bestDetection.getId(), bestDetection.getDecisionMargin(), this.poseEstimator.getError());
+    }
+
+    @Override
+    public boolean open()
+    {
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        if (this.poseEstimator != null)
+        {
+            this.poseEstimator.release();
+            this.poseEstimator = null;
+        }
+    }
+
+    /**
+     * Sets the metrics that the calculator and its writer (if it is instrumented) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.writer instanceof IInstrumented)
+        {
+            ((IInstrumented)this.writer).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets the top-left corner of the region of the frame that the following detections were found in
+     * @param regionX x coordinate of the region within the full frame
+     * @param regionY y coordinate of the region within the full frame
+     */
+    @Override
+    public void setRegionOffset(int regionX, int regionY)
+    {
+        this.regionX = regionX;
+        this.regionY = regionY;
+    }
+
+    @Override
+    public void write(AprilTagDetection[] result, long captureTime, Mat mat)
+    {
+        long nanos = System.nanoTime();
+        AbsolutePositionMeasurement measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime, mat);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
+    }
+
+    @Override
+    public void write(AprilTagDetection[] result, long captureTime)
+    {
+        long nanos = System.nanoTime();
+        AbsolutePositionMeasurement measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
+    }
+
+    @Override
+    public void outputDebugFrame(Mat frame)
+    {
+        this.writer.outputDebugFrame(frame);
+    }
+}
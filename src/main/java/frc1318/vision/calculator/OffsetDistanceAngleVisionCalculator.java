@@ -3,10 +3,12 @@ package frc1318.vision.calculator;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 
+import frc1318.vision.IInstrumented;
 import frc1318.vision.IResultWriter;
 import frc1318.vision.helpers.Angle;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class OffsetDistanceAngleVisionCalculator implements IResultWriter<Point>
+public class OffsetDistanceAngleVisionCalculator implements IResultWriter<Point>, IInstrumented
 {
     private final IResultWriter<OffsetDistanceAngleMeasurements> writer;
 
@@ -27,6 +29,8 @@ public class OffsetDistanceAngleVisionCalculator implements IResultWriter<Point>
     private final double cameraToTargetVerticalOffset;
     private final double cameraToTargetHorizontalOffset;
 
+    private VisionMetrics metrics;
+
     public OffsetDistanceAngleVisionCalculator(
         IResultWriter<OffsetDistanceAngleMeasurements> writer,
         double centerX,
@@ -93,16 +97,46 @@ public class OffsetDistanceAngleVisionCalculator implements IResultWriter<Point>
     {
     }
 
+    /**
+     * Sets the metrics that the calculator and its writer (if it is instrumented) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.writer instanceof IInstrumented)
+        {
+            ((IInstrumented)this.writer).setMetrics(metrics);
+        }
+    }
+
     @Override
     public void write(Point result, long captureTime, Mat mat)
     {
-        this.writer.write(this.calculate(result), captureTime, mat);
+        long nanos = System.nanoTime();
+        OffsetDistanceAngleMeasurements measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime, mat);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
     }
 
     @Override
     public void write(Point result, long captureTime)
     {
-        this.writer.write(this.calculate(result), captureTime);
+        long nanos = System.nanoTime();
+        OffsetDistanceAngleMeasurements measurements = this.calculate(result);
+        if (result != null)
+        {
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.PoseEstimation, nanos);
+        }
+
+        this.writer.write(measurements, captureTime);
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.NetworkTablesWrite, nanos);
     }
 
     @Override
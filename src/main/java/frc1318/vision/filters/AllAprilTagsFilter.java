@@ -0,0 +1,51 @@
+package frc1318.vision.filters;
+
+import java.util.Arrays;
+
+import frc1318.apriltag.AprilTagDetection;
+import frc1318.vision.IAprilTagFilter;
+import frc1318.vision.helpers.AreaHelper;
+
+public class AllAprilTagsFilter implements IAprilTagFilter<AprilTagDetection[]>
+{
+    private final double minArea;
+    private final double minDecisionMargin;
+
+    public AllAprilTagsFilter(double minArea, double minDecisionMargin)
+    {
+        this.minArea = minArea;
+        this.minDecisionMargin = minDecisionMargin;
+    }
+
+    @Override
+    public AprilTagDetection[] filter(AprilTagDetection[] detections)
+    {
+        // keep every tag that is large and confident enough, releasing the rest
+        int count = 0;
+        AprilTagDetection[] acceptedTags = new AprilTagDetection[detections.length];
+        for (AprilTagDetection tagDetection : detections)
+        {
+            if (tagDetection.getDecisionMargin() >= this.minDecisionMargin &&
+                AreaHelper.findArea(tagDetection.getVertices()) >= this.minArea)
+            {
+                acceptedTags[count++] = tagDetection;
+            }
+            else
+            {
+                tagDetection.release();
+            }
+        }
+
+        if (count == 0)
+        {
+            return null;
+        }
+
+        if (count < acceptedTags.length)
+        {
+            return Arrays.copyOf(acceptedTags, count);
+        }
+
+        return acceptedTags;
+    }
+}
@@ -8,11 +8,12 @@ import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
 import org.opencv.imgproc.Imgproc;
 
-import frc1318.vision.IContourFilter;
+import frc1318.vision.IContourBufferFilter;
 import frc1318.vision.calculator.DistanceAngleMeasurements;
 import frc1318.vision.calculator.DistanceAngleVisionCalculator;
+import frc1318.vision.helpers.ContourBuffer;
 
-public class LargestBallDistanceAngleFilter implements IContourFilter<DistanceAngleMeasurements>
+public class LargestBallDistanceAngleFilter implements IContourBufferFilter<DistanceAngleMeasurements>
 {
     private final double minArea;
     private final double minRatio;
@@ -21,6 +22,10 @@ public class LargestBallDistanceAngleFilter implements IContourFilter<DistanceAn
     private final double targetDiameter;
     private final double maxDistanceDifference;
 
+    private final MatOfPoint2f mop2f;
+    private final Point center;
+    private final float[] radiusResult;
+
     /**
      * Initializes a new instance of the LargestBallDistanceAngleFilter class.
      * @param minArea minimum area for countours
@@ -69,45 +74,101 @@ public class LargestBallDistanceAngleFilter implements IContourFilter<DistanceAn
 
         this.targetDiameter = targetDiameter;
         this.maxDistanceDifference = maxDistanceDifference;
+
+        this.mop2f = new MatOfPoint2f();
+        this.center = new Point();
+        this.radiusResult = new float[1];
     }
 
     @Override
     public DistanceAngleMeasurements filter(List<MatOfPoint> contourList)
     {
-        MatOfPoint2f mop2f = new MatOfPoint2f();
-        Point center = new Point();
-        float[] radiusResult = new float[1];
-
         // find the largest circle that also fits the criteria...
         double largestContourArea = 0.0;
-        DistanceAngleMeasurements measurements = null;
+        double largestDistance = 0.0;
+        double largestX = 0.0;
         for (MatOfPoint contour : contourList)
         {
             double area = Imgproc.contourArea(contour);
             if (area >= this.minArea && area > largestContourArea)
             {
-                contour.convertTo(mop2f, CvType.CV_32FC2);
+                contour.convertTo(this.mop2f, CvType.CV_32FC2);
 
-                Imgproc.minEnclosingCircle(mop2f, center, radiusResult);
-                double radius = radiusResult[0];
-                double minCircleArea = radius * radius * Math.PI;
-                double ratio = area / minCircleArea;
-                if (ratio >= this.minRatio)
+                Imgproc.minEnclosingCircle(this.mop2f, this.center, this.radiusResult);
+                double distance = this.checkCircle(area, this.center.y, this.radiusResult[0]);
+                if (!Double.isNaN(distance))
                 {
-                    DistanceAngleMeasurements temp = this.calculator.calculate(center);
-
-                    double alternativeDistance = (this.targetDiameter * this.focalLength) / (radius * 2.0);
-                    if (Math.abs(temp.getDistance() - alternativeDistance) <= this.maxDistanceDifference)
-                    {
-                        largestContourArea = area;
-                        measurements = temp;
-                    }
+                    largestContourArea = area;
+                    largestDistance = distance;
+                    largestX = this.center.x;
                 }
             }
 
             contour.release();
         }
 
-        return measurements;
+        if (largestContourArea == 0.0)
+        {
+            return null;
+        }
+
+        return new DistanceAngleMeasurements(largestDistance, this.calculator.calculateHorizontalAngle(largestX));
+    }
+
+    @Override
+    public DistanceAngleMeasurements filter(ContourBuffer contours)
+    {
+        // find the largest circle that also fits the criteria...
+        double largestContourArea = 0.0;
+        double largestDistance = 0.0;
+        double largestX = 0.0;
+        for (int i = 0; i < contours.getContourCount(); i++)
+        {
+            double area = contours.getArea(i);
+            if (area >= this.minArea && area > largestContourArea)
+            {
+                contours.computeEnclosingCircle(i);
+                double distance = this.checkCircle(area, contours.getCircleY(), (float)contours.getCircleRadius());
+                if (!Double.isNaN(distance))
+                {
+                    largestContourArea = area;
+                    largestDistance = distance;
+                    largestX = contours.getCircleX();
+                }
+            }
+        }
+
+        if (largestContourArea == 0.0)
+        {
+            return null;
+        }
+
+        return new DistanceAngleMeasurements(largestDistance, this.calculator.calculateHorizontalAngle(largestX));
+    }
+
+    /**
+     * Check whether a contour's enclosing circle fits the criteria for a ball
+     * @param area of the contour
+     * @param centerY y coordinate of the center of the enclosing circle
+     * @param radius of the enclosing circle
+     * @return distance to the ball, or NaN if it isn't a ball
+     */
+    private double checkCircle(double area, double centerY, double radius)
+    {
+        double minCircleArea = radius * radius * Math.PI;
+        double ratio = area / minCircleArea;
+        if (ratio < this.minRatio)
+        {
+            return Double.NaN;
+        }
+
+        double distance = this.calculator.calculateDistance(centerY);
+        double alternativeDistance = (this.targetDiameter * this.focalLength) / (radius * 2.0);
+        if (Math.abs(distance - alternativeDistance) > this.maxDistanceDifference)
+        {
+            return Double.NaN;
+        }
+
+        return distance;
     }
 }
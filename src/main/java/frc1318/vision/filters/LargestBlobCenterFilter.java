@@ -0,0 +1,29 @@
+package frc1318.vision.filters;
+
+import org.opencv.core.Point;
+
+import frc1318.vision.IBlobFilter;
+import frc1318.vision.helpers.BlobDetector;
+
+public class LargestBlobCenterFilter implements IBlobFilter<Point>
+{
+    private final double minArea;
+
+    public LargestBlobCenterFilter(double minArea)
+    {
+        this.minArea = minArea;
+    }
+
+    @Override
+    public Point filter(BlobDetector blobs)
+    {
+        // find the largest blob...
+        int largestBlob = blobs.findLargest(this.minArea);
+        if (largestBlob < 0)
+        {
+            return null;
+        }
+
+        return new Point(blobs.getCentroidX(largestBlob), blobs.getCentroidY(largestBlob));
+    }
+}
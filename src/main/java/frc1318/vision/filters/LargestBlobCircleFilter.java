@@ -0,0 +1,61 @@
+package frc1318.vision.filters;
+
+import org.opencv.core.Point;
+
+import frc1318.vision.IBlobFilter;
+import frc1318.vision.calculator.Circle;
+import frc1318.vision.helpers.BlobDetector;
+
+public class LargestBlobCircleFilter implements IBlobFilter<Circle>
+{
+    private final double minArea;
+    private final double minRatio;
+
+    /**
+     * Initializes a new instance of the LargestBlobCircleFilter class.
+     * Without a contour there is no minimum enclosing circle, so each blob's circle is the one around its bounding box's
+     * longer side (centered on the bounding box), which a round blob fills with a ratio close to 1.
+     * @param minArea minimum area for blobs
+     * @param minRatio min ratio between area of blob and area of its circle
+     */
+    public LargestBlobCircleFilter(double minArea, double minRatio)
+    {
+        this.minArea = minArea;
+        this.minRatio = minRatio;
+    }
+
+    @Override
+    public Circle filter(BlobDetector blobs)
+    {
+        // find the largest blob that is round enough...
+        int largestArea = 0;
+        int largestBlob = -1;
+        double largestRadius = 0.0;
+        for (int i = 0; i < blobs.getBlobCount(); i++)
+        {
+            int area = blobs.getArea(i);
+            if (area >= this.minArea && area > largestArea)
+            {
+                double radius = Math.max(blobs.getWidth(i), blobs.getHeight(i)) / 2.0;
+                double circleArea = radius * radius * Math.PI;
+                double ratio = area / circleArea;
+                if (ratio >= this.minRatio)
+                {
+                    largestArea = area;
+                    largestBlob = i;
+                    largestRadius = radius;
+                }
+            }
+        }
+
+        if (largestBlob < 0)
+        {
+            return null;
+        }
+
+        // pixel coordinates are the centers of the pixels, so the bounding box's center is half a pixel in from its edges
+        double centerX = blobs.getLeft(largestBlob) + (blobs.getWidth(largestBlob) - 1) / 2.0;
+        double centerY = blobs.getTop(largestBlob) + (blobs.getHeight(largestBlob) - 1) / 2.0;
+        return new Circle(new Point(centerX, centerY), largestRadius);
+    }
+}
@@ -0,0 +1,29 @@
+package frc1318.vision.filters;
+
+import org.opencv.core.Rect;
+
+import frc1318.vision.IBlobFilter;
+import frc1318.vision.helpers.BlobDetector;
+
+public class LargestBlobFilter implements IBlobFilter<Rect>
+{
+    private final double minArea;
+
+    public LargestBlobFilter(double minArea)
+    {
+        this.minArea = minArea;
+    }
+
+    @Override
+    public Rect filter(BlobDetector blobs)
+    {
+        // find the largest blob...
+        int largestBlob = blobs.findLargest(this.minArea);
+        if (largestBlob < 0)
+        {
+            return null;
+        }
+
+        return new Rect(blobs.getLeft(largestBlob), blobs.getTop(largestBlob), blobs.getWidth(largestBlob), blobs.getHeight(largestBlob));
+    }
+}
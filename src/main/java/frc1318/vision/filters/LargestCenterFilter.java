@@ -5,15 +5,19 @@ import java.util.List;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 
+import frc1318.vision.IContourBufferFilter;
 import frc1318.vision.IContourFilter;
+import frc1318.vision.helpers.ContourBuffer;
 import frc1318.vision.helpers.ContourHelper;
 
-public class LargestCenterFilter implements IContourFilter<Point>
+public class LargestCenterFilter implements IContourBufferFilter<Point>
 {
+    private final double minArea;
     private final IContourFilter<MatOfPoint> innerFilter;
 
     public LargestCenterFilter(double minArea)
     {
+        this.minArea = minArea;
         this.innerFilter = new LargestContourFilter(minArea);
     }
 
@@ -31,4 +35,17 @@ public class LargestCenterFilter implements IContourFilter<Point>
         largestContour.release();
         return result;
     }
+
+    @Override
+    public Point filter(ContourBuffer contours)
+    {
+        // find the largest contour...
+        int largestContour = contours.findLargest(this.minArea);
+        if (largestContour < 0 || !contours.computeCenterOfMass(largestContour))
+        {
+            return null;
+        }
+
+        return new Point(contours.getCenterOfMassX(), contours.getCenterOfMassY());
+    }
 }
@@ -5,15 +5,21 @@ import java.util.List;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 
+import frc1318.vision.IContourBufferFilter;
 import frc1318.vision.IContourFilter;
+import frc1318.vision.helpers.ContourBuffer;
 import frc1318.vision.helpers.ContourHelper;
 
-public class LargestCircleCenterFilter implements IContourFilter<Point>
+public class LargestCircleCenterFilter implements IContourBufferFilter<Point>
 {
+    private final double minArea;
+    private final double minRatio;
     private final IContourFilter<MatOfPoint> innerFilter;
 
     public LargestCircleCenterFilter(double minArea, double minRatio)
     {
+        this.minArea = minArea;
+        this.minRatio = minRatio;
         this.innerFilter = new LargestCircleContourFilter(minArea, minRatio);
     }
 
@@ -31,4 +37,35 @@ public class LargestCircleCenterFilter implements IContourFilter<Point>
         largestCircleContour.release();
         return result;
     }
+
+    @Override
+    public Point filter(ContourBuffer contours)
+    {
+        // find the largest circle contour...
+        double largestContourArea = 0.0;
+        int largestCircleContour = -1;
+        for (int i = 0; i < contours.getContourCount(); i++)
+        {
+            double area = contours.getArea(i);
+            if (area >= this.minArea && area > largestContourArea)
+            {
+                contours.computeEnclosingCircle(i);
+                double radius = contours.getCircleRadius();
+                double minCircleArea = radius * radius * Math.PI;
+                double ratio = area / minCircleArea;
+                if (ratio >= this.minRatio)
+                {
+                    largestCircleContour = i;
+                    largestContourArea = area;
+                }
+            }
+        }
+
+        if (largestCircleContour < 0 || !contours.computeCenterOfMass(largestCircleContour))
+        {
+            return null;
+        }
+
+        return new Point(contours.getCenterOfMassX(), contours.getCenterOfMassY());
+    }
 }
@@ -8,16 +8,20 @@ import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
 import org.opencv.imgproc.Imgproc;
 
-import frc1318.vision.IContourFilter;
+import frc1318.vision.IContourBufferFilter;
 import frc1318.vision.calculator.Circle;
+import frc1318.vision.helpers.ContourBuffer;
 
-public class LargestCircleFilter implements IContourFilter<Circle>
+public class LargestCircleFilter implements IContourBufferFilter<Circle>
 {
     private final double minArea;
     private final double minRatio;
 
     private final MatOfPoint2f mop2f;
-    private Point center;
+    private final Point tempCenter;
+    private final float[] radiusArray;
+    private double centerX;
+    private double centerY;
     private float radius;
 
     public LargestCircleFilter(double minArea, double minRatio)
@@ -26,16 +30,16 @@ public class LargestCircleFilter implements IContourFilter<Circle>
         this.minRatio = minRatio;
 
         this.mop2f = new MatOfPoint2f();
-        this.center = new Point();
+        this.tempCenter = new Point();
+        this.radiusArray = new float[1];
+        this.centerX = 0.0;
+        this.centerY = 0.0;
         this.radius = -0.0f;
     }
 
     @Override
     public Circle filter(List<MatOfPoint> contourList)
     {
-        Point tempCenter = new Point();
-        float[] radiusArray = new float[1];
-
         // find the largest contour...
         double largestContourArea = 0.0;
         MatOfPoint largestContour = null;
@@ -46,8 +50,8 @@ public class LargestCircleFilter implements IContourFilter<Circle>
             {
                 contour.convertTo(this.mop2f, CvType.CV_32FC2);
 
-                Imgproc.minEnclosingCircle(this.mop2f, tempCenter, radiusArray);
-                double minCircleArea =  radiusArray[0] * radiusArray[0] * Math.PI;
+                Imgproc.minEnclosingCircle(this.mop2f, this.tempCenter, this.radiusArray);
+                double minCircleArea =  this.radiusArray[0] * this.radiusArray[0] * Math.PI;
                 double ratio = area / minCircleArea;
                 if (ratio >= this.minRatio)
                 {
@@ -58,8 +62,9 @@ public class LargestCircleFilter implements IContourFilter<Circle>
 
                     largestContour = contour;
                     largestContourArea = area;
-                    this.center = tempCenter.clone();
-                    this.radius = radiusArray[0];
+                    this.centerX = this.tempCenter.x;
+                    this.centerY = this.tempCenter.y;
+                    this.radius = this.radiusArray[0];
                 }
                 else
                 {
@@ -72,6 +77,33 @@ public class LargestCircleFilter implements IContourFilter<Circle>
             }
         }
 
-        return new Circle(this.center, this.radius);
+        return new Circle(new Point(this.centerX, this.centerY), this.radius);
+    }
+
+    @Override
+    public Circle filter(ContourBuffer contours)
+    {
+        // find the largest contour...
+        double largestContourArea = 0.0;
+        for (int i = 0; i < contours.getContourCount(); i++)
+        {
+            double area = contours.getArea(i);
+            if (area >= this.minArea && area > largestContourArea)
+            {
+                contours.computeEnclosingCircle(i);
+                float circleRadius = (float)contours.getCircleRadius();
+                double minCircleArea = circleRadius * circleRadius * Math.PI;
+                double ratio = area / minCircleArea;
+                if (ratio >= this.minRatio)
+                {
+                    largestContourArea = area;
+                    this.centerX = contours.getCircleX();
+                    this.centerY = contours.getCircleY();
+                    this.radius = circleRadius;
+                }
+            }
+        }
+
+        return new Circle(new Point(this.centerX, this.centerY), this.radius);
     }
 }
@@ -5,19 +5,25 @@ import java.util.List;
 import org.opencv.core.CvType;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
 import org.opencv.core.RotatedRect;
+import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import frc1318.vision.IContourBufferFilter;
 import frc1318.vision.IContourFilter;
+import frc1318.vision.helpers.ContourBuffer;
 
-public class LargestRectangleFilter implements IContourFilter<RotatedRect>
+public class LargestRectangleFilter implements IContourBufferFilter<RotatedRect>
 {
+    private final double minArea;
     private final IContourFilter<MatOfPoint> innerFilter;
 
     private final MatOfPoint2f mop2f;
 
     public LargestRectangleFilter(double minArea)
     {
+        this.minArea = minArea;
         this.innerFilter = new LargestContourFilter(minArea);
 
         this.mop2f = new MatOfPoint2f();
@@ -41,4 +47,21 @@ public class LargestRectangleFilter implements IContourFilter<RotatedRect>
 
         return largestRectangle;
     }
+
+    @Override
+    public RotatedRect filter(ContourBuffer contours)
+    {
+        // find the largest contour...
+        int largestContour = contours.findLargest(this.minArea);
+        if (largestContour < 0)
+        {
+            return null;
+        }
+
+        contours.computeMinAreaRect(largestContour);
+        return new RotatedRect(
+            new Point(contours.getRectCenterX(), contours.getRectCenterY()),
+            new Size(contours.getRectWidth(), contours.getRectHeight()),
+            contours.getRectAngle());
+    }
 }
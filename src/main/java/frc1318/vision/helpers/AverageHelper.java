@@ -0,0 +1,22 @@
+package frc1318.vision.helpers;
+
+public class AverageHelper
+{
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Fold a new value into an exponentially-weighted average
+     * @param average current average (0 if there isn't one yet)
+     * @param value new value
+     * @return updated average
+     */
+    public static double smooth(double average, double value)
+    {
+        if (average == 0.0)
+        {
+            return value;
+        }
+
+        return average + AverageHelper.SMOOTHING * (value - average);
+    }
+}
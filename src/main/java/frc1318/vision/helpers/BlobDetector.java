@@ -0,0 +1,161 @@
+package frc1318.vision.helpers;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+public class BlobDetector
+{
+    private static final int Connectivity = 8; // like contours, diagonal neighbors are part of the same blob
+    private static final int StatCount = 5; // CC_STAT_LEFT, CC_STAT_TOP, CC_STAT_WIDTH, CC_STAT_HEIGHT, CC_STAT_AREA
+
+    private final Mat labels;
+    private final Mat stats;
+    private final Mat centroids;
+
+    private int blobCount;
+    private int[] statValues;
+    private double[] centroidValues;
+
+    /**
+     * Initializes a new instance of the BlobDetector class.
+     * BlobDetector finds the blobs (8-connected components) of a binary image with a single call to
+     * Imgproc.connectedComponentsWithStats, which gives the area (pixel count), bounding box and centroid of every blob
+     * without tracing their contours.  The results are copied into reused primitive arrays, so that filters can read them
+     * without any further native calls.  Note that a blob's area counts all of its pixels (including the border), so it is
+     * slightly larger than the area of its contour, and that blobs inside the holes of other blobs are found too.
+     */
+    public BlobDetector()
+    {
+        this.labels = new Mat();
+        this.stats = new Mat();
+        this.centroids = new Mat();
+
+        this.blobCount = 0;
+        this.statValues = new int[64 * BlobDetector.StatCount];
+        this.centroidValues = new double[64 * 2];
+    }
+
+    /**
+     * Find the blobs in a binary image, replacing any blobs found previously
+     * @param binaryImage single-channel 8-bit image, where non-zero pixels are foreground
+     * @return number of blobs found
+     */
+    public int detect(Mat binaryImage)
+    {
+        int labelCount = Imgproc.connectedComponentsWithStats(binaryImage, this.labels, this.stats, this.centroids, BlobDetector.Connectivity, CvType.CV_32S);
+
+        // label 0 is the background
+        if (labelCount * BlobDetector.StatCount > this.statValues.length)
+        {
+            this.statValues = new int[2 * labelCount * BlobDetector.StatCount];
+            this.centroidValues = new double[2 * labelCount * 2];
+        }
+
+        this.stats.get(0, 0, this.statValues);
+        this.centroids.get(0, 0, this.centroidValues);
+        this.blobCount = labelCount - 1;
+        return this.blobCount;
+    }
+
+    /**
+     * Gets the number of blobs found
+     * @return blob count
+     */
+    public int getBlobCount()
+    {
+        return this.blobCount;
+    }
+
+    /**
+     * Gets the area of a blob
+     * @param blob index of the blob
+     * @return number of pixels in the blob
+     */
+    public int getArea(int blob)
+    {
+        return this.statValues[(blob + 1) * BlobDetector.StatCount + Imgproc.CC_STAT_AREA];
+    }
+
+    /**
+     * Gets the left edge of a blob's bounding box
+     * @param blob index of the blob
+     * @return x coordinate of the leftmost pixel
+     */
+    public int getLeft(int blob)
+    {
+        return this.statValues[(blob + 1) * BlobDetector.StatCount + Imgproc.CC_STAT_LEFT];
+    }
+
+    /**
+     * Gets the top edge of a blob's bounding box
+     * @param blob index of the blob
+     * @return y coordinate of the topmost pixel
+     */
+    public int getTop(int blob)
+    {
+        return this.statValues[(blob + 1) * BlobDetector.StatCount + Imgproc.CC_STAT_TOP];
+    }
+
+    /**
+     * Gets the width of a blob's bounding box
+     * @param blob index of the blob
+     * @return width, in pixels
+     */
+    public int getWidth(int blob)
+    {
+        return this.statValues[(blob + 1) * BlobDetector.StatCount + Imgproc.CC_STAT_WIDTH];
+    }
+
+    /**
+     * Gets the height of a blob's bounding box
+     * @param blob index of the blob
+     * @return height, in pixels
+     */
+    public int getHeight(int blob)
+    {
+        return this.statValues[(blob + 1) * BlobDetector.StatCount + Imgproc.CC_STAT_HEIGHT];
+    }
+
+    /**
+     * Gets the x coordinate of a blob's centroid
+     * @param blob index of the blob
+     * @return centroid x coordinate
+     */
+    public double getCentroidX(int blob)
+    {
+        return this.centroidValues[(blob + 1) * 2];
+    }
+
+    /**
+     * Gets the y coordinate of a blob's centroid
+     * @param blob index of the blob
+     * @return centroid y coordinate
+     */
+    public double getCentroidY(int blob)
+    {
+        return this.centroidValues[(blob + 1) * 2 + 1];
+    }
+
+    /**
+     * Find the largest blob
+     * @param minArea minimum area for the blob
+     * @return index of the largest blob with at least the minimum area, or -1 if there isn't one
+     */
+    public int findLargest(double minArea)
+    {
+        int largestArea = 0;
+        int largest = -1;
+        for (int i = 0; i < this.blobCount; i++)
+        {
+            int area = this.getArea(i);
+            if (area >= minArea && area > largestArea)
+            {
+                largestArea = area;
+                largest = i;
+            }
+        }
+
+        return largest;
+    }
+}
@@ -0,0 +1,301 @@
+package frc1318.vision.helpers;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import frc1318.vision.IHSVFilter;
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
+
+public class CoarseToFineHSVFilter implements IHSVFilter
+{
+    private final IHSVFilter filter;
+    private final int levels;
+    private final int scale;
+    private final int padding;
+    private final int maxCandidates;
+    private final double maxRegionFraction;
+
+    private final Mat[] pyramid;
+    private final Mat coarseMask;
+    private final ContourBuffer coarseContours;
+    private final Scalar zero;
+
+    // candidate regions (the coarse contour, and its bounds at full resolution with the right and bottom exclusive)
+    private final int[] regionContour;
+    private final int[] regionLeft;
+    private final int[] regionTop;
+    private final int[] regionRight;
+    private final int[] regionBottom;
+    private int regionCount;
+
+    private double lastCenterError;
+    private int frames;
+    private int measuredFrames;
+    private int fullFrames;
+    private double centerErrorSum;
+    private double centerErrorMax;
+
+    /**
+     * Initializes a new instance of the CoarseToFineHSVFilter class.
+     * CoarseToFineHSVFilter first filters a pyramid-downscaled copy of the frame to find where the candidate blobs are, and
+     * then filters only those regions (padded) of the full resolution frame.  The rest of the mask is left empty, so contour
+     * filters give the same results as with the full resolution mask as long as the candidates are large enough to survive
+     * the downscaling.  Targets that are only a few pixels across after downscaling may be missed.  If the candidates
+     * cover too much of the frame, the whole frame is filtered instead.  The frames must be BGR, as downscaling mixes the
+     * interleaved U and V channels of YUYV frames.
+     * @param filter to use on both the downscaled frame and the candidate regions
+     * @param levels how many times to halve the resolution for the coarse pass
+     * @param padding how many (downscaled) pixels to pad each candidate region by
+     * @param maxCandidates maximum number of candidate regions to refine
+     * @param maxRegionFraction filter the whole frame instead when the candidate regions cover more than this fraction of it
+     */
+    public CoarseToFineHSVFilter(IHSVFilter filter, int levels, int padding, int maxCandidates, double maxRegionFraction)
+    {
+        if (levels < 1)
+        {
+            throw new IllegalArgumentException("levels must be at least 1");
+        }
+
+        if (filter.getLayout() != LookupTableHSVFilter.Layout.BGR)
+        {
+            throw new IllegalArgumentException("filter must filter BGR frames");
+        }
+
+        this.filter = filter;
+        this.levels = levels;
+        this.scale = 1 << levels;
+        this.padding = padding;
+        this.maxCandidates = maxCandidates;
+        this.maxRegionFraction = maxRegionFraction;
+
+        this.pyramid = new Mat[levels];
+        for (int i = 0; i < levels; i++)
+        {
+            this.pyramid[i] = new Mat();
+        }
+
+        this.coarseMask = new Mat();
+        this.coarseContours = new ContourBuffer();
+        this.zero = new Scalar(0);
+
+        this.regionContour = new int[maxCandidates];
+        this.regionLeft = new int[maxCandidates];
+        this.regionTop = new int[maxCandidates];
+        this.regionRight = new int[maxCandidates];
+        this.regionBottom = new int[maxCandidates];
+        this.regionCount = 0;
+
+        this.lastCenterError = Double.NaN;
+        this.frames = 0;
+        this.measuredFrames = 0;
+        this.fullFrames = 0;
+        this.centerErrorSum = 0.0;
+        this.centerErrorMax = 0.0;
+    }
+
+    /**
+     * Gets the layout of the frames that the filter expects
+     * @return BGR, as downscaling mixes up the chroma of YUV frames
+     */
+    @Override
+    public LookupTableHSVFilter.Layout getLayout()
+    {
+        return LookupTableHSVFilter.Layout.BGR;
+    }
+
+    /**
+     * Filter the provided frame for HSVs within the filter's bounds, only at full resolution near candidates from the coarse pass.
+     * @param sourceFrame to filter (BGR)
+     * @param targetFrame to hold the result of the filtering
+     */
+    @Override
+    public void filterHSV(Mat sourceFrame, Mat targetFrame)
+    {
+        int width = sourceFrame.cols();
+        int height = sourceFrame.rows();
+
+        // coarse pass: downscale, filter and find the candidate blobs
+        Mat coarseFrame = sourceFrame;
+        for (int i = 0; i < this.levels; i++)
+        {
+            Imgproc.pyrDown(coarseFrame, this.pyramid[i]);
+            coarseFrame = this.pyramid[i];
+        }
+
+        this.filter.filterHSV(coarseFrame, this.coarseMask);
+        this.selectCandidates();
+
+        long regionArea = 0L;
+        int largestRegion = -1;
+        for (int region = 0; region < this.regionCount; region++)
+        {
+            this.setRegionBounds(region, width, height);
+            regionArea += (long)(this.regionRight[region] - this.regionLeft[region]) * (this.regionBottom[region] - this.regionTop[region]);
+            if (largestRegion < 0 ||
+                this.coarseContours.getArea(this.regionContour[region]) > this.coarseContours.getArea(this.regionContour[largestRegion]))
+            {
+                largestRegion = region;
+            }
+        }
+
+        this.frames++;
+        if (regionArea > this.maxRegionFraction * width * height)
+        {
+            this.filter.filterHSV(sourceFrame, targetFrame);
+            this.fullFrames++;
+        }
+        else
+        {
+            // fine pass: filter only the candidate regions (filtering the overlap of two regions twice gives the same result)
+            targetFrame.create(height, width, CvType.CV_8UC1);
+            targetFrame.setTo(this.zero);
+            for (int region = 0; region < this.regionCount; region++)
+            {
+                Mat sourceRegion = sourceFrame.submat(this.regionTop[region], this.regionBottom[region], this.regionLeft[region], this.regionRight[region]);
+                Mat targetRegion = targetFrame.submat(this.regionTop[region], this.regionBottom[region], this.regionLeft[region], this.regionRight[region]);
+                this.filter.filterHSV(sourceRegion, targetRegion);
+                sourceRegion.release();
+                targetRegion.release();
+            }
+        }
+
+        this.measureCenterError(largestRegion, targetFrame);
+
+        if (VisionConstants.DEBUG_FRAME_RATE && this.frames >= VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL)
+        {
+            Logger.write(
+                String.format(
+                    "HSV coarse-to-fine center error: mean %.2f, max %.2f pixels over %d frames (%d filtered in full)",
+                    this.measuredFrames > 0 ? this.centerErrorSum / this.measuredFrames : 0.0,
+                    this.centerErrorMax,
+                    this.frames,
+                    this.fullFrames));
+
+            this.frames = 0;
+            this.measuredFrames = 0;
+            this.fullFrames = 0;
+            this.centerErrorSum = 0.0;
+            this.centerErrorMax = 0.0;
+        }
+    }
+
+    /**
+     * Gets the distance (in full resolution pixels) between the center of the largest candidate from the coarse pass and
+     * the center of the refined mask within its region, for the most recent frame
+     * @return center error in pixels, or NaN if there were no candidates
+     */
+    public double getLastCenterError()
+    {
+        return this.lastCenterError;
+    }
+
+    /**
+     * Gets the number of candidate regions that were refined for the most recent frame
+     * @return number of regions
+     */
+    public int getRegionCount()
+    {
+        return this.regionCount;
+    }
+
+    /**
+     * Find the coarse contours, keeping the largest ones as candidates if there are too many
+     */
+    private void selectCandidates()
+    {
+        int contourCount = this.coarseContours.findExternalContours(this.coarseMask);
+        this.regionCount = 0;
+        for (int contour = 0; contour < contourCount; contour++)
+        {
+            if (this.regionCount < this.maxCandidates)
+            {
+                this.regionContour[this.regionCount++] = contour;
+                continue;
+            }
+
+            // replace the smallest candidate, if this one is larger
+            int smallest = 0;
+            for (int region = 1; region < this.regionCount; region++)
+            {
+                if (this.coarseContours.getArea(this.regionContour[region]) < this.coarseContours.getArea(this.regionContour[smallest]))
+                {
+                    smallest = region;
+                }
+            }
+
+            if (this.coarseContours.getArea(contour) > this.coarseContours.getArea(this.regionContour[smallest]))
+            {
+                this.regionContour[smallest] = contour;
+            }
+        }
+    }
+
+    /**
+     * Set a candidate region to its coarse contour's bounds, scaled up to full resolution, padded and clipped to the frame
+     * @param region index of the region to set
+     * @param width of the full resolution frame
+     * @param height of the full resolution frame
+     */
+    private void setRegionBounds(int region, int width, int height)
+    {
+        int contour = this.regionContour[region];
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int pointCount = this.coarseContours.getPointCount(contour);
+        for (int point = 0; point < pointCount; point++)
+        {
+            int x = this.coarseContours.getPointX(contour, point);
+            int y = this.coarseContours.getPointY(contour, point);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        // each downscaled pixel is centered on every scale'th full resolution pixel
+        this.regionLeft[region] = Math.max(0, (minX - this.padding) * this.scale);
+        this.regionTop[region] = Math.max(0, (minY - this.padding) * this.scale);
+        this.regionRight[region] = Math.min(width, (maxX + this.padding + 1) * this.scale);
+        this.regionBottom[region] = Math.min(height, (maxY + this.padding + 1) * this.scale);
+    }
+
+    /**
+     * Measure how far the center of the largest coarse candidate is from the center of the refined mask within its region
+     * @param largestRegion index of the region of the largest coarse contour, or -1 if there were none
+     * @param targetFrame the refined mask
+     */
+    private void measureCenterError(int largestRegion, Mat targetFrame)
+    {
+        this.lastCenterError = Double.NaN;
+        if (largestRegion < 0 || !this.coarseContours.computeCenterOfMass(this.regionContour[largestRegion]))
+        {
+            return;
+        }
+
+        int left = this.regionLeft[largestRegion];
+        int top = this.regionTop[largestRegion];
+        Mat region = targetFrame.submat(top, this.regionBottom[largestRegion], left, this.regionRight[largestRegion]);
+        Moments moments = Imgproc.moments(region, true);
+        region.release();
+        if (moments.m00 == 0.0)
+        {
+            return;
+        }
+
+        double refinedX = left + moments.m10 / moments.m00;
+        double refinedY = top + moments.m01 / moments.m00;
+        double coarseX = this.coarseContours.getCenterOfMassX() * this.scale;
+        double coarseY = this.coarseContours.getCenterOfMassY() * this.scale;
+
+        this.lastCenterError = Math.hypot(refinedX - coarseX, refinedY - coarseY);
+        this.measuredFrames++;
+        this.centerErrorSum += this.lastCenterError;
+        this.centerErrorMax = Math.max(this.centerErrorMax, this.lastCenterError);
+    }
+}
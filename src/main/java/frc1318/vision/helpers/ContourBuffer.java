@@ -0,0 +1,767 @@
+package frc1318.vision.helpers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+public class ContourBuffer
+{
+    // directions around a pixel, counter-clockwise (as displayed) starting to the east, like OpenCV's border following
+    private static final int[] DirectionX = { 1, 1, 0, -1, -1, -1, 0, 1 };
+    private static final int[] DirectionY = { 0, -1, -1, -1, 0, 1, 1, 1 };
+
+    // labels for the pixels: background, foreground that hasn't been reached yet, and border pixels (negative where the
+    // pixel to the east is background, so the scan knows it has left the object)
+    private static final byte Background = 0;
+    private static final byte Foreground = 1;
+    private static final byte Border = 2;
+    private static final byte EastBorder = -2;
+
+    // reads 8 labels at once, so that runs of background or foreground can be skipped quickly
+    private static final VarHandle LabelRun = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long BackgroundRun = 0L;
+    private static final long ForegroundRun = 0x0101010101010101L;
+
+    private static final double CircleTolerance = 1e-7;
+
+    // the binary image as labels, padded by a background pixel on each side so that tracing needs no bounds checks
+    private final Mat paddedImage;
+    private final Scalar padding;
+    private int width;
+    private int height;
+    private int labelStride;
+    private byte[] labels;
+    private final int[] directionOffsets;
+
+    // the points of all of the contours, one after another, and where each contour starts within them
+    private int pointCount;
+    private int[] pointX;
+    private int[] pointY;
+    private int contourCount;
+    private int[] contourStart;
+    private int[] contourLength;
+    private double[] contourArea;
+
+    // scratch space for the convex hull of a contour
+    private long[] sortKeys;
+    private int hullCount;
+    private int[] hullX;
+    private int[] hullY;
+
+    private double centerOfMassX;
+    private double centerOfMassY;
+
+    private double circleX;
+    private double circleY;
+    private double circleRadius;
+
+    private double rectCenterX;
+    private double rectCenterY;
+    private double rectWidth;
+    private double rectHeight;
+    private double rectAngle;
+
+    /**
+     * Initializes a new instance of the ContourBuffer class.
+     * ContourBuffer finds the external contours of a binary image (like Imgproc.findContours with RETR_EXTERNAL and
+     * CHAIN_APPROX_SIMPLE) and stores all of their points in one contiguous set of arrays, instead of allocating a MatOfPoint
+     * for each contour.  It then measures a contour (area, center of mass, minimum enclosing circle, minimum area rectangle)
+     * directly from those arrays, keeping the measurement in primitive fields.  The arrays only grow when a frame has more
+     * contours or points than any frame before it, so once the buffer has warmed up finding and measuring contours doesn't
+     * allocate anything, on the Java heap or natively.
+     */
+    public ContourBuffer()
+    {
+        this.paddedImage = new Mat();
+        this.padding = new Scalar(0.0);
+        this.width = 0;
+        this.height = 0;
+        this.labelStride = 0;
+        this.labels = new byte[0];
+        this.directionOffsets = new int[8];
+
+        this.pointCount = 0;
+        this.pointX = new int[1024];
+        this.pointY = new int[1024];
+        this.contourCount = 0;
+        this.contourStart = new int[64];
+        this.contourLength = new int[64];
+        this.contourArea = new double[64];
+
+        this.sortKeys = new long[256];
+        this.hullCount = 0;
+        this.hullX = new int[257];
+        this.hullY = new int[257];
+    }
+
+    /**
+     * Find the external contours of a binary image, replacing any contours found previously
+     * @param binaryImage single-channel 8-bit image, where non-zero pixels are foreground
+     * @return number of contours found
+     */
+    public int findExternalContours(Mat binaryImage)
+    {
+        if (binaryImage.type() != CvType.CV_8UC1)
+        {
+            throw new IllegalArgumentException("expected a single-channel 8-bit image");
+        }
+
+        this.loadLabels(binaryImage);
+
+        this.pointCount = 0;
+        this.contourCount = 0;
+
+        // Suzuki & Abe border following, restricted to external borders the same way as OpenCV's RETR_EXTERNAL: holes are
+        // never followed, and an outer border is only followed if the last border pixel we passed on the row was on the east
+        // side of an object (so that we aren't inside one)
+        int stride = this.labelStride;
+        byte[] labels = this.labels;
+        for (int y = 1; y <= this.height; y++)
+        {
+            int rowStart = y * stride;
+            int lastBorder = rowStart;
+            int previous = ContourBuffer.Background;
+            int rowEnd = rowStart + this.width + 1;
+            for (int index = rowStart + 1; index < rowEnd; index++)
+            {
+                // most of a mask is long runs of the same label, which can't start a border
+                if (index + 8 <= rowEnd)
+                {
+                    long run = (long)ContourBuffer.LabelRun.get(labels, index);
+                    if ((run == ContourBuffer.BackgroundRun && previous == ContourBuffer.Background) ||
+                        (run == ContourBuffer.ForegroundRun && previous == ContourBuffer.Foreground))
+                    {
+                        index += 7;
+                        continue;
+                    }
+                }
+
+                int value = labels[index];
+                if (value == previous)
+                {
+                    continue;
+                }
+
+                if (previous == ContourBuffer.Background && value == ContourBuffer.Foreground && labels[lastBorder] <= 0)
+                {
+                    this.followBorder(index, index - rowStart - 1, y - 1);
+                    value = labels[index];
+                }
+
+                if (value != ContourBuffer.Background && value != ContourBuffer.Foreground)
+                {
+                    lastBorder = index;
+                }
+
+                previous = value;
+            }
+        }
+
+        return this.contourCount;
+    }
+
+    /**
+     * Gets the number of contours found
+     * @return contour count
+     */
+    public int getContourCount()
+    {
+        return this.contourCount;
+    }
+
+    /**
+     * Gets the number of points in a contour
+     * @param contour index of the contour
+     * @return point count
+     */
+    public int getPointCount(int contour)
+    {
+        return this.contourLength[contour];
+    }
+
+    /**
+     * Gets the x coordinate of one of a contour's points
+     * @param contour index of the contour
+     * @param point index of the point within the contour
+     * @return x coordinate
+     */
+    public int getPointX(int contour, int point)
+    {
+        return this.pointX[this.contourStart[contour] + point];
+    }
+
+    /**
+     * Gets the y coordinate of one of a contour's points
+     * @param contour index of the contour
+     * @param point index of the point within the contour
+     * @return y coordinate
+     */
+    public int getPointY(int contour, int point)
+    {
+        return this.pointY[this.contourStart[contour] + point];
+    }
+
+    /**
+     * Gets the area enclosed by a contour (the same as Imgproc.contourArea)
+     * @param contour index of the contour
+     * @return area, in pixels
+     */
+    public double getArea(int contour)
+    {
+        return this.contourArea[contour];
+    }
+
+    /**
+     * Find the largest contour
+     * @param minArea minimum area for the contour
+     * @return index of the largest contour with at least the minimum area, or -1 if there isn't one
+     */
+    public int findLargest(double minArea)
+    {
+        double largestArea = 0.0;
+        int largest = -1;
+        for (int i = 0; i < this.contourCount; i++)
+        {
+            double area = this.contourArea[i];
+            if (area >= minArea && area > largestArea)
+            {
+                largestArea = area;
+                largest = i;
+            }
+        }
+
+        return largest;
+    }
+
+    /**
+     * Calculate the center of mass of a contour (the same as ContourHelper.findCenterOfMass), available from
+     * getCenterOfMassX() and getCenterOfMassY()
+     * @param contour index of the contour
+     * @return true if the contour encloses any area, otherwise false (and it has no center of mass)
+     */
+    public boolean computeCenterOfMass(int contour)
+    {
+        // moments of the polygon, using Green's theorem
+        int start = this.contourStart[contour];
+        int count = this.contourLength[contour];
+        double a00 = 0.0;
+        double a10 = 0.0;
+        double a01 = 0.0;
+        int previousX = this.pointX[start + count - 1];
+        int previousY = this.pointY[start + count - 1];
+        for (int i = start; i < start + count; i++)
+        {
+            int x = this.pointX[i];
+            int y = this.pointY[i];
+            double cross = (double)previousX * y - (double)x * previousY;
+            a00 += cross;
+            a10 += cross * (previousX + x);
+            a01 += cross * (previousY + y);
+            previousX = x;
+            previousY = y;
+        }
+
+        if (a00 == 0.0)
+        {
+            return false;
+        }
+
+        // m10 / m00 = (a10 / 6) / (a00 / 2)
+        this.centerOfMassX = a10 / (3.0 * a00);
+        this.centerOfMassY = a01 / (3.0 * a00);
+        return true;
+    }
+
+    public double getCenterOfMassX()
+    {
+        return this.centerOfMassX;
+    }
+
+    public double getCenterOfMassY()
+    {
+        return this.centerOfMassY;
+    }
+
+    /**
+     * Calculate the minimum enclosing circle of a contour (like Imgproc.minEnclosingCircle), available from getCircleX(),
+     * getCircleY() and getCircleRadius()
+     * @param contour index of the contour
+     */
+    public void computeEnclosingCircle(int contour)
+    {
+        // the circle only depends on the points on the convex hull
+        this.computeHull(contour);
+
+        int[] xs = this.hullX;
+        int[] ys = this.hullY;
+        double centerX = xs[0];
+        double centerY = ys[0];
+        double radius = 0.0;
+        for (int i = 1; i < this.hullCount; i++)
+        {
+            if (ContourBuffer.isOutside(xs[i], ys[i], centerX, centerY, radius))
+            {
+                // the circle must pass through point i
+                centerX = xs[i];
+                centerY = ys[i];
+                radius = 0.0;
+                for (int j = 0; j < i; j++)
+                {
+                    if (ContourBuffer.isOutside(xs[j], ys[j], centerX, centerY, radius))
+                    {
+                        // ...and through point j
+                        centerX = (xs[i] + xs[j]) / 2.0;
+                        centerY = (ys[i] + ys[j]) / 2.0;
+                        radius = Math.hypot(xs[i] - centerX, ys[i] - centerY);
+                        for (int k = 0; k < j; k++)
+                        {
+                            if (ContourBuffer.isOutside(xs[k], ys[k], centerX, centerY, radius))
+                            {
+                                // ...and through point k, so it is their circumcircle
+                                double ax = xs[j] - xs[i];
+                                double ay = ys[j] - ys[i];
+                                double bx = xs[k] - xs[i];
+                                double by = ys[k] - ys[i];
+                                double d = 2.0 * (ax * by - ay * bx);
+                                if (d == 0.0)
+                                {
+                                    // points on the hull aren't collinear, but keep the circle we have rather than divide by zero
+                                    continue;
+                                }
+
+                                double a2 = ax * ax + ay * ay;
+                                double b2 = bx * bx + by * by;
+                                double offsetX = (by * a2 - ay * b2) / d;
+                                double offsetY = (ax * b2 - bx * a2) / d;
+                                centerX = xs[i] + offsetX;
+                                centerY = ys[i] + offsetY;
+                                radius = Math.hypot(offsetX, offsetY);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        this.circleX = centerX;
+        this.circleY = centerY;
+        this.circleRadius = radius;
+    }
+
+    public double getCircleX()
+    {
+        return this.circleX;
+    }
+
+    public double getCircleY()
+    {
+        return this.circleY;
+    }
+
+    public double getCircleRadius()
+    {
+        return this.circleRadius;
+    }
+
+    /**
+     * Calculate the minimum area rectangle enclosing a contour (like Imgproc.minAreaRect), available from getRectCenterX(),
+     * getRectCenterY(), getRectWidth(), getRectHeight() and getRectAngle().  The angle is in degrees, within [0, 90), and is
+     * the direction of the rectangle's width.
+     * @param contour index of the contour
+     */
+    public void computeMinAreaRect(int contour)
+    {
+        this.computeHull(contour);
+
+        int[] xs = this.hullX;
+        int[] ys = this.hullY;
+        int count = this.hullCount;
+        if (count == 1)
+        {
+            this.rectCenterX = xs[0];
+            this.rectCenterY = ys[0];
+            this.rectWidth = 0.0;
+            this.rectHeight = 0.0;
+            this.rectAngle = 0.0;
+            return;
+        }
+
+        // the minimum area rectangle has a side along one of the edges of the convex hull
+        double bestArea = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++)
+        {
+            int next = (i + 1) % count;
+            double edgeX = xs[next] - xs[i];
+            double edgeY = ys[next] - ys[i];
+            double length = Math.hypot(edgeX, edgeY);
+            if (length == 0.0)
+            {
+                continue;
+            }
+
+            double ux = edgeX / length;
+            double uy = edgeY / length;
+            double minU = Double.POSITIVE_INFINITY;
+            double maxU = Double.NEGATIVE_INFINITY;
+            double minV = Double.POSITIVE_INFINITY;
+            double maxV = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < count; j++)
+            {
+                double u = xs[j] * ux + ys[j] * uy;
+                double v = ys[j] * ux - xs[j] * uy;
+                minU = Math.min(minU, u);
+                maxU = Math.max(maxU, u);
+                minV = Math.min(minV, v);
+                maxV = Math.max(maxV, v);
+            }
+
+            double area = (maxU - minU) * (maxV - minV);
+            if (area < bestArea)
+            {
+                bestArea = area;
+
+                double centerU = (minU + maxU) / 2.0;
+                double centerV = (minV + maxV) / 2.0;
+                this.rectCenterX = centerU * ux - centerV * uy;
+                this.rectCenterY = centerU * uy + centerV * ux;
+
+                double angle = Math.toDegrees(Math.atan2(uy, ux));
+                if (angle < 0.0)
+                {
+                    angle += 180.0;
+                }
+
+                if (angle >= 180.0)
+                {
+                    angle -= 180.0;
+                }
+
+                if (angle >= 90.0)
+                {
+                    // turning the rectangle a quarter turn swaps its width and height
+                    this.rectAngle = angle - 90.0;
+                    this.rectWidth = maxV - minV;
+                    this.rectHeight = maxU - minU;
+                }
+                else
+                {
+                    this.rectAngle = angle;
+                    this.rectWidth = maxU - minU;
+                    this.rectHeight = maxV - minV;
+                }
+            }
+        }
+    }
+
+    public double getRectCenterX()
+    {
+        return this.rectCenterX;
+    }
+
+    public double getRectCenterY()
+    {
+        return this.rectCenterY;
+    }
+
+    public double getRectWidth()
+    {
+        return this.rectWidth;
+    }
+
+    public double getRectHeight()
+    {
+        return this.rectHeight;
+    }
+
+    public double getRectAngle()
+    {
+        return this.rectAngle;
+    }
+
+    /**
+     * Copy the binary image into the (padded) labels, where 1 is foreground and 0 is background
+     * @param binaryImage to copy
+     */
+    private void loadLabels(Mat binaryImage)
+    {
+        Core.copyMakeBorder(binaryImage, this.paddedImage, 1, 1, 1, 1, Core.BORDER_CONSTANT, this.padding);
+        Imgproc.threshold(this.paddedImage, this.paddedImage, 0.0, ContourBuffer.Foreground, Imgproc.THRESH_BINARY);
+
+        int imageWidth = binaryImage.cols();
+        int imageHeight = binaryImage.rows();
+        if (imageWidth != this.width || imageHeight != this.height)
+        {
+            this.width = imageWidth;
+            this.height = imageHeight;
+            this.labelStride = imageWidth + 2;
+
+            // only grow the array, so that switching between frame sizes doesn't reallocate it every time
+            int labelCount = this.labelStride * (imageHeight + 2);
+            if (labelCount > this.labels.length)
+            {
+                this.labels = new byte[labelCount];
+            }
+
+            for (int i = 0; i < 8; i++)
+            {
+                this.directionOffsets[i] = ContourBuffer.DirectionY[i] * this.labelStride + ContourBuffer.DirectionX[i];
+            }
+        }
+
+        this.paddedImage.get(0, 0, this.labels);
+    }
+
+    /**
+     * Follow an outer border from its starting pixel (which has background to its west), labeling its pixels and recording
+     * its points as a contour
+     * @param startIndex label index of the border's starting pixel
+     * @param startX x coordinate of the border's starting pixel
+     * @param startY y coordinate of the border's starting pixel
+     */
+    private void followBorder(int startIndex, int startX, int startY)
+    {
+        byte[] labels = this.labels;
+        int[] offsets = this.directionOffsets;
+
+        this.beginContour();
+
+        // look clockwise from the background pixel to the west for the first foreground neighbor
+        int startDirection = 4;
+        int direction = startDirection;
+        int firstIndex;
+        do
+        {
+            direction = (direction - 1) & 7;
+            firstIndex = startIndex + offsets[direction];
+        }
+        while (labels[firstIndex] == ContourBuffer.Background && direction != startDirection);
+
+        if (direction == startDirection)
+        {
+            // a single isolated pixel
+            labels[startIndex] = ContourBuffer.EastBorder;
+            this.addPoint(startX, startY);
+            this.endContour();
+            return;
+        }
+
+        int currentIndex = startIndex;
+        int currentX = startX;
+        int currentY = startY;
+        int previousDirection = direction ^ 4;
+        while (true)
+        {
+            // look counter-clockwise from the pixel we came from for the next foreground neighbor
+            int fromDirection = direction;
+            int nextIndex;
+            do
+            {
+                direction = (direction + 1) & 7;
+                nextIndex = currentIndex + offsets[direction];
+            }
+            while (labels[nextIndex] == ContourBuffer.Background);
+
+            // if we looked past the pixel to the east, it is background
+            if (direction >= 1 && direction <= fromDirection)
+            {
+                labels[currentIndex] = ContourBuffer.EastBorder;
+            }
+            else if (labels[currentIndex] == ContourBuffer.Foreground)
+            {
+                labels[currentIndex] = ContourBuffer.Border;
+            }
+
+            // only keep the points where the border changes direction
+            if (direction != previousDirection)
+            {
+                this.addPoint(currentX, currentY);
+                previousDirection = direction;
+            }
+
+            if (nextIndex == startIndex && currentIndex == firstIndex)
+            {
+                break;
+            }
+
+            currentIndex = nextIndex;
+            currentX += ContourBuffer.DirectionX[direction];
+            currentY += ContourBuffer.DirectionY[direction];
+            direction = (direction + 4) & 7;
+        }
+
+        this.endContour();
+    }
+
+    private void beginContour()
+    {
+        if (this.contourCount == this.contourStart.length)
+        {
+            int capacity = this.contourCount * 2;
+            this.contourStart = Arrays.copyOf(this.contourStart, capacity);
+            this.contourLength = Arrays.copyOf(this.contourLength, capacity);
+            this.contourArea = Arrays.copyOf(this.contourArea, capacity);
+        }
+
+        this.contourStart[this.contourCount] = this.pointCount;
+    }
+
+    private void addPoint(int x, int y)
+    {
+        if (this.pointCount == this.pointX.length)
+        {
+            int capacity = this.pointCount * 2;
+            this.pointX = Arrays.copyOf(this.pointX, capacity);
+            this.pointY = Arrays.copyOf(this.pointY, capacity);
+        }
+
+        this.pointX[this.pointCount] = x;
+        this.pointY[this.pointCount] = y;
+        this.pointCount++;
+    }
+
+    private void endContour()
+    {
+        int start = this.contourStart[this.contourCount];
+        int count = this.pointCount - start;
+
+        // shoelace formula
+        long twiceArea = 0L;
+        int previousX = this.pointX[start + count - 1];
+        int previousY = this.pointY[start + count - 1];
+        for (int i = start; i < start + count; i++)
+        {
+            int x = this.pointX[i];
+            int y = this.pointY[i];
+            twiceArea += (long)previousX * y - (long)x * previousY;
+            previousX = x;
+            previousY = y;
+        }
+
+        this.contourLength[this.contourCount] = count;
+        this.contourArea[this.contourCount] = Math.abs(twiceArea) / 2.0;
+        this.contourCount++;
+    }
+
+    /**
+     * Calculate the convex hull of a contour (Andrew's monotone chain) into hullX/hullY, counter-clockwise without collinear points
+     * @param contour index of the contour
+     */
+    private void computeHull(int contour)
+    {
+        int start = this.contourStart[contour];
+        int count = this.contourLength[contour];
+        if (count > this.sortKeys.length)
+        {
+            this.sortKeys = new long[Math.max(count, this.sortKeys.length * 2)];
+            this.hullX = new int[this.sortKeys.length + 1];
+            this.hullY = new int[this.sortKeys.length + 1];
+        }
+
+        // sort the points by x and then y (the coordinates are never negative, so they pack into one key)
+        long[] keys = this.sortKeys;
+        for (int i = 0; i < count; i++)
+        {
+            keys[i] = ((long)this.pointX[start + i] << 32) | this.pointY[start + i];
+        }
+
+        ContourBuffer.heapSort(keys, count);
+
+        int[] xs = this.hullX;
+        int[] ys = this.hullY;
+        int hull = 0;
+
+        // lower hull, then upper hull
+        for (int i = 0; i < count; i++)
+        {
+            int x = (int)(keys[i] >>> 32);
+            int y = (int)keys[i];
+            while (hull >= 2 && ContourBuffer.cross(xs[hull - 2], ys[hull - 2], xs[hull - 1], ys[hull - 1], x, y) <= 0L)
+            {
+                hull--;
+            }
+
+            xs[hull] = x;
+            ys[hull] = y;
+            hull++;
+        }
+
+        int lowerCount = hull + 1;
+        for (int i = count - 2; i >= 0; i--)
+        {
+            int x = (int)(keys[i] >>> 32);
+            int y = (int)keys[i];
+            while (hull >= lowerCount && ContourBuffer.cross(xs[hull - 2], ys[hull - 2], xs[hull - 1], ys[hull - 1], x, y) <= 0L)
+            {
+                hull--;
+            }
+
+            xs[hull] = x;
+            ys[hull] = y;
+            hull++;
+        }
+
+        // the last point is the first point again (unless there was only one point)
+        this.hullCount = Math.max(1, hull - 1);
+    }
+
+    private static long cross(int ox, int oy, int ax, int ay, int bx, int by)
+    {
+        return (long)(ax - ox) * (by - oy) - (long)(ay - oy) * (bx - ox);
+    }
+
+    private static boolean isOutside(int x, int y, double centerX, double centerY, double radius)
+    {
+        return Math.hypot(x - centerX, y - centerY) > radius + ContourBuffer.CircleTolerance;
+    }
+
+    /**
+     * Sort the start of an array in place (unlike Arrays.sort, this never allocates a work array)
+     * @param keys to sort
+     * @param count number of keys at the start of the array to sort
+     */
+    private static void heapSort(long[] keys, int count)
+    {
+        for (int i = count / 2 - 1; i >= 0; i--)
+        {
+            ContourBuffer.siftDown(keys, i, count);
+        }
+
+        for (int end = count - 1; end > 0; end--)
+        {
+            long largest = keys[0];
+            keys[0] = keys[end];
+            keys[end] = largest;
+            ContourBuffer.siftDown(keys, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] keys, int index, int count)
+    {
+        long key = keys[index];
+        int child;
+        while ((child = 2 * index + 1) < count)
+        {
+            if (child + 1 < count && keys[child + 1] > keys[child])
+            {
+                child++;
+            }
+
+            if (keys[child] <= key)
+            {
+                break;
+            }
+
+            keys[index] = keys[child];
+            index = child;
+        }
+
+        keys[index] = key;
+    }
+}
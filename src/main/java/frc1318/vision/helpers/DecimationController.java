@@ -0,0 +1,147 @@
+package frc1318.vision.helpers;
+
+public class DecimationController
+{
+    private final float[] levels;
+    private final double minDecimatedTagSize;
+    private final long frameBudgetNanos;
+    private final int settleFrames;
+    private final int lostFrames;
+
+    private int currentLevel;
+    private int budgetLevel;
+    private int sizeLevel;
+    private int framesWithoutTags;
+    private int pendingLevel;
+    private int pendingFrames;
+    private double averageFrameNanos;
+
+    /**
+     * Initializes a new instance of the DecimationController class.
+     * DecimationController picks how much the AprilTag detector should decimate the frame before searching it for quads.
+     * Large (nearby) tags can be found in a heavily-decimated frame, which is much cheaper to search, while small (distant)
+     * tags need the full resolution.  So we pick the largest decimation that still leaves the smallest recent tag big enough
+     * to find, and raise the decimation further if frames are taking longer than the budget.  When no tags have been seen
+     * for a while, we search at the lowest decimation that fits the budget.  The level only changes after it has been wanted
+     * for a few frames in a row, as changing it requires rebuilding the detector.
+     * @param levels decimation values to choose between, from lowest (full resolution) to highest
+     * @param initialDecimation decimation to start with (the closest of the levels is used)
+     * @param minDecimatedTagSize smallest size (side length, in pixels) that a tag should have after decimation
+     * @param frameBudgetNanos target time to detect tags in a frame, in nanoseconds
+     * @param settleFrames number of frames in a row that a new level must be wanted for before we switch to it
+     * @param lostFrames number of frames without any tags before we go back to searching at full resolution
+     */
+    public DecimationController(
+        float[] levels,
+        float initialDecimation,
+        double minDecimatedTagSize,
+        long frameBudgetNanos,
+        int settleFrames,
+        int lostFrames)
+    {
+        this.levels = levels;
+        this.minDecimatedTagSize = minDecimatedTagSize;
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.settleFrames = settleFrames;
+        this.lostFrames = lostFrames;
+
+        int initialLevel = 0;
+        for (int i = 1; i < levels.length; i++)
+        {
+            if (Math.abs(levels[i] - initialDecimation) < Math.abs(levels[initialLevel] - initialDecimation))
+            {
+                initialLevel = i;
+            }
+        }
+
+        this.currentLevel = initialLevel;
+        this.budgetLevel = 0;
+        this.sizeLevel = 0;
+        this.framesWithoutTags = 0;
+        this.pendingLevel = initialLevel;
+        this.pendingFrames = 0;
+        this.averageFrameNanos = 0.0;
+    }
+
+    /**
+     * Gets the decimation that the detector should currently use
+     * @return quad decimation
+     */
+    public float getDecimation()
+    {
+        return this.levels[this.currentLevel];
+    }
+
+    /**
+     * Update the controller with the results of detecting tags in a frame
+     * @param minTagArea area (in full-resolution pixels) of the smallest tag that was found, or 0 if none were found
+     * @param frameNanos how long it took to detect tags in the frame, in nanoseconds
+     * @return true if the decimation has changed (so the detector should be rebuilt)
+     */
+    public boolean update(double minTagArea, long frameNanos)
+    {
+        // the frame time depends on the level we were at, so restart the average when the level changes
+        if (this.averageFrameNanos == 0.0)
+        {
+            this.averageFrameNanos = frameNanos;
+        }
+        else
+        {
+            this.averageFrameNanos += 0.2 * (frameNanos - this.averageFrameNanos);
+        }
+
+        // the lowest level that keeps up with the budget, moving up quickly and down slowly
+        if (this.averageFrameNanos > this.frameBudgetNanos)
+        {
+            this.budgetLevel = Math.max(this.budgetLevel, Math.min(this.currentLevel + 1, this.levels.length - 1));
+        }
+        else if (this.averageFrameNanos < 0.5 * this.frameBudgetNanos && this.budgetLevel >= this.currentLevel)
+        {
+            this.budgetLevel = Math.max(0, this.currentLevel - 1);
+        }
+
+        // the highest level that still leaves the smallest tag big enough to find
+        if (minTagArea > 0.0)
+        {
+            this.framesWithoutTags = 0;
+
+            double tagSize = Math.sqrt(minTagArea);
+            this.sizeLevel = 0;
+            for (int i = this.levels.length - 1; i > 0; i--)
+            {
+                if (tagSize / this.levels[i] >= this.minDecimatedTagSize)
+                {
+                    this.sizeLevel = i;
+                    break;
+                }
+            }
+        }
+        else if (++this.framesWithoutTags >= this.lostFrames)
+        {
+            this.sizeLevel = 0;
+        }
+
+        int desiredLevel = Math.max(this.sizeLevel, this.budgetLevel);
+        if (desiredLevel == this.currentLevel)
+        {
+            this.pendingFrames = 0;
+            return false;
+        }
+
+        if (desiredLevel != this.pendingLevel)
+        {
+            this.pendingLevel = desiredLevel;
+            this.pendingFrames = 0;
+        }
+
+        if (++this.pendingFrames < this.settleFrames)
+        {
+            return false;
+        }
+
+        this.currentLevel = desiredLevel;
+        this.pendingFrames = 0;
+        this.averageFrameNanos = 0.0;
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+package frc1318.vision.helpers;
+
+public class DecodeGate
+{
+    // written by the capture thread
+    private long lastGrabNanos;
+    private double averageGrabIntervalNanos;
+
+    // written by the vision thread
+    private volatile long lastAskNanos;
+    private volatile long lastTakeNanos;
+    private volatile double averageTakeIntervalNanos;
+
+    /**
+     * Initializes a new instance of the DecodeGate class.
+     * DecodeGate decides which grabbed frames are worth decoding.  A grabbed frame only needs to be decoded if it will
+     * still be the most recent frame when the vision thread next asks for one, so we keep smoothed averages of the time
+     * between grabs and the time between the vision thread taking frames, and decode a grab only if the vision thread is
+     * expected to ask before the next grab completes (or is already waiting).  When processing keeps up with the camera
+     * every frame is decoded, and when it doesn't the frames that would have been replaced unseen are never decoded.  Until
+     * both averages are known every frame is decoded.
+     * The decision is a prediction, and a skipped grab can't be decoded later.  If the vision thread asks sooner than its
+     * average (for example, when a frame had nothing to detect), it is handed the older frame that was last decoded if
+     * that hasn't been taken yet, or otherwise waits for the next grab, which is always decoded while the vision thread is
+     * waiting - so a misprediction costs up to a grab interval of latency, on top of the time to decode.
+     */
+    public DecodeGate()
+    {
+        this.lastGrabNanos = 0L;
+        this.averageGrabIntervalNanos = 0.0;
+        this.lastAskNanos = 0L;
+        this.lastTakeNanos = 0L;
+        this.averageTakeIntervalNanos = 0.0;
+    }
+
+    /**
+     * Record that a frame was grabbed, and decide whether to decode it (called from the capture thread)
+     * @param grabNanos when the grab completed, in nanoseconds (from System.nanoTime())
+     * @return true if the frame should be decoded, false if it would most likely be replaced before being taken
+     */
+    public boolean recordGrab(long grabNanos)
+    {
+        if (this.lastGrabNanos != 0L && grabNanos > this.lastGrabNanos)
+        {
+            this.averageGrabIntervalNanos = AverageHelper.smooth(this.averageGrabIntervalNanos, grabNanos - this.lastGrabNanos);
+        }
+
+        this.lastGrabNanos = grabNanos;
+
+        long lastTakeNanos = this.lastTakeNanos;
+        double averageTakeIntervalNanos = this.averageTakeIntervalNanos;
+        if (this.lastAskNanos > lastTakeNanos)
+        {
+            // the vision thread is already waiting for a frame
+            return true;
+        }
+
+        if (lastTakeNanos == 0L || averageTakeIntervalNanos == 0.0 || this.averageGrabIntervalNanos == 0.0)
+        {
+            return true;
+        }
+
+        // decode unless another frame will have been grabbed by the time the vision thread next asks for one
+        return lastTakeNanos + averageTakeIntervalNanos <= grabNanos + this.averageGrabIntervalNanos;
+    }
+
+    /**
+     * Record that the vision thread is asking for a frame, before it waits for one (called from the vision thread)
+     * @param askNanos when the frame was asked for, in nanoseconds (from System.nanoTime())
+     */
+    public void recordAsk(long askNanos)
+    {
+        this.lastAskNanos = askNanos;
+    }
+
+    /**
+     * Record that the vision thread took a frame (called from the vision thread)
+     * @param takeNanos when the frame was taken, in nanoseconds (from System.nanoTime())
+     */
+    public void recordTake(long takeNanos)
+    {
+        long lastTakeNanos = this.lastTakeNanos;
+        if (lastTakeNanos != 0L && takeNanos > lastTakeNanos)
+        {
+            this.averageTakeIntervalNanos = AverageHelper.smooth(this.averageTakeIntervalNanos, takeNanos - lastTakeNanos);
+        }
+
+        this.lastTakeNanos = takeNanos;
+    }
+
+    /**
+     * Gets the smoothed time between frames being grabbed
+     * @return grab interval, in nanoseconds
+     */
+    public double getAverageGrabIntervalNanos()
+    {
+        return this.averageGrabIntervalNanos;
+    }
+
+    /**
+     * Gets the smoothed time between the vision thread taking frames
+     * @return take interval, in nanoseconds
+     */
+    public double getAverageTakeIntervalNanos()
+    {
+        return this.averageTakeIntervalNanos;
+    }
+}
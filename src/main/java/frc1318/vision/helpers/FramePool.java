@@ -0,0 +1,183 @@
+package frc1318.vision.helpers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Mat;
+
+public class FramePool
+{
+    private final ArrayBlockingQueue<Mat> available;
+
+    private final AtomicLong allocations;
+    private final AtomicLong reallocations;
+    private final AtomicLong reuses;
+    private final AtomicLong discards;
+
+    private volatile int rows;
+    private volatile int cols;
+    private volatile int type;
+
+    /**
+     * Initializes a new instance of the FramePool class.
+     * The pool is a fixed ring of frame buffers that all share the same resolution and type,
+     * so that camera readers can fill the same native buffers over and over again.
+     * @param capacity the maximum number of idle frames to hold on to
+     */
+    public FramePool(int capacity)
+    {
+        this.available = new ArrayBlockingQueue<Mat>(capacity);
+
+        this.allocations = new AtomicLong();
+        this.reallocations = new AtomicLong();
+        this.reuses = new AtomicLong();
+        this.discards = new AtomicLong();
+
+        this.rows = 0;
+        this.cols = 0;
+        this.type = -1;
+    }
+
+    /**
+     * Update the resolution and type of the frames in the pool, discarding any idle frames that no longer match
+     * @param resolutionX x-resolution (width) of the frames
+     * @param resolutionY y-resolution (height) of the frames
+     * @param type OpenCV type of the frames (e.g. CvType.CV_8UC3)
+     */
+    public synchronized void configure(int resolutionX, int resolutionY, int type)
+    {
+        if (this.cols == resolutionX && this.rows == resolutionY && this.type == type)
+        {
+            return;
+        }
+
+        this.cols = resolutionX;
+        this.rows = resolutionY;
+        this.type = type;
+
+        this.clear();
+    }
+
+    /**
+     * Retrieve a frame from the pool, allocating a new one only if there are no idle frames
+     * @return a frame to fill
+     */
+    public Mat acquire()
+    {
+        Mat frame = this.available.poll();
+        if (frame != null)
+        {
+            this.reuses.incrementAndGet();
+            return frame;
+        }
+
+        this.allocations.incrementAndGet();
+        if (this.type < 0 || this.rows <= 0 || this.cols <= 0)
+        {
+            return new Mat();
+        }
+
+        return new Mat(this.rows, this.cols, this.type);
+    }
+
+    /**
+     * Record that a frame retrieved from the pool has been filled, so that we can tell whether the native buffer had to be reallocated
+     * @param frame that was filled
+     * @param previousDataAddr the frame's data address from before it was filled
+     */
+    public void recordFill(Mat frame, long previousDataAddr)
+    {
+        if (frame.dataAddr() != previousDataAddr)
+        {
+            this.reallocations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Return a frame to the pool so that it can be filled again
+     * @param frame to return (or null)
+     */
+    public void release(Mat frame)
+    {
+        if (frame == null)
+        {
+            return;
+        }
+
+        if (!frame.empty() &&
+            (frame.rows() != this.rows || frame.cols() != this.cols || frame.type() != this.type))
+        {
+            // the camera didn't give us the resolution/type we asked for, so adopt what it actually provides
+            this.configure(frame.cols(), frame.rows(), frame.type());
+        }
+
+        if (!this.available.offer(frame))
+        {
+            frame.release();
+            this.discards.incrementAndGet();
+        }
+    }
+
+    /**
+     * Release all of the idle frames in the pool
+     */
+    public void clear()
+    {
+        Mat frame;
+        while ((frame = this.available.poll()) != null)
+        {
+            frame.release();
+            this.discards.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of frames that had to be newly allocated by the pool
+     * @return allocation count
+     */
+    public long getAllocationCount()
+    {
+        return this.allocations.get();
+    }
+
+    /**
+     * Gets the number of times that filling a frame caused its native buffer to be reallocated
+     * @return reallocation count
+     */
+    public long getReallocationCount()
+    {
+        return this.reallocations.get();
+    }
+
+    /**
+     * Gets the number of times an idle frame was reused
+     * @return reuse count
+     */
+    public long getReuseCount()
+    {
+        return this.reuses.get();
+    }
+
+    /**
+     * Gets the number of frames that were released rather than being kept in the pool
+     * @return discard count
+     */
+    public long getDiscardCount()
+    {
+        return this.discards.get();
+    }
+
+    /**
+     * Gets a summary of the pool's counters, suitable for logging
+     * @return summary string
+     */
+    public String getStatistics()
+    {
+        return String.format(
+            "%d allocations, %d reallocations, %d reuses, %d discards",
+            this.allocations.get(),
+            this.reallocations.get(),
+            this.reuses.get(),
+            this.discards.get());
+    }
+}
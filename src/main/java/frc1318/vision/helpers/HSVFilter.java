@@ -5,7 +5,9 @@ import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 
-public class HSVFilter
+import frc1318.vision.IHSVFilter;
+
+public class HSVFilter implements IHSVFilter
 {
     private final Scalar lowerBoundOne;
     private final Scalar upperBoundOne;
@@ -50,6 +52,7 @@ public class HSVFilter
      * @param sourceFrame to convert into HSV and then filter
      * @param targetFrame to hold the result of the filtering
      */
+    @Override
     public void filterHSV(Mat sourceFrame, Mat targetFrame)
     {
         Imgproc.cvtColor(sourceFrame, this.frameHSV, Imgproc.COLOR_BGR2HSV);
@@ -64,4 +67,14 @@ public class HSVFilter
             Core.bitwise_or(this.tempResult1, this.tempResult2, targetFrame);
         }
     }
+
+    /**
+     * Gets the layout of the frames that the filter expects
+     * @return BGR, as the frames are converted to HSV by OpenCV
+     */
+    @Override
+    public LookupTableHSVFilter.Layout getLayout()
+    {
+        return LookupTableHSVFilter.Layout.BGR;
+    }
 }
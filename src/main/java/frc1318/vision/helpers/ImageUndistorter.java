@@ -1,17 +1,41 @@
 package frc1318.vision.helpers;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.opencv.calib3d.Calib3d;
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
+
 public class ImageUndistorter
 {
-    private Mat mapX;
-    private Mat mapY;
+    // remap coordinate used for masked pixels, far enough outside of the image that interpolation only sees the constant border
+    private static final double MASKED_COORDINATE = -16.0;
+    private static final Scalar BORDER_VALUE = new Scalar(0);
+    private static final int CACHE_FILE_VERSION = 1;
+
+    private final Mat map1;
+    private final Mat map2;
+    private final boolean fixedPoint;
+
+    private final LatencyHistogram fullRemapTime;
+    private final LatencyHistogram regionRemapTime;
 
     /**
      * Initializes a new instance of the ImageUndistorter class.
@@ -26,6 +50,45 @@ public class ImageUndistorter
         double focalLengthY,
         double[] diffCoef)
     {
+        this(resolutionX, resolutionY, centerX, centerY, focalLengthX, focalLengthY, diffCoef, false, null);
+    }
+
+    /**
+     * Initializes a new instance of the ImageUndistorter class.
+     * For background, see http://docs.opencv.org/3.1.0/d4/d94/tutorial_camera_calibration.html
+     * @param fixedPoint whether to convert the remap tables to fixed-point (CV_16SC2 + CV_16UC1), which are less than half the size of the floating-point tables and faster to remap with
+     * @param cacheDirectory directory to save the remap tables in, so that they don't need to be recomputed on the next startup (or null to not cache them)
+     */
+    public ImageUndistorter(
+        double resolutionX,
+        double resolutionY,
+        double centerX,
+        double centerY,
+        double focalLengthX,
+        double focalLengthY,
+        double[] diffCoef,
+        boolean fixedPoint,
+        String cacheDirectory)
+    {
+        this.fixedPoint = fixedPoint;
+        this.map1 = new Mat();
+        this.map2 = new Mat();
+
+        this.fullRemapTime = new LatencyHistogram();
+        this.regionRemapTime = new LatencyHistogram();
+
+        File cacheFile = null;
+        String cacheKey = null;
+        if (cacheDirectory != null)
+        {
+            cacheKey = ImageUndistorter.buildCacheKey(resolutionX, resolutionY, centerX, centerY, focalLengthX, focalLengthY, diffCoef, fixedPoint);
+            cacheFile = new File(cacheDirectory, String.format("undistort_%08x.bin", cacheKey.hashCode()));
+            if (ImageUndistorter.loadMaps(cacheFile, cacheKey, this.map1, this.map2))
+            {
+                return;
+            }
+        }
+
         Size size = new Size(resolutionX, resolutionY);
         Mat intrinsicMatrix = ImageUndistorter.buildIntrinsic(centerX, centerY, focalLengthX, focalLengthY);
         Mat distCoeffs = ImageUndistorter.buildDistortion(diffCoef);
@@ -40,14 +103,105 @@ public class ImageUndistorter
 
         Calib3d.initUndistortRectifyMap(intrinsicMatrix, distCoeffs, R, newCameraMatrix, size, CvType.CV_32FC1, mapX, mapY);
 
-        this.mapX = mapX;
-        this.mapY = mapY;
+        if (fixedPoint)
+        {
+            // map1 holds the integer coordinates, map2 holds indices into the interpolation table for the fractional part
+            Imgproc.convertMaps(mapX, mapY, this.map1, this.map2, CvType.CV_16SC2);
+            mapX.release();
+            mapY.release();
+        }
+        else
+        {
+            mapX.copyTo(this.map1);
+            mapY.copyTo(this.map2);
+            mapX.release();
+            mapY.release();
+        }
 
         intrinsicMatrix.release();
         distCoeffs.release();
 
         R.release();
         newCameraMatrix.release();
+
+        if (cacheFile != null)
+        {
+            ImageUndistorter.saveMaps(cacheFile, cacheKey, this.map1, this.map2);
+        }
+    }
+
+    /**
+     * Initializes a new instance of the ImageUndistorter class from existing remap tables.
+     * @param map1 x-coordinate remap table (or the combined xy table for fixed-point)
+     * @param map2 y-coordinate remap table (or the interpolation table indices for fixed-point)
+     * @param fixedPoint whether the tables are fixed-point
+     */
+    private ImageUndistorter(Mat map1, Mat map2, boolean fixedPoint)
+    {
+        this.map1 = map1;
+        this.map2 = map2;
+        this.fixedPoint = fixedPoint;
+
+        this.fullRemapTime = new LatencyHistogram();
+        this.regionRemapTime = new LatencyHistogram();
+    }
+
+    /**
+     * Create an undistorter that also applies the provided mask, by pointing every pixel whose source is masked out at the (black) border.
+     * This allows masking and undistorting in a single remap pass instead of a separate bitwise_and pass.
+     * @param mask of the distorted (source) image, where black (0) pixels are masked out
+     * @return a new undistorter that masks and undistorts
+     */
+    public ImageUndistorter createMasked(Mat mask)
+    {
+        Mat singleChannelMask = ImageUndistorter.toSingleChannelMask(mask);
+
+        // find how much of each undistorted pixel comes from masked-out source pixels, and treat it as masked out if that is the majority
+        Mat remappedMask = new Mat();
+        Imgproc.remap(singleChannelMask, remappedMask, this.map1, this.map2, Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, ImageUndistorter.BORDER_VALUE);
+
+        Mat maskedOut = new Mat();
+        Core.compare(remappedMask, new Scalar(128), maskedOut, Core.CMP_LT);
+
+        Mat maskedMap1 = this.map1.clone();
+        Mat maskedMap2 = this.map2.clone();
+        if (this.fixedPoint)
+        {
+            maskedMap1.setTo(new Scalar(ImageUndistorter.MASKED_COORDINATE, ImageUndistorter.MASKED_COORDINATE), maskedOut);
+            maskedMap2.setTo(new Scalar(0), maskedOut);
+        }
+        else
+        {
+            maskedMap1.setTo(new Scalar(ImageUndistorter.MASKED_COORDINATE), maskedOut);
+            maskedMap2.setTo(new Scalar(ImageUndistorter.MASKED_COORDINATE), maskedOut);
+        }
+
+        singleChannelMask.release();
+        remappedMask.release();
+        maskedOut.release();
+
+        return new ImageUndistorter(maskedMap1, maskedMap2, this.fixedPoint);
+    }
+
+    /**
+     * Convert a (possibly BGR) mask into a single-channel mask, where a pixel is only kept (255) if it was kept in every channel
+     * @param mask to convert
+     * @return a new single-channel mask
+     */
+    public static Mat toSingleChannelMask(Mat mask)
+    {
+        Mat singleChannelMask = new Mat();
+        if (mask.channels() == 1)
+        {
+            mask.copyTo(singleChannelMask);
+        }
+        else
+        {
+            Imgproc.cvtColor(mask, singleChannelMask, Imgproc.COLOR_BGR2GRAY);
+        }
+
+        Imgproc.threshold(singleChannelMask, singleChannelMask, 254.0, 255.0, Imgproc.THRESH_BINARY);
+        return singleChannelMask;
     }
 
     /**
@@ -57,7 +211,229 @@ public class ImageUndistorter
      */
     public void undistortFrame(Mat sourceFrame, Mat targetFrame)
     {
-        Imgproc.remap(sourceFrame, targetFrame, this.mapX, this.mapY, Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(0));
+        long startNanos = System.nanoTime();
+        Imgproc.remap(sourceFrame, targetFrame, this.map1, this.map2, Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, ImageUndistorter.BORDER_VALUE);
+        this.recordRemapTime(this.fullRemapTime, startNanos, "full");
+    }
+
+    /**
+     * Undistort only a region of the frame, such as the area around where we expect to find a target
+     * @param sourceFrame to undistort (the full distorted frame)
+     * @param targetFrame to contain the undistorted data for the region (sized to the region, with (0, 0) at the region's top-left corner)
+     * @param region of the undistorted frame to produce
+     */
+    public void undistortRegion(Mat sourceFrame, Mat targetFrame, Rect region)
+    {
+        long startNanos = System.nanoTime();
+        Mat map1Region = this.map1.submat(region);
+        Mat map2Region = this.map2.submat(region);
+        Imgproc.remap(sourceFrame, targetFrame, map1Region, map2Region, Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, ImageUndistorter.BORDER_VALUE);
+        map1Region.release();
+        map2Region.release();
+        this.recordRemapTime(this.regionRemapTime, startNanos, "region");
+    }
+
+    /**
+     * Record how long a remap took, and occasionally log the recent remap times
+     * @param histogram for the mode of remap
+     * @param startNanos when the remap started
+     * @param mode of remap (for logging)
+     */
+    private void recordRemapTime(LatencyHistogram histogram, long startNanos, String mode)
+    {
+        histogram.record(System.nanoTime() - startNanos);
+        if (VisionConstants.DEBUG_FRAME_RATE &&
+            histogram.getTotalCount() >= VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL)
+        {
+            Logger.write(
+                String.format(
+                    "Recent undistort (%s, %s) remap time %s",
+                    this.fixedPoint ? "fixed-point" : "floating-point",
+                    mode,
+                    histogram.getSummary()));
+
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Build the string that identifies a set of remap tables in the cache
+     * @return cache key
+     */
+    private static String buildCacheKey(
+        double resolutionX,
+        double resolutionY,
+        double centerX,
+        double centerY,
+        double focalLengthX,
+        double focalLengthY,
+        double[] diffCoef,
+        boolean fixedPoint)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append(ImageUndistorter.CACHE_FILE_VERSION);
+        builder.append(fixedPoint ? ":fixed" : ":float");
+        builder.append(':').append(resolutionX).append('x').append(resolutionY);
+        builder.append(':').append(centerX).append(',').append(centerY);
+        builder.append(':').append(focalLengthX).append(',').append(focalLengthY);
+        for (double coef : diffCoef)
+        {
+            builder.append(':').append(coef);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Load remap tables from the cache
+     * @param cacheFile to load from
+     * @param cacheKey that the file must have been saved with
+     * @param map1 to load the first table into
+     * @param map2 to load the second table into
+     * @return true if the tables were loaded
+     */
+    private static boolean loadMaps(File cacheFile, String cacheKey, Mat map1, Mat map2)
+    {
+        if (!cacheFile.exists())
+        {
+            return false;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile))))
+        {
+            if (!cacheKey.equals(input.readUTF()))
+            {
+                return false;
+            }
+
+            ImageUndistorter.readMat(input, map1);
+            ImageUndistorter.readMat(input, map2);
+            if (VisionConstants.DEBUG)
+            {
+                Logger.write("Loaded undistortion maps from " + cacheFile.getAbsolutePath());
+            }
+
+            return true;
+        }
+        catch (IOException ex)
+        {
+            Logger.writeError("Couldn't load undistortion maps from " + cacheFile.getAbsolutePath() + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Save remap tables to the cache
+     * @param cacheFile to save to
+     * @param cacheKey identifying the tables
+     * @param map1 first table
+     * @param map2 second table
+     */
+    private static void saveMaps(File cacheFile, String cacheKey, Mat map1, Mat map2)
+    {
+        File directory = cacheFile.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs())
+        {
+            Logger.writeError("Couldn't create undistortion map cache directory " + directory.getAbsolutePath());
+            return;
+        }
+
+        // write to a temporary file first so that a partially-written file is never loaded
+        File temporaryFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile))))
+        {
+            output.writeUTF(cacheKey);
+            ImageUndistorter.writeMat(output, map1);
+            ImageUndistorter.writeMat(output, map2);
+        }
+        catch (IOException ex)
+        {
+            Logger.writeError("Couldn't save undistortion maps to " + cacheFile.getAbsolutePath() + ": " + ex.getMessage());
+            temporaryFile.delete();
+            return;
+        }
+
+        if (!temporaryFile.renameTo(cacheFile))
+        {
+            Logger.writeError("Couldn't save undistortion maps to " + cacheFile.getAbsolutePath());
+            temporaryFile.delete();
+        }
+    }
+
+    /**
+     * Write a 16-bit or 32-bit floating-point Mat to a stream
+     * @param output stream to write to
+     * @param mat to write
+     * @throws IOException
+     */
+    private static void writeMat(DataOutputStream output, Mat mat)
+        throws IOException
+    {
+        output.writeInt(mat.rows());
+        output.writeInt(mat.cols());
+        output.writeInt(mat.type());
+
+        int elements = (int)mat.total() * mat.channels();
+        ByteBuffer buffer;
+        int depth = CvType.depth(mat.type());
+        if (depth == CvType.CV_32F)
+        {
+            float[] data = new float[elements];
+            mat.get(0, 0, data);
+            buffer = ByteBuffer.allocate(elements * 4).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asFloatBuffer().put(data);
+        }
+        else if (depth == CvType.CV_16S || depth == CvType.CV_16U)
+        {
+            short[] data = new short[elements];
+            mat.get(0, 0, data);
+            buffer = ByteBuffer.allocate(elements * 2).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asShortBuffer().put(data);
+        }
+        else
+        {
+            throw new IOException("Unexpected remap table type " + CvType.typeToString(mat.type()));
+        }
+
+        output.write(buffer.array());
+    }
+
+    /**
+     * Read a Mat written by writeMat from a stream
+     * @param input stream to read from
+     * @param mat to read into
+     * @throws IOException
+     */
+    private static void readMat(DataInputStream input, Mat mat)
+        throws IOException
+    {
+        int rows = input.readInt();
+        int cols = input.readInt();
+        int type = input.readInt();
+        mat.create(rows, cols, type);
+
+        int elements = (int)mat.total() * mat.channels();
+        int depth = CvType.depth(type);
+        if (depth == CvType.CV_32F)
+        {
+            byte[] bytes = new byte[elements * 4];
+            input.readFully(bytes);
+            float[] data = new float[elements];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(data);
+            mat.put(0, 0, data);
+        }
+        else if (depth == CvType.CV_16S || depth == CvType.CV_16U)
+        {
+            byte[] bytes = new byte[elements * 2];
+            input.readFully(bytes);
+            short[] data = new short[elements];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(data);
+            mat.put(0, 0, data);
+        }
+        else
+        {
+            throw new IOException("Unexpected remap table type " + CvType.typeToString(type));
+        }
     }
 
     /**
@@ -68,7 +444,7 @@ public class ImageUndistorter
      * @param centerX
      * @return an intrinsic matrix
      */
-    private static Mat buildIntrinsic(double centerX, double centerY, double focalLengthX, double focalLengthY)
+    static Mat buildIntrinsic(double centerX, double centerY, double focalLengthX, double focalLengthY)
     {
         Mat intrinsicMatrix = new Mat(3, 3, CvType.CV_32FC1);
 
@@ -92,7 +468,7 @@ public class ImageUndistorter
      * @param diffCoef
      * @return a distortion matrix
      */
-    private static Mat buildDistortion(double[] diffCoef)
+    static Mat buildDistortion(double[] diffCoef)
     {
         Mat distortionCoeffs = new Mat(1, 5, CvType.CV_32FC1);
 
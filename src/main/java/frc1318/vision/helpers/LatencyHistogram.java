@@ -0,0 +1,155 @@
+package frc1318.vision.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram
+{
+    // values below 2^SUB_BUCKET_BITS are counted exactly, larger values are counted in log-linear buckets
+    // that each cover 1/16th of a power of two (so the error in any reported value is at most ~6%)
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = LatencyHistogram.SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT =
+        LatencyHistogram.SUB_BUCKET_COUNT + (63 - LatencyHistogram.SUB_BUCKET_BITS) * LatencyHistogram.SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount;
+    private final AtomicLong maxValue;
+
+    /**
+     * Initializes a new instance of the LatencyHistogram class.
+     * The histogram is safe to record into from one thread while another thread reads or logs it.
+     */
+    public LatencyHistogram()
+    {
+        this.counts = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+        this.totalCount = new AtomicLong();
+        this.maxValue = new AtomicLong();
+    }
+
+    /**
+     * Record a latency value
+     * @param nanos latency in nanoseconds (negative values are recorded as 0)
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0L)
+        {
+            nanos = 0L;
+        }
+
+        this.counts.incrementAndGet(LatencyHistogram.getBucketIndex(nanos));
+        this.totalCount.incrementAndGet();
+
+        long currentMax = this.maxValue.get();
+        while (nanos > currentMax && !this.maxValue.compareAndSet(currentMax, nanos))
+        {
+            currentMax = this.maxValue.get();
+        }
+    }
+
+    /**
+     * Gets the number of values that have been recorded
+     * @return count of recorded values
+     */
+    public long getTotalCount()
+    {
+        return this.totalCount.get();
+    }
+
+    /**
+     * Gets the largest value that has been recorded
+     * @return max value in nanoseconds
+     */
+    public long getMaxValue()
+    {
+        return this.maxValue.get();
+    }
+
+    /**
+     * Gets the (approximate) value at the provided percentile
+     * @param percentile between 0.0 and 100.0
+     * @return the upper bound of the bucket containing the percentile, in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = this.totalCount.get();
+        if (total == 0L)
+        {
+            return 0L;
+        }
+
+        long target = (long)Math.ceil((Math.min(Math.max(percentile, 0.0), 100.0) / 100.0) * total);
+        if (target < 1L)
+        {
+            target = 1L;
+        }
+
+        long seen = 0L;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++)
+        {
+            seen += this.counts.get(i);
+            if (seen >= target)
+            {
+                return Math.min(LatencyHistogram.getBucketUpperBound(i), this.maxValue.get());
+            }
+        }
+
+        return this.maxValue.get();
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset()
+    {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++)
+        {
+            this.counts.set(i, 0L);
+        }
+
+        this.totalCount.set(0L);
+        this.maxValue.set(0L);
+    }
+
+    /**
+     * Gets a summary of the histogram (in microseconds), suitable for logging
+     * @return summary string
+     */
+    public String getSummary()
+    {
+        return String.format(
+            "p50 %.1fus, p95 %.1fus, p99 %.1fus, max %.1fus (%d samples)",
+            this.getValueAtPercentile(50.0) / 1000.0,
+            this.getValueAtPercentile(95.0) / 1000.0,
+            this.getValueAtPercentile(99.0) / 1000.0,
+            this.getMaxValue() / 1000.0,
+            this.getTotalCount());
+    }
+
+    static int getBucketIndex(long value)
+    {
+        if (value < LatencyHistogram.SUB_BUCKET_COUNT)
+        {
+            return (int)value;
+        }
+
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (LatencyHistogram.SUB_BUCKET_BITS - 1);
+        int top = (int)(value >>> shift);
+        return LatencyHistogram.SUB_BUCKET_COUNT + (shift - 1) * LatencyHistogram.SUB_BUCKET_HALF_COUNT + (top - LatencyHistogram.SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long getBucketUpperBound(int index)
+    {
+        if (index < LatencyHistogram.SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+
+        int offset = index - LatencyHistogram.SUB_BUCKET_COUNT;
+        int shift = offset / LatencyHistogram.SUB_BUCKET_HALF_COUNT + 1;
+        long top = offset % LatencyHistogram.SUB_BUCKET_HALF_COUNT + LatencyHistogram.SUB_BUCKET_HALF_COUNT;
+        return ((top + 1L) << shift) - 1L;
+    }
+}
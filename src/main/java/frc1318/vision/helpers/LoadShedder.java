@@ -0,0 +1,159 @@
+package frc1318.vision.helpers;
+
+public class LoadShedder
+{
+    public enum Level
+    {
+        None,
+        RawStream,
+        DebugFrames,
+        DetectionResolution;
+
+        /**
+         * Checks whether a piece of work is shed at this level
+         * @param work the level that sheds the piece of work
+         * @return true if the work should be skipped
+         */
+        public boolean sheds(Level work)
+        {
+            return this.ordinal() >= work.ordinal();
+        }
+    }
+
+    private static final Level[] Levels = Level.values();
+
+    private final long maxLatencyNanos;
+    private final double recoverRatio;
+    private final int settleFrames;
+
+    private Level level;
+    private long lastCaptureTime;
+    private double averageIntervalNanos;
+    private double averageProcessingNanos;
+    private double averageLatencyNanos;
+    private int overloadedFrames;
+    private int underloadedFrames;
+
+    /**
+     * Initializes a new instance of the LoadShedder class.
+     * LoadShedder decides how much optional work a vision system should skip so that results are never older than a bound.
+     * Each frame it measures how long processing took, how often frames are captured, and how old the frame was when its
+     * result was ready.  With a most-recent-frame handoff, the next result can be up to one frame interval plus the
+     * processing time old, so whenever that (or the measured latency) exceeds the bound for a few frames in a row, we shed
+     * the next piece of work in priority order: the raw stream, then debug frames, then detection resolution.  Work is only
+     * restored once both are comfortably under the bound again for a few frames in a row, so that we don't flap between
+     * levels.
+     * @param maxLatencyNanos bound on the time from capturing a frame to its result being ready, in nanoseconds
+     * @param recoverRatio fraction of the bound that the latency must be under before restoring work
+     * @param settleFrames number of frames in a row that we must be over (or under) the bound for before changing level
+     */
+    public LoadShedder(long maxLatencyNanos, double recoverRatio, int settleFrames)
+    {
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.recoverRatio = recoverRatio;
+        this.settleFrames = settleFrames;
+
+        this.level = Level.None;
+        this.lastCaptureTime = 0L;
+        this.averageIntervalNanos = 0.0;
+        this.averageProcessingNanos = 0.0;
+        this.averageLatencyNanos = 0.0;
+        this.overloadedFrames = 0;
+        this.underloadedFrames = 0;
+    }
+
+    /**
+     * Gets the work that should currently be shed
+     * @return level (all of the work up to and including this level should be shed)
+     */
+    public Level getLevel()
+    {
+        return this.level;
+    }
+
+    /**
+     * Checks whether a piece of work should currently be shed
+     * @param work the level that sheds the piece of work
+     * @return true if the work should be skipped
+     */
+    public boolean shouldShed(Level work)
+    {
+        return this.level.sheds(work);
+    }
+
+    /**
+     * Gets the smoothed time between frames being captured
+     * @return frame interval, in nanoseconds
+     */
+    public double getAverageIntervalNanos()
+    {
+        return this.averageIntervalNanos;
+    }
+
+    /**
+     * Gets the smoothed time it takes to process a frame
+     * @return processing time, in nanoseconds
+     */
+    public double getAverageProcessingNanos()
+    {
+        return this.averageProcessingNanos;
+    }
+
+    /**
+     * Gets the smoothed time from a frame being captured until its result was ready
+     * @return result latency, in nanoseconds
+     */
+    public double getAverageLatencyNanos()
+    {
+        return this.averageLatencyNanos;
+    }
+
+    /**
+     * Update the shedder with how a frame was processed
+     * @param captureTime when the frame was captured, in nanoseconds (from System.nanoTime())
+     * @param processingNanos how long it took to process the frame, in nanoseconds
+     * @param resultTime when the frame's result was ready, in nanoseconds (from System.nanoTime())
+     * @return true if the level has changed
+     */
+    public boolean update(long captureTime, long processingNanos, long resultTime)
+    {
+        if (this.lastCaptureTime != 0L && captureTime > this.lastCaptureTime)
+        {
+            this.averageIntervalNanos = AverageHelper.smooth(this.averageIntervalNanos, captureTime - this.lastCaptureTime);
+        }
+
+        this.lastCaptureTime = captureTime;
+        this.averageProcessingNanos = AverageHelper.smooth(this.averageProcessingNanos, processingNanos);
+        this.averageLatencyNanos = AverageHelper.smooth(this.averageLatencyNanos, resultTime - captureTime);
+
+        // the worst case is a frame captured just after we started processing the previous one
+        double expectedNanos = Math.max(this.averageLatencyNanos, this.averageIntervalNanos + this.averageProcessingNanos);
+        if (expectedNanos > this.maxLatencyNanos)
+        {
+            this.underloadedFrames = 0;
+            if (++this.overloadedFrames >= this.settleFrames && this.level.ordinal() < LoadShedder.Levels.length - 1)
+            {
+                this.level = LoadShedder.Levels[this.level.ordinal() + 1];
+                this.overloadedFrames = 0;
+                return true;
+            }
+        }
+        else if (expectedNanos < this.recoverRatio * this.maxLatencyNanos)
+        {
+            this.overloadedFrames = 0;
+            if (++this.underloadedFrames >= this.settleFrames && this.level != Level.None)
+            {
+                this.level = LoadShedder.Levels[this.level.ordinal() - 1];
+                this.underloadedFrames = 0;
+                return true;
+            }
+        }
+        else
+        {
+            this.overloadedFrames = 0;
+            this.underloadedFrames = 0;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,259 @@
+package frc1318.vision.helpers;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.IHSVFilter;
+
+public class LookupTableHSVFilter implements IHSVFilter
+{
+    public enum Layout
+    {
+        BGR, // 3 interleaved channels (CV_8UC3)
+        YUYV, // 4:2:2, each pair of pixels is Y0 U Y1 V (CV_8UC2)
+        I420; // 4:2:0 planes, the full resolution Y plane followed by the quarter resolution U and V planes (CV_8UC1, 3/2 as many rows)
+    }
+
+    private final Layout layout;
+    private final int bitsPerChannel;
+    private final int shift;
+
+    // one bit per quantized color, set if the color is within the HSV bounds
+    private final long[] table;
+
+    private byte[] sourceBytes;
+    private byte[] maskBytes;
+
+    /**
+     * Initializes a new instance of the LookupTableHSVFilter class.
+     * @param lowerBound of HSV to filter
+     * @param upperBound of HSV to filter
+     * @param bitsPerChannel how many bits of each color channel to look up (8 matches HSVFilter exactly)
+     * @param layout of the frames to filter
+     */
+    public LookupTableHSVFilter(Scalar lowerBound, Scalar upperBound, int bitsPerChannel, Layout layout)
+    {
+        this(lowerBound, upperBound, null, null, bitsPerChannel, layout);
+    }
+
+    /**
+     * Initializes a new instance of the LookupTableHSVFilter class.
+     * LookupTableHSVFilter converts every possible color (quantized to the given number of bits per channel) to HSV once, up
+     * front, and records in a table whether it is within the bounds.  Filtering a frame is then a single pass looking up each
+     * pixel's color in the table, without converting the frame to HSV or thresholding it afterwards.  With 8 bits per channel
+     * the table (2MB) gives exactly the same mask as HSVFilter, while fewer bits give a much smaller table that only differs
+     * for colors close to the bounds.  For YUYV frames the table is built from the colors that OpenCV's YUYV to BGR conversion
+     * gives, so the mask matches converting the frame to BGR and then using HSVFilter.  I420 frames use the same table (OpenCV
+     * converts both with the same coefficients, without interpolating the chroma), looking up each quarter resolution chroma
+     * sample once for the 2x2 block of full resolution luma that shares it.
+     * @param lowerBound1 of the first range of HSV to filter
+     * @param upperBound1 of the first range of HSV to filter
+     * @param lowerBound2 of the second range of HSV to filter (or null, for only one range)
+     * @param upperBound2 of the second range of HSV to filter (or null, for only one range)
+     * @param bitsPerChannel how many bits of each color channel to look up (8 matches HSVFilter exactly)
+     * @param layout of the frames to filter
+     */
+    public LookupTableHSVFilter(Scalar lowerBound1, Scalar upperBound1, Scalar lowerBound2, Scalar upperBound2, int bitsPerChannel, Layout layout)
+    {
+        if (bitsPerChannel < 1 || bitsPerChannel > 8)
+        {
+            throw new IllegalArgumentException("bitsPerChannel must be between 1 and 8");
+        }
+
+        this.layout = layout;
+        this.bitsPerChannel = bitsPerChannel;
+        this.shift = 8 - bitsPerChannel;
+        this.table = new long[Math.max(1, (1 << (3 * bitsPerChannel)) / 64)];
+
+        this.sourceBytes = new byte[0];
+        this.maskBytes = new byte[0];
+
+        this.buildTable(lowerBound1, upperBound1, lowerBound2, upperBound2);
+    }
+
+    /**
+     * Gets the layout of the frames that the filter expects
+     * @return frame layout
+     */
+    @Override
+    public Layout getLayout()
+    {
+        return this.layout;
+    }
+
+    /**
+     * Filter the provided frame for HSVs within the provider bounds.
+     * @param sourceFrame to filter (in the filter's layout)
+     * @param targetFrame to hold the result of the filtering
+     */
+    @Override
+    public void filterHSV(Mat sourceFrame, Mat targetFrame)
+    {
+        int rows = this.layout == Layout.I420 ? sourceFrame.rows() * 2 / 3 : sourceFrame.rows();
+        int cols = sourceFrame.cols();
+        int pixelCount = rows * cols;
+        int sourceCount = sourceFrame.rows() * cols * sourceFrame.channels();
+        if (this.sourceBytes.length < sourceCount)
+        {
+            this.sourceBytes = new byte[sourceCount];
+        }
+
+        if (this.maskBytes.length < pixelCount)
+        {
+            this.maskBytes = new byte[pixelCount];
+        }
+
+        sourceFrame.get(0, 0, this.sourceBytes);
+
+        byte[] source = this.sourceBytes;
+        byte[] mask = this.maskBytes;
+        long[] table = this.table;
+        int shift = this.shift;
+        int bits = this.bitsPerChannel;
+        if (this.layout == Layout.I420)
+        {
+            // each 2x2 block of pixels shares a U and V from the planes after the Y plane
+            int chromaCols = cols / 2;
+            int uStart = pixelCount;
+            int vStart = uStart + (rows / 2) * chromaCols;
+            for (int row = 0; row + 1 < rows; row += 2)
+            {
+                int chroma = (row / 2) * chromaCols;
+                for (int pixel = row * cols, end = pixel + 2 * chromaCols; pixel < end; pixel += 2, chroma++)
+                {
+                    int uv = (((source[uStart + chroma] & 0xFF) >>> shift) << bits) | ((source[vStart + chroma] & 0xFF) >>> shift);
+                    int color00 = (((source[pixel] & 0xFF) >>> shift) << (2 * bits)) | uv;
+                    int color01 = (((source[pixel + 1] & 0xFF) >>> shift) << (2 * bits)) | uv;
+                    int color10 = (((source[pixel + cols] & 0xFF) >>> shift) << (2 * bits)) | uv;
+                    int color11 = (((source[pixel + cols + 1] & 0xFF) >>> shift) << (2 * bits)) | uv;
+                    mask[pixel] = (byte)-(int)((table[color00 >>> 6] >>> color00) & 1L);
+                    mask[pixel + 1] = (byte)-(int)((table[color01 >>> 6] >>> color01) & 1L);
+                    mask[pixel + cols] = (byte)-(int)((table[color10 >>> 6] >>> color10) & 1L);
+                    mask[pixel + cols + 1] = (byte)-(int)((table[color11 >>> 6] >>> color11) & 1L);
+                }
+            }
+        }
+        else if (this.layout == Layout.YUYV)
+        {
+            // each pair of pixels is Y0 U Y1 V, sharing U and V
+            for (int pixel = 0, index = 0; pixel + 1 < pixelCount; pixel += 2, index += 4)
+            {
+                int uv = (((source[index + 1] & 0xFF) >>> shift) << bits) | ((source[index + 3] & 0xFF) >>> shift);
+                int color0 = (((source[index] & 0xFF) >>> shift) << (2 * bits)) | uv;
+                int color1 = (((source[index + 2] & 0xFF) >>> shift) << (2 * bits)) | uv;
+                mask[pixel] = (byte)-(int)((table[color0 >>> 6] >>> color0) & 1L);
+                mask[pixel + 1] = (byte)-(int)((table[color1 >>> 6] >>> color1) & 1L);
+            }
+        }
+        else
+        {
+            for (int pixel = 0, index = 0; pixel < pixelCount; pixel++, index += 3)
+            {
+                int color =
+                    (((source[index] & 0xFF) >>> shift) << (2 * bits)) |
+                    (((source[index + 1] & 0xFF) >>> shift) << bits) |
+                    ((source[index + 2] & 0xFF) >>> shift);
+                mask[pixel] = (byte)-(int)((table[color >>> 6] >>> color) & 1L);
+            }
+        }
+
+        targetFrame.create(rows, cols, CvType.CV_8UC1);
+        targetFrame.put(0, 0, mask);
+    }
+
+    /**
+     * Build the lookup table by converting every quantized color to HSV and checking it against the bounds
+     * @param lowerBound1 of the first range of HSV to filter
+     * @param upperBound1 of the first range of HSV to filter
+     * @param lowerBound2 of the second range of HSV to filter (or null)
+     * @param upperBound2 of the second range of HSV to filter (or null)
+     */
+    private void buildTable(Scalar lowerBound1, Scalar upperBound1, Scalar lowerBound2, Scalar upperBound2)
+    {
+        int levels = 1 << this.bitsPerChannel;
+        int half = this.shift > 0 ? 1 << (this.shift - 1) : 0; // use the middle of each quantized range
+        boolean yuv = this.layout != Layout.BGR; // YUYV and I420 are converted the same way, so build both from YUYV
+
+        // one plane of the color cube at a time (first channel fixed), as a levels x levels image
+        int cols = yuv ? 2 * levels : levels;
+        Mat plane = new Mat(levels, cols, yuv ? CvType.CV_8UC2 : CvType.CV_8UC3);
+        Mat bgr = new Mat();
+        Mat hsv = new Mat();
+        Mat inRange = new Mat();
+        Mat inRangeTwo = lowerBound2 != null ? new Mat() : null;
+        byte[] planeBytes = new byte[levels * levels * (yuv ? 4 : 3)];
+        byte[] inRangeBytes = new byte[levels * cols];
+        for (int first = 0; first < levels; first++)
+        {
+            byte firstValue = (byte)((first << this.shift) + half);
+            for (int second = 0; second < levels; second++)
+            {
+                byte secondValue = (byte)((second << this.shift) + half);
+                for (int third = 0; third < levels; third++)
+                {
+                    byte thirdValue = (byte)((third << this.shift) + half);
+                    if (yuv)
+                    {
+                        // a pair of pixels with the same Y, so that they both have this color
+                        int index = (second * levels + third) * 4;
+                        planeBytes[index] = firstValue;
+                        planeBytes[index + 1] = secondValue;
+                        planeBytes[index + 2] = firstValue;
+                        planeBytes[index + 3] = thirdValue;
+                    }
+                    else
+                    {
+                        int index = (second * levels + third) * 3;
+                        planeBytes[index] = firstValue;
+                        planeBytes[index + 1] = secondValue;
+                        planeBytes[index + 2] = thirdValue;
+                    }
+                }
+            }
+
+            plane.put(0, 0, planeBytes);
+            if (yuv)
+            {
+                Imgproc.cvtColor(plane, bgr, Imgproc.COLOR_YUV2BGR_YUYV);
+                Imgproc.cvtColor(bgr, hsv, Imgproc.COLOR_BGR2HSV);
+            }
+            else
+            {
+                Imgproc.cvtColor(plane, hsv, Imgproc.COLOR_BGR2HSV);
+            }
+
+            Core.inRange(hsv, lowerBound1, upperBound1, inRange);
+            if (inRangeTwo != null)
+            {
+                Core.inRange(hsv, lowerBound2, upperBound2, inRangeTwo);
+                Core.bitwise_or(inRange, inRangeTwo, inRange);
+            }
+
+            inRange.get(0, 0, inRangeBytes);
+            for (int second = 0; second < levels; second++)
+            {
+                for (int third = 0; third < levels; third++)
+                {
+                    int pixel = second * cols + (yuv ? 2 * third : third);
+                    if (inRangeBytes[pixel] != 0)
+                    {
+                        int color = (first << (2 * this.bitsPerChannel)) | (second << this.bitsPerChannel) | third;
+                        this.table[color >>> 6] |= 1L << color;
+                    }
+                }
+            }
+        }
+
+        plane.release();
+        bgr.release();
+        hsv.release();
+        inRange.release();
+        if (inRangeTwo != null)
+        {
+            inRangeTwo.release();
+        }
+    }
+}
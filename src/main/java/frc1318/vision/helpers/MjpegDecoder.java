@@ -0,0 +1,100 @@
+package frc1318.vision.helpers;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+public class MjpegDecoder
+{
+    public enum Mode
+    {
+        Color(Imgcodecs.IMREAD_COLOR, CvType.CV_8UC3),
+        Grayscale(Imgcodecs.IMREAD_GRAYSCALE, CvType.CV_8UC1);
+
+        private final int flags;
+        private final int type;
+
+        private Mode(int flags, int type)
+        {
+            this.flags = flags;
+            this.type = type;
+        }
+
+        /**
+         * Gets the flags to pass to imdecode for this mode
+         * @return imread flags
+         */
+        public int getFlags()
+        {
+            return this.flags;
+        }
+
+        /**
+         * Gets the type of the decoded frames
+         * @return OpenCV mat type
+         */
+        public int getType()
+        {
+            return this.type;
+        }
+
+        /**
+         * Checks whether the decoded frames are single-channel grayscale
+         * @return true if grayscale
+         */
+        public boolean isGrayscale()
+        {
+            return this.type == CvType.CV_8UC1;
+        }
+    }
+
+    private final Mode mode;
+
+    /**
+     * Initializes a new instance of the MjpegDecoder class.
+     * MjpegDecoder decodes the raw bytes of an MJPEG frame straight into the form that the pipeline needs.  Decoding to
+     * grayscale only decodes the luma (Y) component, skipping chroma upsampling and color conversion entirely.
+     * @param mode how to decode the frames
+     */
+    public MjpegDecoder(Mode mode)
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * Gets how frames are decoded
+     * @return decode mode
+     */
+    public Mode getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * Decode a frame
+     * @param jpegFrame raw bytes of the MJPEG frame (a single row or column of bytes)
+     * @param targetFrame to hold the decoded frame (its buffer is reused when it is already the right size and type)
+     * @return true if the frame was decoded, false if the bytes weren't a valid JPEG
+     */
+    public boolean decode(Mat jpegFrame, Mat targetFrame)
+    {
+        if (jpegFrame.empty())
+        {
+            return false;
+        }
+
+        // the Java bindings only offer the allocating form of imdecode (there is no overload taking a destination), so decode
+        // into a temporary and copy it into the target: the copy is a single memcpy, far cheaper than the decode itself, and
+        // keeps the frame in the caller's pooled buffer rather than handing out a fresh allocation for every frame
+        Mat decodedFrame = Imgcodecs.imdecode(jpegFrame, this.mode.getFlags());
+        if (decodedFrame.empty())
+        {
+            decodedFrame.release();
+            return false;
+        }
+
+        decodedFrame.copyTo(targetFrame);
+        decodedFrame.release();
+        return true;
+    }
+}
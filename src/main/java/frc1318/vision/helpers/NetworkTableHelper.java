@@ -1,7 +1,10 @@
 package frc1318.vision.helpers;
 
+import java.util.OptionalLong;
+
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTablesJNI;
 import frc1318.vision.VisionConstants;
 
 public class NetworkTableHelper
@@ -69,6 +72,25 @@ public class NetworkTableHelper
         NetworkTableHelper.getInstance().flush();
     }
 
+    /**
+     * Convert a capture time into the NetworkTables server's time base, so that the robot can match up when a frame was captured
+     * with its own (latency-compensated) pose history
+     * @param captureTime when the frame was captured, in nanoseconds (from System.nanoTime())
+     * @return the capture time in microseconds of server time, or MAGIC_NULL_VALUE if we haven't synchronized with the server
+     */
+    public static double getServerCaptureTime(long captureTime)
+    {
+        OptionalLong serverTimeOffset = NetworkTableHelper.getInstance().getServerTimeOffset();
+        if (!serverTimeOffset.isPresent())
+        {
+            return VisionConstants.MAGIC_NULL_VALUE;
+        }
+
+        // System.nanoTime() and NetworkTables' local clock aren't guaranteed to share an epoch, so carry over the age of the frame instead
+        long ageMicros = (System.nanoTime() - captureTime) / 1000L;
+        return NetworkTablesJNI.now() - ageMicros + serverTimeOffset.getAsLong();
+    }
+
     public static boolean isConnected()
     {
         return NetworkTableHelper.getInstance().isConnected();
@@ -0,0 +1,265 @@
+package frc1318.vision.helpers;
+
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+public class RegionTracker
+{
+    private final int maxTags;
+    private final int fullSearchInterval;
+    private final double paddingRatio;
+    private final int minPadding;
+    private final double maxRegionFraction;
+
+    // the bounds (in full-frame coordinates) and per-frame velocity of each tag found in the most recent frame
+    private int trackedCount;
+    private final int[] trackedIds;
+    private final double[] trackedBounds;
+    private final double[] trackedVelocity;
+
+    // the tags being found in the current frame
+    private int updateCount;
+    private final int[] updateIds;
+    private final double[] updateBounds;
+    private final double[] updateVelocity;
+
+    private int framesSinceFullSearch;
+    private boolean lost;
+
+    private long regionHits;
+    private long regionMisses;
+    private long fullSearches;
+
+    /**
+     * Initializes a new instance of the RegionTracker class.
+     * RegionTracker predicts where the tags will be in the next frame from where they were (and how fast they were moving) in
+     * the previous frames, so that tag detection only needs to search a padded region around them instead of the whole frame.
+     * A full-frame search is still needed periodically (to find new tags) and whenever a tracked tag is lost.
+     * @param maxTags maximum number of tags to track at once
+     * @param fullSearchInterval number of frames between full-frame searches while we are tracking tags
+     * @param paddingRatio how much to pad each tag's predicted bounds by, as a fraction of the tag's size
+     * @param minPadding minimum number of pixels to pad each tag's predicted bounds by
+     * @param maxRegionFraction largest fraction of the frame worth searching as a region (above this we search the full frame)
+     */
+    public RegionTracker(int maxTags, int fullSearchInterval, double paddingRatio, int minPadding, double maxRegionFraction)
+    {
+        this.maxTags = maxTags;
+        this.fullSearchInterval = fullSearchInterval;
+        this.paddingRatio = paddingRatio;
+        this.minPadding = minPadding;
+        this.maxRegionFraction = maxRegionFraction;
+
+        this.trackedCount = 0;
+        this.trackedIds = new int[maxTags];
+        this.trackedBounds = new double[4 * maxTags];
+        this.trackedVelocity = new double[2 * maxTags];
+
+        this.updateCount = 0;
+        this.updateIds = new int[maxTags];
+        this.updateBounds = new double[4 * maxTags];
+        this.updateVelocity = new double[2 * maxTags];
+
+        this.framesSinceFullSearch = 0;
+        this.lost = false;
+
+        this.regionHits = 0L;
+        this.regionMisses = 0L;
+        this.fullSearches = 0L;
+    }
+
+    /**
+     * Predict the region of the next frame that the tracked tags will be in
+     * @param frameWidth width of the full frame
+     * @param frameHeight height of the full frame
+     * @param region to hold the predicted region
+     * @return true if the region should be searched, or false if the full frame should be searched
+     */
+    public boolean predictRegion(int frameWidth, int frameHeight, Rect region)
+    {
+        if (this.trackedCount == 0 ||
+            this.lost ||
+            this.framesSinceFullSearch >= this.fullSearchInterval)
+        {
+            return false;
+        }
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < this.trackedCount; i++)
+        {
+            double tagMinX = this.trackedBounds[4 * i];
+            double tagMinY = this.trackedBounds[4 * i + 1];
+            double tagMaxX = this.trackedBounds[4 * i + 2];
+            double tagMaxY = this.trackedBounds[4 * i + 3];
+            double velocityX = this.trackedVelocity[2 * i];
+            double velocityY = this.trackedVelocity[2 * i + 1];
+
+            // pad by more when the tag is large (close) or moving quickly, as it can move further between frames
+            double padding = Math.max(
+                this.minPadding,
+                this.paddingRatio * Math.max(tagMaxX - tagMinX, tagMaxY - tagMinY) + Math.max(Math.abs(velocityX), Math.abs(velocityY)));
+
+            minX = Math.min(minX, tagMinX + velocityX - padding);
+            minY = Math.min(minY, tagMinY + velocityY - padding);
+            maxX = Math.max(maxX, tagMaxX + velocityX + padding);
+            maxY = Math.max(maxY, tagMaxY + velocityY + padding);
+        }
+
+        int left = Math.max(0, (int)Math.floor(minX));
+        int top = Math.max(0, (int)Math.floor(minY));
+        int right = Math.min(frameWidth, (int)Math.ceil(maxX));
+        int bottom = Math.min(frameHeight, (int)Math.ceil(maxY));
+        if (right <= left ||
+            bottom <= top ||
+            (double)(right - left) * (bottom - top) > this.maxRegionFraction * frameWidth * frameHeight)
+        {
+            // the tags have left the frame, or are spread over too much of it to be worth searching a region
+            return false;
+        }
+
+        region.x = left;
+        region.y = top;
+        region.width = right - left;
+        region.height = bottom - top;
+        return true;
+    }
+
+    /**
+     * Start recording the tags found in a frame
+     */
+    public void beginUpdate()
+    {
+        this.updateCount = 0;
+    }
+
+    /**
+     * Record a tag found in the frame
+     * @param id of the tag
+     * @param vertices of the tag, relative to the searched region
+     * @param regionX x coordinate of the searched region within the full frame
+     * @param regionY y coordinate of the searched region within the full frame
+     */
+    public void addTag(int id, Point[] vertices, int regionX, int regionY)
+    {
+        if (this.updateCount >= this.maxTags || vertices == null || vertices.length == 0)
+        {
+            return;
+        }
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (Point vertex : vertices)
+        {
+            minX = Math.min(minX, vertex.x);
+            minY = Math.min(minY, vertex.y);
+            maxX = Math.max(maxX, vertex.x);
+            maxY = Math.max(maxY, vertex.y);
+        }
+
+        int index = this.updateCount++;
+        this.updateIds[index] = id;
+        this.updateBounds[4 * index] = minX + regionX;
+        this.updateBounds[4 * index + 1] = minY + regionY;
+        this.updateBounds[4 * index + 2] = maxX + regionX;
+        this.updateBounds[4 * index + 3] = maxY + regionY;
+
+        // velocity of the tag's center since the previous frame, if we were tracking it
+        this.updateVelocity[2 * index] = 0.0;
+        this.updateVelocity[2 * index + 1] = 0.0;
+        for (int i = 0; i < this.trackedCount; i++)
+        {
+            if (this.trackedIds[i] == id)
+            {
+                this.updateVelocity[2 * index] =
+                    (this.updateBounds[4 * index] + this.updateBounds[4 * index + 2] - this.trackedBounds[4 * i] - this.trackedBounds[4 * i + 2]) / 2.0;
+                this.updateVelocity[2 * index + 1] =
+                    (this.updateBounds[4 * index + 1] + this.updateBounds[4 * index + 3] - this.trackedBounds[4 * i + 1] - this.trackedBounds[4 * i + 3]) / 2.0;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Finish recording the tags found in a frame, and start tracking them
+     * @param searchedRegion true if a region was searched, false if the full frame was searched
+     */
+    public void endUpdate(boolean searchedRegion)
+    {
+        if (searchedRegion)
+        {
+            this.framesSinceFullSearch++;
+
+            // if we didn't find every tag that we were tracking, it may have moved out of the region
+            this.lost = this.updateCount < this.trackedCount;
+            if (this.lost)
+            {
+                this.regionMisses++;
+            }
+            else
+            {
+                this.regionHits++;
+            }
+
+            if (this.updateCount == 0)
+            {
+                // keep the previous tags, so the next full-frame search still counts as a fallback for them
+                return;
+            }
+        }
+        else
+        {
+            this.framesSinceFullSearch = 0;
+            this.lost = false;
+            if (this.trackedCount > 0)
+            {
+                this.fullSearches++;
+            }
+        }
+
+        System.arraycopy(this.updateIds, 0, this.trackedIds, 0, this.updateCount);
+        System.arraycopy(this.updateBounds, 0, this.trackedBounds, 0, 4 * this.updateCount);
+        System.arraycopy(this.updateVelocity, 0, this.trackedVelocity, 0, 2 * this.updateCount);
+        this.trackedCount = this.updateCount;
+    }
+
+    /**
+     * Gets the number of region searches that found all of the tracked tags
+     * @return count of region hits
+     */
+    public long getRegionHits()
+    {
+        return this.regionHits;
+    }
+
+    /**
+     * Gets the number of region searches that lost at least one of the tracked tags
+     * @return count of region misses
+     */
+    public long getRegionMisses()
+    {
+        return this.regionMisses;
+    }
+
+    /**
+     * Gets the number of full-frame searches made while we were tracking tags (periodically, or after losing a tag)
+     * @return count of full-frame fallbacks
+     */
+    public long getFullSearches()
+    {
+        return this.fullSearches;
+    }
+
+    /**
+     * Clear the hit/miss/fallback counts
+     */
+    public void resetCounts()
+    {
+        this.regionHits = 0L;
+        this.regionMisses = 0L;
+        this.fullSearches = 0L;
+    }
+}
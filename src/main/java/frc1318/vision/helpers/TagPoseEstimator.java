@@ -0,0 +1,497 @@
+package frc1318.vision.helpers;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.*;
+
+public class TagPoseEstimator
+{
+    // rotation from OpenCV's camera/tag frame (x right, y down, z forward) to our robot frame (x forward, y left, z up)
+    private static final double[] CV_TO_ROBOT = new double[] { 0.0, 0.0, 1.0, -1.0, 0.0, 0.0, 0.0, -1.0, 0.0 };
+
+    private final double cameraCenterX;
+    private final double cameraCenterY;
+    private final double cameraFocalX;
+    private final double cameraFocalY;
+
+    private final double[] objectPoints;
+    private final double[] cameraRotation;
+    private final double[] cameraTranslation;
+
+    private final Mat intrinsicMatrix;
+    private final Mat distortionCoeffs;
+    private final MatOfPoint3f tagCorners;
+    private final MatOfPoint2f distortedCorners;
+    private final MatOfPoint2f undistortedCorners;
+    private final MatOfDouble noDistortion;
+    private final Mat noRectification;
+    private final Mat rotationVector;
+    private final Mat translationVector;
+    private final Mat rotationMatrix;
+
+    private final float[] cornerValues;
+    private final double[] cvRotation;
+    private final double[] cvTranslation;
+    private final double[] rotation;
+    private final double[] translation;
+    private final double[] tagRotation;
+    private final double[] scratch;
+
+    // corners of all of the tags for a multi-tag solve, grown as needed to fit the most tags we have seen at once
+    private final MatOfPoint3f fieldCorners;
+    private final MatOfPoint2f multiDistortedCorners;
+    private final MatOfPoint2f multiUndistortedCorners;
+    private double[] fieldPoints;
+    private float[] fieldPointValues;
+    private float[] multiCornerValues;
+    private int multiTagCapacity;
+
+    private double regionX;
+    private double regionY;
+    private double error;
+
+    /**
+     * Initializes a new instance of the TagPoseEstimator class.
+     * The estimator undistorts only the four detected corners of a tag (instead of the whole frame) using the camera model,
+     * and then solves for the pose of the tag from the undistorted corners.  The poses use the same conventions as the
+     * native AprilTagDetection.estimateTagPose and estimateAbsolutePose functions, so that the calculators can use either.
+     * @param tagSize in inches
+     * @param cameraCenterX center point of the image frame (x component)
+     * @param cameraCenterY center point of the image frame (y component)
+     * @param cameraFocalX focal length along the x axis
+     * @param cameraFocalY focal length along the y axis
+     * @param diffCoef distortion coefficients of the camera
+     * @param cameraRoll mounting twist along the x axis (front to back, front positive) of the camera, in degrees
+     * @param cameraPitch mounting tilt along the y axis (left to right, left positive) of the camera, in degrees
+     * @param cameraYaw mounting angle along the z axis (up to down, up positive) of the camera, in degrees
+     * @param cameraXOffset mounting distance of the camera along the x axis (forward positive)
+     * @param cameraYOffset mounting distance of the camera along the y axis (left positive)
+     * @param cameraZOffset mounting distance of the camera along the z axis (up positive)
+     */
+    public TagPoseEstimator(
+        double tagSize,
+        double cameraCenterX,
+        double cameraCenterY,
+        double cameraFocalX,
+        double cameraFocalY,
+        double[] diffCoef,
+        double cameraRoll,
+        double cameraPitch,
+        double cameraYaw,
+        double cameraXOffset,
+        double cameraYOffset,
+        double cameraZOffset)
+    {
+        this.cameraCenterX = cameraCenterX;
+        this.cameraCenterY = cameraCenterY;
+        this.cameraFocalX = cameraFocalX;
+        this.cameraFocalY = cameraFocalY;
+
+        // corners of the tag in the tag's frame, in the same order as the detected vertices (as used by the apriltag library)
+        double halfSize = tagSize / 2.0;
+        this.objectPoints = new double[]
+        {
+            -halfSize, halfSize, 0.0,
+            halfSize, halfSize, 0.0,
+            halfSize, -halfSize, 0.0,
+            -halfSize, -halfSize, 0.0,
+        };
+
+        this.cameraRotation = new double[9];
+        TagPoseEstimator.rotationFromYawPitchRoll(cameraYaw, cameraPitch, cameraRoll, this.cameraRotation);
+        this.cameraTranslation = new double[] { cameraXOffset, cameraYOffset, cameraZOffset };
+
+        this.intrinsicMatrix = ImageUndistorter.buildIntrinsic(cameraCenterX, cameraCenterY, cameraFocalX, cameraFocalY);
+        this.distortionCoeffs = ImageUndistorter.buildDistortion(diffCoef);
+        this.tagCorners = new MatOfPoint3f(
+            new Point3(this.objectPoints[0], this.objectPoints[1], this.objectPoints[2]),
+            new Point3(this.objectPoints[3], this.objectPoints[4], this.objectPoints[5]),
+            new Point3(this.objectPoints[6], this.objectPoints[7], this.objectPoints[8]),
+            new Point3(this.objectPoints[9], this.objectPoints[10], this.objectPoints[11]));
+        this.distortedCorners = new MatOfPoint2f();
+        this.distortedCorners.alloc(4);
+        this.undistortedCorners = new MatOfPoint2f();
+        this.noDistortion = new MatOfDouble();
+        this.noRectification = new Mat();
+        this.rotationVector = new Mat();
+        this.translationVector = new Mat();
+        this.rotationMatrix = new Mat();
+
+        this.cornerValues = new float[8];
+        this.cvRotation = new double[9];
+        this.cvTranslation = new double[3];
+        this.rotation = new double[9];
+        this.translation = new double[3];
+        this.tagRotation = new double[9];
+        this.scratch = new double[9];
+
+        this.fieldCorners = new MatOfPoint3f();
+        this.multiDistortedCorners = new MatOfPoint2f();
+        this.multiUndistortedCorners = new MatOfPoint2f();
+        this.fieldPoints = null;
+        this.fieldPointValues = null;
+        this.multiCornerValues = null;
+        this.multiTagCapacity = 0;
+
+        this.regionX = 0.0;
+        this.regionY = 0.0;
+        this.error = Double.NaN;
+    }
+
+    /**
+     * Sets the top-left corner of the region of the frame that the following vertices were detected in
+     * @param regionX x coordinate of the region within the full frame
+     * @param regionY y coordinate of the region within the full frame
+     */
+    public void setRegionOffset(double regionX, double regionY)
+    {
+        this.regionX = regionX;
+        this.regionY = regionY;
+    }
+
+    /**
+     * Estimate the pose of the tag relative to the robot
+     * @param vertices the four detected (distorted) corners of the tag
+     * @param offset to fill in with the x, y and z offsets of the tag from the robot
+     * @param ypr to fill in with the yaw, pitch and roll of the tag relative to the robot, in degrees
+     * @return true if a pose was found
+     */
+    public boolean estimateTagPose(Point[] vertices, double[] offset, double[] ypr)
+    {
+        if (!this.solveTagRelativeToRobot(vertices))
+        {
+            return false;
+        }
+
+        offset[0] = this.translation[0];
+        offset[1] = this.translation[1];
+        offset[2] = this.translation[2];
+        TagPoseEstimator.yawPitchRollFromRotation(this.rotation, ypr);
+        return true;
+    }
+
+    /**
+     * Estimate the pose of the robot relative to the field
+     * @param vertices the four detected (distorted) corners of the tag
+     * @param tagPose the pose of the tag relative to the field (yaw, pitch, roll, x, y, z)
+     * @param offset to fill in with the x, y and z position of the robot on the field
+     * @param ypr to fill in with the yaw, pitch and roll of the robot on the field, in degrees
+     * @return true if a pose was found
+     */
+    public boolean estimateAbsolutePose(Point[] vertices, double[] tagPose, double[] offset, double[] ypr)
+    {
+        if (!this.solveTagRelativeToRobot(vertices))
+        {
+            return false;
+        }
+
+        // robot relative to field = (tag relative to field) * inverse(tag relative to robot)
+        TagPoseEstimator.rotationFromYawPitchRoll(tagPose[0], tagPose[1], tagPose[2], this.tagRotation);
+        TagPoseEstimator.multiplyTransposed(this.tagRotation, this.rotation, this.scratch);
+
+        for (int i = 0; i < 3; i++)
+        {
+            offset[i] = tagPose[3 + i]
+                - (this.scratch[3 * i] * this.translation[0] + this.scratch[3 * i + 1] * this.translation[1] + this.scratch[3 * i + 2] * this.translation[2]);
+        }
+
+        TagPoseEstimator.yawPitchRollFromRotation(this.scratch, ypr);
+        return true;
+    }
+
+    /**
+     * Estimate the pose of the robot relative to the field from all of the visible tags at once, solving a single PnP problem
+     * over all of their corners (which is more stable than using any one of the tags on its own)
+     * @param vertices the four detected (distorted) corners of each tag
+     * @param tagPoses the pose of each tag relative to the field (yaw, pitch, roll, x, y, z)
+     * @param tagCount the number of tags to use from vertices and tagPoses
+     * @param offset to fill in with the x, y and z position of the robot on the field
+     * @param ypr to fill in with the yaw, pitch and roll of the robot on the field, in degrees
+     * @return true if a pose was found
+     */
+    public boolean estimateMultiTagAbsolutePose(Point[][] vertices, double[][] tagPoses, int tagCount, double[] offset, double[] ypr)
+    {
+        this.error = Double.NaN;
+        if (tagCount < 1)
+        {
+            return false;
+        }
+
+        this.ensureMultiTagCapacity(tagCount);
+
+        int cornerCount = 4 * tagCount;
+        for (int t = 0; t < tagCount; t++)
+        {
+            Point[] tagVertices = vertices[t];
+            double[] tagPose = tagPoses[t];
+            if (tagVertices == null || tagVertices.length != 4 || tagPose == null)
+            {
+                return false;
+            }
+
+            // corners of the tag relative to the field = (tag relative to field) * (corner in the tag's frame, converted from OpenCV's)
+            TagPoseEstimator.rotationFromYawPitchRoll(tagPose[0], tagPose[1], tagPose[2], this.tagRotation);
+            for (int c = 0; c < 4; c++)
+            {
+                double cornerX = this.objectPoints[3 * c + 2];
+                double cornerY = -this.objectPoints[3 * c];
+                double cornerZ = -this.objectPoints[3 * c + 1];
+
+                int index = 4 * t + c;
+                for (int i = 0; i < 3; i++)
+                {
+                    double value = tagPose[3 + i] + this.tagRotation[3 * i] * cornerX + this.tagRotation[3 * i + 1] * cornerY + this.tagRotation[3 * i + 2] * cornerZ;
+                    this.fieldPoints[3 * index + i] = value;
+                    this.fieldPointValues[3 * index + i] = (float)value;
+                }
+
+                this.multiCornerValues[2 * index] = (float)(tagVertices[c].x + this.regionX);
+                this.multiCornerValues[2 * index + 1] = (float)(tagVertices[c].y + this.regionY);
+            }
+        }
+
+        // only (re-)allocates when the number of tags changes
+        this.fieldCorners.alloc(cornerCount);
+        this.multiDistortedCorners.alloc(cornerCount);
+        this.fieldCorners.put(0, 0, this.fieldPointValues);
+        this.multiDistortedCorners.put(0, 0, this.multiCornerValues);
+
+        Calib3d.undistortPoints(this.multiDistortedCorners, this.multiUndistortedCorners, this.intrinsicMatrix, this.distortionCoeffs, this.noRectification, this.intrinsicMatrix);
+
+        // the corners of several tags aren't a single square, so use a general (globally optimal) solver instead of IPPE
+        if (!Calib3d.solvePnP(this.fieldCorners, this.multiUndistortedCorners, this.intrinsicMatrix, this.noDistortion, this.rotationVector, this.translationVector, false, Calib3d.SOLVEPNP_SQPNP))
+        {
+            return false;
+        }
+
+        Calib3d.Rodrigues(this.rotationVector, this.rotationMatrix);
+        this.rotationMatrix.get(0, 0, this.cvRotation);
+        this.translationVector.get(0, 0, this.cvTranslation);
+
+        this.multiUndistortedCorners.get(0, 0, this.multiCornerValues);
+        this.error = this.calculateObjectSpaceError(this.fieldPoints, this.multiCornerValues, cornerCount);
+
+        // camera (OpenCV frame) relative to field = R^T, so robot relative to field = (camera * C * R)^T
+        TagPoseEstimator.multiply(TagPoseEstimator.CV_TO_ROBOT, this.cvRotation, this.scratch);
+        TagPoseEstimator.multiply(this.cameraRotation, this.scratch, this.rotation);
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                this.scratch[3 * i + j] = this.rotation[3 * j + i];
+            }
+        }
+
+        // robot position = camera position (-R^T * t) - (robot relative to field) * camera offset
+        for (int i = 0; i < 3; i++)
+        {
+            double cameraPosition = -(this.cvRotation[i] * this.cvTranslation[0] + this.cvRotation[3 + i] * this.cvTranslation[1] + this.cvRotation[6 + i] * this.cvTranslation[2]);
+            offset[i] = cameraPosition
+                - (this.scratch[3 * i] * this.cameraTranslation[0] + this.scratch[3 * i + 1] * this.cameraTranslation[1] + this.scratch[3 * i + 2] * this.cameraTranslation[2]);
+        }
+
+        TagPoseEstimator.yawPitchRollFromRotation(this.scratch, ypr);
+        return true;
+    }
+
+    /**
+     * Gets the object-space error of the most recent pose (the same measure as the apriltag library reports)
+     * @return sum of the squared distances between the tags' corners and the rays through the detected corners, or NaN if no pose was found
+     */
+    public double getError()
+    {
+        return this.error;
+    }
+
+    /**
+     * Release the native memory held by the estimator
+     */
+    public void release()
+    {
+        this.intrinsicMatrix.release();
+        this.distortionCoeffs.release();
+        this.tagCorners.release();
+        this.distortedCorners.release();
+        this.undistortedCorners.release();
+        this.noDistortion.release();
+        this.noRectification.release();
+        this.rotationVector.release();
+        this.translationVector.release();
+        this.rotationMatrix.release();
+        this.fieldCorners.release();
+        this.multiDistortedCorners.release();
+        this.multiUndistortedCorners.release();
+    }
+
+    /**
+     * Make sure the multi-tag buffers can hold the corners of the provided number of tags
+     * @param tagCount number of tags
+     */
+    private void ensureMultiTagCapacity(int tagCount)
+    {
+        if (tagCount > this.multiTagCapacity)
+        {
+            this.fieldPoints = new double[12 * tagCount];
+            this.fieldPointValues = new float[12 * tagCount];
+            this.multiCornerValues = new float[8 * tagCount];
+            this.multiTagCapacity = tagCount;
+        }
+    }
+
+    /**
+     * Undistort the corners, solve for the pose of the tag relative to the camera, and then transform it to be relative to the robot
+     * @param vertices the four detected (distorted) corners of the tag
+     * @return true if a pose was found
+     */
+    private boolean solveTagRelativeToRobot(Point[] vertices)
+    {
+        this.error = Double.NaN;
+        if (vertices == null || vertices.length != 4)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < 4; i++)
+        {
+            this.cornerValues[2 * i] = (float)(vertices[i].x + this.regionX);
+            this.cornerValues[2 * i + 1] = (float)(vertices[i].y + this.regionY);
+        }
+
+        this.distortedCorners.put(0, 0, this.cornerValues);
+
+        // undistort just the corners, projecting them back onto the image plane of the ideal camera (P = K)
+        Calib3d.undistortPoints(this.distortedCorners, this.undistortedCorners, this.intrinsicMatrix, this.distortionCoeffs, this.noRectification, this.intrinsicMatrix);
+
+        if (!Calib3d.solvePnP(this.tagCorners, this.undistortedCorners, this.intrinsicMatrix, this.noDistortion, this.rotationVector, this.translationVector, false, Calib3d.SOLVEPNP_IPPE_SQUARE))
+        {
+            return false;
+        }
+
+        Calib3d.Rodrigues(this.rotationVector, this.rotationMatrix);
+        this.rotationMatrix.get(0, 0, this.cvRotation);
+        this.translationVector.get(0, 0, this.cvTranslation);
+
+        this.undistortedCorners.get(0, 0, this.cornerValues);
+        this.error = this.calculateObjectSpaceError(this.objectPoints, this.cornerValues, 4);
+
+        // convert from OpenCV's frames to ours (R' = C * R * C^T, t' = C * t), then to be relative to the robot instead of the camera
+        TagPoseEstimator.multiply(TagPoseEstimator.CV_TO_ROBOT, this.cvRotation, this.scratch);
+        TagPoseEstimator.multiplyTransposed(this.scratch, TagPoseEstimator.CV_TO_ROBOT, this.rotation);
+        TagPoseEstimator.multiply(this.cameraRotation, this.rotation, this.scratch);
+        System.arraycopy(this.scratch, 0, this.rotation, 0, 9);
+
+        double tx = this.cvTranslation[2];
+        double ty = -this.cvTranslation[0];
+        double tz = -this.cvTranslation[1];
+        for (int i = 0; i < 3; i++)
+        {
+            this.translation[i] = this.cameraTranslation[i]
+                + this.cameraRotation[3 * i] * tx + this.cameraRotation[3 * i + 1] * ty + this.cameraRotation[3 * i + 2] * tz;
+        }
+
+        return true;
+    }
+
+    /**
+     * Calculate the object-space error of the current pose, in the camera's frame
+     * @param points the corners in the frame that the pose was solved in (x, y, z for each corner)
+     * @param corners the undistorted image corners (x, y for each corner)
+     * @param count the number of corners
+     * @return sum of the squared distances between the corners and the rays through the undistorted corners
+     */
+    private double calculateObjectSpaceError(double[] points, float[] corners, int count)
+    {
+        double totalError = 0.0;
+        for (int i = 0; i < count; i++)
+        {
+            double vx = (corners[2 * i] - this.cameraCenterX) / this.cameraFocalX;
+            double vy = (corners[2 * i + 1] - this.cameraCenterY) / this.cameraFocalY;
+            double vz = 1.0;
+
+            double px = this.cvTranslation[0];
+            double py = this.cvTranslation[1];
+            double pz = this.cvTranslation[2];
+            for (int j = 0; j < 3; j++)
+            {
+                px += this.cvRotation[j] * points[3 * i + j];
+                py += this.cvRotation[3 + j] * points[3 * i + j];
+                pz += this.cvRotation[6 + j] * points[3 * i + j];
+            }
+
+            // remove the component of the corner along the ray, leaving the distance from the ray
+            double scale = (vx * px + vy * py + vz * pz) / (vx * vx + vy * vy + vz * vz);
+            double ex = px - scale * vx;
+            double ey = py - scale * vy;
+            double ez = pz - scale * vz;
+            totalError += ex * ex + ey * ey + ez * ez;
+        }
+
+        return totalError;
+    }
+
+    /**
+     * Build the rotation matrix for the provided angles (yaw around z, then pitch around y, then roll around x)
+     * @param yaw in degrees
+     * @param pitch in degrees
+     * @param roll in degrees
+     * @param result 3x3 row-major matrix to fill in
+     */
+    static void rotationFromYawPitchRoll(double yaw, double pitch, double roll, double[] result)
+    {
+        double cy = Math.cos(Math.toRadians(yaw));
+        double sy = Math.sin(Math.toRadians(yaw));
+        double cp = Math.cos(Math.toRadians(pitch));
+        double sp = Math.sin(Math.toRadians(pitch));
+        double cr = Math.cos(Math.toRadians(roll));
+        double sr = Math.sin(Math.toRadians(roll));
+
+        result[0] = cy * cp;
+        result[1] = cy * sp * sr - sy * cr;
+        result[2] = cy * sp * cr + sy * sr;
+        result[3] = sy * cp;
+        result[4] = sy * sp * sr + cy * cr;
+        result[5] = sy * sp * cr - cy * sr;
+        result[6] = -sp;
+        result[7] = cp * sr;
+        result[8] = cp * cr;
+    }
+
+    /**
+     * Extract the angles from a rotation matrix (the inverse of rotationFromYawPitchRoll)
+     * @param rotation 3x3 row-major matrix
+     * @param ypr to fill in with the yaw, pitch and roll, in degrees
+     */
+    static void yawPitchRollFromRotation(double[] rotation, double[] ypr)
+    {
+        ypr[0] = Math.toDegrees(Math.atan2(rotation[3], rotation[0]));
+        ypr[1] = Math.toDegrees(Math.asin(Math.max(-1.0, Math.min(1.0, -rotation[6]))));
+        ypr[2] = Math.toDegrees(Math.atan2(rotation[7], rotation[8]));
+    }
+
+    /**
+     * Multiply two 3x3 row-major matrices (result = a * b)
+     */
+    private static void multiply(double[] a, double[] b, double[] result)
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                result[3 * i + j] = a[3 * i] * b[j] + a[3 * i + 1] * b[3 + j] + a[3 * i + 2] * b[6 + j];
+            }
+        }
+    }
+
+    /**
+     * Multiply a 3x3 row-major matrix by the transpose of another (result = a * b^T)
+     */
+    private static void multiplyTransposed(double[] a, double[] b, double[] result)
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                result[3 * i + j] = a[3 * i] * b[3 * j] + a[3 * i + 1] * b[3 * j + 1] + a[3 * i + 2] * b[3 * j + 2];
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package frc1318.vision.helpers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class VisionMetrics
+{
+    public enum Stage
+    {
+        CaptureWait("captureWait"),
+        StreamPutFrame("streamPutFrame"),
+        StreamHandoff("streamHandoff"),
+        Mask("mask"),
+        Undistort("undistort"),
+        ColorConversion("colorConversion"),
+        DetectionQueue("detectionQueue"),
+        Detection("detection"),
+        Filtering("filtering"),
+        PoseEstimation("poseEstimation"),
+        NetworkTablesWrite("networkTablesWrite"),
+        ResultLatency("resultLatency");
+
+        private final String key;
+
+        private Stage(String key)
+        {
+            this.key = key;
+        }
+
+        /**
+         * Gets the name of the stage, as it is published to the network table
+         * @return stage name
+         */
+        public String getKey()
+        {
+            return this.key;
+        }
+    }
+
+    public enum Drop
+    {
+        Superseded("superseded"),
+        RawStream("rawStream"),
+        StreamBusy("streamBusy"),
+        DebugFrame("debugFrame"),
+        ReducedResolution("reducedResolution");
+
+        private final String key;
+
+        private Drop(String key)
+        {
+            this.key = key;
+        }
+
+        /**
+         * Gets the name of the reason for dropping work, as it is published to the network table
+         * @return reason name
+         */
+        public String getKey()
+        {
+            return this.key;
+        }
+    }
+
+    public enum Count
+    {
+        Grabbed("grabbed"),
+        Decoded("decoded"),
+        Skipped("skipped");
+
+        private final String key;
+
+        private Count(String key)
+        {
+            this.key = key;
+        }
+
+        /**
+         * Gets the name of the counter, as it is published to the network table
+         * @return counter name
+         */
+        public String getKey()
+        {
+            return this.key;
+        }
+    }
+
+    private static final Stage[] Stages = Stage.values();
+    private static final Drop[] Drops = Drop.values();
+    private static final Count[] Counts = Count.values();
+
+    private final String cameraName;
+    private final LatencyHistogram[] histograms;
+    private final AtomicLongArray dropCounts;
+    private final AtomicLongArray counts;
+
+    private volatile LoadShedder.Level shedLevel;
+
+    /**
+     * Initializes a new instance of the VisionMetrics class.
+     * VisionMetrics keeps a latency histogram for each stage of processing a camera's frames, so that we can tell which stage
+     * is taking up the frame budget.  Recording a span doesn't allocate, and is safe from any of the camera's threads.
+     * @param cameraName name of the camera whose frames are being measured
+     */
+    public VisionMetrics(String cameraName)
+    {
+        this.cameraName = cameraName;
+        this.histograms = new LatencyHistogram[VisionMetrics.Stages.length];
+        for (int i = 0; i < this.histograms.length; i++)
+        {
+            this.histograms[i] = new LatencyHistogram();
+        }
+
+        this.dropCounts = new AtomicLongArray(VisionMetrics.Drops.length);
+        this.counts = new AtomicLongArray(VisionMetrics.Counts.length);
+        this.shedLevel = LoadShedder.Level.None;
+    }
+
+    /**
+     * Gets the name of the camera whose frames are being measured
+     * @return camera name
+     */
+    public String getCameraName()
+    {
+        return this.cameraName;
+    }
+
+    /**
+     * Record how long a stage took, from a start time until now
+     * @param stage that was measured
+     * @param startNanos when the stage started (from System.nanoTime())
+     * @return the current time (from System.nanoTime()), so that it can be used as the start of the next stage
+     */
+    public long record(Stage stage, long startNanos)
+    {
+        long nanos = System.nanoTime();
+        this.histograms[stage.ordinal()].record(nanos - startNanos);
+        return nanos;
+    }
+
+    /**
+     * Record how long a stage took, from a start time until now, if we are recording metrics
+     * @param metrics to record into, or null if we aren't recording metrics
+     * @param stage that was measured
+     * @param startNanos when the stage started (from System.nanoTime())
+     * @return the current time (from System.nanoTime()), so that it can be used as the start of the next stage
+     */
+    public static long record(VisionMetrics metrics, Stage stage, long startNanos)
+    {
+        if (metrics == null)
+        {
+            return System.nanoTime();
+        }
+
+        return metrics.record(stage, startNanos);
+    }
+
+    /**
+     * Record how long a stage took, if we are recording metrics
+     * @param metrics to record into, or null if we aren't recording metrics
+     * @param stage that was measured
+     * @param nanos how long the stage took, in nanoseconds
+     */
+    public static void recordDuration(VisionMetrics metrics, Stage stage, long nanos)
+    {
+        if (metrics != null)
+        {
+            metrics.histograms[stage.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Gets the histogram for a stage
+     * @param stage to retrieve
+     * @return latency histogram (in nanoseconds)
+     */
+    public LatencyHistogram getHistogram(Stage stage)
+    {
+        return this.histograms[stage.ordinal()];
+    }
+
+    /**
+     * Record that a frame (or some of the work for a frame) was dropped, if we are recording metrics
+     * @param metrics to record into, or null if we aren't recording metrics
+     * @param drop reason that it was dropped
+     */
+    public static void recordDrop(VisionMetrics metrics, Drop drop)
+    {
+        if (metrics != null)
+        {
+            metrics.dropCounts.incrementAndGet(drop.ordinal());
+        }
+    }
+
+    /**
+     * Gets the number of times work was dropped for a reason
+     * @param drop reason to retrieve
+     * @return count of drops
+     */
+    public long getDropCount(Drop drop)
+    {
+        return this.dropCounts.get(drop.ordinal());
+    }
+
+    /**
+     * Count a frame, if we are recording metrics
+     * @param metrics to record into, or null if we aren't recording metrics
+     * @param count counter to increment
+     */
+    public static void recordCount(VisionMetrics metrics, Count count)
+    {
+        if (metrics != null)
+        {
+            metrics.counts.incrementAndGet(count.ordinal());
+        }
+    }
+
+    /**
+     * Gets the value of a counter
+     * @param count counter to retrieve
+     * @return count of frames
+     */
+    public long getCount(Count count)
+    {
+        return this.counts.get(count.ordinal());
+    }
+
+    /**
+     * Gets how much work the camera's vision system is currently shedding
+     * @return shed level
+     */
+    public LoadShedder.Level getShedLevel()
+    {
+        return this.shedLevel;
+    }
+
+    /**
+     * Sets how much work the camera's vision system is currently shedding
+     * @param shedLevel shed level
+     */
+    public void setShedLevel(LoadShedder.Level shedLevel)
+    {
+        this.shedLevel = shedLevel;
+    }
+
+    /**
+     * Clear the recorded values for all stages, and the drop counts and counters
+     */
+    public void reset()
+    {
+        for (LatencyHistogram histogram : this.histograms)
+        {
+            histogram.reset();
+        }
+
+        for (int i = 0; i < this.dropCounts.length(); i++)
+        {
+            this.dropCounts.set(i, 0L);
+        }
+
+        for (int i = 0; i < this.counts.length(); i++)
+        {
+            this.counts.set(i, 0L);
+        }
+    }
+}
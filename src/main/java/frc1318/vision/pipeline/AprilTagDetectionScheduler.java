@@ -0,0 +1,386 @@
+package frc1318.vision.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.opencv.core.Mat;
+
+import frc1318.apriltag.*;
+import frc1318.vision.IOpenable;
+
+public class AprilTagDetectionScheduler implements IOpenable
+{
+    private static final AprilTagDetection[] NoDetections = new AprilTagDetection[0];
+
+    private final int workerCount;
+    private final PriorityBlockingQueue<Job> queue;
+    private final List<Client> clients;
+
+    private Thread[] workers;
+    private long sequence;
+    private volatile boolean stopped;
+
+    /**
+     * Initializes a new instance of the AprilTagDetectionScheduler class.
+     * The scheduler runs tag detection for all of the cameras' pipelines on a fixed set of worker threads, so that several
+     * cameras don't each start their own detector threads and oversubscribe the cores.  Each worker keeps its own
+     * single-threaded detector for each client, and jobs are run in priority order (and in the order they were submitted
+     * within the same priority).
+     * @param workerCount number of worker threads (generally one per core that is available for detection)
+     */
+    public AprilTagDetectionScheduler(int workerCount)
+    {
+        this.workerCount = workerCount;
+        this.queue = new PriorityBlockingQueue<Job>();
+        this.clients = new ArrayList<Client>();
+
+        this.workers = null;
+        this.sequence = 0L;
+        this.stopped = false;
+    }
+
+    /**
+     * Register a detector configuration with the scheduler
+     * @param priority of the client's jobs (lower values run first)
+     * @param tagFamily AprilTag family
+     * @param tagMaxHammingDistance How many bit errors to accept for AprilTag detection
+     * @param tagQuadDecimate quad decimation to start with
+     * @param tagQuadSigma What Gaussian blur should be applied to the segmented image
+     * @param tagRefineEdges whether the edges of the each quad are adjusted to "snap to" strong gradients nearby
+     * @param tagDecodeSharpening How much sharpening should be done to decoded images
+     * @return client to submit detection jobs through
+     */
+    public synchronized Client register(
+        int priority,
+        AprilTagFamily tagFamily,
+        int tagMaxHammingDistance,
+        float tagQuadDecimate,
+        float tagQuadSigma,
+        boolean tagRefineEdges,
+        double tagDecodeSharpening)
+    {
+        Client client = new Client(priority, tagFamily, tagMaxHammingDistance, tagQuadDecimate, tagQuadSigma, tagRefineEdges, tagDecodeSharpening);
+        this.clients.add(client);
+        return client;
+    }
+
+    /**
+     * Opens the scheduler, starting the worker threads
+     * @return true if successful
+     */
+    @Override
+    public synchronized boolean open()
+    {
+        if (this.workers == null)
+        {
+            this.stopped = false;
+            this.workers = new Thread[this.workerCount];
+            for (int i = 0; i < this.workerCount; i++)
+            {
+                final int workerIndex = i;
+                this.workers[i] = new Thread(() -> this.runWorker(workerIndex), "AprilTagDetectionScheduler worker " + i);
+                this.workers[i].start();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the scheduler, stopping the worker threads and failing any jobs that are still waiting
+     */
+    @Override
+    public synchronized void close()
+    {
+        this.stopped = true;
+        if (this.workers != null)
+        {
+            for (Thread worker : this.workers)
+            {
+                worker.interrupt();
+            }
+
+            // interrupting doesn't stop a native detect(), and the clients' detectors can't be released until every worker is out of it
+            boolean interrupted = false;
+            for (Thread worker : this.workers)
+            {
+                while (worker.isAlive())
+                {
+                    try
+                    {
+                        worker.join();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+
+            this.workers = null;
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Job job;
+        while ((job = this.queue.poll()) != null)
+        {
+            job.complete(null);
+        }
+
+        for (Client client : this.clients)
+        {
+            client.release();
+        }
+    }
+
+    /**
+     * Queue a job to be run by the next available worker
+     * @param job to run
+     */
+    private void submit(Job job)
+    {
+        synchronized (this)
+        {
+            job.sequence = this.sequence++;
+        }
+
+        job.enqueueNanos = System.nanoTime();
+        this.queue.add(job);
+
+        // we may have closed between checking and queueing, in which case nobody would ever run it
+        if (this.stopped && this.queue.remove(job))
+        {
+            job.complete(null);
+        }
+    }
+
+    /**
+     * Run a worker, detecting tags for jobs until we are closed
+     * @param workerIndex index of the worker (which selects the clients' detectors that it uses)
+     */
+    private void runWorker(int workerIndex)
+    {
+        while (!this.stopped)
+        {
+            Job job;
+            try
+            {
+                job = this.queue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                break;
+            }
+
+            AprilTagDetection[] result = null;
+            try
+            {
+                job.startNanos = System.nanoTime();
+                result = this.runDetection(job.client, workerIndex, job.frame);
+            }
+            catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
+            finally
+            {
+                job.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Detect tags in a frame using the worker's detector for the client
+     * @param client that submitted the frame
+     * @param workerIndex index of the worker running the job
+     * @param frame to detect tags in (grayscale)
+     * @return detected tags
+     */
+    AprilTagDetection[] runDetection(Client client, int workerIndex, Mat frame)
+    {
+        return client.getDetector(workerIndex).detect(frame);
+    }
+
+    public class Client
+    {
+        private final int priority;
+        private final AprilTagFamily tagFamily;
+        private final int tagMaxHammingDistance;
+        private final float tagQuadSigma;
+        private final boolean tagRefineEdges;
+        private final double tagDecodeSharpening;
+        private volatile float tagQuadDecimate;
+
+        // each worker only ever touches its own detector
+        private final AprilTagDetector[] detectors;
+        private final float[] detectorQuadDecimate;
+
+        private final Job job;
+
+        private Client(
+            int priority,
+            AprilTagFamily tagFamily,
+            int tagMaxHammingDistance,
+            float tagQuadDecimate,
+            float tagQuadSigma,
+            boolean tagRefineEdges,
+            double tagDecodeSharpening)
+        {
+            this.priority = priority;
+            this.tagFamily = tagFamily;
+            this.tagMaxHammingDistance = tagMaxHammingDistance;
+            this.tagQuadDecimate = tagQuadDecimate;
+            this.tagQuadSigma = tagQuadSigma;
+            this.tagRefineEdges = tagRefineEdges;
+            this.tagDecodeSharpening = tagDecodeSharpening;
+
+            this.detectors = new AprilTagDetector[AprilTagDetectionScheduler.this.workerCount];
+            this.detectorQuadDecimate = new float[AprilTagDetectionScheduler.this.workerCount];
+
+            this.job = new Job(this);
+        }
+
+        /**
+         * Detect tags in a frame on one of the scheduler's workers, waiting for the result.
+         * A client only runs one job at a time, so it should only be used from one thread.
+         * @param frame to detect tags in (grayscale)
+         * @return detected tags (none if the scheduler was closed)
+         */
+        public AprilTagDetection[] detect(Mat frame)
+        {
+            if (AprilTagDetectionScheduler.this.stopped)
+            {
+                return AprilTagDetectionScheduler.NoDetections;
+            }
+
+            Job job = this.job;
+            job.frame = frame;
+            job.result = null;
+            AprilTagDetectionScheduler.this.submit(job);
+            try
+            {
+                job.done.acquire();
+            }
+            catch (InterruptedException ex)
+            {
+                // leave the job to finish (or be failed by close) on its own, as it is still using the frame
+                Thread.currentThread().interrupt();
+                job.done.acquireUninterruptibly();
+            }
+
+            AprilTagDetection[] result = job.result;
+            job.frame = null;
+            job.result = null;
+            return result != null ? result : AprilTagDetectionScheduler.NoDetections;
+        }
+
+        /**
+         * Gets how long the most recent job waited in the queue before a worker started it
+         * @return queueing delay, in nanoseconds
+         */
+        public long getQueueNanos()
+        {
+            return Math.max(0L, this.job.startNanos - this.job.enqueueNanos);
+        }
+
+        /**
+         * Sets the quad decimation that the workers should use for this client's future jobs
+         * @param tagQuadDecimate quad decimation
+         */
+        public void setQuadDecimate(float tagQuadDecimate)
+        {
+            this.tagQuadDecimate = tagQuadDecimate;
+        }
+
+        /**
+         * Gets the worker's detector for this client, (re)creating it if needed
+         * @param workerIndex index of the worker
+         * @return detector
+         */
+        private AprilTagDetector getDetector(int workerIndex)
+        {
+            float quadDecimate = this.tagQuadDecimate;
+            AprilTagDetector detector = this.detectors[workerIndex];
+            if (detector == null || this.detectorQuadDecimate[workerIndex] != quadDecimate)
+            {
+                if (detector != null)
+                {
+                    detector.release();
+                }
+
+                // the workers provide the parallelism, so each detector only uses the worker's thread
+                detector = AprilTag.create(this.tagFamily, this.tagMaxHammingDistance, 1, quadDecimate, this.tagQuadSigma, this.tagRefineEdges, this.tagDecodeSharpening, false);
+                this.detectors[workerIndex] = detector;
+                this.detectorQuadDecimate[workerIndex] = quadDecimate;
+            }
+
+            return detector;
+        }
+
+        /**
+         * Release the client's detectors (once the workers have stopped)
+         */
+        private void release()
+        {
+            for (int i = 0; i < this.detectors.length; i++)
+            {
+                if (this.detectors[i] != null)
+                {
+                    this.detectors[i].release();
+                    this.detectors[i] = null;
+                }
+            }
+        }
+    }
+
+    // a request to detect tags in a frame, reused for each of a client's frames
+    private static class Job implements Comparable<Job>
+    {
+        private final Client client;
+        private final Semaphore done;
+
+        private Mat frame;
+        private volatile AprilTagDetection[] result;
+        private long sequence;
+        private volatile long enqueueNanos;
+        private volatile long startNanos;
+
+        Job(Client client)
+        {
+            this.client = client;
+            this.done = new Semaphore(0);
+
+            this.frame = null;
+            this.result = null;
+            this.sequence = 0L;
+            this.enqueueNanos = 0L;
+            this.startNanos = 0L;
+        }
+
+        /**
+         * Record the result of the job, and wake up the client waiting for it
+         * @param result detected tags, or null
+         */
+        void complete(AprilTagDetection[] result)
+        {
+            this.result = result;
+            this.done.release();
+        }
+
+        @Override
+        public int compareTo(Job other)
+        {
+            if (this.client.priority != other.client.priority)
+            {
+                return Integer.compare(this.client.priority, other.client.priority);
+            }
+
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
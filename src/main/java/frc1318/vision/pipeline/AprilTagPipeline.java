@@ -1,28 +1,78 @@
 package frc1318.vision.pipeline;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.opencv.imgproc.Imgproc;
 
 import frc1318.apriltag.*;
 import frc1318.vision.IAprilTagFilter;
+import frc1318.vision.IDetectionScheduled;
 import frc1318.vision.IFramePipeline;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.ILoadShedding;
+import frc1318.vision.IOpenable;
+import frc1318.vision.IRegionAware;
+import frc1318.vision.IResultListener;
+import frc1318.vision.IResultTimed;
 import frc1318.vision.IResultWriter;
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.AreaHelper;
+import frc1318.vision.helpers.DecimationController;
 import frc1318.vision.helpers.ImageUndistorter;
+import frc1318.vision.helpers.LatencyHistogram;
+import frc1318.vision.helpers.LoadShedder;
+import frc1318.vision.helpers.RegionTracker;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class AprilTagPipeline<T> implements IFramePipeline
+public class AprilTagPipeline<T> implements IFramePipeline, IOpenable, IInstrumented, IDetectionScheduled, ILoadShedding, IResultTimed
 {
     private final IResultWriter<T> output;
 
     private final Mat mask;
+    private Mat grayMask;
     private final ImageUndistorter undistorter;
     private final boolean isGrayscale;
-    private final AprilTagDetector aprilTagDetector;
     private final IAprilTagFilter<T> tagFilter;
+    private final AprilTagFamily tagFamily;
+    private final int tagMaxHammingDistance;
+    private final int tagThreads;
+    private final float tagQuadDecimate;
+    private final float tagQuadSigma;
+    private final boolean tagRefineEdges;
+    private final double tagDecodeSharpening;
+    private final DecimationController decimationController;
+    private AprilTagDetector aprilTagDetector;
+    private AprilTagDetectionScheduler.Client detectionClient;
+
+    private final boolean fusedPreprocessing;
+    private final boolean pipelined;
+    private final WorkItem serialItem;
+    private final ArrayBlockingQueue<WorkItem> freeItems;
+    private final ArrayBlockingQueue<WorkItem> detectionQueue;
+    private final ArrayBlockingQueue<WorkItem> outputQueue;
+
+    private final RegionTracker tracker;
+    private final Rect region;
+    private final boolean undistortRegions;
 
-    private final Mat maskedFrame;
-    private final Mat frameUndistort;
-    private final Mat gray;
+    private final LatencyHistogram latency;
+    private volatile VisionMetrics metrics;
+    private volatile IResultListener resultListener;
+    private volatile boolean shedDebugFrames;
+    private volatile boolean shedResolution;
+    private boolean reducedResolution;
+    private long outputFrames;
+    private long lastMeasuredNanos;
+
+    private Thread detectionThread;
+    private Thread outputThread;
+    private volatile boolean stopped;
 
     /**
      * Initializes a new instance of the AprilTagPipeline class.
@@ -30,8 +80,7 @@ public class AprilTagPipeline<T> implements IFramePipeline
      * @param output                 output writer
      * @param mask                   to use for removing selected parts of the image
      * @param undistorter            frame undistorter
-     * @param grayscaleSource        Whether the source images are grayscale already, or in BGR and need conversion to Grayscale
-     * @param processingEnabledValue value indicating when processing is enabled
+     * @param grayscaleSource        Whether the source images are grayscale already, or in BGR (or YUYV) and need conversion to Grayscale
      * @param tagFilter              AprilTag filter
      * @param tagFamily              AprilTag family
      * @param tagMaxHammingDistance  How many bit errors to accept for AprilTag detection
@@ -55,44 +104,289 @@ public class AprilTagPipeline<T> implements IFramePipeline
         boolean tagRefineEdges,
         double tagDecodeSharpening)
     {
-        this.output = output;
+        this(
+            output,
+            mask,
+            undistorter,
+            grayscaleSource,
+            tagFilter,
+            tagFamily,
+            tagMaxHammingDistance,
+            tagThreads,
+            tagQuadDecimate,
+            tagQuadSigma,
+            tagRefineEdges,
+            tagDecodeSharpening,
+            false,
+            false,
+            false,
+            false);
+    }
 
-        if (undistorter != null)
+    /**
+     * Initializes a new instance of the AprilTagPipeline class.
+     * 
+     * @param output                 output writer
+     * @param mask                   to use for removing selected parts of the image
+     * @param undistorter            frame undistorter
+     * @param grayscaleSource        Whether the source images are grayscale already, or in BGR (or YUYV) and need conversion to Grayscale
+     * @param tagFilter              AprilTag filter
+     * @param tagFamily              AprilTag family
+     * @param tagMaxHammingDistance  How many bit errors to accept for AprilTag detection
+     * @param tagThreads             How many threads should be used for AprilTag detection
+     * @param tagQuadDecimate        AprilTag detection of quads can be done on a lower-resolution image, improving speed at a cost of pose accuracy and a slight decrease in detection rate. Decoding the binary payload is still done at full resolution.
+     * @param tagQuadSigma           What Gaussian blur should be applied to the segmented image (used for quad detection?).  Parameter is the standard deviation in pixels.  Very noisy images benefit from non-zero values (e.g. 0.8).
+     * @param tagRefineEdges         whether the edges of the each quad are adjusted to "snap to" strong gradients nearby. This is useful when decimation is employed, as it can increase the quality of the initial quad estimate substantially. Generally recommended to be on (true). Very computationally inexpensive. Option is ignored if quad_decimate = 1.
+     * @param tagDecodeSharpening    How much sharpening should be done to decoded images? This can help decode small tags but may or may not help in odd lighting conditions or low light conditions. The default value is 0.25.
+     * @param fusedPreprocessing     whether to convert to Grayscale first and then mask and undistort in a single remap pass (with the mask folded into the remap tables), rather than masking, undistorting, and converting the full-color frame in separate passes
+     * @param pipelined              whether to run preprocessing (on the calling thread), detection, and output as separate stages on separate threads, so that the next frame is preprocessed while the current one is being detected
+     * @param tracking               whether to only search the region around where the tags were in the previous frames (with a full-frame search every so often, or when a tag is lost), which requires an output that can shift the results back into the full frame (with an undistorter, only the searched region is undistorted, and the debug frames are left distorted)
+     * @param adaptiveDecimation     whether to adjust the detector's quad decimation (and thread count) as we go, based on the size of the recent tags and how long frames are taking (starting from tagQuadDecimate)
+     */
+    public AprilTagPipeline(
+        IResultWriter<T> output,
+        Mat mask,
+        ImageUndistorter undistorter,
+        boolean grayscaleSource,
+        IAprilTagFilter<T> tagFilter,
+        AprilTagFamily tagFamily,
+        int tagMaxHammingDistance,
+        int tagThreads,
+        float tagQuadDecimate,
+        float tagQuadSigma,
+        boolean tagRefineEdges,
+        double tagDecodeSharpening,
+        boolean fusedPreprocessing,
+        boolean pipelined,
+        boolean tracking,
+        boolean adaptiveDecimation)
+    {
+        this.output = output;
+        this.isGrayscale = grayscaleSource;
+        this.fusedPreprocessing = fusedPreprocessing;
+        if (fusedPreprocessing)
+        {
+            // the mask is applied to the grayscale frame, or folded into the undistorter's remap tables
+            this.mask = mask != null ? ImageUndistorter.toSingleChannelMask(mask) : null;
+            this.undistorter = (undistorter != null && mask != null) ? undistorter.createMasked(mask) : undistorter;
+        }
+        else
         {
-            this.frameUndistort = new Mat();
+            this.mask = mask;
             this.undistorter = undistorter;
         }
+
+        this.grayMask = null;
+
+        this.tagFilter = tagFilter;
+
+        this.tagFamily = tagFamily;
+        this.tagMaxHammingDistance = tagMaxHammingDistance;
+        this.tagThreads = tagThreads;
+        this.tagQuadDecimate = tagQuadDecimate;
+        this.tagQuadSigma = tagQuadSigma;
+        this.tagRefineEdges = tagRefineEdges;
+        this.tagDecodeSharpening = tagDecodeSharpening;
+        if (adaptiveDecimation)
+        {
+            this.decimationController = new DecimationController(
+                VisionConstants.ADAPTIVE_DECIMATION_LEVELS,
+                tagQuadDecimate,
+                VisionConstants.ADAPTIVE_DECIMATION_MIN_TAG_SIZE,
+                VisionConstants.ADAPTIVE_DECIMATION_FRAME_BUDGET_NANOS,
+                VisionConstants.ADAPTIVE_DECIMATION_SETTLE_FRAMES,
+                VisionConstants.ADAPTIVE_DECIMATION_LOST_FRAMES);
+            this.aprilTagDetector = this.createDetector(this.decimationController.getDecimation());
+        }
         else
         {
-            this.frameUndistort = null;
-            this.undistorter = null;
+            this.decimationController = null;
+            this.aprilTagDetector = this.createDetector(tagQuadDecimate);
         }
 
-        if (mask != null)
+        this.detectionClient = null;
+        this.shedDebugFrames = false;
+        this.shedResolution = false;
+        this.reducedResolution = false;
+
+        // tags found in a region have coordinates relative to that region, so the output needs to be able to shift them back
+        if (tracking && output instanceof IRegionAware)
         {
-            this.mask = mask;
-            this.maskedFrame = new Mat();
+            this.tracker = new RegionTracker(
+                VisionConstants.TRACKING_MAX_TAGS,
+                VisionConstants.TRACKING_FULL_SEARCH_INTERVAL,
+                VisionConstants.TRACKING_REGION_PADDING_RATIO,
+                VisionConstants.TRACKING_REGION_MIN_PADDING,
+                VisionConstants.TRACKING_MAX_REGION_FRACTION);
+            this.region = new Rect();
         }
         else
         {
-            this.mask = null;
-            this.maskedFrame = null;
+            if (tracking)
+            {
+                Logger.write("AprilTag pipeline output doesn't support regions, tracking disabled");
+            }
+
+            this.tracker = null;
+            this.region = null;
         }
 
-        if (grayscaleSource)
+        // when tracking, the frame is undistorted once we know whether just a region of it will be searched
+        this.undistortRegions = this.tracker != null && this.undistorter != null;
+
+        this.pipelined = pipelined;
+        if (pipelined)
         {
-            this.isGrayscale = true;
-            this.gray = null;
+            // each frame in flight owns its own intermediate images, handed from stage to stage through bounded queues
+            this.serialItem = null;
+            this.freeItems = new ArrayBlockingQueue<WorkItem>(VisionConstants.PIPELINED_FRAMES_IN_FLIGHT);
+            this.detectionQueue = new ArrayBlockingQueue<WorkItem>(VisionConstants.PIPELINED_FRAMES_IN_FLIGHT);
+            this.outputQueue = new ArrayBlockingQueue<WorkItem>(VisionConstants.PIPELINED_FRAMES_IN_FLIGHT);
+            for (int i = 0; i < VisionConstants.PIPELINED_FRAMES_IN_FLIGHT; i++)
+            {
+                this.freeItems.add(new WorkItem());
+            }
         }
         else
         {
-            this.isGrayscale = false;
-            this.gray = new Mat();
+            this.serialItem = new WorkItem();
+            this.freeItems = null;
+            this.detectionQueue = null;
+            this.outputQueue = null;
         }
 
-        this.tagFilter = tagFilter;
+        this.latency = new LatencyHistogram();
+        this.metrics = null;
+        this.resultListener = null;
+        this.outputFrames = 0L;
+        this.lastMeasuredNanos = System.nanoTime();
+
+        this.detectionThread = null;
+        this.outputThread = null;
+        this.stopped = false;
+    }
+
+    /**
+     * Opens the pipeline, starting the detection and output threads if we are pipelined
+     * @return true if successful
+     */
+    @Override
+    public boolean open()
+    {
+        if (this.pipelined && this.detectionThread == null)
+        {
+            this.stopped = false;
+
+            this.detectionThread = new Thread(this::runDetectionStage, "AprilTagPipeline detection");
+            this.outputThread = new Thread(this::runOutputStage, "AprilTagPipeline output");
+            this.detectionThread.start();
+            this.outputThread.start();
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the pipeline, stopping the detection and output threads if we are pipelined
+     * (and waiting for them to finish, so that they are done with the detector and the output before those are closed)
+     */
+    @Override
+    public void close()
+    {
+        this.stopped = true;
+        Thread detectionThread = this.detectionThread;
+        Thread outputThread = this.outputThread;
+        this.detectionThread = null;
+        this.outputThread = null;
+        if (detectionThread != null)
+        {
+            detectionThread.interrupt();
+        }
+
+        if (outputThread != null)
+        {
+            outputThread.interrupt();
+        }
+
+        try
+        {
+            if (detectionThread != null)
+            {
+                detectionThread.join();
+            }
+
+            if (outputThread != null)
+            {
+                outputThread.join();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        this.aprilTagDetector = AprilTag.create(tagFamily, tagMaxHammingDistance, tagThreads, tagQuadDecimate, tagQuadSigma, tagRefineEdges, tagDecodeSharpening, false);
+    /**
+     * Sets the metrics that the pipeline and its output (if it is instrumented) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.output instanceof IInstrumented)
+        {
+            ((IInstrumented)this.output).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets how much optional work the pipeline should skip because frames are taking too long to process
+     * (debug frames are shed by writing results without the frame they came from, and detection resolution by raising the
+     * quad decimation)
+     * @param level of work to shed
+     */
+    @Override
+    public void setShedLevel(LoadShedder.Level level)
+    {
+        this.shedDebugFrames = level.sheds(LoadShedder.Level.DebugFrames);
+        this.shedResolution = level.sheds(LoadShedder.Level.DetectionResolution);
+    }
+
+    /**
+     * Sets the listener to tell when the result for each frame is written, which happens on the output thread when we are pipelined
+     * @param listener to tell, or null to stop telling it
+     * @return true if we will tell the listener (when pipelined), or false if the results are written before process() returns
+     */
+    @Override
+    public boolean setResultListener(IResultListener listener)
+    {
+        this.resultListener = listener;
+        return this.pipelined;
+    }
+
+    /**
+     * Sets the shared scheduler to run tag detection on, instead of this pipeline's own detector (before the pipeline is opened)
+     * @param scheduler to run detection on
+     * @param priority of this pipeline's detection jobs (lower values run first)
+     */
+    @Override
+    public void setDetectionScheduler(AprilTagDetectionScheduler scheduler, int priority)
+    {
+        this.detectionClient = scheduler.register(
+            priority,
+            this.tagFamily,
+            this.tagMaxHammingDistance,
+            this.getTargetDecimation(),
+            this.tagQuadSigma,
+            this.tagRefineEdges,
+            this.tagDecodeSharpening);
+
+        if (this.aprilTagDetector != null)
+        {
+            this.aprilTagDetector.release();
+            this.aprilTagDetector = null;
+        }
     }
 
     /**
@@ -104,60 +398,592 @@ public class AprilTagPipeline<T> implements IFramePipeline
     @Override
     public void process(Mat sourceFrame, long captureTime)
     {
-        if (sourceFrame == null)
+        if (!this.pipelined)
         {
-            this.output.write(null, captureTime);
+            if (sourceFrame == null)
+            {
+                this.output.write(null, captureTime);
+                return;
+            }
+
+            WorkItem item = this.serialItem;
+            item.captureTime = captureTime;
+
+            this.preprocess(sourceFrame, item);
+            this.detect(item);
+            this.outputResult(item);
             return;
         }
 
-        // first, mask the image.
+        WorkItem item = this.acquireWorkItem();
+        if (item == null)
+        {
+            // pipeline was closed
+            return;
+        }
+
+        item.captureTime = captureTime;
+        item.processNanos = System.nanoTime();
+        if (sourceFrame != null)
+        {
+            this.preprocess(sourceFrame, item);
+        }
+
+        // the disabled (null) frames go through the stages too, so that the outputs stay in order
+        this.detectionQueue.add(item);
+    }
+
+    /**
+     * Mask, undistort, and convert the frame to grayscale
+     * @param sourceFrame image to process (BGR, grayscale, or YUYV)
+     * @param item to hold the results
+     */
+    private void preprocess(Mat sourceFrame, WorkItem item)
+    {
+        if (this.fusedPreprocessing)
+        {
+            this.preprocessFused(sourceFrame, item);
+            return;
+        }
+
+        VisionMetrics metrics = this.metrics;
+        long nanos = System.nanoTime();
+
+        // YUYV frames only need their luma, so take it first and never touch the chroma.  A reader can also hand us grayscale
+        // frames when the pipeline expected BGR (e.g. libcamera delivering its Y plane), so go by the frame rather than the setting
         Mat frameToUse = sourceFrame;
+        boolean grayscale = this.isGrayscale || sourceFrame.channels() == 1;
+        if (sourceFrame.type() == CvType.CV_8UC2)
+        {
+            Core.extractChannel(sourceFrame, item.gray, 0);
+            frameToUse = item.gray;
+            grayscale = true;
+            nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.ColorConversion, nanos);
+        }
+
+        // first, mask the image.
         if (this.mask != null)
         {
-            Core.bitwise_and(frameToUse, this.mask, this.maskedFrame);
-            frameToUse = this.maskedFrame;
+            Core.bitwise_and(frameToUse, frameToUse.channels() == this.mask.channels() ? this.mask : this.getGrayMask(), item.maskedFrame);
+            frameToUse = item.maskedFrame;
+            nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.Mask, nanos);
         }
 
-        // second, undistort the image.
-        if (this.undistorter != null)
+        // second, undistort the image (unless only the searched region will be undistorted).
+        if (this.undistorter != null && !this.undistortRegions)
+        {
+            this.undistorter.undistortFrame(frameToUse, item.frameUndistort);
+            frameToUse = item.frameUndistort;
+            nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.Undistort, nanos);
+        }
+
+        // the source frame is handed back to the reader when we return, so later stages need their own copy of it
+        if (this.pipelined && frameToUse == sourceFrame)
         {
-            this.undistorter.undistortFrame(frameToUse, this.frameUndistort);
-            frameToUse = this.frameUndistort;
+            sourceFrame.copyTo(item.sourceCopy);
+            frameToUse = item.sourceCopy;
+            nanos = System.nanoTime();
         }
 
         // third, convert BGR to Gray if necessary
-        Mat grayFrame;
-        if (this.isGrayscale)
+        if (grayscale)
+        {
+            item.grayFrame = frameToUse;
+        }
+        else
+        {
+            Imgproc.cvtColor(frameToUse, item.gray, Imgproc.COLOR_BGR2GRAY);
+            item.grayFrame = item.gray;
+            VisionMetrics.record(metrics, VisionMetrics.Stage.ColorConversion, nanos);
+        }
+
+        item.frame = frameToUse;
+    }
+
+    /**
+     * Convert the frame to grayscale, and then mask and undistort it in a single pass
+     * @param sourceFrame image to process (BGR, grayscale, or YUYV)
+     * @param item to hold the results
+     */
+    private void preprocessFused(Mat sourceFrame, WorkItem item)
+    {
+        VisionMetrics metrics = this.metrics;
+        long nanos = System.nanoTime();
+
+        // first, convert BGR to Gray (or take the luma of YUYV) if necessary, so that the remaining passes only touch one channel
+        // (going by the frame rather than the setting, as a reader can hand us grayscale frames when the pipeline expected BGR)
+        Mat frameToUse = sourceFrame;
+        if (sourceFrame.type() == CvType.CV_8UC2)
+        {
+            Core.extractChannel(frameToUse, item.gray, 0);
+            frameToUse = item.gray;
+            nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.ColorConversion, nanos);
+        }
+        else if (!this.isGrayscale && sourceFrame.channels() != 1)
+        {
+            Imgproc.cvtColor(frameToUse, item.gray, Imgproc.COLOR_BGR2GRAY);
+            frameToUse = item.gray;
+            nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.ColorConversion, nanos);
+        }
+
+        // second, mask and undistort the image (the mask is part of the undistorter's remap tables, so when only the searched
+        // region will be undistorted the masking waits for that too)
+        if (this.undistorter != null)
+        {
+            if (!this.undistortRegions)
+            {
+                this.undistorter.undistortFrame(frameToUse, item.frameUndistort);
+                frameToUse = item.frameUndistort;
+                VisionMetrics.record(metrics, VisionMetrics.Stage.Undistort, nanos);
+            }
+        }
+        else if (this.mask != null)
+        {
+            Core.bitwise_and(frameToUse, this.mask, item.maskedFrame);
+            frameToUse = item.maskedFrame;
+            VisionMetrics.record(metrics, VisionMetrics.Stage.Mask, nanos);
+        }
+
+        // the source frame is handed back to the reader when we return, so later stages need their own copy of it
+        if (this.pipelined && frameToUse == sourceFrame)
+        {
+            sourceFrame.copyTo(item.sourceCopy);
+            frameToUse = item.sourceCopy;
+        }
+
+        item.grayFrame = frameToUse;
+        item.frame = frameToUse;
+    }
+
+    /**
+     * Gets the mask to apply to single-channel frames (such as the luma of YUYV frames), creating it the first time
+     * @return single-channel mask
+     */
+    private Mat getGrayMask()
+    {
+        if (this.grayMask == null)
+        {
+            this.grayMask = ImageUndistorter.toSingleChannelMask(this.mask);
+        }
+
+        return this.grayMask;
+    }
+
+    /**
+     * Detect and filter the tags in a preprocessed frame
+     * @param item holding the preprocessed frame
+     */
+    private void detect(WorkItem item)
+    {
+        VisionMetrics metrics = this.metrics;
+
+        // the detector can only be changed from the thread that detects tags
+        boolean shedResolution = this.shedResolution;
+        if (shedResolution != this.reducedResolution)
+        {
+            this.reducedResolution = shedResolution;
+            this.setDecimation(this.getTargetDecimation());
+        }
+
+        if (this.reducedResolution)
         {
-            grayFrame = frameToUse;
+            VisionMetrics.recordDrop(metrics, VisionMetrics.Drop.ReducedResolution);
+        }
+
+        long nanos = System.nanoTime();
+
+        // fourth, detect tags (only in the region around where we last saw them, if we are tracking)
+        AprilTagDetection[] detectedTags;
+        if (this.tracker != null && this.tracker.predictRegion(item.grayFrame.cols(), item.grayFrame.rows(), this.region))
+        {
+            if (this.undistortRegions)
+            {
+                // only remap the region (which gives a continuous image, sized to the region)
+                this.undistorter.undistortRegion(item.grayFrame, item.regionGray, this.region);
+                nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.Undistort, nanos);
+            }
+            else
+            {
+                // the detector needs a continuous image, so copy the region out rather than passing a view into the frame
+                Mat regionFrame = item.grayFrame.submat(this.region);
+                regionFrame.copyTo(item.regionGray);
+                regionFrame.release();
+            }
+
+            item.regionX = this.region.x;
+            item.regionY = this.region.y;
+            detectedTags = this.detectTags(item.regionGray, metrics);
+            this.updateTracker(detectedTags, item, true);
         }
         else
         {
-            Imgproc.cvtColor(frameToUse, this.gray, Imgproc.COLOR_BGR2GRAY);
-            grayFrame = this.gray;
+            if (this.undistortRegions)
+            {
+                this.undistorter.undistortFrame(item.grayFrame, item.frameUndistort);
+                item.grayFrame = item.frameUndistort;
+                nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.Undistort, nanos);
+            }
+
+            item.regionX = 0;
+            item.regionY = 0;
+            detectedTags = this.detectTags(item.grayFrame, metrics);
+            if (this.tracker != null)
+            {
+                this.updateTracker(detectedTags, item, false);
+            }
         }
 
-        // fourth, detect tags
-        AprilTagDetection[] detectedTags = this.aprilTagDetector.detect(grayFrame);
+        long detectionStartNanos = nanos;
+        nanos = VisionMetrics.record(metrics, VisionMetrics.Stage.Detection, nanos);
+        if (this.decimationController != null)
+        {
+            this.adjustDecimation(detectedTags, nanos - detectionStartNanos);
+            nanos = System.nanoTime();
+        }
 
         // filter the detected tags
-        T result = this.tagFilter.filter(detectedTags);
+        item.result = this.tagFilter.filter(detectedTags);
+        VisionMetrics.record(metrics, VisionMetrics.Stage.Filtering, nanos);
+    }
+
+    /**
+     * Detect tags in a frame, with our own detector or on the shared scheduler
+     * @param grayFrame frame to detect tags in
+     * @param metrics to record the queueing delay into, or null
+     * @return detected tags
+     */
+    private AprilTagDetection[] detectTags(Mat grayFrame, VisionMetrics metrics)
+    {
+        if (this.detectionClient == null)
+        {
+            return this.aprilTagDetector.detect(grayFrame);
+        }
+
+        AprilTagDetection[] detectedTags = this.detectionClient.detect(grayFrame);
+        VisionMetrics.recordDuration(metrics, VisionMetrics.Stage.DetectionQueue, this.detectionClient.getQueueNanos());
+        return detectedTags;
+    }
+
+    /**
+     * Create the detector with the given quad decimation, using more threads when there are more pixels to search
+     * @param quadDecimate quad decimation
+     * @return detector
+     */
+    private AprilTagDetector createDetector(float quadDecimate)
+    {
+        int threads = this.tagThreads;
+        if (this.decimationController != null)
+        {
+            double relativePixels = (this.tagQuadDecimate * this.tagQuadDecimate) / (quadDecimate * quadDecimate);
+            threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), (int)Math.round(this.tagThreads * relativePixels)));
+        }
+
+        return AprilTag.create(this.tagFamily, this.tagMaxHammingDistance, threads, quadDecimate, this.tagQuadSigma, this.tagRefineEdges, this.tagDecodeSharpening, false);
+    }
+
+    /**
+     * Update the decimation controller with the size of the detected tags, and rebuild the detector if the decimation changed
+     * @param detectedTags that were found
+     * @param detectionNanos how long detection took
+     */
+    private void adjustDecimation(AprilTagDetection[] detectedTags, long detectionNanos)
+    {
+        double minTagArea = 0.0;
+        if (detectedTags != null)
+        {
+            for (AprilTagDetection detection : detectedTags)
+            {
+                double area = AreaHelper.findArea(detection.getVertices());
+                if (minTagArea == 0.0 || area < minTagArea)
+                {
+                    minTagArea = area;
+                }
+            }
+        }
+
+        if (this.decimationController.update(minTagArea, detectionNanos))
+        {
+            this.setDecimation(this.getTargetDecimation());
+        }
+    }
+
+    /**
+     * Gets the quad decimation that the detector should currently use
+     * @return quad decimation (raised if we are shedding detection resolution)
+     */
+    private float getTargetDecimation()
+    {
+        float quadDecimate = this.decimationController != null ? this.decimationController.getDecimation() : this.tagQuadDecimate;
+        if (this.reducedResolution)
+        {
+            quadDecimate *= VisionConstants.LOAD_SHEDDING_DECIMATION_FACTOR;
+        }
+
+        return quadDecimate;
+    }
+
+    /**
+     * Change the detector's quad decimation, rebuilding our own detector if we aren't using the shared scheduler
+     * @param quadDecimate quad decimation
+     */
+    private void setDecimation(float quadDecimate)
+    {
+        if (VisionConstants.DEBUG_PRINT_PIPELINE_DATA)
+        {
+            Logger.write(String.format("AprilTag quad decimation changed to %f", quadDecimate));
+        }
+
+        if (this.detectionClient != null)
+        {
+            this.detectionClient.setQuadDecimate(quadDecimate);
+        }
+        else
+        {
+            // detection only happens on this thread, so nothing else is using the old detector
+            this.aprilTagDetector.release();
+            this.aprilTagDetector = this.createDetector(quadDecimate);
+        }
+    }
+
+    /**
+     * Start tracking the tags that were detected in a frame
+     * @param detectedTags that were found
+     * @param item holding the region that was searched
+     * @param searchedRegion true if a region was searched, false if the full frame was searched
+     */
+    private void updateTracker(AprilTagDetection[] detectedTags, WorkItem item, boolean searchedRegion)
+    {
+        this.tracker.beginUpdate();
+        if (detectedTags != null)
+        {
+            for (AprilTagDetection detection : detectedTags)
+            {
+                this.tracker.addTag(detection.getId(), detection.getVertices(), item.regionX, item.regionY);
+            }
+        }
 
+        this.tracker.endUpdate(searchedRegion);
+    }
+
+    /**
+     * Write the result for a frame, clean it up, and record how long it has been since the frame was captured
+     * @param item holding the result
+     */
+    private void outputResult(WorkItem item)
+    {
         // finally, output the result
-        this.output.write(result, captureTime, frameToUse);
+        T result = item.result;
+        if (this.tracker != null)
+        {
+            ((IRegionAware)this.output).setRegionOffset(item.regionX, item.regionY);
+        }
+
+        if (this.shedDebugFrames)
+        {
+            this.output.write(result, item.captureTime);
+            VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.DebugFrame);
+        }
+        else
+        {
+            this.output.write(result, item.captureTime, item.frame);
+        }
 
         if (result != null)
         {
             if (result instanceof Mat)
             {
                 ((Mat)result).release();
-                result = null;
             }
             else if (result instanceof AprilTagDetection)
             {
                 ((AprilTagDetection)result).release();
-                result = null;
             }
+            else if (result instanceof AprilTagDetection[])
+            {
+                for (AprilTagDetection detection : (AprilTagDetection[])result)
+                {
+                    detection.release();
+                }
+            }
+        }
+
+        item.result = null;
+        item.frame = null;
+        item.grayFrame = null;
+
+        long nanos = System.nanoTime();
+        this.latency.record(nanos - item.captureTime);
+
+        IResultListener resultListener = this.resultListener;
+        if (this.pipelined && resultListener != null)
+        {
+            resultListener.resultReady(item.captureTime, nanos - item.processNanos, nanos);
+        }
+
+        this.outputFrames++;
+        if (VisionConstants.DEBUG_FRAME_RATE &&
+            this.outputFrames >= VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL)
+        {
+            double framesPerSecond = 1000000000.0 * this.outputFrames / (nanos - this.lastMeasuredNanos);
+            Logger.write(
+                String.format(
+                    "Recent AprilTag pipeline (%s) output rate %f fps, capture-to-output latency %s",
+                    this.pipelined ? "pipelined" : "serial",
+                    framesPerSecond,
+                    this.latency.getSummary()));
+
+            if (this.tracker != null)
+            {
+                Logger.write(
+                    String.format(
+                        "Recent AprilTag tracking region hits %d, misses %d, full-frame fallbacks %d",
+                        this.tracker.getRegionHits(),
+                        this.tracker.getRegionMisses(),
+                        this.tracker.getFullSearches()));
+
+                this.tracker.resetCounts();
+            }
+
+            this.latency.reset();
+            this.lastMeasuredNanos = nanos;
+            this.outputFrames = 0L;
+        }
+    }
+
+    /**
+     * Retrieve an idle work item, waiting for one of the later stages to finish with it if necessary
+     * @return work item, or null if the pipeline was closed
+     */
+    private WorkItem acquireWorkItem()
+    {
+        try
+        {
+            while (!this.stopped)
+            {
+                WorkItem item = this.freeItems.poll(100L, TimeUnit.MILLISECONDS);
+                if (item != null)
+                {
+                    return item;
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return null;
+    }
+
+    /**
+     * Run the detection stage, detecting tags in frames that have been preprocessed and passing them on to the output stage
+     */
+    private void runDetectionStage()
+    {
+        while (!this.stopped)
+        {
+            WorkItem item;
+            try
+            {
+                item = this.detectionQueue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                break;
+            }
+
+            try
+            {
+                if (item.frame != null)
+                {
+                    this.detect(item);
+                }
+            }
+            catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
+            finally
+            {
+                this.outputQueue.add(item);
+            }
+        }
+    }
+
+    /**
+     * Run the output stage, writing results in the order the frames were captured and recycling their work items
+     */
+    private void runOutputStage()
+    {
+        while (!this.stopped)
+        {
+            WorkItem item;
+            try
+            {
+                item = this.outputQueue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                break;
+            }
+
+            try
+            {
+                if (item.frame != null)
+                {
+                    this.outputResult(item);
+                }
+                else
+                {
+                    this.output.write(null, item.captureTime);
+                }
+            }
+            catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
+            finally
+            {
+                item.frame = null;
+                item.grayFrame = null;
+                item.result = null;
+                this.freeItems.add(item);
+            }
+        }
+    }
+
+    // the intermediate images and result for a single frame as it moves through the pipeline
+    private class WorkItem
+    {
+        private final Mat maskedFrame;
+        private final Mat frameUndistort;
+        private final Mat gray;
+        private final Mat sourceCopy;
+        private final Mat regionGray;
+
+        private Mat frame;
+        private Mat grayFrame;
+        private T result;
+        private long captureTime;
+        private long processNanos;
+        private int regionX;
+        private int regionY;
+
+        WorkItem()
+        {
+            this.maskedFrame = AprilTagPipeline.this.mask != null ? new Mat() : null;
+            this.frameUndistort = AprilTagPipeline.this.undistorter != null ? new Mat() : null;
+            this.gray = new Mat(); // (YUYV frames need it for their luma even when the source is otherwise grayscale)
+            this.sourceCopy = AprilTagPipeline.this.pipelined ? new Mat() : null;
+            this.regionGray = AprilTagPipeline.this.tracker != null ? new Mat() : null;
+
+            this.frame = null;
+            this.grayFrame = null;
+            this.result = null;
+            this.captureTime = 0L;
+            this.processNanos = 0L;
+            this.regionX = 0;
+            this.regionY = 0;
         }
     }
 }
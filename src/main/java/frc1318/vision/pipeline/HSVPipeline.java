@@ -4,32 +4,56 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.imgproc.Imgproc;
 
+import frc1318.vision.IBlobFilter;
+import frc1318.vision.IContourBufferFilter;
 import frc1318.vision.IContourFilter;
 import frc1318.vision.IFramePipeline;
+import frc1318.vision.IHSVFilter;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.ILoadShedding;
 import frc1318.vision.IResultWriter;
-import frc1318.vision.helpers.HSVFilter;
+import frc1318.vision.helpers.BlobDetector;
+import frc1318.vision.helpers.ContourBuffer;
 import frc1318.vision.helpers.ImageUndistorter;
+import frc1318.vision.helpers.LoadShedder;
+import frc1318.vision.helpers.LookupTableHSVFilter;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class HSVPipeline<T> implements IFramePipeline
+public class HSVPipeline<T> implements IFramePipeline, IInstrumented, ILoadShedding
 {
     private final IResultWriter<T> output;
 
     private final Mat mask;
     private final ImageUndistorter undistorter;
-    private final HSVFilter hsvFilter;
+    private final IHSVFilter hsvFilter;
+    private final LookupTableHSVFilter.Layout layout;
+    private final int frameType;
     private final IContourFilter<T> contourFilter;
+    private final IContourBufferFilter<T> contourBufferFilter;
+    private final IBlobFilter<T> blobFilter;
 
     private final Mat maskedFrame;
     private final Mat undistortedFrame;
     private final Mat filteredFrame;
+    private Mat grayMask;
+    private Mat lumaFrame;
     private final Mat hierarchy;
+    private final List<MatOfPoint> contours;
+    private final ContourBuffer contourBuffer;
+    private final BlobDetector blobDetector;
+
+    private VisionMetrics metrics;
+    private volatile boolean shedDebugFrames;
 
     /**
      * Initializes a new instance of the HSVPipeline class.
+     * If the contour filter can filter a ContourBuffer, the pipeline finds the contours into one reused buffer instead of
+     * allocating a list of MatOfPoint for each frame.
      * 
      * @param output        output writer
      * @param mask          to use for removing selected parts of the image
@@ -41,8 +65,52 @@ public class HSVPipeline<T> implements IFramePipeline
         IResultWriter<T> output,
         Mat mask,
         ImageUndistorter undistorter,
-        HSVFilter hsvFilter,
+        IHSVFilter hsvFilter,
         IContourFilter<T> contourFilter)
+    {
+        this(output, mask, undistorter, hsvFilter, contourFilter, null);
+    }
+
+    /**
+     * Initializes a new instance of the HSVPipeline class.
+     * Instead of finding contours, the pipeline finds the blobs (connected components) of the filtered image, which gives the
+     * area, bounding box and centroid of every blob in one native call.
+     * 
+     * @param output      output writer
+     * @param mask        to use for removing selected parts of the image
+     * @param undistorter helper for undistorting the image
+     * @param hsvFilter   HSV Filtering helper
+     * @param blobFilter  filter for selecting a single blob to be picked
+     */
+    public HSVPipeline(
+        IResultWriter<T> output,
+        Mat mask,
+        ImageUndistorter undistorter,
+        IHSVFilter hsvFilter,
+        IBlobFilter<T> blobFilter)
+    {
+        this(output, mask, undistorter, hsvFilter, null, blobFilter);
+    }
+
+    /**
+     * Initializes a new instance of the HSVPipeline class.
+     * The frames must be in the layout that the HSV filter expects.
+     * 
+     * @param output        output writer
+     * @param mask          to use for removing selected parts of the image
+     * @param undistorter   helper for undistorting the image
+     * @param hsvFilter     HSV Filtering helper
+     * @param contourFilter filter for selecting a single contour to be picked (or null to use the blob filter)
+     * @param blobFilter    filter for selecting a single blob to be picked (or null to use the contour filter)
+     */
+    @SuppressWarnings("unchecked")
+    private HSVPipeline(
+        IResultWriter<T> output,
+        Mat mask,
+        ImageUndistorter undistorter,
+        IHSVFilter hsvFilter,
+        IContourFilter<T> contourFilter,
+        IBlobFilter<T> blobFilter)
     {
         this.output = output;
 
@@ -69,17 +137,74 @@ public class HSVPipeline<T> implements IFramePipeline
         }
 
         this.hsvFilter = hsvFilter;
+        this.layout = hsvFilter.getLayout();
+        this.frameType = HSVPipeline.getFrameType(this.layout);
         this.contourFilter = contourFilter;
+        this.blobFilter = blobFilter;
 
         this.filteredFrame = new Mat();
-        this.hierarchy = new Mat();
+        this.grayMask = null;
+        this.lumaFrame = null;
+        if (blobFilter != null)
+        {
+            this.contourBufferFilter = null;
+            this.contourBuffer = null;
+            this.hierarchy = null;
+            this.contours = null;
+            this.blobDetector = new BlobDetector();
+        }
+        else if (contourFilter instanceof IContourBufferFilter)
+        {
+            this.contourBufferFilter = (IContourBufferFilter<T>)contourFilter;
+            this.contourBuffer = new ContourBuffer();
+            this.hierarchy = null;
+            this.contours = null;
+            this.blobDetector = null;
+        }
+        else
+        {
+            this.contourBufferFilter = null;
+            this.contourBuffer = null;
+            this.hierarchy = new Mat();
+            this.contours = new ArrayList<MatOfPoint>();
+            this.blobDetector = null;
+        }
+
+        this.metrics = null;
+        this.shedDebugFrames = false;
+    }
+
+    /**
+     * Sets the metrics that the pipeline and its output (if it is instrumented) should record how long each stage takes into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.output instanceof IInstrumented)
+        {
+            ((IInstrumented)this.output).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets how much optional work the pipeline should skip because frames are taking too long to process
+     * (the pipeline only sheds debug frames, by writing its results without the frame they came from)
+     * @param level of work to shed
+     */
+    @Override
+    public void setShedLevel(LoadShedder.Level level)
+    {
+        this.shedDebugFrames = level.sheds(LoadShedder.Level.DebugFrames);
     }
 
     /**
      * Process a single image frame
      * 
-     * @param sourceFrame image to process
+     * @param sourceFrame image to process (BGR, YUYV or I420, as the HSV filter expects)
      * @param captureTime when the image was captured
+     * @throws IllegalArgumentException if the frame isn't in the layout the HSV filter expects
      */
     @Override
     public void process(Mat sourceFrame, long captureTime)
@@ -90,34 +215,101 @@ public class HSVPipeline<T> implements IFramePipeline
             return;
         }
 
-        // first, mask the image.
-        Mat frameToUse = sourceFrame;
-        if (this.mask != null)
+        // (a grayscale frame would otherwise be taken for I420 planes, or be converted to HSV as if it was BGR)
+        if (sourceFrame.type() != this.frameType)
         {
-            Core.bitwise_and(frameToUse, this.mask, this.maskedFrame);
-            frameToUse = this.maskedFrame;
+            throw new IllegalArgumentException(
+                String.format("HSV filter expects %s frames, but was given a %s frame", this.layout, CvType.typeToString(sourceFrame.type())));
         }
 
-        // second, undistort the image.
-        if (this.undistorter != null)
+        long nanos = System.nanoTime();
+
+        Mat frameToUse = sourceFrame;
+        Mat filteredFrame;
+        boolean yuyv = this.layout == LookupTableHSVFilter.Layout.YUYV;
+        boolean i420 = this.layout == LookupTableHSVFilter.Layout.I420;
+        if (yuyv || i420)
         {
-            this.undistorter.undistortFrame(frameToUse, this.undistortedFrame);
-            frameToUse = this.undistortedFrame;
+            // YUV frames are filtered as-is, never being converted to BGR
+            filteredFrame = this.filterYUV(sourceFrame);
+            nanos = System.nanoTime();
         }
+        else
+        {
+            // first, mask the image.
+            if (this.mask != null)
+            {
+                Core.bitwise_and(frameToUse, this.mask, this.maskedFrame);
+                frameToUse = this.maskedFrame;
+                nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.Mask, nanos);
+            }
 
-        // third, filter HSV
-        this.hsvFilter.filterHSV(frameToUse, this.filteredFrame);
+            // second, undistort the image.
+            if (this.undistorter != null)
+            {
+                this.undistorter.undistortFrame(frameToUse, this.undistortedFrame);
+                frameToUse = this.undistortedFrame;
+                nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.Undistort, nanos);
+            }
 
-        // third, find the contours.
-        // find the contours using OpenCV API...
-        List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-        Imgproc.findContours(this.filteredFrame, contours, this.hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_TC89_KCOS);
+            // third, filter HSV
+            this.hsvFilter.filterHSV(frameToUse, this.filteredFrame);
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.ColorConversion, nanos);
+            filteredFrame = this.filteredFrame;
+        }
 
-        // filter the contours
-        T result = this.contourFilter.filter(contours);
+        // third, find and filter the contours (or blobs).
+        T result;
+        if (this.blobFilter != null)
+        {
+            this.blobDetector.detect(filteredFrame);
+            result = this.blobFilter.filter(this.blobDetector);
+        }
+        else if (this.contourBufferFilter != null)
+        {
+            this.contourBuffer.findExternalContours(filteredFrame);
+            result = this.contourBufferFilter.filter(this.contourBuffer);
+        }
+        else
+        {
+            // find the contours using OpenCV API...
+            Imgproc.findContours(filteredFrame, this.contours, this.hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_TC89_KCOS);
+
+            // filter the contours (which releases them)
+            result = this.contourFilter.filter(this.contours);
+            this.contours.clear();
+        }
+
+        VisionMetrics.record(this.metrics, VisionMetrics.Stage.Filtering, nanos);
 
         // finally, output the result
-        this.output.write(result, captureTime, frameToUse);
+        if (this.shedDebugFrames)
+        {
+            this.output.write(result, captureTime);
+            VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.DebugFrame);
+        }
+        else if (yuyv)
+        {
+            // the debug frame shows the luma, rather than converting the whole frame to BGR
+            if (this.lumaFrame == null)
+            {
+                this.lumaFrame = new Mat();
+            }
+
+            Core.extractChannel(sourceFrame, this.lumaFrame, 0);
+            this.output.write(result, captureTime, this.lumaFrame);
+        }
+        else if (i420)
+        {
+            // the debug frame shows the luma, which is the top 2/3 of the planes (without copying it)
+            Mat luma = sourceFrame.rowRange(0, sourceFrame.rows() * 2 / 3);
+            this.output.write(result, captureTime, luma);
+            luma.release();
+        }
+        else
+        {
+            this.output.write(result, captureTime, frameToUse);
+        }
 
         if (result != null && result instanceof Mat)
         {
@@ -125,4 +317,63 @@ public class HSVPipeline<T> implements IFramePipeline
             result = null;
         }
     }
+
+    /**
+     * Gets the type of the frames in a layout
+     * @param layout of the frames
+     * @return OpenCV type of the frames
+     */
+    private static int getFrameType(LookupTableHSVFilter.Layout layout)
+    {
+        switch (layout)
+        {
+            case YUYV:
+                return CvType.CV_8UC2;
+
+            case I420:
+                return CvType.CV_8UC1;
+
+            default:
+                return CvType.CV_8UC3;
+        }
+    }
+
+    /**
+     * Filter a YUYV or I420 frame as-is, and then mask and undistort the single-channel result rather than the frame, as
+     * masking or undistorting the frame itself would mix up its interleaved (or quarter resolution) chroma
+     * @param sourceFrame YUYV or I420 frame to filter (the HSV filter must support the frame's layout)
+     * @return the filtered frame
+     */
+    private Mat filterYUV(Mat sourceFrame)
+    {
+        long nanos = System.nanoTime();
+
+        // first, filter HSV
+        this.hsvFilter.filterHSV(sourceFrame, this.filteredFrame);
+        nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.ColorConversion, nanos);
+
+        // second, mask the filtered image.
+        Mat filteredFrame = this.filteredFrame;
+        if (this.mask != null)
+        {
+            if (this.grayMask == null)
+            {
+                this.grayMask = ImageUndistorter.toSingleChannelMask(this.mask);
+            }
+
+            Core.bitwise_and(filteredFrame, this.grayMask, this.maskedFrame);
+            filteredFrame = this.maskedFrame;
+            nanos = VisionMetrics.record(this.metrics, VisionMetrics.Stage.Mask, nanos);
+        }
+
+        // third, undistort the filtered image.
+        if (this.undistorter != null)
+        {
+            this.undistorter.undistortFrame(filteredFrame, this.undistortedFrame);
+            filteredFrame = this.undistortedFrame;
+            VisionMetrics.record(this.metrics, VisionMetrics.Stage.Undistort, nanos);
+        }
+
+        return filteredFrame;
+    }
 }
@@ -5,16 +5,24 @@ import java.io.File;
 import org.opencv.core.Mat;
 import org.opencv.imgcodecs.Imgcodecs;
 
+import frc1318.vision.IDetectionScheduled;
 import frc1318.vision.IFramePipeline;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.ILoadShedding;
+import frc1318.vision.IOpenable;
 import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.LoadShedder;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class LoggingPipeline implements IFramePipeline
+public class LoggingPipeline implements IFramePipeline, IOpenable, IInstrumented, IDetectionScheduled, ILoadShedding
 {
     private final File imageLoggingDirectory;
     private final IFramePipeline next;
     private final String prefix;
 
     private int count;
+    private VisionMetrics metrics;
+    private volatile boolean shedDebugFrames;
 
     /**
      * Initializes a new instance of the LoggingPipeline class.
@@ -33,6 +41,78 @@ public class LoggingPipeline implements IFramePipeline
         this.prefix = prefix;
 
         this.count = 0;
+        this.metrics = null;
+        this.shedDebugFrames = false;
+    }
+
+    /**
+     * Opens the next step in the pipeline (if it needs to be opened)
+     * @return true if successful
+     */
+    @Override
+    public boolean open()
+    {
+        if (this.next instanceof IOpenable)
+        {
+            return ((IOpenable)this.next).open();
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the next step in the pipeline (if it needs to be closed)
+     */
+    @Override
+    public void close()
+    {
+        if (this.next instanceof IOpenable)
+        {
+            ((IOpenable)this.next).close();
+        }
+    }
+
+    /**
+     * Sets the metrics that the next step in the pipeline (if it is instrumented) should record into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        if (this.next instanceof IInstrumented)
+        {
+            ((IInstrumented)this.next).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Sets how much optional work this pipeline and the next step in the pipeline (if it can shed work) should skip
+     * (logging frames is shed along with debug frames)
+     * @param level of work to shed
+     */
+    @Override
+    public void setShedLevel(LoadShedder.Level level)
+    {
+        this.shedDebugFrames = level.sheds(LoadShedder.Level.DebugFrames);
+        if (this.next instanceof ILoadShedding)
+        {
+            ((ILoadShedding)this.next).setShedLevel(level);
+        }
+    }
+
+    /**
+     * Sets the shared scheduler that the next step in the pipeline (if it detects tags) should run its detection on
+     * @param scheduler to run detection on
+     * @param priority of the detection jobs (lower values run first)
+     */
+    @Override
+    public void setDetectionScheduler(AprilTagDetectionScheduler scheduler, int priority)
+    {
+        if (this.next instanceof IDetectionScheduled)
+        {
+            ((IDetectionScheduled)this.next).setDetectionScheduler(scheduler, priority);
+        }
     }
 
     /**
@@ -49,13 +129,20 @@ public class LoggingPipeline implements IFramePipeline
             this.count++;
             if (this.imageLoggingDirectory != null && this.count % VisionConstants.FRAME_OUTPUT_GAP == 0)
             {
-                File newFile = new File(this.imageLoggingDirectory, String.format("%simage%d.jpg", this.prefix, this.count));
-                if (newFile.exists())
+                if (this.shedDebugFrames)
                 {
-                    newFile.delete();
+                    VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.DebugFrame);
                 }
+                else
+                {
+                    File newFile = new File(this.imageLoggingDirectory, String.format("%simage%d.jpg", this.prefix, this.count));
+                    if (newFile.exists())
+                    {
+                        newFile.delete();
+                    }
 
-                Imgcodecs.imwrite(newFile.getAbsolutePath(), sourceFrame);
+                    Imgcodecs.imwrite(newFile.getAbsolutePath(), sourceFrame);
+                }
             }
         }
 
@@ -0,0 +1,274 @@
+package frc1318.vision.pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.apriltag.*;
+import frc1318.vision.IAprilTagFilter;
+import frc1318.vision.IFramePipeline;
+import frc1318.vision.Logger;
+import frc1318.vision.calculator.AbsolutePositionMeasurement;
+import frc1318.vision.calculator.AbsolutePositionVisionCalculator;
+import frc1318.vision.calculator.DistancesAnglesMeasurements;
+import frc1318.vision.calculator.DistancesAnglesVisionCalculator;
+import frc1318.vision.calculator.MultiTagAbsolutePositionVisionCalculator;
+import frc1318.vision.helpers.ImageUndistorter;
+
+public class UndistortionComparisonPipeline implements IFramePipeline
+{
+    private final ImageUndistorter undistorter;
+    private final boolean isGrayscale;
+    private final DistancesAnglesVisionCalculator frameCalculator;
+    private final DistancesAnglesVisionCalculator cornerCalculator;
+    private final AbsolutePositionVisionCalculator nativePoseCalculator;
+    private final MultiTagAbsolutePositionVisionCalculator solverPoseCalculator;
+    private final AprilTagDetector aprilTagDetector;
+    private final IAprilTagFilter<AprilTagDetection> tagFilter;
+
+    private final Mat gray;
+    private final Mat undistortedGray;
+
+    private int comparisons;
+    private int mismatches;
+    private double totalPositionDifference;
+    private double maxPositionDifference;
+    private double totalYawDifference;
+    private double maxYawDifference;
+
+    private int poseComparisons;
+    private double totalPoseDifference;
+    private double maxPoseDifference;
+    private double totalPoseYawDifference;
+    private double maxPoseYawDifference;
+
+    /**
+     * Initializes a new instance of the UndistortionComparisonPipeline class.
+     * The pipeline measures how closely undistorting just the corners of the detected tags matches undistorting the whole frame,
+     * by detecting tags both in the undistorted frame and in the original frame and logging the differences between the results.
+     * It also checks the Java field-position solver against the native one, by calculating the robot's position from each tag
+     * detected in the undistorted frame with both (using FieldLayout's poses and affine transformations respectively).
+     *
+     * @param undistorter            frame undistorter
+     * @param grayscaleSource        Whether the source images are grayscale already, or in BGR and need conversion to Grayscale
+     * @param frameCalculator        calculator for tags detected in the undistorted frame
+     * @param cornerCalculator       calculator for tags detected in the original frame (which undistorts the corners of the tags)
+     * @param nativePoseCalculator   calculator for the robot's field position using the native solver, for tags detected in the undistorted frame
+     * @param solverPoseCalculator   calculator for the robot's field position using the Java solver, for tags detected in the undistorted frame
+     * @param tagFilter              AprilTag filter
+     * @param tagFamily              AprilTag family
+     * @param tagMaxHammingDistance  How many bit errors to accept for AprilTag detection
+     * @param tagThreads             How many threads should be used for AprilTag detection
+     * @param tagQuadDecimate        AprilTag detection of quads can be done on a lower-resolution image
+     * @param tagQuadSigma           What Gaussian blur should be applied to the segmented image (used for quad detection?)
+     * @param tagRefineEdges         whether the edges of the each quad are adjusted to "snap to" strong gradients nearby
+     * @param tagDecodeSharpening    How much sharpening should be done to decoded images?
+     */
+    public UndistortionComparisonPipeline(
+        ImageUndistorter undistorter,
+        boolean grayscaleSource,
+        DistancesAnglesVisionCalculator frameCalculator,
+        DistancesAnglesVisionCalculator cornerCalculator,
+        AbsolutePositionVisionCalculator nativePoseCalculator,
+        MultiTagAbsolutePositionVisionCalculator solverPoseCalculator,
+        IAprilTagFilter<AprilTagDetection> tagFilter,
+        AprilTagFamily tagFamily,
+        int tagMaxHammingDistance,
+        int tagThreads,
+        float tagQuadDecimate,
+        float tagQuadSigma,
+        boolean tagRefineEdges,
+        double tagDecodeSharpening)
+    {
+        this.undistorter = undistorter;
+        this.isGrayscale = grayscaleSource;
+        this.frameCalculator = frameCalculator;
+        this.cornerCalculator = cornerCalculator;
+        this.nativePoseCalculator = nativePoseCalculator;
+        this.solverPoseCalculator = solverPoseCalculator;
+        this.tagFilter = tagFilter;
+        this.aprilTagDetector = AprilTag.create(tagFamily, tagMaxHammingDistance, tagThreads, tagQuadDecimate, tagQuadSigma, tagRefineEdges, tagDecodeSharpening, false);
+
+        this.gray = new Mat();
+        this.undistortedGray = new Mat();
+
+        this.comparisons = 0;
+        this.mismatches = 0;
+        this.totalPositionDifference = 0.0;
+        this.maxPositionDifference = 0.0;
+        this.totalYawDifference = 0.0;
+        this.maxYawDifference = 0.0;
+
+        this.poseComparisons = 0;
+        this.totalPoseDifference = 0.0;
+        this.maxPoseDifference = 0.0;
+        this.totalPoseYawDifference = 0.0;
+        this.maxPoseYawDifference = 0.0;
+    }
+
+    /**
+     * Process a single image frame
+     *
+     * @param sourceFrame image to process
+     * @param captureTime when the image was captured
+     */
+    @Override
+    public void process(Mat sourceFrame, long captureTime)
+    {
+        if (sourceFrame == null)
+        {
+            return;
+        }
+
+        Mat grayFrame = sourceFrame;
+        if (!this.isGrayscale)
+        {
+            Imgproc.cvtColor(sourceFrame, this.gray, Imgproc.COLOR_BGR2GRAY);
+            grayFrame = this.gray;
+        }
+
+        this.undistorter.undistortFrame(grayFrame, this.undistortedGray);
+
+        AprilTagDetection frameTag = this.tagFilter.filter(this.aprilTagDetector.detect(this.undistortedGray));
+        DistancesAnglesMeasurements frameResult = this.frameCalculator.calculate(frameTag);
+
+        AprilTagDetection cornerTag = this.tagFilter.filter(this.aprilTagDetector.detect(grayFrame));
+        DistancesAnglesMeasurements cornerResult = this.cornerCalculator.calculate(cornerTag);
+
+        if (frameTag == null && cornerTag == null)
+        {
+            Logger.write("No AprilTag detected!");
+            return;
+        }
+
+        if (frameTag != null)
+        {
+            this.comparePoseSolvers(frameTag);
+        }
+
+        if (frameTag == null || cornerTag == null || frameTag.getId() != cornerTag.getId() || frameResult == null || cornerResult == null)
+        {
+            this.mismatches++;
+            Logger.write(
+                String.format(
+                    "Different AprilTags detected: %s in the undistorted frame, %s in the original frame",
+                    frameTag == null ? "none" : Integer.toString(frameTag.getId()),
+                    cornerTag == null ? "none" : Integer.toString(cornerTag.getId())));
+        }
+        else
+        {
+            double xDifference = cornerResult.getX() - frameResult.getX();
+            double yDifference = cornerResult.getY() - frameResult.getY();
+            double zDifference = cornerResult.getZ() - frameResult.getZ();
+            double positionDifference = Math.sqrt(xDifference * xDifference + yDifference * yDifference + zDifference * zDifference);
+            double yawDifference = Math.abs(Math.IEEEremainder(cornerResult.getYaw() - frameResult.getYaw(), 360.0));
+
+            this.comparisons++;
+            this.totalPositionDifference += positionDifference;
+            this.maxPositionDifference = Math.max(this.maxPositionDifference, positionDifference);
+            this.totalYawDifference += yawDifference;
+            this.maxYawDifference = Math.max(this.maxYawDifference, yawDifference);
+
+            Logger.write(
+                String.format(
+                    "AprilTag %d: undistorted frame (%f, %f, %f) yaw %f, undistorted corners (%f, %f, %f) yaw %f, difference %f (yaw %f)",
+                    frameTag.getId(),
+                    frameResult.getX(),
+                    frameResult.getY(),
+                    frameResult.getZ(),
+                    frameResult.getYaw(),
+                    cornerResult.getX(),
+                    cornerResult.getY(),
+                    cornerResult.getZ(),
+                    cornerResult.getYaw(),
+                    positionDifference,
+                    yawDifference));
+        }
+
+        if (this.comparisons > 0)
+        {
+            Logger.write(
+                String.format(
+                    "Compared %d AprilTags: position difference mean %f max %f, yaw difference mean %f max %f, %d mismatched detections",
+                    this.comparisons,
+                    this.totalPositionDifference / this.comparisons,
+                    this.maxPositionDifference,
+                    this.totalYawDifference / this.comparisons,
+                    this.maxYawDifference,
+                    this.mismatches));
+        }
+
+        if (this.poseComparisons > 0)
+        {
+            Logger.write(
+                String.format(
+                    "Compared %d field positions: native vs. Java solver difference mean %f max %f, yaw difference mean %f max %f",
+                    this.poseComparisons,
+                    this.totalPoseDifference / this.poseComparisons,
+                    this.maxPoseDifference,
+                    this.totalPoseYawDifference / this.poseComparisons,
+                    this.maxPoseYawDifference));
+        }
+
+        if (frameTag != null)
+        {
+            frameTag.release();
+        }
+
+        if (cornerTag != null)
+        {
+            cornerTag.release();
+        }
+    }
+
+    /**
+     * Calculate the robot's field position from a single tag with both the native solver (which uses the tag's affine
+     * transformation from FieldLayout) and the Java solver (which uses the tag's pose from FieldLayout), and log the difference
+     * @param tag detected in the undistorted frame
+     */
+    private void comparePoseSolvers(AprilTagDetection tag)
+    {
+        if (this.nativePoseCalculator == null || this.solverPoseCalculator == null)
+        {
+            return;
+        }
+
+        AbsolutePositionMeasurement nativeResult = this.nativePoseCalculator.calculate(tag);
+        AbsolutePositionMeasurement solverResult = this.solverPoseCalculator.calculate(new AprilTagDetection[] { tag });
+        if (nativeResult == null || solverResult == null)
+        {
+            Logger.write(
+                String.format(
+                    "AprilTag %d: no field position from the %s solver",
+                    tag.getId(),
+                    nativeResult == null ? "native" : "Java"));
+            return;
+        }
+
+        double xDifference = solverResult.getX() - nativeResult.getX();
+        double yDifference = solverResult.getY() - nativeResult.getY();
+        double zDifference = solverResult.getZ() - nativeResult.getZ();
+        double positionDifference = Math.sqrt(xDifference * xDifference + yDifference * yDifference + zDifference * zDifference);
+        double yawDifference = Math.abs(Math.IEEEremainder(solverResult.getYaw() - nativeResult.getYaw(), 360.0));
+
+        this.poseComparisons++;
+        this.totalPoseDifference += positionDifference;
+        this.maxPoseDifference = Math.max(this.maxPoseDifference, positionDifference);
+        this.totalPoseYawDifference += yawDifference;
+        this.maxPoseYawDifference = Math.max(this.maxPoseYawDifference, yawDifference);
+
+        Logger.write(
+            String.format(
+                "AprilTag %d: native field position (%f, %f, %f) yaw %f, Java solver (%f, %f, %f) yaw %f, difference %f (yaw %f)",
+                tag.getId(),
+                nativeResult.getX(),
+                nativeResult.getY(),
+                nativeResult.getZ(),
+                nativeResult.getYaw(),
+                solverResult.getX(),
+                solverResult.getY(),
+                solverResult.getZ(),
+                solverResult.getYaw(),
+                positionDifference,
+                yawDifference));
+    }
+}
@@ -2,18 +2,23 @@ package frc1318.vision.reader;
 
 import org.opencv.core.Mat;
 import org.opencv.videoio.VideoCapture;
-import org.opencv.videoio.VideoWriter;
 import org.opencv.videoio.Videoio;
 
+import frc1318.vision.CameraPixelFormat;
 import frc1318.vision.CameraSettings;
 import frc1318.vision.IController;
+import frc1318.vision.IInstrumented;
 import frc1318.vision.IRunnableFrameReader;
 import frc1318.vision.Logger;
 import frc1318.vision.Program;
 import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.DecodeGate;
+import frc1318.vision.helpers.FramePool;
+import frc1318.vision.helpers.MjpegDecoder;
 import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class CameraReader implements IRunnableFrameReader
+public class CameraReader implements IRunnableFrameReader, IInstrumented
 {
     private static final int USE_AUTO_EXPOSURE = 3;
     private static final int USE_MANUAL_EXPOSURE = 1;
@@ -21,17 +26,21 @@ public class CameraReader implements IRunnableFrameReader
     private final IController controller;
     private final String videoUrl;
     private final int usbId;
+    private final FramePool framePool;
+    private final MjpegDecoder decoder;
+    private final Mat jpegFrame;
+
+    private final FrameMailbox mailbox;
+    private final DecodeGate decodeGate;
 
-    private Object frameLock;
     private Object settingsLock;
-    private Mat currentFrame;
-    private long captureTime;
-    private boolean frameReady;
-    private boolean stop;
+    private volatile boolean stop;
     private CameraSettings newSettings;
 
     private boolean opened;
     private VideoCapture vc;
+    private boolean decodeMjpeg;
+    private volatile VisionMetrics metrics;
 
     /**
      * Initializes a new instance of the CameraReader class.
@@ -39,20 +48,37 @@ public class CameraReader implements IRunnableFrameReader
      * @param videoUrl to use to retrieve frame data from an IP camera
      */
     public CameraReader(IController controller, String videoUrl)
+    {
+        this(controller, videoUrl, MjpegDecoder.Mode.Color);
+    }
+
+    /**
+     * Initializes a new instance of the CameraReader class.
+     * @param controller to use to determine if we should keep collecting frames
+     * @param videoUrl to use to retrieve frame data from an IP camera
+     * @param decodeMode how to decode the camera's MJPEG frames (other than Color, OpenCV hands us the raw MJPEG bytes and
+     * we decode them ourselves; ignored when the settings ask for an uncompressed pixel format)
+     */
+    public CameraReader(IController controller, String videoUrl, MjpegDecoder.Mode decodeMode)
     {
         this.controller = controller;
 
         this.videoUrl = videoUrl;
         this.usbId = -1;
+        this.framePool = new FramePool(VisionConstants.FRAME_POOL_SIZE);
+        this.decoder = decodeMode != MjpegDecoder.Mode.Color ? new MjpegDecoder(decodeMode) : null;
+        this.jpegFrame = this.decoder != null ? new Mat() : null;
+
+        this.mailbox = new FrameMailbox();
+        this.decodeGate = VisionConstants.CAMERA_DECODE_ON_DEMAND ? new DecodeGate() : null;
 
-        this.frameLock = new Object();
         this.settingsLock = new Object();
-        this.currentFrame = null;
-        this.frameReady = false;
         this.stop = false;
 
         this.opened = false;
         this.vc = null;
+        this.decodeMjpeg = false;
+        this.metrics = null;
     }
 
     /**
@@ -61,20 +87,37 @@ public class CameraReader implements IRunnableFrameReader
      * @param usbId to use to identify a local USB camera
      */
     public CameraReader(IController controller, int usbId)
+    {
+        this(controller, usbId, MjpegDecoder.Mode.Color);
+    }
+
+    /**
+     * Initializes a new instance of the CameraReader class.
+     * @param controller to use to determine if we should keep collecting frames
+     * @param usbId to use to identify a local USB camera
+     * @param decodeMode how to decode the camera's MJPEG frames (other than Color, OpenCV hands us the raw MJPEG bytes and
+     * we decode them ourselves; ignored when the settings ask for an uncompressed pixel format)
+     */
+    public CameraReader(IController controller, int usbId, MjpegDecoder.Mode decodeMode)
     {
         this.controller = controller;
 
         this.usbId = usbId;
         this.videoUrl = null;
+        this.framePool = new FramePool(VisionConstants.FRAME_POOL_SIZE);
+        this.decoder = decodeMode != MjpegDecoder.Mode.Color ? new MjpegDecoder(decodeMode) : null;
+        this.jpegFrame = this.decoder != null ? new Mat() : null;
+
+        this.mailbox = new FrameMailbox();
+        this.decodeGate = VisionConstants.CAMERA_DECODE_ON_DEMAND ? new DecodeGate() : null;
 
-        this.frameLock = new Object();
         this.settingsLock = new Object();
-        this.currentFrame = null;
-        this.frameReady = false;
         this.stop = false;
 
         this.opened = false;
         this.vc = null;
+        this.decodeMjpeg = false;
+        this.metrics = null;
     }
 
     /**
@@ -113,6 +156,13 @@ public class CameraReader implements IRunnableFrameReader
             this.vc.release();
             this.vc = null;
         }
+
+        if (this.jpegFrame != null)
+        {
+            this.jpegFrame.release();
+        }
+
+        this.framePool.clear();
     }
 
     @Override
@@ -124,8 +174,24 @@ public class CameraReader implements IRunnableFrameReader
         }
     }
 
+    /**
+     * Sets the metrics that the reader should count grabbed, decoded and skipped frames (and frames that were replaced
+     * before the vision system retrieved them) into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        this.mailbox.setMetrics(metrics);
+    }
+
     /**
      * Run the thread that captures frames and buffers the most recently retrieved frame so that an pipeline can use it.
+     * Every frame is grabbed from the camera at the sensor's rate, but (when decoding on demand) a frame is only decoded
+     * if the vision thread is expected to take it before the next one is grabbed (or is already waiting), so that decoding
+     * work scales with the frames that are processed rather than the frames that are captured.  When that expectation is
+     * wrong the skipped frame is gone, and the vision thread gets the older decoded frame or waits for the next grab.
      */
     @Override
     public void run()
@@ -133,6 +199,9 @@ public class CameraReader implements IRunnableFrameReader
         if (this.opened)
         {
             Mat image;
+            long grabbedFrames = 0;
+            long decodedFrames = 0;
+            long skippedFrames = 0;
             while (!this.stop)
             {
                 CameraSettings settings;
@@ -144,6 +213,18 @@ public class CameraReader implements IRunnableFrameReader
 
                 if (settings != null)
                 {
+                    // MJPG frames are decoded into 3-channel BGR images, unless we decode them ourselves, and uncompressed
+                    // (YUYV, GREY or YUV420) frames are handed over as-is, so that neither decoding nor color conversion is needed
+                    this.decodeMjpeg = this.decoder != null && settings.PixelFormat == CameraPixelFormat.MJPEG;
+                    if (this.decodeMjpeg)
+                    {
+                        this.framePool.configure(settings.ResolutionX, settings.ResolutionY, this.decoder.getMode().getType());
+                    }
+                    else
+                    {
+                        this.framePool.configure(settings.ResolutionX, settings.PixelFormat.getFrameRows(settings.ResolutionY), settings.PixelFormat.getFrameType());
+                    }
+
                     CameraReader.printError(this.vc.set(Videoio.CAP_PROP_FRAME_WIDTH, settings.ResolutionX), "ResolutionX");
                     CameraReader.printError(this.vc.set(Videoio.CAP_PROP_FRAME_HEIGHT, settings.ResolutionY), "ResolutionY");
                     CameraReader.printError(this.vc.set(Videoio.CAP_PROP_FPS, settings.FramesPerSecond), "FPS");
@@ -158,9 +239,14 @@ public class CameraReader implements IRunnableFrameReader
                     }
 
                     CameraReader.printError(this.vc.set(Videoio.CAP_PROP_BRIGHTNESS, (int)settings.Brightness), "Brightness");
-                    CameraReader.printError(this.vc.set(Videoio.CAP_PROP_FOURCC, VideoWriter.fourcc('M', 'J', 'P', 'G')), "fourCC");
+                    CameraReader.printError(this.vc.set(Videoio.CAP_PROP_FOURCC, settings.PixelFormat.getFourcc()), "fourCC");
                     CameraReader.printError(this.vc.set(Videoio.CAP_PROP_FPS, settings.FramesPerSecond), "FPS");
 
+                    // hand us the raw frames, so that MJPEG can be decoded straight to what the pipeline needs and
+                    // uncompressed frames aren't converted to BGR at all
+                    boolean convertRGB = settings.PixelFormat == CameraPixelFormat.MJPEG && !this.decodeMjpeg;
+                    CameraReader.printError(this.vc.set(Videoio.CAP_PROP_CONVERT_RGB, convertRGB ? 1 : 0), "ConvertRGB");
+
                     if (VisionConstants.DEBUG)
                     {
                         Logger.write("FOURCC: " + CameraReader.fourccToString((int)this.vc.get(Videoio.CAP_PROP_FOURCC)));
@@ -184,11 +270,44 @@ public class CameraReader implements IRunnableFrameReader
                     }
                 }
 
-                image = new Mat();
-                long captureTime = System.currentTimeMillis();
-                if (this.vc.read(image))
+                if (!this.vc.grab())
+                {
+                    continue;
+                }
+
+                long captureTime = this.getCaptureTime();
+                VisionMetrics metrics = this.metrics;
+                VisionMetrics.recordCount(metrics, VisionMetrics.Count.Grabbed);
+                grabbedFrames++;
+
+                if (this.decodeGate == null || this.decodeGate.recordGrab(System.nanoTime()))
+                {
+                    image = this.framePool.acquire();
+                    long dataAddr = image.dataAddr();
+                    if (this.retrieve(image))
+                    {
+                        this.framePool.recordFill(image, dataAddr);
+                        this.framePool.release(this.mailbox.publish(image, captureTime));
+
+                        VisionMetrics.recordCount(metrics, VisionMetrics.Count.Decoded);
+                        decodedFrames++;
+                    }
+                    else
+                    {
+                        this.framePool.release(image);
+                    }
+                }
+                else
+                {
+                    VisionMetrics.recordCount(metrics, VisionMetrics.Count.Skipped);
+                    skippedFrames++;
+                }
+
+                if (VisionConstants.DEBUG_FRAME_RATE && grabbedFrames % VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL == 0)
                 {
-                    this.setCurrentFrame(image, captureTime);
+                    Logger.write("Camera " + this.usbId + " frames: grabbed " + grabbedFrames + ", decoded " + decodedFrames + ", skipped " + skippedFrames);
+                    Logger.write("Camera " + this.usbId + " frame pool: " + this.framePool.getStatistics());
+                    Logger.write("Camera " + this.usbId + " frame handoff latency: " + this.mailbox.getHandoffLatency().getSummary() + ", capture to dequeue: " + this.mailbox.getCaptureLatency().getSummary());
                 }
             }
         }
@@ -201,6 +320,7 @@ public class CameraReader implements IRunnableFrameReader
     public void stop()
     {
         this.stop = true;
+        this.framePool.release(this.mailbox.close());
     }
 
     /**
@@ -212,54 +332,65 @@ public class CameraReader implements IRunnableFrameReader
     public Pair<Mat, Long> getCurrentFrame()
         throws InterruptedException
     {
-        synchronized (this.frameLock)
+        if (this.decodeGate != null)
         {
-            while (!this.frameReady && !this.stop)
-            {
-                this.frameLock.wait(100);
-            }
+            this.decodeGate.recordAsk(System.nanoTime());
+        }
 
-            if (this.stop)
-            {
-                return null;
-            }
+        Pair<Mat, Long> frame = this.mailbox.take();
+        if (this.decodeGate != null)
+        {
+            this.decodeGate.recordTake(System.nanoTime());
+        }
 
-            this.frameReady = false;
-            Mat image = this.currentFrame;
-            this.currentFrame = null;
-            if (image == null)
-            {
-                return null;
-            }
+        return frame;
+    }
+
+    /**
+     * Return an image frame to the pool so that it can be filled again
+     * @param frame to return
+     */
+    @Override
+    public void releaseFrame(Mat frame)
+    {
+        this.framePool.release(frame);
+    }
 
-            return new Pair<Mat, Long>(image, this.captureTime);
+    /**
+     * Decode the frame that was just grabbed
+     * @param image to hold the decoded frame
+     * @return true if the frame was decoded
+     */
+    private boolean retrieve(Mat image)
+    {
+        if (!this.decodeMjpeg)
+        {
+            return this.vc.retrieve(image);
         }
+
+        return this.vc.retrieve(this.jpegFrame) && this.decoder.decode(this.jpegFrame, image);
     }
 
     /**
-     * set the current frame as the current frame
-     * @param frame to set as current
-     * @param captureTime when the image was captured
+     * Gets when the frame that was just grabbed was captured.  Grabbing blocks until the next frame arrives, so the time has to be taken
+     * afterwards: V4L2 stamps each buffer using the same monotonic clock as System.nanoTime(), so use that when it looks sane,
+     * falling back to when the grab completed.
+     * @return capture time, in nanoseconds (from System.nanoTime())
      */
-    private void setCurrentFrame(Mat frame, long captureTime)
+    private long getCaptureTime()
     {
-        synchronized (this.frameLock)
+        long now = System.nanoTime();
+        if (Program.IsLinux)
         {
-            if (this.currentFrame != null)
+            long bufferTime = (long)(this.vc.get(Videoio.CAP_PROP_POS_MSEC) * 1000000.0);
+            long age = now - bufferTime;
+            if (bufferTime > 0L && age >= 0L && age < VisionConstants.MAX_CAPTURE_TIMESTAMP_AGE_NANOS)
             {
-                // clean up previous frame
-                this.currentFrame.release();
-                this.currentFrame = null;
+                return bufferTime;
             }
-
-            // hold current frame
-            this.currentFrame = frame;
-            this.captureTime = captureTime;
-            this.frameReady = true;
-
-            // notify another lock holder
-            this.frameLock.notify();
         }
+
+        return now;
     }
 
     private static void printError(boolean set, String what)
@@ -0,0 +1,209 @@
+package frc1318.vision.reader;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.opencv.core.Mat;
+
+import frc1318.vision.IInstrumented;
+import frc1318.vision.helpers.LatencyHistogram;
+import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
+
+public class FrameMailbox implements IInstrumented
+{
+    private static final int SPIN_ITERATIONS = 1000;
+    private static final long MAX_PARK_NANOS = 100000000L; // 100ms, re-check for close even if we miss an unpark
+
+    private final AtomicReference<Slot> latest;
+    private final AtomicReference<Slot> spare;
+    private final LatencyHistogram handoffLatency;
+    private final LatencyHistogram captureLatency;
+
+    private volatile Thread waiter;
+    private volatile boolean closed;
+    private volatile VisionMetrics metrics;
+
+    /**
+     * Initializes a new instance of the FrameMailbox class.
+     * The mailbox is a lock-free single-slot exchange of the most recent frame between a capture thread and a single vision thread.
+     * The capture thread never blocks - publishing a frame replaces any frame that hasn't been consumed yet.
+     * The vision thread spins briefly and then parks until a frame is published.
+     */
+    public FrameMailbox()
+    {
+        this.latest = new AtomicReference<Slot>();
+        this.spare = new AtomicReference<Slot>();
+        this.handoffLatency = new LatencyHistogram();
+        this.captureLatency = new LatencyHistogram();
+
+        this.waiter = null;
+        this.closed = false;
+        this.metrics = null;
+    }
+
+    /**
+     * Sets the metrics that the mailbox should count frames that were replaced before they were retrieved into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Publish a frame as the most recent frame, waking the vision thread if it is waiting
+     * (called from the capture thread)
+     * @param frame that was captured
+     * @param captureTime when the frame was captured
+     * @return the previous frame if it was never consumed (so that the caller can clean it up), or null
+     */
+    public Mat publish(Mat frame, long captureTime)
+    {
+        Slot slot = this.spare.getAndSet(null);
+        if (slot == null)
+        {
+            slot = new Slot();
+        }
+
+        slot.frame = frame;
+        slot.captureTime = captureTime;
+        slot.publishNanos = System.nanoTime();
+
+        Slot previous = this.latest.getAndSet(slot);
+
+        Thread waitingThread = this.waiter;
+        if (waitingThread != null)
+        {
+            LockSupport.unpark(waitingThread);
+        }
+
+        if (previous == null)
+        {
+            return null;
+        }
+
+        Mat displaced = previous.frame;
+        previous.frame = null;
+        this.spare.set(previous);
+        VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.Superseded);
+        return displaced;
+    }
+
+    /**
+     * Retrieve the most recent frame if one has been published since the last time a frame was retrieved
+     * (called from the vision thread)
+     * @return frame of an image and when it was captured, or null if there is no new frame
+     */
+    public Pair<Mat, Long> poll()
+    {
+        Slot slot = this.latest.getAndSet(null);
+        if (slot == null)
+        {
+            return null;
+        }
+
+        long nanos = System.nanoTime();
+        this.handoffLatency.record(nanos - slot.publishNanos);
+        this.captureLatency.record(nanos - slot.captureTime);
+
+        Pair<Mat, Long> result = new Pair<Mat, Long>(slot.frame, slot.captureTime);
+        slot.frame = null;
+        this.spare.set(slot);
+        return result;
+    }
+
+    /**
+     * Wait for a new frame to be published
+     * (called from the vision thread)
+     * @return frame of an image and when it was captured, or null if the mailbox was closed
+     * @throws InterruptedException
+     */
+    public Pair<Mat, Long> take()
+        throws InterruptedException
+    {
+        int spins = 0;
+        while (!this.closed)
+        {
+            Pair<Mat, Long> result = this.poll();
+            if (result != null)
+            {
+                return result;
+            }
+
+            if (spins < FrameMailbox.SPIN_ITERATIONS)
+            {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // register as the waiter before re-checking, so that a publish can't slip in between without unparking us
+            this.waiter = Thread.currentThread();
+            if (this.latest.get() == null && !this.closed)
+            {
+                LockSupport.parkNanos(this, FrameMailbox.MAX_PARK_NANOS);
+            }
+
+            this.waiter = null;
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Close the mailbox, waking the vision thread if it is waiting
+     * @return the frame that was never consumed (so that the caller can clean it up), or null
+     */
+    public Mat close()
+    {
+        this.closed = true;
+
+        Thread waitingThread = this.waiter;
+        if (waitingThread != null)
+        {
+            LockSupport.unpark(waitingThread);
+        }
+
+        Slot slot = this.latest.getAndSet(null);
+        if (slot == null)
+        {
+            return null;
+        }
+
+        Mat remaining = slot.frame;
+        slot.frame = null;
+        return remaining;
+    }
+
+    /**
+     * Gets the histogram of time between a frame being published and being retrieved by the vision thread
+     * @return handoff latency histogram (in nanoseconds)
+     */
+    public LatencyHistogram getHandoffLatency()
+    {
+        return this.handoffLatency;
+    }
+
+    /**
+     * Gets the histogram of time between a frame being captured and being retrieved by the vision thread
+     * (capture times come from System.nanoTime(), so this includes decoding and any time spent waiting in the mailbox)
+     * @return capture-to-dequeue latency histogram (in nanoseconds)
+     */
+    public LatencyHistogram getCaptureLatency()
+    {
+        return this.captureLatency;
+    }
+
+    private static class Slot
+    {
+        private Mat frame;
+        private long captureTime;
+        private long publishNanos;
+    }
+}
@@ -0,0 +1,57 @@
+package frc1318.vision.reader;
+
+import org.opencv.core.Mat;
+
+import frc1318.libcamera.Camera;
+import frc1318.libcamera.ImageFormat;
+import frc1318.vision.ILibCamera;
+
+public class LibCameraBinding implements ILibCamera
+{
+    private final Camera cam;
+
+    /**
+     * Initializes a new instance of the LibCameraBinding class.
+     * @param cam camera from the libcamera binding's camera manager
+     */
+    public LibCameraBinding(Camera cam)
+    {
+        this.cam = cam;
+    }
+
+    @Override
+    public boolean configure(int width, int height, int framesPerSecond, ImageFormat format)
+    {
+        return this.cam.configure(width, height, framesPerSecond, format);
+    }
+
+    @Override
+    public void updateSettings(float brightness, float exposure)
+    {
+        this.cam.updateSettings(brightness, exposure);
+    }
+
+    @Override
+    public boolean start()
+    {
+        return this.cam.start();
+    }
+
+    @Override
+    public void stop()
+    {
+        this.cam.stop();
+    }
+
+    @Override
+    public Mat read()
+    {
+        return this.cam.read();
+    }
+
+    @Override
+    public void release()
+    {
+        this.cam.release();
+    }
+}
@@ -1,36 +1,55 @@
 package frc1318.vision.reader;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.opencv.core.Mat;
 
 import frc1318.libcamera.Camera;
 import frc1318.libcamera.CameraManager;
 import frc1318.libcamera.ImageFormat;
+import frc1318.vision.CameraPixelFormat;
 import frc1318.vision.CameraSettings;
 import frc1318.vision.IController;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.ILibCamera;
 import frc1318.vision.IRunnableFrameReader;
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
 import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class LibCameraReader implements IRunnableFrameReader
+public class LibCameraReader implements IRunnableFrameReader, IInstrumented
 {
     private static final Object cmLock = new Object();
     private static CameraManager cameraManager = null;
     private static int cameraCount = 0;
 
+    private static final long THREAD_STOP_MILLIS = 5000L;
+
     private final IController controller;
     private final String id;
+    private final boolean managed;
+
+    private final FrameMailbox mailbox;
+    private final ArrayBlockingQueue<Pair<Mat, Long>> completedFrames;
+    private final AtomicReference<CameraSettings> requestSettings;
 
-    private Object frameLock;
     private Object settingsLock;
-    private Mat currentFrame;
-    private long captureTime;
-    private boolean frameReady;
-    private boolean stop;
+    private volatile boolean stop;
     private CameraSettings newSettings;
 
+    private final Object captureLock;
+    private volatile Thread runThread;
     private boolean opened;
     private boolean configured;
-    private boolean started;
-    private Camera cam;
+    private volatile boolean started;
+    private volatile boolean capturing;
+    private Thread requestThread;
+    private ILibCamera cam;
+
+    private volatile VisionMetrics metrics;
 
     /**
      * Initializes a new instance of the LibCameraReader class.
@@ -38,21 +57,58 @@ public class LibCameraReader implements IRunnableFrameReader
      * @param id to use to retrieve frame data from the LibCamera library
      */
     public LibCameraReader(IController controller, String id)
+    {
+        this(controller, id, null, VisionConstants.LIBCAMERA_QUEUE_DEPTH);
+    }
+
+    /**
+     * Initializes a new instance of the LibCameraReader class, for a camera that doesn't come from the LibCamera library's
+     * camera manager (such as a fake camera in the tests).
+     * @param controller to use to determine if we should keep collecting frames
+     * @param camera to read frames from (the reader releases it when it is closed)
+     * @param name of the camera (for logging)
+     * @param queueDepth number of completed frames that can wait to be handed to the vision thread
+     */
+    public LibCameraReader(IController controller, ILibCamera camera, String name, int queueDepth)
+    {
+        this(controller, name, camera, queueDepth);
+    }
+
+    /**
+     * Initializes a new instance of the LibCameraReader class.
+     * A request thread does nothing but read one completed capture request after another, so that the camera's requests are
+     * queued again as soon as they complete and the sensor keeps streaming no matter what the rest of the reader (or the
+     * vision thread) is doing.  Up to queueDepth completed frames wait for the reader to hand the newest of them to the
+     * vision thread, and any older (stale) ones are released straight away rather than queued behind it.
+     * @param controller to use to determine if we should keep collecting frames
+     * @param id to use to retrieve frame data from the LibCamera library (or the name of the camera)
+     * @param camera to read frames from, or null to get the camera from the LibCamera library when the reader is opened
+     * @param queueDepth number of completed frames that can wait to be handed to the vision thread
+     */
+    private LibCameraReader(IController controller, String id, ILibCamera camera, int queueDepth)
     {
         this.controller = controller;
 
         this.id = id;
+        this.managed = camera == null;
+
+        this.mailbox = new FrameMailbox();
+        this.completedFrames = new ArrayBlockingQueue<Pair<Mat, Long>>(Math.max(1, queueDepth));
+        this.requestSettings = new AtomicReference<CameraSettings>();
 
-        this.frameLock = new Object();
         this.settingsLock = new Object();
-        this.currentFrame = null;
-        this.frameReady = false;
         this.stop = false;
 
+        this.captureLock = new Object();
+        this.runThread = null;
         this.opened = false;
         this.configured = false;
         this.started = false;
-        this.cam = null;
+        this.capturing = false;
+        this.requestThread = null;
+        this.cam = camera;
+
+        this.metrics = null;
     }
 
     /**
@@ -111,7 +167,11 @@ public class LibCameraReader implements IRunnableFrameReader
     @Override
     public boolean open()
     {
-        this.cam = LibCameraReader.getCamera(this.id);
+        if (this.managed)
+        {
+            Camera camera = LibCameraReader.getCamera(this.id);
+            this.cam = camera != null ? new LibCameraBinding(camera) : null;
+        }
 
         this.opened = this.cam != null;
         return this.opened;
@@ -120,15 +180,37 @@ public class LibCameraReader implements IRunnableFrameReader
     @Override
     public void close()
     {
-        if (this.cam != null)
+        // the run thread uses the camera until it exits, so wait for that before stopping and releasing the camera here
+        this.stop = true;
+        Thread runThread = this.runThread;
+        if (runThread != null && runThread != Thread.currentThread() && !LibCameraReader.join(runThread))
         {
-            if (this.started)
+            Logger.writeError("Camera " + this.id + " reader didn't stop, leaving the camera open");
+            return;
+        }
+
+        synchronized (this.captureLock)
+        {
+            if (this.cam == null)
             {
-                this.cam.stop();
-                this.started = false;
+                return;
+            }
+
+            if (!this.stopCapture())
+            {
+                // the request thread may still be reading from the camera, so it can't be released
+                return;
+            }
+
+            if (this.managed)
+            {
+                LibCameraReader.releaseCamera(this.cam);
+            }
+            else
+            {
+                this.cam.release();
             }
 
-            LibCameraReader.releaseCamera(this.cam);
             this.cam = null;
         }
     }
@@ -142,19 +224,32 @@ public class LibCameraReader implements IRunnableFrameReader
         }
     }
 
+    /**
+     * Sets the metrics that the reader should count frames that were replaced before the vision system retrieved them into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+        this.mailbox.setMetrics(metrics);
+    }
+
     /**
      * Run the thread that captures frames and buffers the most recently retrieved frame so that an pipeline can use it.
      */
     @Override
     public void run()
     {
+        // (close() checks for this thread after setting stop, so one of them always sees the other)
+        this.runThread = Thread.currentThread();
         if (this.opened)
         {
             int currentResX = -1;
             int currentResY = -1;
             ImageFormat currentFormat = ImageFormat.Gray;
 
-            Mat image;
+            long capturedFrames = 0;
             while (!this.stop)
             {
                 CameraSettings settings;
@@ -166,31 +261,39 @@ public class LibCameraReader implements IRunnableFrameReader
 
                 if (settings != null)
                 {
+                    // color (HSV) pipelines get the ISP's YUV420 planes as-is, so that neither BGR nor HSV conversion is needed
+                    ImageFormat format = settings.PixelFormat == CameraPixelFormat.YUV420 ? ImageFormat.YUV420 : ImageFormat.Gray;
                     if (!this.configured ||
                         currentResX != settings.ResolutionX ||
                         currentResY != settings.ResolutionY ||
-                        currentFormat != ImageFormat.Gray)
+                        currentFormat != format)
                     {
-                        if (this.cam.configure(settings.ResolutionX, settings.ResolutionY, settings.FramesPerSecond, ImageFormat.Gray))
+                        // the camera can only be reconfigured while it isn't capturing
+                        if (this.stopCapture() &&
+                            this.cam.configure(settings.ResolutionX, settings.ResolutionY, settings.FramesPerSecond, format))
                         {
                             currentResX = settings.ResolutionX;
                             currentResY = settings.ResolutionY;
-                            currentFormat = ImageFormat.Gray;
+                            currentFormat = format;
 
                             this.configured = true;
                         }
                     }
 
-                    this.cam.updateSettings((float)settings.Brightness, (float)settings.Exposure);                    
+                    if (this.started)
+                    {
+                        // only the request thread uses the camera while it is capturing
+                        this.requestSettings.set(settings);
+                    }
+                    else
+                    {
+                        this.cam.updateSettings((float)settings.Brightness, (float)settings.Exposure);
+                    }
                 }
 
                 if (!this.controller.isEnabled())
                 {
-                    if (this.started)
-                    {
-                        this.cam.stop();
-                        this.started = false;
-                    }
+                    this.stopCapture();
 
                     try
                     {
@@ -205,22 +308,48 @@ public class LibCameraReader implements IRunnableFrameReader
 
                 if (this.configured && !this.started)
                 {
-                    if (this.cam.start())
-                    {
-                        this.started = true;
-                    }
+                    this.startCapture();
                 }
 
                 if (this.started)
                 {
-                    long captureTime = System.currentTimeMillis();
-                    image = this.cam.read();
-                    if (image != null)
+                    Pair<Mat, Long> frame;
+                    try
                     {
-                        this.setCurrentFrame(image, captureTime);
+                        frame = this.completedFrames.poll(100L, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        break;
+                    }
+
+                    if (frame != null)
+                    {
+                        // hand over the newest completed frame, recycling any older ones straight away
+                        Pair<Mat, Long> newerFrame;
+                        while ((newerFrame = this.completedFrames.poll()) != null)
+                        {
+                            frame.first.release();
+                            VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.Superseded);
+                            frame = newerFrame;
+                        }
+
+                        Mat displaced = this.mailbox.publish(frame.first, frame.second);
+                        if (displaced != null)
+                        {
+                            displaced.release();
+                        }
+
+                        capturedFrames++;
+                        if (VisionConstants.DEBUG_FRAME_RATE && capturedFrames % VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL == 0)
+                        {
+                            Logger.write("Camera " + this.id + " frame handoff latency: " + this.mailbox.getHandoffLatency().getSummary() + ", capture to dequeue: " + this.mailbox.getCaptureLatency().getSummary());
+                        }
                     }
                 }
             }
+
+            this.stopCapture();
         }
     }
 
@@ -231,6 +360,11 @@ public class LibCameraReader implements IRunnableFrameReader
     public void stop()
     {
         this.stop = true;
+        Mat remaining = this.mailbox.close();
+        if (remaining != null)
+        {
+            remaining.release();
+        }
     }
 
     /**
@@ -242,54 +376,142 @@ public class LibCameraReader implements IRunnableFrameReader
     public Pair<Mat, Long> getCurrentFrame()
         throws InterruptedException
     {
-        synchronized (this.frameLock)
+        return this.mailbox.take();
+    }
+
+    /**
+     * Release an image frame once we are done with it
+     * (the libcamera binding provides a new frame from each read, so there is no buffer for us to reuse)
+     * @param frame to release
+     */
+    @Override
+    public void releaseFrame(Mat frame)
+    {
+        frame.release();
+    }
+
+    /**
+     * Start the camera capturing, and the request thread reading its completed requests
+     */
+    private void startCapture()
+    {
+        synchronized (this.captureLock)
         {
-            while (!this.frameReady && !this.stop)
+            if (this.cam.start())
             {
-                this.frameLock.wait(100);
+                this.started = true;
+                this.capturing = true;
+                this.requestThread = new Thread(this::runRequests, "LibCameraReader " + this.id + " requests");
+                this.requestThread.start();
             }
+        }
+    }
 
-            if (this.stop)
+    /**
+     * Stop the request thread and the camera, releasing any completed frames that haven't been handed over
+     * @return true if capturing has stopped, false if the request thread is still reading from the camera
+     */
+    private boolean stopCapture()
+    {
+        synchronized (this.captureLock)
+        {
+            if (!this.started)
             {
-                return null;
+                return true;
             }
 
-            this.frameReady = false;
-            Mat image = this.currentFrame;
-            this.currentFrame = null;
-            if (image == null)
+            // read() returns as each request completes, so the request thread notices quickly - but until it has exited it may
+            // still queue a frame, or apply settings, so the camera isn't stopped and the frames aren't released before then
+            this.capturing = false;
+            if (!LibCameraReader.join(this.requestThread))
             {
-                return null;
+                Logger.writeError("Camera " + this.id + " request thread didn't stop, leaving the camera capturing");
+                return false;
             }
 
-            return new Pair<Mat, Long>(image, this.captureTime);
+            this.requestThread = null;
+            this.cam.stop();
+            this.started = false;
+
+            // apply any settings that the request thread didn't get to, so that they can't override newer ones later
+            CameraSettings settings = this.requestSettings.getAndSet(null);
+            if (settings != null)
+            {
+                this.cam.updateSettings((float)settings.Brightness, (float)settings.Exposure);
+            }
+
+            Pair<Mat, Long> frame;
+            while ((frame = this.completedFrames.poll()) != null)
+            {
+                frame.first.release();
+            }
+
+            return true;
         }
     }
 
     /**
-     * set the current frame as the current frame
-     * @param frame to set as current
-     * @param captureTime when the image was captured
+     * Run the request thread, which reads each capture request as soon as it completes, keeping up to queueDepth completed
+     * frames for the reader to hand over and recycling the oldest of them when there are more
      */
-    private void setCurrentFrame(Mat frame, long captureTime)
+    private void runRequests()
     {
-        synchronized (this.frameLock)
+        while (this.capturing)
         {
-            if (this.currentFrame != null)
+            CameraSettings settings = this.requestSettings.getAndSet(null);
+            if (settings != null)
+            {
+                this.cam.updateSettings((float)settings.Brightness, (float)settings.Exposure);
+            }
+
+            Mat image = this.cam.read();
+            if (image == null)
             {
-                // clean up previous frame
-                this.currentFrame.release();
-                this.currentFrame = null;
+                continue;
+            }
+
+            // read() blocks until the request completes, so this is as close to the sensor timestamp as the binding lets us get
+            Pair<Mat, Long> frame = new Pair<Mat, Long>(image, System.nanoTime());
+            while (!this.completedFrames.offer(frame))
+            {
+                Pair<Mat, Long> staleFrame = this.completedFrames.poll();
+                if (staleFrame != null)
+                {
+                    staleFrame.first.release();
+                    VisionMetrics.recordDrop(this.metrics, VisionMetrics.Drop.Superseded);
+                }
             }
+        }
+    }
 
-            // hold current frame
-            this.currentFrame = frame;
-            this.captureTime = captureTime;
-            this.frameReady = true;
+    /**
+     * Wait (for up to THREAD_STOP_MILLIS) for a thread to exit, keeping any interrupt for the caller
+     * @param thread to wait for
+     * @return true if the thread has exited
+     */
+    private static boolean join(Thread thread)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LibCameraReader.THREAD_STOP_MILLIS);
+        boolean interrupted = false;
+        long remainingNanos;
+        while (thread.isAlive() && (remainingNanos = deadline - System.nanoTime()) > 0L)
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.timedJoin(thread, remainingNanos);
+            }
+            catch (InterruptedException ex)
+            {
+                interrupted = true;
+            }
+        }
 
-            // notify another lock holder
-            this.frameLock.notify();
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
         }
+
+        return !thread.isAlive();
     }
 
     private static Camera getCamera(String id)
@@ -308,7 +530,7 @@ public class LibCameraReader implements IRunnableFrameReader
         }
     }
 
-    private static void releaseCamera(Camera cam)
+    private static void releaseCamera(ILibCamera cam)
     {
         synchronized (LibCameraReader.cmLock)
         {
@@ -49,7 +49,17 @@ public class LocalImageDirectoryReader implements IFrameReader
             return null;
         }
 
-        return new Pair<Mat, Long>(Imgcodecs.imread(this.files[this.index++].getAbsolutePath()), System.currentTimeMillis());
+        return new Pair<Mat, Long>(Imgcodecs.imread(this.files[this.index++].getAbsolutePath()), System.nanoTime());
+    }
+
+    /**
+     * Release an image frame once we are done with it
+     * @param frame to release
+     */
+    @Override
+    public void releaseFrame(Mat frame)
+    {
+        frame.release();
     }
 
     /**
@@ -53,7 +53,17 @@ public class LocalImageFileReader implements IFrameReader
             this.fileName = null;
         }
 
-        return new Pair<Mat, Long>(image, System.currentTimeMillis());
+        return new Pair<Mat, Long>(image, System.nanoTime());
+    }
+
+    /**
+     * Release an image frame once we are done with it
+     * @param frame to release
+     */
+    @Override
+    public void releaseFrame(Mat frame)
+    {
+        frame.release();
     }
 
     /**
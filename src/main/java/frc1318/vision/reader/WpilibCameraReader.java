@@ -1,32 +1,43 @@
 package frc1318.vision.reader;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 
 import edu.wpi.first.cscore.CvSink;
 import edu.wpi.first.cscore.UsbCamera;
 import edu.wpi.first.cscore.VideoCamera;
 import edu.wpi.first.cameraserver.*;
+import edu.wpi.first.util.PixelFormat;
+import edu.wpi.first.util.WPIUtilJNI;
+import frc1318.vision.CameraPixelFormat;
 import frc1318.vision.CameraSettings;
 import frc1318.vision.IController;
+import frc1318.vision.IInstrumented;
 import frc1318.vision.IRunnableFrameReader;
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.FramePool;
 import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
 
-public class WpilibCameraReader implements IRunnableFrameReader
+public class WpilibCameraReader implements IRunnableFrameReader, IInstrumented
 {
     private final IController controller;
     private final String videoUrl;
     private final int usbId;
     private final String cameraName;
     private final boolean reprocessImage;
+    private final FramePool framePool;
 
     private VideoCamera camera;
     private CvSink cvSink;
+    private PixelFormat sinkPixelFormat;
+
+    private final FrameMailbox mailbox;
+    private Mat lastFrame;
+    private long lastCaptureTime;
 
-    private Object frameLock;
     private Object settingsLock;
-    private Mat currentFrame;
-    private long captureTime;
-    private volatile boolean frameReady;
     private volatile boolean stop;
     private CameraSettings newSettings;
 
@@ -47,17 +58,19 @@ public class WpilibCameraReader implements IRunnableFrameReader
         this.usbId = -1;
         this.cameraName = cameraName;
         this.reprocessImage = reprocessImage;
+        this.framePool = new FramePool(VisionConstants.FRAME_POOL_SIZE);
+
+        this.mailbox = new FrameMailbox();
+        this.lastFrame = null;
+        this.lastCaptureTime = 0L;
 
-        this.frameLock = new Object();
         this.settingsLock = new Object();
-        this.currentFrame = null;
-        this.captureTime = 0L;
-        this.frameReady = false;
         this.stop = false;
 
         this.opened = false;
         this.camera = null;
         this.cvSink = null;
+        this.sinkPixelFormat = PixelFormat.kBGR;
     }
 
     /**
@@ -75,15 +88,18 @@ public class WpilibCameraReader implements IRunnableFrameReader
         this.videoUrl = null;
         this.cameraName = cameraName;
         this.reprocessImage = reprocessImage;
+        this.framePool = new FramePool(VisionConstants.FRAME_POOL_SIZE);
+
+        this.mailbox = new FrameMailbox();
+        this.lastFrame = null;
+        this.lastCaptureTime = 0L;
 
-        this.frameLock = new Object();
         this.settingsLock = new Object();
-        this.currentFrame = null;
-        this.frameReady = false;
         this.stop = false;
 
         this.opened = false;
         this.camera = null;
+        this.sinkPixelFormat = PixelFormat.kBGR;
     }
 
     /**
@@ -94,7 +110,7 @@ public class WpilibCameraReader implements IRunnableFrameReader
     @Override
     public boolean open()
     {
-        this.cvSink = new CvSink("Camera Sink");
+        this.cvSink = new CvSink("Camera Sink", this.sinkPixelFormat);
         if (this.videoUrl != null)
         {
             this.camera = CameraServer.addAxisCamera(this.cameraName, this.videoUrl);
@@ -126,6 +142,8 @@ public class WpilibCameraReader implements IRunnableFrameReader
             this.camera.close();
             this.camera = null;
         }
+
+        this.framePool.clear();
     }
 
     @Override
@@ -137,6 +155,16 @@ public class WpilibCameraReader implements IRunnableFrameReader
         }
     }
 
+    /**
+     * Sets the metrics that the reader should count frames that were replaced before the vision system retrieved them into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.mailbox.setMetrics(metrics);
+    }
+
     /**
      * Run the thread that captures frames and buffers the most recently retrieved
      * frame so that an pipeline can use it.
@@ -147,6 +175,7 @@ public class WpilibCameraReader implements IRunnableFrameReader
         if (this.opened)
         {
             Mat image;
+            long capturedFrames = 0;
             while (!this.stop)
             {
                 CameraSettings settings;
@@ -156,6 +185,22 @@ public class WpilibCameraReader implements IRunnableFrameReader
                     this.newSettings = null;
                 }
 
+                if (settings != null)
+                {
+                    // CvSink provides 3-channel BGR images, except for GREY cameras, where it hands over the luma as-is
+                    // (it can't provide raw YUYV, but converting it to BGR at least skips decoding MJPEG)
+                    PixelFormat sinkPixelFormat = settings.PixelFormat == CameraPixelFormat.GREY ? PixelFormat.kGray : PixelFormat.kBGR;
+                    if (sinkPixelFormat != this.sinkPixelFormat)
+                    {
+                        this.cvSink.close();
+                        this.cvSink = new CvSink("Camera Sink", sinkPixelFormat);
+                        this.cvSink.setSource(this.camera);
+                        this.sinkPixelFormat = sinkPixelFormat;
+                    }
+
+                    this.framePool.configure(settings.ResolutionX, settings.ResolutionY, sinkPixelFormat == PixelFormat.kGray ? CvType.CV_8UC1 : CvType.CV_8UC3);
+                }
+
                 if (settings != null && this.camera instanceof UsbCamera)
                 {
                     UsbCamera usbCamera = (UsbCamera)this.camera;
@@ -170,8 +215,11 @@ public class WpilibCameraReader implements IRunnableFrameReader
 
                     usbCamera.setBrightness((int)settings.Brightness);
 
-                    usbCamera.setResolution(settings.ResolutionX, settings.ResolutionY);
-                    usbCamera.setFPS(settings.FramesPerSecond);
+                    usbCamera.setVideoMode(
+                        WpilibCameraReader.toPixelFormat(settings.PixelFormat),
+                        settings.ResolutionX,
+                        settings.ResolutionY,
+                        settings.FramesPerSecond);
                 }
 
                 if (!this.controller.isEnabled())
@@ -185,11 +233,26 @@ public class WpilibCameraReader implements IRunnableFrameReader
                     }
                 }
 
-                image = new Mat();
+                image = this.framePool.acquire();
+                long dataAddr = image.dataAddr();
                 long result = this.cvSink.grabFrame(image);
                 if (result != 0)
                 {
-                    this.setCurrentFrame(image, result / 1000L);
+                    this.framePool.recordFill(image, dataAddr);
+                    // grabFrame returns the frame time in microseconds of WPILib's clock, so carry over its age to System.nanoTime()
+                    long captureTime = System.nanoTime() - (WPIUtilJNI.now() - result) * 1000L;
+                    this.framePool.release(this.mailbox.publish(image, captureTime));
+
+                    capturedFrames++;
+                    if (VisionConstants.DEBUG_FRAME_RATE && capturedFrames % VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL == 0)
+                    {
+                        Logger.write("Camera " + this.cameraName + " frame pool: " + this.framePool.getStatistics());
+                        Logger.write("Camera " + this.cameraName + " frame handoff latency: " + this.mailbox.getHandoffLatency().getSummary() + ", capture to dequeue: " + this.mailbox.getCaptureLatency().getSummary());
+                    }
+                }
+                else
+                {
+                    this.framePool.release(image);
                 }
             }
 
@@ -206,6 +269,7 @@ public class WpilibCameraReader implements IRunnableFrameReader
     public void stop()
     {
         this.stop = true;
+        this.framePool.release(this.mailbox.close());
     }
 
     /**
@@ -217,58 +281,62 @@ public class WpilibCameraReader implements IRunnableFrameReader
     @Override
     public Pair<Mat, Long> getCurrentFrame() throws InterruptedException
     {
-        synchronized (this.frameLock)
+        if (!this.reprocessImage)
         {
-            while (!this.frameReady && !this.stop)
-            {
-                this.frameLock.wait(100);
-            }
+            return this.mailbox.take();
+        }
 
-            if (this.stop)
-            {
-                return null;
-            }
+        if (this.stop)
+        {
+            return null;
+        }
 
-            if (this.reprocessImage)
-            {
-                Mat image = new Mat();
-                this.currentFrame.copyTo(image);
-                return new Pair<Mat, Long>(image, this.captureTime);
-            }
-            else
-            {
-                this.frameReady = false;
-                Mat image = this.currentFrame;
-                this.currentFrame = null;
-                return new Pair<Mat, Long>(image, this.captureTime);
-            }
+        // hold on to the most recent frame so that it can be provided again if no new frame has arrived
+        Pair<Mat, Long> frame = this.lastFrame == null ? this.mailbox.take() : this.mailbox.poll();
+        if (frame != null)
+        {
+            this.framePool.release(this.lastFrame);
+            this.lastFrame = frame.first;
+            this.lastCaptureTime = frame.second;
         }
+
+        if (this.lastFrame == null)
+        {
+            return null;
+        }
+
+        Mat image = this.framePool.acquire();
+        this.lastFrame.copyTo(image);
+        return new Pair<Mat, Long>(image, this.lastCaptureTime);
     }
 
     /**
-     * set the current frame as the current frame
-     * 
-     * @param frame to set as current
-     * @param captureTime when the image was captured
+     * Return an image frame to the pool so that it can be filled again
+     * @param frame to return
      */
-    private void setCurrentFrame(Mat frame, long captureTime)
+    @Override
+    public void releaseFrame(Mat frame)
     {
-        synchronized (this.frameLock)
+        this.framePool.release(frame);
+    }
+
+    /**
+     * Convert a camera pixel format to the equivalent WPILib pixel format
+     * @param pixelFormat camera pixel format
+     * @return WPILib pixel format
+     */
+    private static PixelFormat toPixelFormat(CameraPixelFormat pixelFormat)
+    {
+        switch (pixelFormat)
         {
-            if (this.currentFrame != null)
-            {
-                // clean up previous frame
-                this.currentFrame.release();
-                this.currentFrame = null;
-            }
+            case YUYV:
+                return PixelFormat.kYUYV;
 
-            // hold current frame
-            this.currentFrame = frame;
-            this.captureTime = captureTime;
-            this.frameReady = true;
+            case GREY:
+                return PixelFormat.kGray;
 
-            // notify another lock holder
-            this.frameLock.notify();
+            default:
+                return PixelFormat.kMJPEG;
         }
     }
 }
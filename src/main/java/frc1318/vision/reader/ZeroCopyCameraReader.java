@@ -0,0 +1,294 @@
+package frc1318.vision.reader;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import frc1318.vision.CameraSettings;
+import frc1318.vision.ICameraBufferSource;
+import frc1318.vision.IController;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.IRunnableFrameReader;
+import frc1318.vision.Logger;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.Pair;
+import frc1318.vision.helpers.VisionMetrics;
+
+public class ZeroCopyCameraReader implements IRunnableFrameReader, IInstrumented
+{
+    private final IController controller;
+    private final ICameraBufferSource source;
+    private final String name;
+
+    private final FrameMailbox mailbox;
+
+    private Object settingsLock;
+    private volatile boolean stop;
+    private CameraSettings newSettings;
+
+    private boolean configured;
+    private boolean started;
+    private volatile Mat[] frames;
+
+    /**
+     * Initializes a new instance of the ZeroCopyCameraReader class.
+     * ZeroCopyCameraReader hands the camera's own capture buffers to the vision system, wrapped as Mat headers, instead of
+     * copying each frame out of them.  Each buffer is only returned to the camera once the vision system releases the frame
+     * (or a newer frame replaces it before it is retrieved), so the camera needs enough buffers to keep capturing while one
+     * is being processed and one is waiting in the mailbox.
+     * The frc1318.libcamera binding doesn't expose its request buffers yet (Camera.read() returns a copy of each frame), so
+     * there is no ICameraBufferSource for real cameras and Program still uses LibCameraReader.  Until the binding can
+     * implement ICameraBufferSource, the reader is only exercised with the memory-mapped fake in the tests.
+     * @param controller to use to determine if we should keep collecting frames
+     * @param source of the camera's capture buffers
+     * @param name of the camera (for logging)
+     */
+    public ZeroCopyCameraReader(IController controller, ICameraBufferSource source, String name)
+    {
+        this.controller = controller;
+        this.source = source;
+        this.name = name;
+
+        this.mailbox = new FrameMailbox();
+
+        this.settingsLock = new Object();
+        this.stop = false;
+
+        this.configured = false;
+        this.started = false;
+        this.frames = null;
+    }
+
+    @Override
+    public boolean open()
+    {
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        if (this.started)
+        {
+            this.source.stop();
+            this.started = false;
+        }
+
+        this.releaseFrameHeaders();
+        this.source.release();
+    }
+
+    @Override
+    public void setSettings(CameraSettings settings)
+    {
+        synchronized (this.settingsLock)
+        {
+            this.newSettings = settings;
+        }
+    }
+
+    /**
+     * Sets the metrics that the reader should count frames that were replaced before the vision system retrieved them into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.mailbox.setMetrics(metrics);
+    }
+
+    /**
+     * Run the thread that waits for the camera to capture frames and hands the most recent one to the vision system.
+     */
+    @Override
+    public void run()
+    {
+        int currentResX = -1;
+        int currentResY = -1;
+        long capturedFrames = 0;
+        while (!this.stop)
+        {
+            CameraSettings settings;
+            synchronized (this.settingsLock)
+            {
+                settings = this.newSettings;
+                this.newSettings = null;
+            }
+
+            if (settings != null)
+            {
+                if (!this.configured ||
+                    currentResX != settings.ResolutionX ||
+                    currentResY != settings.ResolutionY)
+                {
+                    if (this.started)
+                    {
+                        this.source.stop();
+                        this.started = false;
+                    }
+
+                    this.releaseFrameHeaders();
+                    this.configured = false;
+                    if (this.source.configure(settings.ResolutionX, settings.ResolutionY, settings.FramesPerSecond, CvType.CV_8UC1))
+                    {
+                        currentResX = settings.ResolutionX;
+                        currentResY = settings.ResolutionY;
+
+                        this.wrapBuffers(currentResX, currentResY);
+                        this.configured = true;
+                    }
+                }
+
+                this.source.updateSettings((float)settings.Brightness, (float)settings.Exposure);
+            }
+
+            if (!this.controller.isEnabled())
+            {
+                if (this.started)
+                {
+                    this.source.stop();
+                    this.started = false;
+                }
+
+                try
+                {
+                    Thread.sleep(2500);
+                }
+                catch (InterruptedException ex)
+                {
+                }
+
+                continue;
+            }
+
+            if (this.configured && !this.started)
+            {
+                if (this.source.start())
+                {
+                    this.started = true;
+                }
+            }
+
+            if (this.started)
+            {
+                int index;
+                try
+                {
+                    index = this.source.waitForBuffer(100L);
+                }
+                catch (InterruptedException ex)
+                {
+                    break;
+                }
+
+                if (index >= 0)
+                {
+                    Mat displaced = this.mailbox.publish(this.frames[index], this.source.getCaptureTime(index));
+                    if (displaced != null)
+                    {
+                        this.releaseFrame(displaced);
+                    }
+
+                    capturedFrames++;
+                    if (VisionConstants.DEBUG_FRAME_RATE && capturedFrames % VisionConstants.DEBUG_FPS_AVERAGING_INTERVAL == 0)
+                    {
+                        Logger.write("Camera " + this.name + " frame handoff latency: " + this.mailbox.getHandoffLatency().getSummary() + ", capture to dequeue: " + this.mailbox.getCaptureLatency().getSummary());
+                    }
+                }
+            }
+            else
+            {
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException ex)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * stop retrieving frames
+     */
+    @Override
+    public void stop()
+    {
+        this.stop = true;
+        Mat remaining = this.mailbox.close();
+        if (remaining != null)
+        {
+            this.releaseFrame(remaining);
+        }
+    }
+
+    /**
+     * Retrieve the most recent image frame from the camera
+     * @return frame of an image and when it was captured (the frame is the camera's buffer, so it must be released promptly)
+     * @throws InterruptedException
+     */
+    @Override
+    public Pair<Mat, Long> getCurrentFrame()
+        throws InterruptedException
+    {
+        return this.mailbox.take();
+    }
+
+    /**
+     * Return an image frame's buffer to the camera once we are done with it
+     * @param frame to release
+     */
+    @Override
+    public void releaseFrame(Mat frame)
+    {
+        Mat[] currentFrames = this.frames;
+        if (currentFrames == null)
+        {
+            return;
+        }
+
+        for (int i = 0; i < currentFrames.length; i++)
+        {
+            if (currentFrames[i] == frame)
+            {
+                this.source.requeueBuffer(i);
+                return;
+            }
+        }
+
+        // otherwise the frame came from buffers from before the camera was reconfigured, which are already gone
+    }
+
+    /**
+     * Wrap each of the camera's buffers in a Mat header (without copying them)
+     * @param width of the frames
+     * @param height of the frames
+     */
+    private void wrapBuffers(int width, int height)
+    {
+        int stride = this.source.getStride();
+        Mat[] newFrames = new Mat[this.source.getBufferCount()];
+        for (int i = 0; i < newFrames.length; i++)
+        {
+            newFrames[i] = new Mat(height, width, CvType.CV_8UC1, this.source.getBuffer(i), stride);
+        }
+
+        this.frames = newFrames;
+    }
+
+    /**
+     * Release the Mat headers for the camera's buffers (which doesn't free the buffers themselves)
+     */
+    private void releaseFrameHeaders()
+    {
+        Mat[] currentFrames = this.frames;
+        this.frames = null;
+        if (currentFrames != null)
+        {
+            for (Mat frame : currentFrames)
+            {
+                frame.release();
+            }
+        }
+    }
+}
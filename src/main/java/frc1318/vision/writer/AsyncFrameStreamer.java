@@ -0,0 +1,241 @@
+package frc1318.vision.writer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.first.cameraserver.CameraServer;
+import edu.wpi.first.cscore.CvSource;
+import edu.wpi.first.cscore.MjpegServer;
+import edu.wpi.first.util.PixelFormat;
+import frc1318.vision.IInstrumented;
+import frc1318.vision.IOpenable;
+import frc1318.vision.VisionConstants;
+import frc1318.vision.helpers.VisionMetrics;
+
+public class AsyncFrameStreamer implements IOpenable, IInstrumented, Runnable
+{
+    private static final int FRAME_COUNT = 2; // one being encoded, and one waiting to be encoded
+
+    private final String streamName;
+    private final int resolutionX;
+    private final int resolutionY;
+    private final double maxFramesPerSecond;
+    private final long frameGapNanos;
+    private final Size streamSize;
+    private final Mat luma;
+
+    private final ArrayBlockingQueue<Mat> freeFrames;
+    private final ArrayBlockingQueue<Mat> queuedFrames;
+
+    private CvSource source;
+    private Thread thread;
+    private volatile boolean stopped;
+    private volatile VisionMetrics metrics;
+    private long lastOfferNanos;
+
+    /**
+     * Initializes a new instance of the AsyncFrameStreamer class.
+     * AsyncFrameStreamer takes MJPEG encoding off of the thread that produces the frames.  Offering a frame only copies it
+     * (downscaling it to the stream's resolution if it is larger) into one of two reused frames, and a separate low-priority
+     * thread hands it to the stream to be encoded.  Frames are offered at most at the maximum frame rate, and if the
+     * encoding thread is still busy with the previous frames the new frame is dropped, so the caller never waits on it.
+     * The stream can only encode grayscale, BGR, or BGRA frames, so YUYV frames are streamed as their luma.
+     * @param streamName name of the stream
+     * @param resolutionX X-resolution of the stream
+     * @param resolutionY Y-resolution of the stream
+     * @param maxFramesPerSecond most frames to stream per second (0 or less for no limit)
+     */
+    public AsyncFrameStreamer(String streamName, int resolutionX, int resolutionY, double maxFramesPerSecond)
+    {
+        this.streamName = streamName;
+        this.resolutionX = resolutionX;
+        this.resolutionY = resolutionY;
+        this.maxFramesPerSecond = maxFramesPerSecond;
+        this.frameGapNanos = maxFramesPerSecond > 0.0 ? (long)(1000000000.0 / maxFramesPerSecond) : 0L;
+        this.streamSize = new Size(resolutionX, resolutionY);
+        this.luma = new Mat();
+
+        this.freeFrames = new ArrayBlockingQueue<Mat>(AsyncFrameStreamer.FRAME_COUNT);
+        this.queuedFrames = new ArrayBlockingQueue<Mat>(AsyncFrameStreamer.FRAME_COUNT);
+        for (int i = 0; i < AsyncFrameStreamer.FRAME_COUNT; i++)
+        {
+            this.freeFrames.add(new Mat());
+        }
+
+        this.source = null;
+        this.thread = null;
+        this.stopped = false;
+        this.metrics = null;
+        this.lastOfferNanos = 0L;
+    }
+
+    /**
+     * Opens the stream and starts the encoding thread
+     * @return true if successful
+     */
+    @Override
+    public boolean open()
+    {
+        this.source = new CvSource(this.streamName, PixelFormat.kMJPEG, this.resolutionX, this.resolutionY, (int)Math.max(1.0, this.maxFramesPerSecond));
+        MjpegServer mjpegServer = CameraServer.startAutomaticCapture(this.source);
+        mjpegServer.setCompression(VisionConstants.STREAMING_COMPRESSION);
+
+        this.start();
+        return true;
+    }
+
+    /**
+     * Stops the encoding thread and closes the stream
+     */
+    @Override
+    public void close()
+    {
+        this.stopped = true;
+        if (this.thread != null)
+        {
+            this.thread.interrupt();
+            try
+            {
+                this.thread.join();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            this.thread = null;
+        }
+
+        if (this.source != null)
+        {
+            this.source.close();
+            this.source = null;
+        }
+
+        Mat frame;
+        while ((frame = this.queuedFrames.poll()) != null)
+        {
+            frame.release();
+        }
+
+        while ((frame = this.freeFrames.poll()) != null)
+        {
+            frame.release();
+        }
+
+        this.luma.release();
+    }
+
+    /**
+     * Sets the metrics that the streamer should record how long offering and encoding frames take (and dropped frames) into
+     * @param metrics to record into, or null to stop recording
+     */
+    @Override
+    public void setMetrics(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Offer a frame to be streamed, without waiting for it to be encoded (called from a single producing thread)
+     * @param frame to stream, in grayscale, BGR, BGRA, or YUYV (which is copied, so the caller can release or change it as soon as this returns)
+     * @return true if the frame will be streamed, false if it was skipped to stay under the frame rate or dropped because
+     * the encoding thread is busy
+     */
+    public boolean offer(Mat frame)
+    {
+        long startNanos = System.nanoTime();
+        if (this.frameGapNanos > 0L && this.lastOfferNanos != 0L && startNanos - this.lastOfferNanos < this.frameGapNanos)
+        {
+            return false;
+        }
+
+        this.lastOfferNanos = startNanos;
+
+        VisionMetrics metrics = this.metrics;
+        Mat copy = this.freeFrames.poll();
+        if (copy == null)
+        {
+            VisionMetrics.recordDrop(metrics, VisionMetrics.Drop.StreamBusy);
+            return false;
+        }
+
+        Mat frameToUse = frame;
+        if (frame.type() == CvType.CV_8UC2)
+        {
+            Core.extractChannel(frame, this.luma, 0);
+            frameToUse = this.luma;
+        }
+
+        if (frameToUse.cols() > this.resolutionX || frameToUse.rows() > this.resolutionY)
+        {
+            Imgproc.resize(frameToUse, copy, this.streamSize, 0.0, 0.0, Imgproc.INTER_AREA);
+        }
+        else
+        {
+            frameToUse.copyTo(copy);
+        }
+
+        this.queuedFrames.add(copy);
+        VisionMetrics.record(metrics, VisionMetrics.Stage.StreamHandoff, startNanos);
+        return true;
+    }
+
+    /**
+     * Run the encoding thread, which streams each frame that has been offered
+     */
+    @Override
+    public void run()
+    {
+        while (!this.stopped)
+        {
+            Mat frame;
+            try
+            {
+                frame = this.queuedFrames.poll(100L, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ex)
+            {
+                break;
+            }
+
+            if (frame == null)
+            {
+                continue;
+            }
+
+            long startNanos = System.nanoTime();
+            this.putFrame(frame);
+            VisionMetrics.record(this.metrics, VisionMetrics.Stage.StreamPutFrame, startNanos);
+
+            this.freeFrames.add(frame);
+        }
+    }
+
+    /**
+     * Start the encoding thread
+     */
+    protected void start()
+    {
+        this.stopped = false;
+        this.thread = new Thread(this, "stream-" + this.streamName);
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+        this.thread.start();
+    }
+
+    /**
+     * Encode a frame and send it to the stream (called from the encoding thread)
+     * @param frame to encode
+     */
+    protected void putFrame(Mat frame)
+    {
+        this.source.putFrame(frame);
+    }
+}
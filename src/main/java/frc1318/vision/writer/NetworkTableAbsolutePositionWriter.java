@@ -23,7 +23,6 @@ public class NetworkTableAbsolutePositionWriter extends NetworkTableResultWriter
     private DoublePublisherWrapper tagId;
     private DoublePublisherWrapper decisionMargin;
     private DoublePublisherWrapper error;
-    // private DoublePublisherWrapper captureTime;
 
     private long lastCaptureTime;
 
@@ -46,7 +45,6 @@ public class NetworkTableAbsolutePositionWriter extends NetworkTableResultWriter
         this.tagId = null;
         this.decisionMargin = null;
         this.error = null;
-        // this.captureTime = null;
 
         this.lastCaptureTime = 0L;
     }
@@ -63,7 +61,8 @@ public class NetworkTableAbsolutePositionWriter extends NetworkTableResultWriter
         this.tagId = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".tagId").publish());
         this.decisionMargin = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".decisionMargin").publish());
         this.error = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".error").publish());
-        // this.captureTime = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".captureTime").publish());
+
+        this.createTimingEntries(table, this.component);
     }
 
     @Override
@@ -79,7 +78,8 @@ public class NetworkTableAbsolutePositionWriter extends NetworkTableResultWriter
         {
             if (measurement == null)
             {
-                if (lastCaptureTime > this.lastCaptureTime + VisionConstants.ABSOLUTE_POSITION_AVOID_NULL_GAP_TIME)
+                // don't clear out a recent measurement (possibly from another camera) just because this frame didn't see a tag
+                if (captureTime - this.lastCaptureTime > VisionConstants.ABSOLUTE_POSITION_AVOID_NULL_GAP_TIME * 1000000L)
                 {
                     this.xOffset.set(VisionConstants.MAGIC_NULL_VALUE);
                     this.yOffset.set(VisionConstants.MAGIC_NULL_VALUE);
@@ -90,7 +90,7 @@ public class NetworkTableAbsolutePositionWriter extends NetworkTableResultWriter
                     this.tagId.set((int)VisionConstants.MAGIC_NULL_VALUE);
                     this.decisionMargin.set(VisionConstants.MAGIC_NULL_VALUE);
                     this.error.set(VisionConstants.MAGIC_NULL_VALUE);
-                    // this.captureTime.set(captureTime);
+                    this.writeTiming(captureTime);
                     this.lastCaptureTime = captureTime;
                 }
             }
@@ -105,7 +105,7 @@ public class NetworkTableAbsolutePositionWriter extends NetworkTableResultWriter
                 this.tagId.set(measurement.getId());
                 this.decisionMargin.set(measurement.getDecisionMargin());
                 this.error.set(measurement.getError());
-                // this.captureTime.set(captureTime);
+                this.writeTiming(captureTime);
                 this.lastCaptureTime = captureTime;
             }
 
@@ -34,6 +34,8 @@ public class NetworkTableDistanceAngleWriter extends NetworkTableResultWriterBas
     {
         this.distance = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".distance").publish());
         this.horizontalAngle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".horizontalAngle").publish());
+
+        this.createTimingEntries(table, this.component);
     }
 
     @Override
@@ -56,6 +58,7 @@ public class NetworkTableDistanceAngleWriter extends NetworkTableResultWriterBas
             this.horizontalAngle.set(measurements.getHorizontalAngle());
         }
 
+        this.writeTiming(captureTime);
         NetworkTableHelper.flush();
 
         if (VisionConstants.DEBUG && VisionConstants.DEBUG_PRINT_OUTPUT)
@@ -49,6 +49,8 @@ public class NetworkTableDistancesAnglesIdWriter extends NetworkTableResultWrite
         this.pitchAngle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".pitchAngle").publish());
         this.yawAngle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".yawAngle").publish());
         this.tagId = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".tagId").publish());
+
+        this.createTimingEntries(table, this.component);
     }
 
     @Override
@@ -81,6 +83,7 @@ public class NetworkTableDistancesAnglesIdWriter extends NetworkTableResultWrite
             this.tagId.set(measurements.getId());
         }
 
+        this.writeTiming(captureTime);
         NetworkTableHelper.flush();
 
         if (VisionConstants.DEBUG && VisionConstants.DEBUG_PRINT_OUTPUT)
@@ -46,6 +46,8 @@ public class NetworkTableDistancesAnglesWriter extends NetworkTableResultWriterB
         this.rollAngle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".rollAngle").publish());
         this.pitchAngle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".pitchAngle").publish());
         this.yawAngle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".yawAngle").publish());
+
+        this.createTimingEntries(table, this.component);
     }
 
     @Override
@@ -76,6 +78,7 @@ public class NetworkTableDistancesAnglesWriter extends NetworkTableResultWriterB
             this.yawAngle.set(measurements.getYaw());
         }
 
+        this.writeTiming(captureTime);
         NetworkTableHelper.flush();
 
         if (VisionConstants.DEBUG && VisionConstants.DEBUG_PRINT_OUTPUT)
@@ -0,0 +1,162 @@
+package frc1318.vision.writer;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import frc1318.vision.IOpenable;
+import frc1318.vision.helpers.LatencyHistogram;
+import frc1318.vision.helpers.NetworkTableHelper;
+import frc1318.vision.helpers.VisionMetrics;
+
+public class NetworkTableMetricsWriter implements IOpenable
+{
+    private static final VisionMetrics.Stage[] Stages = VisionMetrics.Stage.values();
+    private static final VisionMetrics.Drop[] Drops = VisionMetrics.Drop.values();
+    private static final VisionMetrics.Count[] Counts = VisionMetrics.Count.values();
+
+    private final VisionMetrics metrics;
+
+    private DoublePublisher[] p50;
+    private DoublePublisher[] p95;
+    private DoublePublisher[] p99;
+    private DoublePublisher[] count;
+    private DoublePublisher[] drops;
+    private DoublePublisher[] counts;
+    private DoublePublisher shedLevel;
+
+    /**
+     * Initializes a new instance of the NetworkTableMetricsWriter class.
+     * NetworkTableMetricsWriter publishes the p50/p95/p99 latency (in milliseconds) of each stage to vision/metrics/[camera]/[stage],
+     * the number of times work was dropped for each reason to vision/metrics/[camera]/drops/[reason], the camera's frame
+     * counters to vision/metrics/[camera]/counts/[counter], and the current load shedding level to
+     * vision/metrics/[camera]/shedLevel
+     * @param metrics to publish
+     */
+    public NetworkTableMetricsWriter(VisionMetrics metrics)
+    {
+        this.metrics = metrics;
+
+        this.p50 = null;
+        this.p95 = null;
+        this.p99 = null;
+        this.count = null;
+        this.drops = null;
+        this.counts = null;
+        this.shedLevel = null;
+    }
+
+    /**
+     * Gets the metrics that are being published
+     * @return metrics
+     */
+    public VisionMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    @Override
+    public boolean open()
+    {
+        NetworkTable table = NetworkTableHelper.getInstance().getTable("vision").getSubTable("metrics").getSubTable(this.metrics.getCameraName());
+
+        int stageCount = NetworkTableMetricsWriter.Stages.length;
+        this.p50 = new DoublePublisher[stageCount];
+        this.p95 = new DoublePublisher[stageCount];
+        this.p99 = new DoublePublisher[stageCount];
+        this.count = new DoublePublisher[stageCount];
+        for (int i = 0; i < stageCount; i++)
+        {
+            NetworkTable stageTable = table.getSubTable(NetworkTableMetricsWriter.Stages[i].getKey());
+            this.p50[i] = stageTable.getDoubleTopic("p50").publish();
+            this.p95[i] = stageTable.getDoubleTopic("p95").publish();
+            this.p99[i] = stageTable.getDoubleTopic("p99").publish();
+            this.count[i] = stageTable.getDoubleTopic("count").publish();
+        }
+
+        NetworkTable dropsTable = table.getSubTable("drops");
+        this.drops = new DoublePublisher[NetworkTableMetricsWriter.Drops.length];
+        for (int i = 0; i < this.drops.length; i++)
+        {
+            this.drops[i] = dropsTable.getDoubleTopic(NetworkTableMetricsWriter.Drops[i].getKey()).publish();
+        }
+
+        NetworkTable countsTable = table.getSubTable("counts");
+        this.counts = new DoublePublisher[NetworkTableMetricsWriter.Counts.length];
+        for (int i = 0; i < this.counts.length; i++)
+        {
+            this.counts[i] = countsTable.getDoubleTopic(NetworkTableMetricsWriter.Counts[i].getKey()).publish();
+        }
+
+        this.shedLevel = table.getDoubleTopic("shedLevel").publish();
+
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        if (this.p50 != null)
+        {
+            for (int i = 0; i < this.p50.length; i++)
+            {
+                this.p50[i].close();
+                this.p95[i].close();
+                this.p99[i].close();
+                this.count[i].close();
+            }
+
+            for (int i = 0; i < this.drops.length; i++)
+            {
+                this.drops[i].close();
+            }
+
+            for (int i = 0; i < this.counts.length; i++)
+            {
+                this.counts[i].close();
+            }
+
+            this.shedLevel.close();
+
+            this.p50 = null;
+            this.p95 = null;
+            this.p99 = null;
+            this.count = null;
+            this.drops = null;
+            this.counts = null;
+            this.shedLevel = null;
+        }
+    }
+
+    /**
+     * Publish the latencies and drops recorded since the last time we published, and start a new measurement window
+     */
+    public void write()
+    {
+        if (this.p50 == null)
+        {
+            return;
+        }
+
+        for (int i = 0; i < NetworkTableMetricsWriter.Stages.length; i++)
+        {
+            LatencyHistogram histogram = this.metrics.getHistogram(NetworkTableMetricsWriter.Stages[i]);
+            this.p50[i].set(histogram.getValueAtPercentile(50.0) / 1000000.0);
+            this.p95[i].set(histogram.getValueAtPercentile(95.0) / 1000000.0);
+            this.p99[i].set(histogram.getValueAtPercentile(99.0) / 1000000.0);
+            this.count[i].set(histogram.getTotalCount());
+        }
+
+        for (int i = 0; i < NetworkTableMetricsWriter.Drops.length; i++)
+        {
+            this.drops[i].set(this.metrics.getDropCount(NetworkTableMetricsWriter.Drops[i]));
+        }
+
+        for (int i = 0; i < NetworkTableMetricsWriter.Counts.length; i++)
+        {
+            this.counts[i].set(this.metrics.getCount(NetworkTableMetricsWriter.Counts[i]));
+        }
+
+        this.shedLevel.set(this.metrics.getShedLevel().ordinal());
+
+        this.metrics.reset();
+    }
+}
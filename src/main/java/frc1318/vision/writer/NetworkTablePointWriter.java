@@ -34,6 +34,8 @@ public class NetworkTablePointWriter extends NetworkTableResultWriterBase<Point>
     {
         this.xEntry = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".pointX").publish());
         this.yEntry = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".pointY").publish());
+
+        this.createTimingEntries(table, this.component);
     }
 
     @Override
@@ -56,6 +58,7 @@ public class NetworkTablePointWriter extends NetworkTableResultWriterBase<Point>
             this.yEntry.set(point.y);
         }
 
+        this.writeTiming(captureTime);
         NetworkTableHelper.flush();
 
         if (VisionConstants.DEBUG && VisionConstants.DEBUG_PRINT_OUTPUT)
@@ -2,10 +2,7 @@ package frc1318.vision.writer;
 
 import org.opencv.core.Mat;
 
-import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.networktables.NetworkTable;
-import edu.wpi.first.util.PixelFormat;
-import edu.wpi.first.cscore.*;
 
 import frc1318.vision.IResultWriter;
 import frc1318.vision.VisionConstants;
@@ -17,7 +14,10 @@ public abstract class NetworkTableResultWriterBase<T> implements IResultWriter<T
     private final int streamResolutionX;
     private final int streamResolutionY;
 
-    private CvSource debugFrameWriter;
+    private AsyncFrameStreamer debugFrameStreamer;
+
+    private DoublePublisherWrapper captureTime;
+    private DoublePublisherWrapper latency;
 
     protected NetworkTableResultWriterBase(
         String debugStreamName,
@@ -28,7 +28,10 @@ public abstract class NetworkTableResultWriterBase<T> implements IResultWriter<T
         this.streamResolutionX = streamResolutionX;
         this.streamResolutionY = streamResolutionY;
 
-        this.debugFrameWriter = null;
+        this.debugFrameStreamer = null;
+
+        this.captureTime = null;
+        this.latency = null;
     }
 
     @Override
@@ -39,9 +42,9 @@ public abstract class NetworkTableResultWriterBase<T> implements IResultWriter<T
 
         if (VisionConstants.DEBUG && VisionConstants.DEBUG_FRAME_STREAM && this.debugStreamName != null)
         {
-            this.debugFrameWriter = new CvSource(this.debugStreamName, PixelFormat.kMJPEG, this.streamResolutionX, this.streamResolutionY, 50);
-            MjpegServer mjpegServer = CameraServer.startAutomaticCapture(this.debugFrameWriter);
-            mjpegServer.setCompression(VisionConstants.STREAMING_COMPRESSION);
+            // encoded on its own thread, so that writing a result only pays for copying the frame
+            this.debugFrameStreamer = new AsyncFrameStreamer(this.debugStreamName, this.streamResolutionX, this.streamResolutionY, 50.0);
+            return this.debugFrameStreamer.open();
         }
 
         return true;
@@ -50,15 +53,37 @@ public abstract class NetworkTableResultWriterBase<T> implements IResultWriter<T
     @Override
     public void close()
     {
-        if (this.debugFrameWriter != null)
+        if (this.debugFrameStreamer != null)
         {
-            this.debugFrameWriter.close();
-            this.debugFrameWriter = null;
+            this.debugFrameStreamer.close();
+            this.debugFrameStreamer = null;
         }
     }
 
     protected abstract void createEntries(NetworkTable table);
 
+    /**
+     * Create the entries that are published alongside every result to say when its frame was captured
+     * @param table to create the entries in
+     * @param component prefix of the entries
+     */
+    protected void createTimingEntries(NetworkTable table, String component)
+    {
+        this.captureTime = new DoublePublisherWrapper(table.getDoubleTopic(component + ".captureTime").publish());
+        this.latency = new DoublePublisherWrapper(table.getDoubleTopic(component + ".latency").publish());
+    }
+
+    /**
+     * Publish when a result's frame was captured (in microseconds of NetworkTables server time),
+     * and how long ago that was (in milliseconds)
+     * @param captureTime when the frame was captured, in nanoseconds (from System.nanoTime())
+     */
+    protected void writeTiming(long captureTime)
+    {
+        this.captureTime.set(NetworkTableHelper.getServerCaptureTime(captureTime));
+        this.latency.set((System.nanoTime() - captureTime) / 1000000.0);
+    }
+
     @Override
     public void outputDebugFrame(Mat frame)
     {
@@ -66,7 +91,7 @@ public abstract class NetworkTableResultWriterBase<T> implements IResultWriter<T
             VisionConstants.DEBUG &&
             VisionConstants.DEBUG_FRAME_STREAM)
         {
-            this.debugFrameWriter.putFrame(frame);
+            this.debugFrameStreamer.offer(frame);
         }
     }
 }
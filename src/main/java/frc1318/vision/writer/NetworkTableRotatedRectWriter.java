@@ -43,6 +43,8 @@ public class NetworkTableRotatedRectWriter extends NetworkTableResultWriterBase<
         this.angle = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".angle").publish());
         this.pointX = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".pointX").publish());
         this.pointY = new DoublePublisherWrapper(table.getDoubleTopic(this.component + ".pointY").publish());
+
+        this.createTimingEntries(table, this.component);
     }
 
     @Override
@@ -71,6 +73,7 @@ public class NetworkTableRotatedRectWriter extends NetworkTableResultWriterBase<
             this.height.set(rotatedRect.size.height);
         }
 
+        this.writeTiming(captureTime);
         NetworkTableHelper.flush();
 
         if (VisionConstants.DEBUG && VisionConstants.DEBUG_PRINT_OUTPUT)
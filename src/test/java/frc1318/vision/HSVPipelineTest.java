@@ -1,6 +1,8 @@
 package frc1318.vision;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Matchers.eq;
@@ -13,9 +15,12 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import org.junit.jupiter.api.Test;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.*;
+import org.opencv.imgproc.Imgproc;
 
 import frc1318.vision.filters.LargestCenterFilter;
+import frc1318.vision.helpers.CoarseToFineHSVFilter;
 import frc1318.vision.helpers.HSVFilter;
+import frc1318.vision.helpers.LookupTableHSVFilter;
 import frc1318.vision.pipeline.HSVPipeline;
 
 public class HSVPipelineTest
@@ -36,6 +41,79 @@ public class HSVPipelineTest
         this.testImagePath("Capture7.PNG", 41.716626698641086, 52.47881694644284);
     }
 
+    @Test
+    public void testYUYVMatchesBGR()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        LookupTableHSVFilter yuyvFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 8, LookupTableHSVFilter.Layout.YUYV);
+        int found = 0;
+        for (int capture = 1; capture <= 7; capture++)
+        {
+            // the frame as a YUYV camera would deliver it, and as it would be after converting it to BGR
+            Mat frame = Imgcodecs.imread(HSVPipelineTest.RepoPath + "Capture" + capture + ".PNG");
+            Mat yuyvFrame = new Mat();
+            Mat bgrFrame = new Mat();
+            Imgproc.cvtColor(frame, yuyvFrame, Imgproc.COLOR_BGR2YUV_YUYV);
+            Imgproc.cvtColor(yuyvFrame, bgrFrame, Imgproc.COLOR_YUV2BGR_YUYV);
+
+            Point expected = HSVPipelineTest.processFrame(hsvFilter, bgrFrame);
+            Point actual = HSVPipelineTest.processFrame(yuyvFilter, yuyvFrame);
+            assertEquals(expected, actual);
+            if (expected != null)
+            {
+                found++;
+            }
+
+            frame.release();
+            yuyvFrame.release();
+            bgrFrame.release();
+        }
+
+        assertTrue(found > 0);
+    }
+
+    @Test
+    public void testRejectsFramesInTheWrongLayout()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // a grayscale frame isn't BGR, and a single channel frame isn't I420 planes unless the filter expects them
+        Mat grayFrame = new Mat(48, 64, CvType.CV_8UC1, new Scalar(128));
+        Mat bgrFrame = new Mat(48, 64, CvType.CV_8UC3, new Scalar(0, 0, 255));
+        HSVFilter bgrFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        LookupTableHSVFilter yuyvFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 4, LookupTableHSVFilter.Layout.YUYV);
+        LookupTableHSVFilter i420Filter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 4, LookupTableHSVFilter.Layout.I420);
+
+        assertThrows(IllegalArgumentException.class, () -> HSVPipelineTest.processFrame(bgrFilter, grayFrame));
+        assertThrows(IllegalArgumentException.class, () -> HSVPipelineTest.processFrame(yuyvFilter, grayFrame));
+        assertThrows(IllegalArgumentException.class, () -> HSVPipelineTest.processFrame(i420Filter, bgrFrame));
+
+        // and the frames in the expected layout are still filtered
+        HSVPipelineTest.processFrame(bgrFilter, bgrFrame);
+        Mat i420Frame = new Mat(72, 64, CvType.CV_8UC1, new Scalar(128));
+        HSVPipelineTest.processFrame(i420Filter, i420Frame);
+
+        // the coarse-to-fine filter downscales the frames, which only works for BGR
+        assertThrows(IllegalArgumentException.class, () -> new CoarseToFineHSVFilter(yuyvFilter, 2, 1, 4, 0.5));
+
+        grayFrame.release();
+        bgrFrame.release();
+        i420Frame.release();
+    }
+
+    private static Point processFrame(IHSVFilter hsvFilter, Mat frame)
+    {
+        PointRecorder pointWriter = new PointRecorder();
+        IFramePipeline pipeline = new HSVPipeline<Point>(pointWriter, null, null, hsvFilter, new LargestCenterFilter(0.0));
+        pipeline.process(frame, 1L);
+
+        // the debug frame is never converted to BGR
+        assertEquals(frame.type() == CvType.CV_8UC2 ? CvType.CV_8UC1 : frame.type(), pointWriter.sourceFrameType);
+        return pointWriter.result;
+    }
+
     private void testImagePath(String imagePath, double x, double y)
     {
         @SuppressWarnings("unchecked")
@@ -58,6 +136,7 @@ public class HSVPipelineTest
             verify(pointWriter).write(eq(new Point(x, y)), eq(ranCaptureAndProcess));
             verify(pointWriter).outputDebugFrame(anyObject());
             verify(frameReader).getCurrentFrame();
+            verify(frameReader).releaseFrame(anyObject());
 
             verifyNoMoreInteractions(pointWriter);
             verifyNoMoreInteractions(frameReader);
@@ -69,4 +148,40 @@ public class HSVPipelineTest
 
         assertNotEquals(0L, ranCaptureAndProcess);
     }
-}
\ No newline at end of file
+
+    // records the result written for a single frame
+    private static class PointRecorder implements IResultWriter<Point>
+    {
+        private Point result;
+        private int sourceFrameType = -1;
+
+        @Override
+        public boolean open()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void write(Point result, long captureTime, Mat sourceFrame)
+        {
+            this.result = result;
+            this.sourceFrameType = sourceFrame.type();
+        }
+
+        @Override
+        public void write(Point result, long captureTime)
+        {
+            this.result = result;
+        }
+
+        @Override
+        public void outputDebugFrame(Mat frame)
+        {
+        }
+    }
+}
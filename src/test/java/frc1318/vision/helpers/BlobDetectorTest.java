@@ -0,0 +1,61 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.calculator.Circle;
+import frc1318.vision.filters.LargestBlobCenterFilter;
+import frc1318.vision.filters.LargestBlobCircleFilter;
+import frc1318.vision.filters.LargestBlobFilter;
+
+public class BlobDetectorTest
+{
+    @Test
+    public void testBlobStatsAndFilters()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // a square, a disc, and a larger (but not round) bar
+        Mat image = Mat.zeros(120, 160, CvType.CV_8UC1);
+        Imgproc.rectangle(image, new Point(10, 10), new Point(29, 29), new Scalar(255), -1);
+        Imgproc.rectangle(image, new Point(40, 100), new Point(149, 114), new Scalar(255), -1);
+        Imgproc.circle(image, new Point(100, 50), 20, new Scalar(255), -1);
+
+        BlobDetector blobs = new BlobDetector();
+        assertEquals(3, blobs.detect(image));
+
+        // labels are assigned in raster order
+        assertEquals(400, blobs.getArea(0));
+        assertEquals(10, blobs.getLeft(0));
+        assertEquals(10, blobs.getTop(0));
+        assertEquals(20, blobs.getWidth(0));
+        assertEquals(20, blobs.getHeight(0));
+        assertEquals(19.5, blobs.getCentroidX(0), 1e-9);
+        assertEquals(19.5, blobs.getCentroidY(0), 1e-9);
+
+        assertEquals(1650, blobs.getArea(2));
+        assertEquals(2, blobs.findLargest(0.0));
+        assertEquals(-1, blobs.findLargest(2000.0));
+
+        Point center = new LargestBlobCenterFilter(0.0).filter(blobs);
+        assertNotNull(center);
+        assertEquals(94.5, center.x, 1e-9);
+        assertEquals(107.0, center.y, 1e-9);
+
+        Rect bounds = new LargestBlobFilter(0.0).filter(blobs);
+        assertEquals(new Rect(40, 100, 110, 15), bounds);
+
+        // only the disc is round enough
+        Circle circle = new LargestBlobCircleFilter(0.0, 0.7).filter(blobs);
+        assertNotNull(circle);
+        assertEquals(100.0, circle.getCenter().x, 1e-9);
+        assertEquals(50.0, circle.getCenter().y, 1e-9);
+        assertEquals(20.5, circle.getRadius(), 1e-9);
+
+        image.release();
+    }
+}
@@ -0,0 +1,114 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+
+public class CoarseToFineHSVFilterTest
+{
+    private static final String RepoPath = "src/test/resources/";
+
+    @Test
+    public void testRefinesCandidatesAtFullResolution()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // two green targets on a gray background
+        Mat frame = new Mat(240, 320, CvType.CV_8UC3, new Scalar(90, 90, 90));
+        Imgproc.circle(frame, new Point(101, 77), 21, new Scalar(60, 220, 40), -1);
+        Imgproc.rectangle(frame, new Point(230, 150), new Point(262, 171), new Scalar(60, 220, 40), -1);
+
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        CoarseToFineHSVFilter coarseFilter = new CoarseToFineHSVFilter(hsvFilter, 2, 2, 8, 0.5);
+
+        Mat expected = new Mat();
+        Mat actual = new Mat();
+        hsvFilter.filterHSV(frame, expected);
+        coarseFilter.filterHSV(frame, actual);
+
+        // both targets are refined, giving exactly the full resolution mask
+        assertEquals(2, coarseFilter.getRegionCount());
+        assertEquals(CvType.CV_8UC1, actual.type());
+        assertEquals(0, CoarseToFineHSVFilterTest.countDifferences(expected, actual));
+
+        // the coarse center is within a downscaled pixel of the refined one
+        double error = coarseFilter.getLastCenterError();
+        assertTrue(error >= 0.0 && error < 4.0);
+
+        // nothing to refine
+        Mat empty = new Mat(240, 320, CvType.CV_8UC3, new Scalar(90, 90, 90));
+        coarseFilter.filterHSV(empty, actual);
+        assertEquals(0, coarseFilter.getRegionCount());
+        assertEquals(0, Core.countNonZero(actual));
+        assertTrue(Double.isNaN(coarseFilter.getLastCenterError()));
+
+        frame.release();
+        empty.release();
+        expected.release();
+        actual.release();
+    }
+
+    @Test
+    public void testLargestTargetMatchesFullResolution()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        CoarseToFineHSVFilter coarseFilter =
+            new CoarseToFineHSVFilter(
+                hsvFilter,
+                1,
+                VisionConstants.HSV_COARSE_REGION_PADDING,
+                VisionConstants.HSV_COARSE_MAX_CANDIDATES,
+                VisionConstants.HSV_COARSE_MAX_REGION_FRACTION);
+
+        ContourBuffer expectedContours = new ContourBuffer();
+        ContourBuffer actualContours = new ContourBuffer();
+        Mat expected = new Mat();
+        Mat actual = new Mat();
+        for (int capture = 1; capture <= 7; capture++)
+        {
+            Mat frame = Imgcodecs.imread(CoarseToFineHSVFilterTest.RepoPath + "Capture" + capture + ".PNG");
+
+            hsvFilter.filterHSV(frame, expected);
+            coarseFilter.filterHSV(frame, actual);
+
+            // the refined mask only ever drops pixels outside of the candidate regions
+            Mat extra = new Mat();
+            Core.subtract(actual, expected, extra);
+            assertEquals(0, Core.countNonZero(extra));
+            extra.release();
+
+            // and the largest target (what the contour filters pick) is the same
+            expectedContours.findExternalContours(expected);
+            actualContours.findExternalContours(actual);
+            int expectedLargest = expectedContours.findLargest(0.0);
+            int actualLargest = actualContours.findLargest(0.0);
+            assertEquals(expectedLargest < 0, actualLargest < 0);
+            if (expectedLargest >= 0)
+            {
+                assertEquals(expectedContours.getArea(expectedLargest), actualContours.getArea(actualLargest), 1e-9);
+            }
+
+            frame.release();
+        }
+
+        expected.release();
+        actual.release();
+    }
+
+    private static int countDifferences(Mat expected, Mat actual)
+    {
+        Mat difference = new Mat();
+        Core.compare(expected, actual, difference, Core.CMP_NE);
+        int count = Core.countNonZero(difference);
+        difference.release();
+        return count;
+    }
+}
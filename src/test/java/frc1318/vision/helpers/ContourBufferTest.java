@@ -0,0 +1,133 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import frc1318.vision.VisionConstants;
+
+public class ContourBufferTest
+{
+    private static final String RepoPath = "src/test/resources/";
+
+    @Test
+    public void testOnlyExternalContours()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // a ring with a blob inside its hole, a filled rectangle, and a single pixel
+        Mat image = Mat.zeros(100, 120, CvType.CV_8UC1);
+        Imgproc.circle(image, new Point(40, 50), 30, new Scalar(255), 6);
+        Imgproc.circle(image, new Point(40, 50), 8, new Scalar(255), -1);
+        Imgproc.rectangle(image, new Point(80, 10), new Point(109, 29), new Scalar(255), -1);
+        image.put(90, 100, new byte[] { (byte)255 });
+
+        ContourBuffer contours = new ContourBuffer();
+        assertEquals(3, contours.findExternalContours(image));
+
+        // the rectangle is found first (it starts on an earlier row than the ring)
+        assertEquals(4, contours.getPointCount(0));
+        assertEquals(29.0 * 19.0, contours.getArea(0), 1e-9);
+        assertTrue(contours.computeCenterOfMass(0));
+        assertEquals(94.5, contours.getCenterOfMassX(), 1e-9);
+        assertEquals(19.5, contours.getCenterOfMassY(), 1e-9);
+        contours.computeMinAreaRect(0);
+        assertEquals(94.5, contours.getRectCenterX(), 1e-9);
+        assertEquals(19.5, contours.getRectCenterY(), 1e-9);
+        assertEquals(29.0 * 19.0, contours.getRectWidth() * contours.getRectHeight(), 1e-6);
+
+        // the ring's outer border (and not its hole, or the blob inside it)
+        contours.computeEnclosingCircle(1);
+        assertEquals(40.0, contours.getCircleX(), 0.5);
+        assertEquals(50.0, contours.getCircleY(), 0.5);
+        assertEquals(33.0, contours.getCircleRadius(), 1.0);
+
+        // the single pixel
+        assertEquals(1, contours.getPointCount(2));
+        assertEquals(100, contours.getPointX(2, 0));
+        assertEquals(90, contours.getPointY(2, 0));
+        assertEquals(0.0, contours.getArea(2), 1e-9);
+        assertTrue(!contours.computeCenterOfMass(2));
+
+        image.release();
+    }
+
+    @Test
+    public void testMatchesFindContours()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        ContourBuffer contours = new ContourBuffer();
+        Mat filteredFrame = new Mat();
+        Mat hierarchy = new Mat();
+        MatOfPoint2f mop2f = new MatOfPoint2f();
+        Point center = new Point();
+        float[] radius = new float[1];
+        for (int capture = 1; capture <= 7; capture++)
+        {
+            Mat frame = Imgcodecs.imread(ContourBufferTest.RepoPath + "Capture" + capture + ".PNG");
+            hsvFilter.filterHSV(frame, filteredFrame);
+
+            List<MatOfPoint> expected = new ArrayList<MatOfPoint>();
+            Imgproc.findContours(filteredFrame, expected, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+            int count = contours.findExternalContours(filteredFrame);
+            assertEquals(expected.size(), count);
+
+            // OpenCV doesn't promise an order, so compare them both sorted by area
+            expected.sort(Comparator.comparingDouble((MatOfPoint contour) -> Imgproc.contourArea(contour)));
+            Integer[] actual = new Integer[count];
+            for (int i = 0; i < count; i++)
+            {
+                actual[i] = i;
+            }
+
+            Arrays.sort(actual, Comparator.comparingDouble((Integer contour) -> contours.getArea(contour)));
+            for (int i = 0; i < count; i++)
+            {
+                MatOfPoint contour = expected.get(i);
+                int index = actual[i];
+                assertEquals(Imgproc.contourArea(contour), contours.getArea(index), 1e-9);
+
+                Moments moments = Imgproc.moments(contour);
+                if (moments.get_m00() != 0.0)
+                {
+                    assertTrue(contours.computeCenterOfMass(index));
+                    assertEquals(moments.get_m10() / moments.get_m00(), contours.getCenterOfMassX(), 1e-6);
+                    assertEquals(moments.get_m01() / moments.get_m00(), contours.getCenterOfMassY(), 1e-6);
+                }
+
+                contour.convertTo(mop2f, CvType.CV_32FC2);
+                Imgproc.minEnclosingCircle(mop2f, center, radius);
+                contours.computeEnclosingCircle(index);
+                assertEquals(center.x, contours.getCircleX(), 0.01);
+                assertEquals(center.y, contours.getCircleY(), 0.01);
+                assertEquals(radius[0], contours.getCircleRadius(), 0.01);
+
+                RotatedRect rect = Imgproc.minAreaRect(mop2f);
+                contours.computeMinAreaRect(index);
+                assertEquals(rect.size.area(), contours.getRectWidth() * contours.getRectHeight(), 0.01 + rect.size.area() * 1e-4);
+                assertEquals(rect.center.x, contours.getRectCenterX(), 0.01);
+                assertEquals(rect.center.y, contours.getRectCenterY(), 0.01);
+
+                contour.release();
+            }
+
+            frame.release();
+        }
+
+        filteredFrame.release();
+        hierarchy.release();
+        mop2f.release();
+    }
+}
@@ -0,0 +1,54 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class DecimationControllerTest
+{
+    private static final float[] Levels = new float[] { 1.0f, 1.5f, 2.0f, 3.0f, 4.0f };
+    private static final long Budget = 20000000L;
+
+    @Test
+    public void testDecimationFollowsTagSizeAndBudget()
+    {
+        DecimationController controller = new DecimationController(DecimationControllerTest.Levels, 1.5f, 24.0, DecimationControllerTest.Budget, 10, 15);
+        assertEquals(1.5f, controller.getDecimation());
+
+        // a large nearby tag can be found at the highest decimation, once it has been seen for long enough
+        DecimationControllerTest.updateFrames(controller, 9, 200.0 * 200.0, 5000000L, false);
+        assertTrue(controller.update(200.0 * 200.0, 5000000L));
+        assertEquals(4.0f, controller.getDecimation());
+
+        // a small distant tag needs more resolution (40 / 2.0 is under 24 pixels)
+        DecimationControllerTest.updateFrames(controller, 10, 40.0 * 40.0, 5000000L, true);
+        assertEquals(1.5f, controller.getDecimation());
+
+        // once the tags have been gone for a while, search at full resolution
+        DecimationControllerTest.updateFrames(controller, 23, 0.0, 5000000L, false);
+        assertTrue(controller.update(0.0, 5000000L));
+        assertEquals(1.0f, controller.getDecimation());
+
+        // but not if full resolution frames are over the budget
+        DecimationControllerTest.updateFrames(controller, 10, 0.0, 30000000L, true);
+        assertEquals(1.5f, controller.getDecimation());
+    }
+
+    private static void updateFrames(DecimationController controller, int frames, double minTagArea, long frameNanos, boolean changesOnLast)
+    {
+        for (int i = 0; i < frames; i++)
+        {
+            boolean changed = controller.update(minTagArea, frameNanos);
+            if (changesOnLast && i == frames - 1)
+            {
+                assertTrue(changed);
+            }
+            else
+            {
+                assertFalse(changed);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class DecodeGateTest
+{
+    private static final long Interval = 33333333L;
+
+    @Test
+    public void testDecodesEveryFrameWhenKeepingUp()
+    {
+        // processing takes 10ms, so every decoded frame is taken
+        long[] results = DecodeGateTest.simulate(300, new long[] { 10000000L });
+        assertEquals(300L, results[0]);
+        assertEquals(300L, results[1]);
+    }
+
+    @Test
+    public void testSkipsFramesThatWouldBeReplaced()
+    {
+        // processing takes 80ms, so only about 125 of the 300 frames can be taken
+        long[] results = DecodeGateTest.simulate(300, new long[] { 80000000L });
+        long decoded = results[0];
+        long taken = results[1];
+
+        // the vision thread still gets about as many frames as it can process, never waiting more than a grab interval...
+        assertTrue(taken >= 120L, "taken " + taken);
+        assertTrue(results[2] <= DecodeGateTest.Interval, "waited " + results[2]);
+
+        // ...and almost every decoded frame is actually taken, rather than being replaced unseen
+        assertTrue(decoded - taken <= 5L, "decoded " + decoded + ", taken " + taken);
+    }
+
+    @Test
+    public void testMispredictedFramesCostUpToAGrabInterval()
+    {
+        // processing usually takes 80ms, but every fifth frame only takes 5ms, so the vision thread sometimes asks for a
+        // frame long before the gate expects it to
+        long[] results = DecodeGateTest.simulate(300, new long[] { 80000000L, 80000000L, 80000000L, 80000000L, 5000000L });
+        long decoded = results[0];
+        long taken = results[1];
+
+        // frames are still skipped...
+        assertTrue(decoded < 240L, "decoded " + decoded);
+
+        // ...so when the vision thread asks early the grab it would have wanted is gone, and it has to wait for the next one
+        // (which is decoded because it is waiting), or take an older frame that was decoded before it asked
+        assertTrue(results[2] > 0L, "never waited");
+        assertTrue(results[2] <= DecodeGateTest.Interval, "waited " + results[2]);
+        assertTrue(results[3] <= 2 * DecodeGateTest.Interval, "took a frame " + results[3] + " old");
+        assertTrue(taken >= 140L, "taken " + taken);
+    }
+
+    /**
+     * Simulate a camera grabbing frames at a fixed interval while a vision thread takes the most recent decoded frame
+     * whenever it finishes processing the previous one
+     * @param frames number of frames grabbed
+     * @param processingNanos time to process each taken frame, repeating
+     * @return the number of frames decoded, the number of decoded frames that were taken, the longest the vision thread
+     * waited for a frame, and the oldest frame it took
+     */
+    private static long[] simulate(int frames, long[] processingNanos)
+    {
+        DecodeGate gate = new DecodeGate();
+        long startNanos = 1000000000L;
+        long nextTakeNanos = startNanos;
+        boolean asked = false;
+        boolean available = false;
+        long availableGrabNanos = 0L;
+        long decoded = 0L;
+        long taken = 0L;
+        long maxWaitNanos = 0L;
+        long maxAgeNanos = 0L;
+        for (int i = 0; i < frames; i++)
+        {
+            long grabNanos = startNanos + i * DecodeGateTest.Interval;
+
+            // the vision thread asks for a frame as soon as it is done with the previous one, and takes the waiting frame
+            while (!asked && nextTakeNanos <= grabNanos)
+            {
+                gate.recordAsk(nextTakeNanos);
+                asked = true;
+                if (available)
+                {
+                    gate.recordTake(nextTakeNanos);
+                    maxAgeNanos = Math.max(maxAgeNanos, nextTakeNanos - availableGrabNanos);
+                    available = false;
+                    asked = false;
+                    nextTakeNanos += processingNanos[(int)(taken % processingNanos.length)];
+                    taken++;
+                }
+            }
+
+            boolean waiting = asked && nextTakeNanos <= grabNanos;
+            if (gate.recordGrab(grabNanos))
+            {
+                decoded++;
+                available = true;
+                availableGrabNanos = grabNanos;
+                if (waiting)
+                {
+                    gate.recordTake(grabNanos);
+                    maxWaitNanos = Math.max(maxWaitNanos, grabNanos - nextTakeNanos);
+                    available = false;
+                    asked = false;
+                    nextTakeNanos = grabNanos + processingNanos[(int)(taken % processingNanos.length)];
+                    taken++;
+                }
+            }
+        }
+
+        return new long[] { decoded, taken, maxWaitNanos, maxAgeNanos };
+    }
+}
@@ -0,0 +1,133 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.*;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+
+public class ImageUndistorterTest
+{
+    private static final String RepoPath = "src/test/resources/";
+
+    @Test
+    public void testFusedPreprocessingMatchesSeparatePasses()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        ImageUndistorter undistorter = ImageUndistorterTest.createUndistorter(VisionConstants.UNDISTORT_FIXED_POINT_MAPS, null);
+
+        Size size = new Size(VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X, VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y);
+
+        // mask out the bottom of the image and a block on the left side (like a bumper and a mechanism)
+        Mat mask = new Mat(size, CvType.CV_8UC3, new Scalar(255, 255, 255));
+        Imgproc.rectangle(mask, new Point(0, 600), new Point(1280, 720), new Scalar(0, 0, 0), -1);
+        Imgproc.rectangle(mask, new Point(100, 200), new Point(300, 450), new Scalar(0, 0, 0), -1);
+
+        ImageUndistorter maskedUndistorter = undistorter.createMasked(mask);
+
+        for (int i = 1; i <= 7; i++)
+        {
+            Mat image = ImageUndistorterTest.loadCapture(i);
+
+            // current chain: mask, undistort, then convert to gray
+            Mat masked = new Mat();
+            Mat undistorted = new Mat();
+            Mat expected = new Mat();
+            Core.bitwise_and(image, mask, masked);
+            undistorter.undistortFrame(masked, undistorted);
+            Imgproc.cvtColor(undistorted, expected, Imgproc.COLOR_BGR2GRAY);
+
+            // fused: convert to gray, then mask + undistort in one remap
+            Mat gray = new Mat();
+            Mat actual = new Mat();
+            Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+            maskedUndistorter.undistortFrame(gray, actual);
+
+            Mat difference = new Mat();
+            Core.absdiff(expected, actual, difference);
+
+            // pixels can only differ by more than rounding along the edges of the mask, where interpolation blends masked and unmasked pixels
+            Mat largeDifference = new Mat();
+            Imgproc.threshold(difference, largeDifference, 2.0, 255.0, Imgproc.THRESH_BINARY);
+            double largeDifferenceFraction = (double)Core.countNonZero(largeDifference) / difference.total();
+            double meanDifference = Core.mean(difference).val[0];
+
+            assertTrue(largeDifferenceFraction < 0.001, "Capture" + i + ": " + largeDifferenceFraction + " of pixels differ by more than 2");
+            assertTrue(meanDifference < 0.05, "Capture" + i + ": mean difference " + meanDifference);
+        }
+    }
+
+    @Test
+    public void testFixedPointMapsMatchFloatingPointMaps()
+        throws IOException
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        File cacheDirectory = Files.createTempDirectory("undistort").toFile();
+        ImageUndistorter floatUndistorter = ImageUndistorterTest.createUndistorter(false, null);
+        ImageUndistorter fixedUndistorter = ImageUndistorterTest.createUndistorter(true, cacheDirectory.getAbsolutePath());
+        ImageUndistorter cachedUndistorter = ImageUndistorterTest.createUndistorter(true, cacheDirectory.getAbsolutePath());
+        assertEquals(1, cacheDirectory.listFiles().length);
+
+        Mat image = ImageUndistorterTest.loadCapture(1);
+        Mat expected = new Mat();
+        Mat actual = new Mat();
+        Mat cached = new Mat();
+        floatUndistorter.undistortFrame(image, expected);
+        fixedUndistorter.undistortFrame(image, actual);
+        cachedUndistorter.undistortFrame(image, cached);
+
+        // OpenCV converts floating-point maps to fixed-point internally, so the results should only differ by rounding
+        Mat difference = new Mat();
+        Core.absdiff(expected, actual, difference);
+        assertTrue(Core.norm(difference, Core.NORM_INF) <= 1.0);
+
+        Core.absdiff(actual, cached, difference);
+        assertEquals(0.0, Core.norm(difference, Core.NORM_INF));
+
+        // undistorting a region should match the same region of the full frame
+        Rect region = new Rect(400, 200, 320, 240);
+        Mat regionFrame = new Mat();
+        fixedUndistorter.undistortRegion(image, regionFrame, region);
+        Core.absdiff(actual.submat(region), regionFrame, difference);
+        assertEquals(0.0, Core.norm(difference, Core.NORM_INF));
+
+        for (File file : cacheDirectory.listFiles())
+        {
+            file.delete();
+        }
+
+        cacheDirectory.delete();
+    }
+
+    private static ImageUndistorter createUndistorter(boolean fixedPoint, String cacheDirectory)
+    {
+        return new ImageUndistorter(
+            VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF,
+            fixedPoint,
+            cacheDirectory);
+    }
+
+    private static Mat loadCapture(int index)
+    {
+        Mat capture = Imgcodecs.imread(ImageUndistorterTest.RepoPath + "Capture" + index + ".PNG");
+        Mat image = new Mat();
+        Imgproc.resize(capture, image, new Size(VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X, VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y));
+        return image;
+    }
+}
@@ -0,0 +1,47 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void testBucketsAreContiguous()
+    {
+        long previousUpperBound = -1L;
+        for (int i = 0; i < 500; i++)
+        {
+            long upperBound = LatencyHistogram.getBucketUpperBound(i);
+            assertEquals(i, LatencyHistogram.getBucketIndex(previousUpperBound + 1L));
+            assertEquals(i, LatencyHistogram.getBucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++)
+        {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000L, histogram.getTotalCount());
+        assertEquals(1000000L, histogram.getMaxValue());
+        LatencyHistogramTest.assertWithin(500000L, histogram.getValueAtPercentile(50.0), 0.07);
+        LatencyHistogramTest.assertWithin(990000L, histogram.getValueAtPercentile(99.0), 0.07);
+        assertEquals(1000000L, histogram.getValueAtPercentile(100.0));
+
+        histogram.reset();
+        assertEquals(0L, histogram.getTotalCount());
+        assertEquals(0L, histogram.getValueAtPercentile(50.0));
+    }
+
+    private static void assertWithin(long expected, long actual, double tolerance)
+    {
+        assertTrue(Math.abs(actual - expected) <= expected * tolerance, "expected " + expected + " but was " + actual);
+    }
+}
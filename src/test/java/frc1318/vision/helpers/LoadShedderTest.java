@@ -0,0 +1,73 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LoadShedderTest
+{
+    private static final long Bound = 100000000L;
+    private static final long Interval = 33333333L;
+
+    private long captureTime = 1000000000L;
+
+    @Test
+    public void testShedsInPriorityOrderAndRecovers()
+    {
+        LoadShedder shedder = new LoadShedder(LoadShedderTest.Bound, 0.7, 5);
+        assertEquals(LoadShedder.Level.None, shedder.getLevel());
+
+        // keeping up comfortably
+        assertEquals(0, this.updateFrames(shedder, 50, 20000000L));
+        assertEquals(LoadShedder.Level.None, shedder.getLevel());
+        assertEquals(LoadShedderTest.Interval, shedder.getAverageIntervalNanos(), 1000.0);
+
+        // a frame interval plus the processing time is over the bound, so work is shed one level at a time
+        assertEquals(3, this.updateFrames(shedder, 100, 90000000L));
+        assertEquals(LoadShedder.Level.DetectionResolution, shedder.getLevel());
+        assertTrue(shedder.shouldShed(LoadShedder.Level.RawStream));
+        assertTrue(shedder.shouldShed(LoadShedder.Level.DebugFrames));
+
+        // under the bound, but not by enough to restore anything
+        assertEquals(0, this.updateFrames(shedder, 50, 45000000L));
+        assertEquals(LoadShedder.Level.DetectionResolution, shedder.getLevel());
+
+        // comfortably under the bound again, so the work comes back in reverse order
+        LoadShedder.Level previous = shedder.getLevel();
+        for (int i = 0; i < 100; i++)
+        {
+            if (this.updateFrame(shedder, 10000000L))
+            {
+                assertEquals(previous.ordinal() - 1, shedder.getLevel().ordinal());
+                previous = shedder.getLevel();
+            }
+        }
+
+        assertEquals(LoadShedder.Level.None, shedder.getLevel());
+        assertFalse(shedder.shouldShed(LoadShedder.Level.RawStream));
+    }
+
+    private int updateFrames(LoadShedder shedder, int frames, long processingNanos)
+    {
+        int changes = 0;
+        for (int i = 0; i < frames; i++)
+        {
+            if (this.updateFrame(shedder, processingNanos))
+            {
+                changes++;
+            }
+        }
+
+        return changes;
+    }
+
+    private boolean updateFrame(LoadShedder shedder, long processingNanos)
+    {
+        // frames wait in the mailbox for half an interval on average once processing can't keep up
+        this.captureTime += LoadShedderTest.Interval;
+        long waitNanos = processingNanos > LoadShedderTest.Interval ? LoadShedderTest.Interval / 2 : 0L;
+        return shedder.update(this.captureTime, processingNanos, this.captureTime + waitNanos + processingNanos);
+    }
+}
@@ -0,0 +1,96 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.VisionConstants;
+
+public class LookupTableHSVFilterTest
+{
+    private static final String RepoPath = "src/test/resources/";
+
+    @Test
+    public void testMatchesHSVFilter()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        Scalar redLow = new Scalar(170, 100, 90);
+        Scalar redHigh = new Scalar(180, 255, 255);
+        Scalar redLowTwo = new Scalar(0, 100, 90);
+        Scalar redHighTwo = new Scalar(10, 255, 255);
+
+        HSVFilter hsvFilter = new HSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH);
+        HSVFilter dualHsvFilter = new HSVFilter(redLow, redHigh, redLowTwo, redHighTwo);
+        LookupTableHSVFilter lookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 8, LookupTableHSVFilter.Layout.BGR);
+        LookupTableHSVFilter dualLookupFilter = new LookupTableHSVFilter(redLow, redHigh, redLowTwo, redHighTwo, 8, LookupTableHSVFilter.Layout.BGR);
+        LookupTableHSVFilter yuyvLookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 8, LookupTableHSVFilter.Layout.YUYV);
+        LookupTableHSVFilter i420LookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 8, LookupTableHSVFilter.Layout.I420);
+        LookupTableHSVFilter coarseLookupFilter = new LookupTableHSVFilter(VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_LOW, VisionConstants.EXAMPLE_VISIONTARGET_HSV_FILTER_HIGH, 5, LookupTableHSVFilter.Layout.BGR);
+
+        Mat expected = new Mat();
+        Mat actual = new Mat();
+        Mat yuyv = new Mat();
+        Mat bgrFromYuyv = new Mat();
+        Mat i420 = new Mat();
+        Mat bgrFromI420 = new Mat();
+        for (int capture = 1; capture <= 7; capture++)
+        {
+            Mat frame = Imgcodecs.imread(LookupTableHSVFilterTest.RepoPath + "Capture" + capture + ".PNG");
+
+            hsvFilter.filterHSV(frame, expected);
+            lookupFilter.filterHSV(frame, actual);
+            assertEquals(CvType.CV_8UC1, actual.type());
+            assertTrue(expected.size().equals(actual.size()));
+            assertEquals(0, LookupTableHSVFilterTest.countDifferences(expected, actual));
+
+            dualHsvFilter.filterHSV(frame, expected);
+            dualLookupFilter.filterHSV(frame, actual);
+            assertEquals(0, LookupTableHSVFilterTest.countDifferences(expected, actual));
+
+            // a coarse table only differs close to the bounds
+            hsvFilter.filterHSV(frame, expected);
+            coarseLookupFilter.filterHSV(frame, actual);
+            assertTrue(LookupTableHSVFilterTest.countDifferences(expected, actual) <= expected.total() / 100);
+
+            // YUYV frames give the same mask as converting them to BGR first
+            Imgproc.cvtColor(frame, yuyv, Imgproc.COLOR_BGR2YUV_YUYV);
+            Imgproc.cvtColor(yuyv, bgrFromYuyv, Imgproc.COLOR_YUV2BGR_YUYV);
+            hsvFilter.filterHSV(bgrFromYuyv, expected);
+            yuyvLookupFilter.filterHSV(yuyv, actual);
+            assertEquals(0, LookupTableHSVFilterTest.countDifferences(expected, actual));
+
+            // and so do I420 frames (which must have an even size), giving a mask the size of the luma plane
+            Mat evenFrame = frame.submat(0, frame.rows() & ~1, 0, frame.cols() & ~1);
+            Imgproc.cvtColor(evenFrame, i420, Imgproc.COLOR_BGR2YUV_I420);
+            Imgproc.cvtColor(i420, bgrFromI420, Imgproc.COLOR_YUV2BGR_I420);
+            hsvFilter.filterHSV(bgrFromI420, expected);
+            i420LookupFilter.filterHSV(i420, actual);
+            assertTrue(evenFrame.size().equals(actual.size()));
+            assertEquals(0, LookupTableHSVFilterTest.countDifferences(expected, actual));
+            evenFrame.release();
+
+            frame.release();
+        }
+
+        expected.release();
+        actual.release();
+        yuyv.release();
+        bgrFromYuyv.release();
+        i420.release();
+        bgrFromI420.release();
+    }
+
+    private static int countDifferences(Mat expected, Mat actual)
+    {
+        Mat difference = new Mat();
+        Core.compare(expected, actual, difference, Core.CMP_NE);
+        int count = Core.countNonZero(difference);
+        difference.release();
+        return count;
+    }
+}
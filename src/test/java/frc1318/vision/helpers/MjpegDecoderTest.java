@@ -0,0 +1,51 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+public class MjpegDecoderTest
+{
+    private static final String RepoPath = "src/test/resources/";
+
+    @Test
+    public void testDecodesToGrayscaleDirectly()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        Mat frame = Imgcodecs.imread(MjpegDecoderTest.RepoPath + "Capture1.PNG");
+        MatOfByte jpegFrame = new MatOfByte();
+        Imgcodecs.imencode(".jpg", frame, jpegFrame);
+
+        // what the pipeline gets today: a full color decode, then a conversion to grayscale
+        Mat colorFrame = new Mat();
+        Mat expected = new Mat();
+        assertTrue(new MjpegDecoder(MjpegDecoder.Mode.Color).decode(jpegFrame, colorFrame));
+        assertEquals(CvType.CV_8UC3, colorFrame.type());
+        Imgproc.cvtColor(colorFrame, expected, Imgproc.COLOR_BGR2GRAY);
+
+        // decoding just the luma gives (nearly) the same image
+        Mat actual = new Mat();
+        assertTrue(new MjpegDecoder(MjpegDecoder.Mode.Grayscale).decode(jpegFrame, actual));
+        assertEquals(CvType.CV_8UC1, actual.type());
+        assertEquals(expected.size(), actual.size());
+        Mat difference = new Mat();
+        Core.absdiff(expected, actual, difference);
+        assertTrue(Core.mean(difference).val[0] < 2.0);
+
+        // not a JPEG
+        assertFalse(new MjpegDecoder(MjpegDecoder.Mode.Grayscale).decode(new MatOfByte((byte)1, (byte)2, (byte)3), actual));
+
+        frame.release();
+        jpegFrame.release();
+        colorFrame.release();
+        expected.release();
+        actual.release();
+        difference.release();
+    }
+}
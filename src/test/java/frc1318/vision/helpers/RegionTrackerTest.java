@@ -0,0 +1,84 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+public class RegionTrackerTest
+{
+    private static final int Width = 1280;
+    private static final int Height = 720;
+
+    @Test
+    public void testTracksMovingTagAndFallsBack()
+    {
+        RegionTracker tracker = new RegionTracker(4, 3, 0.5, 10, 0.5);
+        Rect region = new Rect();
+
+        // nothing tracked yet, so search the full frame
+        assertFalse(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+        tracker.beginUpdate();
+        tracker.addTag(7, RegionTrackerTest.square(600, 300, 40), 0, 0);
+        tracker.endUpdate(false);
+
+        // the region covers the tag, padded by half its size
+        assertTrue(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+        assertEquals(new Rect(580, 280, 80, 80), region);
+
+        // the tag moves 30 pixels to the right (found relative to the region)
+        tracker.beginUpdate();
+        tracker.addTag(7, RegionTrackerTest.square(630 - region.x, 300 - region.y, 40), region.x, region.y);
+        tracker.endUpdate(true);
+
+        // the next region is predicted 30 pixels further along, and padded for the speed of the tag
+        assertTrue(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+        assertEquals(new Rect(610, 250, 140, 140), region);
+
+        // the tag is lost, so the next frame searches the full frame
+        tracker.beginUpdate();
+        tracker.endUpdate(true);
+        assertFalse(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+        tracker.beginUpdate();
+        tracker.addTag(7, RegionTrackerTest.square(660, 300, 40), 0, 0);
+        tracker.endUpdate(false);
+
+        // after the full-search interval, we search the full frame again even though the tag is still found
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+            tracker.beginUpdate();
+            tracker.addTag(7, RegionTrackerTest.square(660 - region.x, 300 - region.y, 40), region.x, region.y);
+            tracker.endUpdate(true);
+        }
+
+        assertFalse(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+
+        assertEquals(4L, tracker.getRegionHits());
+        assertEquals(1L, tracker.getRegionMisses());
+        assertEquals(1L, tracker.getFullSearches());
+    }
+
+    @Test
+    public void testLargeRegionSearchesFullFrame()
+    {
+        RegionTracker tracker = new RegionTracker(4, 10, 0.5, 10, 0.5);
+        Rect region = new Rect();
+
+        // tags in opposite corners would need most of the frame to be searched anyway
+        tracker.beginUpdate();
+        tracker.addTag(1, RegionTrackerTest.square(20, 20, 60), 0, 0);
+        tracker.addTag(2, RegionTrackerTest.square(1200, 640, 60), 0, 0);
+        tracker.endUpdate(false);
+
+        assertFalse(tracker.predictRegion(RegionTrackerTest.Width, RegionTrackerTest.Height, region));
+    }
+
+    private static Point[] square(double x, double y, double size)
+    {
+        return new Point[] { new Point(x, y + size), new Point(x + size, y + size), new Point(x + size, y), new Point(x, y) };
+    }
+}
@@ -0,0 +1,299 @@
+package frc1318.vision.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.*;
+
+import frc1318.vision.FieldLayout;
+import frc1318.vision.VisionConstants;
+
+public class TagPoseEstimatorTest
+{
+    private static final double TagSize = 6.5;
+    private static final double[] CameraPose = new double[] { 5.0, -10.0, 2.0, 8.0, -3.0, 20.0 }; // yaw, pitch, roll, x, y, z
+
+    @Test
+    public void testTagPoseFromDistortedCorners()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        TagPoseEstimator estimator = TagPoseEstimatorTest.createEstimator();
+
+        // tag ahead of the robot and a little to the left, turned slightly away
+        double[] tagRelativeToRobot = new double[] { 15.0, 0.0, 0.0, 72.0, 12.0, 24.0 };
+        Point[] vertices = TagPoseEstimatorTest.projectTag(tagRelativeToRobot);
+
+        double[] offset = new double[3];
+        double[] ypr = new double[3];
+        assertTrue(estimator.estimateTagPose(vertices, offset, ypr));
+
+        TagPoseEstimatorTest.assertPose(tagRelativeToRobot, offset, ypr);
+        assertTrue(estimator.getError() < 0.01, "error " + estimator.getError());
+
+        estimator.release();
+    }
+
+    @Test
+    public void testAbsolutePoseFromDistortedCorners()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        TagPoseEstimator estimator = TagPoseEstimatorTest.createEstimator();
+
+        // robot facing the blue speaker center tag (as in FieldLayout), a bit more than 5 feet away
+        double[] tagRelativeToField = new double[] { 180.0, 0.0, 0.0, -327.12, 215.00, 57.13 };
+        double[] robotRelativeToField = new double[] { 170.0, 0.0, 0.0, -260.0, 200.0, 0.0 };
+
+        Point[] vertices = TagPoseEstimatorTest.projectTag(TagPoseEstimatorTest.getTagRelativeToRobot(tagRelativeToField, robotRelativeToField));
+
+        double[] offset = new double[3];
+        double[] ypr = new double[3];
+        assertTrue(estimator.estimateAbsolutePose(vertices, tagRelativeToField, offset, ypr));
+
+        TagPoseEstimatorTest.assertPose(robotRelativeToField, offset, ypr);
+
+        estimator.release();
+    }
+
+    @Test
+    public void testMultiTagAbsolutePoseFromDistortedCorners()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        TagPoseEstimator estimator = TagPoseEstimatorTest.createEstimator();
+
+        // robot facing both of the blue speaker tags (as in FieldLayout)
+        double[][] tagsRelativeToField = new double[][]
+        {
+            { 180.0, 0.0, 0.0, -327.12, 215.00, 57.13 },
+            { 180.0, 0.0, 0.0, -327.12, 192.75, 57.13 },
+        };
+        double[] robotRelativeToField = new double[] { 175.0, 0.0, 0.0, -240.0, 204.0, 0.0 };
+
+        Point[][] vertices = new Point[tagsRelativeToField.length][];
+        for (int t = 0; t < tagsRelativeToField.length; t++)
+        {
+            vertices[t] = TagPoseEstimatorTest.projectTag(TagPoseEstimatorTest.getTagRelativeToRobot(tagsRelativeToField[t], robotRelativeToField));
+        }
+
+        double[] offset = new double[3];
+        double[] ypr = new double[3];
+        assertTrue(estimator.estimateMultiTagAbsolutePose(vertices, tagsRelativeToField, tagsRelativeToField.length, offset, ypr));
+
+        TagPoseEstimatorTest.assertPose(robotRelativeToField, offset, ypr);
+        assertTrue(estimator.getError() < 0.01, "error " + estimator.getError());
+
+        // a single tag should agree with the single-tag solver
+        assertTrue(estimator.estimateMultiTagAbsolutePose(vertices, tagsRelativeToField, 1, offset, ypr));
+        TagPoseEstimatorTest.assertPose(robotRelativeToField, offset, ypr);
+
+        estimator.release();
+    }
+
+    @Test
+    public void testFieldLayoutPosesMatchPublishedTagPositions()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // camera at the center of the robot, level and facing forward, at about the height of the tags
+        double cameraHeight = 50.0;
+        TagPoseEstimator estimator = new TagPoseEstimator(
+            TagPoseEstimatorTest.TagSize,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF,
+            0.0,
+            0.0,
+            0.0,
+            0.0,
+            0.0,
+            cameraHeight);
+
+        double halfSize = TagPoseEstimatorTest.TagSize / 2.0;
+        for (int id : FieldLayout.AprilTagIdToPoseMap.keySet())
+        {
+            double[] tagPose = FieldLayout.AprilTagIdToPoseMap.get(id);
+
+            // build the corners straight from FIRST's table (the layout adds 180 degrees so that it tracks the rear face of the tag),
+            // rather than with rotationFromYawPitchRoll, in the apriltag order as seen from in front of the tag:
+            // bottom-left, bottom-right, top-right, top-left
+            double theta = Math.toRadians(tagPose[0] - 180.0);
+            double leftX = Math.sin(theta);
+            double leftY = -Math.cos(theta);
+            double[][] corners = new double[][]
+            {
+                { tagPose[3] + halfSize * leftX, tagPose[4] + halfSize * leftY, tagPose[5] - halfSize },
+                { tagPose[3] - halfSize * leftX, tagPose[4] - halfSize * leftY, tagPose[5] - halfSize },
+                { tagPose[3] - halfSize * leftX, tagPose[4] - halfSize * leftY, tagPose[5] + halfSize },
+                { tagPose[3] + halfSize * leftX, tagPose[4] + halfSize * leftY, tagPose[5] + halfSize },
+            };
+
+            // robot about 7 feet in front of the tag and a bit to the side, facing it (yaw 0 looks at the rear face) but turned slightly
+            double robotYaw = tagPose[0] + 10.0;
+            double robotX = tagPose[3] + 84.0 * Math.cos(theta) + 6.0 * leftX;
+            double robotY = tagPose[4] + 84.0 * Math.sin(theta) + 6.0 * leftY;
+            double[] robotRelativeToField = new double[] { robotYaw, 0.0, 0.0, robotX, robotY, 0.0 };
+
+            double cosYaw = Math.cos(Math.toRadians(robotYaw));
+            double sinYaw = Math.sin(Math.toRadians(robotYaw));
+            Point3[] cameraPoints = new Point3[4];
+            for (int c = 0; c < 4; c++)
+            {
+                double dx = corners[c][0] - robotX;
+                double dy = corners[c][1] - robotY;
+                double forward = cosYaw * dx + sinYaw * dy;
+                double left = -sinYaw * dx + cosYaw * dy;
+                double up = corners[c][2] - cameraHeight;
+                cameraPoints[c] = new Point3(-left, -up, forward);
+            }
+
+            Point[] vertices = TagPoseEstimatorTest.projectPoints(cameraPoints);
+
+            double[] offset = new double[3];
+            double[] ypr = new double[3];
+            assertTrue(estimator.estimateAbsolutePose(vertices, tagPose, offset, ypr), "tag " + id);
+            TagPoseEstimatorTest.assertPose(robotRelativeToField, offset, ypr);
+
+            assertTrue(estimator.estimateMultiTagAbsolutePose(new Point[][] { vertices }, new double[][] { tagPose }, 1, offset, ypr), "tag " + id);
+            TagPoseEstimatorTest.assertPose(robotRelativeToField, offset, ypr);
+        }
+
+        estimator.release();
+    }
+
+    private static TagPoseEstimator createEstimator()
+    {
+        return new TagPoseEstimator(
+            TagPoseEstimatorTest.TagSize,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF,
+            TagPoseEstimatorTest.CameraPose[2],
+            TagPoseEstimatorTest.CameraPose[1],
+            TagPoseEstimatorTest.CameraPose[0],
+            TagPoseEstimatorTest.CameraPose[3],
+            TagPoseEstimatorTest.CameraPose[4],
+            TagPoseEstimatorTest.CameraPose[5]);
+    }
+
+    /**
+     * Calculate where a tag is relative to the robot (inverse(robot relative to field) * (tag relative to field))
+     * @param tagRelativeToField pose of the tag on the field (yaw, pitch, roll, x, y, z)
+     * @param robotRelativeToField pose of the robot on the field (yaw, pitch, roll, x, y, z)
+     * @return pose of the tag relative to the robot (yaw, pitch, roll, x, y, z)
+     */
+    private static double[] getTagRelativeToRobot(double[] tagRelativeToField, double[] robotRelativeToField)
+    {
+        double[] robotRotation = new double[9];
+        double[] tagRotation = new double[9];
+        TagPoseEstimator.rotationFromYawPitchRoll(robotRelativeToField[0], robotRelativeToField[1], robotRelativeToField[2], robotRotation);
+        TagPoseEstimator.rotationFromYawPitchRoll(tagRelativeToField[0], tagRelativeToField[1], tagRelativeToField[2], tagRotation);
+
+        double[] rotation = new double[9];
+        double[] tagRelativeToRobot = new double[6];
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                rotation[3 * i + j] = robotRotation[i] * tagRotation[j] + robotRotation[3 + i] * tagRotation[3 + j] + robotRotation[6 + i] * tagRotation[6 + j];
+            }
+
+            tagRelativeToRobot[3 + i] =
+                robotRotation[i] * (tagRelativeToField[3] - robotRelativeToField[3]) +
+                robotRotation[3 + i] * (tagRelativeToField[4] - robotRelativeToField[4]) +
+                robotRotation[6 + i] * (tagRelativeToField[5] - robotRelativeToField[5]);
+        }
+
+        double[] angles = new double[3];
+        TagPoseEstimator.yawPitchRollFromRotation(rotation, angles);
+        System.arraycopy(angles, 0, tagRelativeToRobot, 0, 3);
+        return tagRelativeToRobot;
+    }
+
+    /**
+     * Project the corners of a tag through the (distorted) camera model
+     * @param tagRelativeToRobot pose of the tag (yaw, pitch, roll, x, y, z)
+     * @return corners of the tag as they would be detected in the original frame
+     */
+    private static Point[] projectTag(double[] tagRelativeToRobot)
+    {
+        double[] cameraRotation = new double[9];
+        double[] tagRotation = new double[9];
+        TagPoseEstimator.rotationFromYawPitchRoll(TagPoseEstimatorTest.CameraPose[0], TagPoseEstimatorTest.CameraPose[1], TagPoseEstimatorTest.CameraPose[2], cameraRotation);
+        TagPoseEstimator.rotationFromYawPitchRoll(tagRelativeToRobot[0], tagRelativeToRobot[1], tagRelativeToRobot[2], tagRotation);
+
+        double halfSize = TagPoseEstimatorTest.TagSize / 2.0;
+        double[][] corners = new double[][] { { -halfSize, halfSize }, { halfSize, halfSize }, { halfSize, -halfSize }, { -halfSize, -halfSize } };
+
+        Point3[] cameraPoints = new Point3[4];
+        for (int c = 0; c < 4; c++)
+        {
+            // tag corner in the tag's frame (x into the tag, y left, z up), from OpenCV's tag frame (x right, y down, z into the tag)
+            double[] corner = new double[] { 0.0, -corners[c][0], -corners[c][1] };
+
+            // corner relative to the robot, and then relative to the camera
+            double[] robotPoint = new double[3];
+            for (int i = 0; i < 3; i++)
+            {
+                robotPoint[i] = tagRelativeToRobot[3 + i] + tagRotation[3 * i] * corner[0] + tagRotation[3 * i + 1] * corner[1] + tagRotation[3 * i + 2] * corner[2];
+            }
+
+            double[] cameraPoint = new double[3];
+            for (int i = 0; i < 3; i++)
+            {
+                cameraPoint[i] =
+                    cameraRotation[i] * (robotPoint[0] - TagPoseEstimatorTest.CameraPose[3]) +
+                    cameraRotation[3 + i] * (robotPoint[1] - TagPoseEstimatorTest.CameraPose[4]) +
+                    cameraRotation[6 + i] * (robotPoint[2] - TagPoseEstimatorTest.CameraPose[5]);
+            }
+
+            // convert from our camera frame (x forward, y left, z up) to OpenCV's (x right, y down, z forward)
+            cameraPoints[c] = new Point3(-cameraPoint[1], -cameraPoint[2], cameraPoint[0]);
+        }
+
+        return TagPoseEstimatorTest.projectPoints(cameraPoints);
+    }
+
+    /**
+     * Project points through the (distorted) camera model
+     * @param cameraPoints points relative to the camera, in OpenCV's frame (x right, y down, z forward)
+     * @return the points as they would be detected in the original frame
+     */
+    private static Point[] projectPoints(Point3[] cameraPoints)
+    {
+        Mat intrinsicMatrix = ImageUndistorter.buildIntrinsic(
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_CENTER_Y,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_X,
+            VisionConstants.ELP_GS_COLOR_CAMERA_B_FOCAL_LENGTH_Y);
+        MatOfDouble distortionCoeffs = new MatOfDouble(VisionConstants.ELP_GS_COLOR_CAMERA_B_DIFF_COEF);
+        MatOfPoint2f imagePoints = new MatOfPoint2f();
+        Calib3d.projectPoints(new MatOfPoint3f(cameraPoints), Mat.zeros(3, 1, CvType.CV_64FC1), Mat.zeros(3, 1, CvType.CV_64FC1), intrinsicMatrix, distortionCoeffs, imagePoints);
+
+        Point[] vertices = imagePoints.toArray();
+        for (Point vertex : vertices)
+        {
+            assertTrue(vertex.x > 0.0 && vertex.x < VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_X, "vertex outside of frame: " + vertex);
+            assertTrue(vertex.y > 0.0 && vertex.y < VisionConstants.ELP_GS_COLOR_CAMERA_RESOLUTION_Y, "vertex outside of frame: " + vertex);
+        }
+
+        return vertices;
+    }
+
+    private static void assertPose(double[] expected, double[] offset, double[] ypr)
+    {
+        assertEquals(expected[3], offset[0], 0.05);
+        assertEquals(expected[4], offset[1], 0.05);
+        assertEquals(expected[5], offset[2], 0.05);
+        assertEquals(0.0, Math.IEEEremainder(expected[0] - ypr[0], 360.0), 0.1);
+        assertEquals(0.0, Math.IEEEremainder(expected[1] - ypr[1], 360.0), 0.1);
+        assertEquals(0.0, Math.IEEEremainder(expected[2] - ypr[2], 360.0), 0.1);
+    }
+}
@@ -0,0 +1,202 @@
+package frc1318.vision.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+
+import frc1318.apriltag.AprilTagDetection;
+import frc1318.apriltag.AprilTagFamily;
+
+public class AprilTagDetectionSchedulerTest
+{
+    @Test
+    public void testJobsRunInPriorityOrder()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        RecordingScheduler scheduler = new RecordingScheduler();
+        scheduler.open();
+
+        // hold the only worker on a first job while the others queue up behind it
+        Thread blocker = AprilTagDetectionSchedulerTest.startDetect(AprilTagDetectionSchedulerTest.register(scheduler, 0), 1, null);
+        scheduler.started.await();
+
+        long[] queueNanos = new long[4];
+        int[] priorities = new int[] { 2, 1, 0, 1 };
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < priorities.length; i++)
+        {
+            threads.add(AprilTagDetectionSchedulerTest.startDetect(AprilTagDetectionSchedulerTest.register(scheduler, priorities[i]), i + 2, queueNanos));
+        }
+
+        Thread.sleep(100L);
+        scheduler.gate.countDown();
+
+        blocker.join();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        scheduler.close();
+
+        // highest priority (lowest value) first, and in submission order within a priority
+        assertEquals(Arrays.asList(1, 4, 3, 5, 2), scheduler.getOrder());
+
+        // the queue delay covers the time the first job held the worker, and jobs queued earlier but run later waited longer
+        assertTrue(queueNanos[2] >= 100000000L, "queued for " + queueNanos[2]);
+        assertTrue(queueNanos[1] > queueNanos[2]);
+        assertTrue(queueNanos[0] > queueNanos[3]);
+    }
+
+    @Test
+    public void testCloseWaitsForRunningJobAndFailsPendingJobs()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        RecordingScheduler scheduler = new RecordingScheduler();
+        scheduler.open();
+
+        AprilTagDetectionScheduler.Client runningClient = AprilTagDetectionSchedulerTest.register(scheduler, 0);
+        AprilTagDetectionScheduler.Client pendingClient = AprilTagDetectionSchedulerTest.register(scheduler, 0);
+        Thread running = AprilTagDetectionSchedulerTest.startDetect(runningClient, 1, null);
+        scheduler.started.await();
+        AprilTagDetection[][] pendingResult = new AprilTagDetection[1][];
+        Thread pending = new Thread(() -> AprilTagDetectionSchedulerTest.detect(pendingClient, 2, pendingResult));
+        pending.start();
+        AprilTagDetectionSchedulerTest.waitUntilBlocked(pending);
+
+        Thread closer = new Thread(scheduler::close);
+        closer.start();
+
+        // the worker is still in detect(), so close can't release the detectors yet, however long that takes
+        Thread.sleep(1500L);
+        boolean closing = closer.isAlive();
+        boolean detecting = scheduler.detecting;
+
+        scheduler.gate.countDown();
+        closer.join();
+        running.join();
+        pending.join();
+
+        assertTrue(closing);
+        assertTrue(detecting);
+        assertFalse(scheduler.detecting);
+        assertEquals(Arrays.asList(1), scheduler.getOrder());
+        assertEquals(0, pendingResult[0].length);
+
+        // and nothing runs after the scheduler is closed
+        Mat frame = new Mat(3, 1, CvType.CV_8UC1);
+        assertEquals(0, pendingClient.detect(frame).length);
+        assertEquals(Arrays.asList(1), scheduler.getOrder());
+        frame.release();
+    }
+
+    private static AprilTagDetectionScheduler.Client register(AprilTagDetectionScheduler scheduler, int priority)
+    {
+        return scheduler.register(priority, AprilTagFamily.tag36h11, 0, 1.0f, 0.0f, true, 0.25);
+    }
+
+    /**
+     * Start detecting in a frame with the provided number of rows (which identifies the job), waiting until the job is queued
+     */
+    private static Thread startDetect(AprilTagDetectionScheduler.Client client, int rows, long[] queueNanos)
+        throws InterruptedException
+    {
+        Thread thread = new Thread(() ->
+            {
+                AprilTagDetectionSchedulerTest.detect(client, rows, null);
+                if (queueNanos != null)
+                {
+                    queueNanos[rows - 2] = client.getQueueNanos();
+                }
+            });
+
+        thread.start();
+        AprilTagDetectionSchedulerTest.waitUntilBlocked(thread);
+        return thread;
+    }
+
+    private static void detect(AprilTagDetectionScheduler.Client client, int rows, AprilTagDetection[][] result)
+    {
+        Mat frame = new Mat(rows, 1, CvType.CV_8UC1);
+        AprilTagDetection[] detections = client.detect(frame);
+        if (result != null)
+        {
+            result[0] = detections;
+        }
+
+        frame.release();
+    }
+
+    /**
+     * Wait until the thread is waiting for its job (or has finished)
+     */
+    private static void waitUntilBlocked(Thread thread)
+        throws InterruptedException
+    {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TERMINATED)
+        {
+            Thread.sleep(1L);
+        }
+    }
+
+    // runs jobs without a detector, recording their order and holding the first one until the gate is opened
+    private static class RecordingScheduler extends AprilTagDetectionScheduler
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final List<Integer> order = new ArrayList<Integer>();
+        private volatile boolean detecting = false;
+
+        RecordingScheduler()
+        {
+            super(1);
+        }
+
+        @Override
+        AprilTagDetection[] runDetection(Client client, int workerIndex, Mat frame)
+        {
+            this.detecting = true;
+            synchronized (this.order)
+            {
+                this.order.add(frame.rows());
+            }
+
+            this.started.countDown();
+
+            // (not interruptible, like a native detect)
+            while (this.gate.getCount() > 0)
+            {
+                try
+                {
+                    this.gate.await();
+                }
+                catch (InterruptedException ex)
+                {
+                }
+            }
+
+            this.detecting = false;
+            return new AprilTagDetection[0];
+        }
+
+        List<Integer> getOrder()
+        {
+            synchronized (this.order)
+            {
+                return new ArrayList<Integer>(this.order);
+            }
+        }
+    }
+}
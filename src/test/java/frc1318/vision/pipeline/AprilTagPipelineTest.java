@@ -0,0 +1,321 @@
+package frc1318.vision.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+
+import frc1318.apriltag.AprilTagDetection;
+import frc1318.apriltag.AprilTagFamily;
+import frc1318.vision.IResultListener;
+import frc1318.vision.IResultWriter;
+import frc1318.vision.filters.LargestAprilTagFilter;
+
+public class AprilTagPipelineTest
+{
+    private static final int Width = 64;
+    private static final int Height = 48;
+
+    @Test
+    public void testPipelinedOutputsInOrderAndStopsOnClose()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        CaptureTimeRecorder recorder = new CaptureTimeRecorder();
+        AprilTagPipeline<AprilTagDetection> pipeline = AprilTagPipelineTest.createPipeline(recorder, true);
+        assertTrue(pipeline.open());
+
+        // every third frame is a disabled (null) frame, which has to come out in order with the others
+        List<Long> captureTimes = new ArrayList<Long>();
+        List<Boolean> hadFrames = new ArrayList<Boolean>();
+        Mat frame = new Mat(AprilTagPipelineTest.Height, AprilTagPipelineTest.Width, CvType.CV_8UC1, new Scalar(128));
+        for (int i = 0; i < 30; i++)
+        {
+            long captureTime = System.nanoTime();
+            boolean disabled = i % 3 == 0;
+            captureTimes.add(captureTime);
+            hadFrames.add(!disabled);
+            pipeline.process(disabled ? null : frame, captureTime);
+        }
+
+        long deadline = System.nanoTime() + 5000000000L;
+        while (recorder.getCount() < captureTimes.size() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+
+        assertEquals(captureTimes, recorder.getCaptureTimes());
+        assertEquals(hadFrames, recorder.getHadFrames());
+
+        // closing while the output is still writing a result waits for it to finish
+        recorder.setWriteNanos(200000000L);
+        pipeline.process(frame, System.nanoTime());
+        while (!recorder.isWriting() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(1L);
+        }
+
+        assertTrue(recorder.isWriting());
+        pipeline.close();
+        assertFalse(recorder.isWriting());
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            assertFalse(thread.getName().startsWith("AprilTagPipeline"), thread.getName() + " is still running");
+        }
+
+        // and frames processed afterwards go nowhere
+        pipeline.process(frame, System.nanoTime());
+        assertEquals(captureTimes.size() + 1, recorder.getCount());
+
+        frame.release();
+    }
+
+    @Test
+    public void testPipelinedReportsWhenResultsAreWritten()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        CaptureTimeRecorder recorder = new CaptureTimeRecorder();
+        AprilTagPipeline<AprilTagDetection> pipeline = AprilTagPipelineTest.createPipeline(recorder, true);
+        List<long[]> results = new ArrayList<long[]>();
+        IResultListener listener = (captureTime, processingNanos, resultTime) ->
+            {
+                synchronized (results)
+                {
+                    results.add(new long[] { captureTime, processingNanos, resultTime });
+                }
+            };
+
+        // the serial pipeline has written its results by the time process() returns, so it leaves that to the caller
+        AprilTagPipeline<AprilTagDetection> serialPipeline = AprilTagPipelineTest.createPipeline(new CaptureTimeRecorder(), false);
+        assertFalse(serialPipeline.setResultListener(listener));
+        serialPipeline.close();
+
+        assertTrue(pipeline.setResultListener(listener));
+        assertTrue(pipeline.open());
+
+        // each result takes 20ms to write, which has to be included in the time reported for it
+        recorder.setWriteNanos(20000000L);
+        Mat frame = new Mat(AprilTagPipelineTest.Height, AprilTagPipelineTest.Width, CvType.CV_8UC1, new Scalar(128));
+        List<Long> captureTimes = new ArrayList<Long>();
+        for (int i = 0; i < 4; i++)
+        {
+            long captureTime = System.nanoTime();
+            if (i == 2)
+            {
+                // disabled frames don't have a result to report
+                pipeline.process(null, captureTime);
+            }
+            else
+            {
+                captureTimes.add(captureTime);
+                pipeline.process(frame, captureTime);
+            }
+        }
+
+        long deadline = System.nanoTime() + 5000000000L;
+        while (recorder.getCount() < 4 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+
+        pipeline.close();
+        frame.release();
+
+        synchronized (results)
+        {
+            assertEquals(captureTimes.size(), results.size());
+            for (int i = 0; i < results.size(); i++)
+            {
+                long[] result = results.get(i);
+                assertEquals(captureTimes.get(i).longValue(), result[0]);
+                assertTrue(result[2] - result[0] >= 20000000L, "latency " + (result[2] - result[0]));
+                assertTrue(result[1] >= 20000000L && result[1] <= result[2] - result[0], "processing " + result[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testGrayscalePipelineTakesLumaOfYuyvFrames()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // a grayscale pipeline can be handed the YUYV frames of a camera that captures them, serially or pipelined
+        Mat frame = new Mat(AprilTagPipelineTest.Height, AprilTagPipelineTest.Width, CvType.CV_8UC2, new Scalar(128, 64));
+        for (boolean pipelined : new boolean[] { false, true })
+        {
+            CaptureTimeRecorder recorder = new CaptureTimeRecorder();
+            AprilTagPipeline<AprilTagDetection> pipeline = AprilTagPipelineTest.createPipeline(recorder, pipelined);
+            assertTrue(pipeline.open());
+
+            long captureTime = System.nanoTime();
+            pipeline.process(frame, captureTime);
+
+            long deadline = System.nanoTime() + 5000000000L;
+            while (recorder.getCount() < 1 && System.nanoTime() < deadline)
+            {
+                Thread.sleep(10L);
+            }
+
+            pipeline.close();
+            assertEquals(1, recorder.getCount());
+            assertEquals(captureTime, recorder.getCaptureTimes().get(0).longValue());
+            assertTrue(recorder.getHadFrames().get(0));
+        }
+
+        frame.release();
+    }
+
+    @Test
+    public void testColorPipelineTakesGrayscaleFrames()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // a pipeline expecting BGR can still be handed grayscale frames (as libcamera delivers in switched mode), with or
+        // without fused preprocessing, and its color mask is applied to them
+        Mat frame = new Mat(AprilTagPipelineTest.Height, AprilTagPipelineTest.Width, CvType.CV_8UC1, new Scalar(128));
+        Mat mask = new Mat(AprilTagPipelineTest.Height, AprilTagPipelineTest.Width, CvType.CV_8UC3, new Scalar(255, 255, 255));
+        for (boolean fused : new boolean[] { false, true })
+        {
+            for (boolean pipelined : new boolean[] { false, true })
+            {
+                CaptureTimeRecorder recorder = new CaptureTimeRecorder();
+                AprilTagPipeline<AprilTagDetection> pipeline = AprilTagPipelineTest.createPipeline(recorder, mask, false, fused, pipelined);
+                assertTrue(pipeline.open());
+
+                long captureTime = System.nanoTime();
+                pipeline.process(frame, captureTime);
+
+                long deadline = System.nanoTime() + 5000000000L;
+                while (recorder.getCount() < 1 && System.nanoTime() < deadline)
+                {
+                    Thread.sleep(10L);
+                }
+
+                pipeline.close();
+                assertEquals(1, recorder.getCount());
+                assertEquals(captureTime, recorder.getCaptureTimes().get(0).longValue());
+                assertTrue(recorder.getHadFrames().get(0));
+            }
+        }
+
+        frame.release();
+        mask.release();
+    }
+
+    private static AprilTagPipeline<AprilTagDetection> createPipeline(CaptureTimeRecorder recorder, boolean pipelined)
+    {
+        return AprilTagPipelineTest.createPipeline(recorder, null, true, false, pipelined);
+    }
+
+    private static AprilTagPipeline<AprilTagDetection> createPipeline(
+        CaptureTimeRecorder recorder,
+        Mat mask,
+        boolean grayscaleSource,
+        boolean fusedPreprocessing,
+        boolean pipelined)
+    {
+        return new AprilTagPipeline<AprilTagDetection>(
+            recorder,
+            mask,
+            null,
+            grayscaleSource,
+            new LargestAprilTagFilter(0.0, 0.0),
+            AprilTagFamily.tag36h11,
+            0,
+            1,
+            1.0f,
+            0.0f,
+            true,
+            0.25,
+            fusedPreprocessing,
+            pipelined,
+            false,
+            false);
+    }
+
+    private static class CaptureTimeRecorder implements IResultWriter<AprilTagDetection>
+    {
+        private final List<Long> captureTimes = new ArrayList<Long>();
+        private final List<Boolean> hadFrames = new ArrayList<Boolean>();
+        private volatile long writeNanos = 0L;
+        private volatile boolean writing = false;
+
+        @Override
+        public boolean open()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void write(AprilTagDetection result, long captureTime, Mat sourceFrame)
+        {
+            // (busy wait, as the pipeline interrupts its threads when it is closed)
+            this.writing = true;
+            long end = System.nanoTime() + this.writeNanos;
+            while (System.nanoTime() < end)
+            {
+                Thread.onSpinWait();
+            }
+
+            synchronized (this)
+            {
+                this.captureTimes.add(captureTime);
+                this.hadFrames.add(true);
+            }
+
+            this.writing = false;
+        }
+
+        @Override
+        public synchronized void write(AprilTagDetection result, long captureTime)
+        {
+            this.captureTimes.add(captureTime);
+            this.hadFrames.add(false);
+        }
+
+        @Override
+        public void outputDebugFrame(Mat frame)
+        {
+        }
+
+        public void setWriteNanos(long writeNanos)
+        {
+            this.writeNanos = writeNanos;
+        }
+
+        public boolean isWriting()
+        {
+            return this.writing;
+        }
+
+        public synchronized int getCount()
+        {
+            return this.captureTimes.size();
+        }
+
+        public synchronized List<Long> getCaptureTimes()
+        {
+            return new ArrayList<Long>(this.captureTimes);
+        }
+
+        public synchronized List<Boolean> getHadFrames()
+        {
+            return new ArrayList<Boolean>(this.hadFrames);
+        }
+    }
+}
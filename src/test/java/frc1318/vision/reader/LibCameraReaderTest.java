@@ -0,0 +1,241 @@
+package frc1318.vision.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+
+import frc1318.libcamera.ImageFormat;
+import frc1318.vision.CameraSettings;
+import frc1318.vision.controller.DefaultController;
+import frc1318.vision.helpers.Pair;
+
+public class LibCameraReaderTest
+{
+    private static final int Width = 64;
+    private static final int Height = 48;
+    private static final int FramesPerSecond = 100;
+
+    @Test
+    public void testSensorStreamsWhileConsumerIsSlow()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        TimedFakeCamera camera = new TimedFakeCamera(4);
+        LibCameraReader reader = new LibCameraReader(new DefaultController(), camera, "test", 3);
+        reader.setSettings(new CameraSettings(-1.0, -1.0, LibCameraReaderTest.Width, LibCameraReaderTest.Height, LibCameraReaderTest.FramesPerSecond));
+        assertTrue(reader.open());
+
+        Thread captureThread = new Thread(reader);
+        captureThread.start();
+        try
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                Pair<Mat, Long> frame = reader.getCurrentFrame();
+                assertNotNull(frame);
+
+                // the frame is the newest one the sensor captured, rather than a stale one queued in front of it
+                long newest = (camera.getCapturedFrames() - 1) & 0xFF;
+                long behind = (newest - (long)frame.first.get(0, 0)[0]) & 0xFF;
+                assertTrue(behind <= 3, "frame is " + behind + " behind the sensor");
+
+                // take 10 frame intervals to process each frame
+                reader.releaseFrame(frame.first);
+                Thread.sleep(100L);
+            }
+
+            // the sensor kept streaming the whole time, without ever running out of capture requests
+            assertTrue(camera.getCapturedFrames() >= 50L, "captured " + camera.getCapturedFrames());
+            assertEquals(0L, camera.getDroppedFrames());
+        }
+        finally
+        {
+            reader.stop();
+            captureThread.join();
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testStopWaitsForRequestThread()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        // each read holds on to its frame for longer than a second before handing it over
+        SlowReadCamera camera = new SlowReadCamera(4, 1500L);
+        LibCameraReader reader = new LibCameraReader(new DefaultController(), camera, "slow", 3);
+        reader.setSettings(new CameraSettings(-1.0, -1.0, LibCameraReaderTest.Width, LibCameraReaderTest.Height, LibCameraReaderTest.FramesPerSecond));
+        assertTrue(reader.open());
+
+        Thread captureThread = new Thread(reader);
+        captureThread.start();
+        Pair<Mat, Long> frame = reader.getCurrentFrame();
+        assertNotNull(frame);
+        reader.releaseFrame(frame.first);
+
+        // stopping waits for the request thread to hand over the frame it is reading, rather than leaving it to be queued
+        // (and never released) after the camera was stopped
+        reader.stop();
+        captureThread.join();
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            assertFalse(thread.getName().equals("LibCameraReader slow requests"), thread.getName() + " is still running");
+        }
+
+        assertFalse(camera.isReading());
+        reader.close();
+    }
+
+    @Test
+    public void testCloseRightAfterStopWaitsForReader()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        SlowReadCamera camera = new SlowReadCamera(4, 1500L);
+        LibCameraReader reader = new LibCameraReader(new DefaultController(), camera, "closing", 3);
+        reader.setSettings(new CameraSettings(-1.0, -1.0, LibCameraReaderTest.Width, LibCameraReaderTest.Height, LibCameraReaderTest.FramesPerSecond));
+        assertTrue(reader.open());
+
+        Thread captureThread = new Thread(reader);
+        captureThread.start();
+        Pair<Mat, Long> frame = reader.getCurrentFrame();
+        assertNotNull(frame);
+        reader.releaseFrame(frame.first);
+
+        // closing straight after stopping (without joining the reader's thread, as Program does) waits for the reader to
+        // finish with the camera, and then stops and releases it just once
+        reader.stop();
+        reader.close();
+        boolean readerRunning = captureThread.isAlive();
+        captureThread.join();
+
+        assertFalse(readerRunning);
+        assertEquals(1, camera.getStopCount());
+        assertTrue(camera.isReleased());
+        assertFalse(camera.wasUsedAfterRelease());
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            assertFalse(thread.getName().equals("LibCameraReader closing requests"), thread.getName() + " is still running");
+        }
+    }
+
+    @Test
+    public void testFakeCameraDropsFramesWhenRequestsAreNotRead()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        TimedFakeCamera camera = new TimedFakeCamera(4);
+        assertTrue(camera.configure(LibCameraReaderTest.Width, LibCameraReaderTest.Height, LibCameraReaderTest.FramesPerSecond, ImageFormat.YUV420));
+        assertTrue(camera.start());
+        try
+        {
+            // nothing reads the requests, so the sensor fills all 4 and then has to drop frames
+            Thread.sleep(200L);
+            assertEquals(4L, camera.getCapturedFrames());
+            assertTrue(camera.getDroppedFrames() > 0L);
+
+            // reading gives the oldest frame first, in the YUV420 layout
+            Mat frame = camera.read();
+            assertNotNull(frame);
+            assertEquals(LibCameraReaderTest.Height * 3 / 2, frame.rows());
+            assertEquals(0.0, frame.get(0, 0)[0]);
+            frame.release();
+        }
+        finally
+        {
+            camera.release();
+        }
+    }
+
+    // a fake camera that takes a while to hand over each frame it reads
+    private static class SlowReadCamera extends TimedFakeCamera
+    {
+        private final long readDelayMillis;
+        private volatile boolean reading;
+        private volatile int stopCount;
+        private volatile boolean releasing;
+        private volatile boolean released;
+        private volatile boolean usedAfterRelease;
+
+        SlowReadCamera(int requestCount, long readDelayMillis)
+        {
+            super(requestCount);
+
+            this.readDelayMillis = readDelayMillis;
+            this.reading = false;
+            this.stopCount = 0;
+            this.releasing = false;
+            this.released = false;
+            this.usedAfterRelease = false;
+        }
+
+        @Override
+        public void stop()
+        {
+            // (releasing the camera stops it too)
+            if (!this.releasing)
+            {
+                this.usedAfterRelease |= this.released;
+                this.stopCount++;
+            }
+
+            super.stop();
+        }
+
+        @Override
+        public void release()
+        {
+            this.releasing = true;
+            super.release();
+            this.releasing = false;
+            this.released = true;
+        }
+
+        @Override
+        public Mat read()
+        {
+            this.usedAfterRelease |= this.released;
+            this.reading = true;
+            Mat frame = super.read();
+            try
+            {
+                Thread.sleep(this.readDelayMillis);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            this.reading = false;
+            return frame;
+        }
+
+        boolean isReading()
+        {
+            return this.reading;
+        }
+
+        int getStopCount()
+        {
+            return this.stopCount;
+        }
+
+        boolean isReleased()
+        {
+            return this.released;
+        }
+
+        boolean wasUsedAfterRelease()
+        {
+            return this.usedAfterRelease;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package frc1318.vision.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import frc1318.vision.ICameraBufferSource;
+import frc1318.vision.Logger;
+
+public class MappedFileBufferSource implements ICameraBufferSource
+{
+    private static final int STRIDE_ALIGNMENT = 64; // pad rows like camera hardware does, so that the stride is exercised
+
+    private final File directory;
+    private final int bufferCount;
+    private final Mat[] sourceImages;
+
+    private File[] files;
+    private MappedByteBuffer[] buffers;
+    private Mat[] bufferFrames;
+    private Mat[] images;
+    private long[] captureTimes;
+    private ArrayBlockingQueue<Integer> queuedBuffers;
+
+    private int stride;
+    private long frameIntervalNanos;
+    private long nextFrameNanos;
+    private int nextImage;
+    private volatile boolean started;
+
+    /**
+     * Initializes a new instance of the MappedFileBufferSource class.
+     * MappedFileBufferSource stands in for a camera's capture buffers without any hardware: each buffer is a memory-mapped
+     * file, and "capturing" a frame copies the next of a set of images into a queued buffer at the configured frame rate.
+     * Like a real camera, it stalls if the caller is holding on to all of the buffers.
+     * @param directory to create the buffer files in
+     * @param bufferCount number of buffers to capture into
+     * @param sourceImages to play back (converted to the configured size and type)
+     */
+    public MappedFileBufferSource(File directory, int bufferCount, Mat[] sourceImages)
+    {
+        this.directory = directory;
+        this.bufferCount = bufferCount;
+        this.sourceImages = sourceImages;
+
+        this.files = null;
+        this.buffers = null;
+        this.bufferFrames = null;
+        this.images = null;
+        this.captureTimes = null;
+        this.queuedBuffers = null;
+
+        this.stride = 0;
+        this.frameIntervalNanos = 0L;
+        this.nextFrameNanos = 0L;
+        this.nextImage = 0;
+        this.started = false;
+    }
+
+    @Override
+    public boolean configure(int width, int height, int framesPerSecond, int type)
+    {
+        this.release();
+
+        int rowBytes = width * CvType.channels(type);
+        this.stride = (rowBytes + MappedFileBufferSource.STRIDE_ALIGNMENT - 1) / MappedFileBufferSource.STRIDE_ALIGNMENT * MappedFileBufferSource.STRIDE_ALIGNMENT;
+        this.frameIntervalNanos = 1000000000L / Math.max(1, framesPerSecond);
+
+        this.files = new File[this.bufferCount];
+        this.buffers = new MappedByteBuffer[this.bufferCount];
+        this.bufferFrames = new Mat[this.bufferCount];
+        this.captureTimes = new long[this.bufferCount];
+        this.queuedBuffers = new ArrayBlockingQueue<Integer>(this.bufferCount);
+        try
+        {
+            for (int i = 0; i < this.bufferCount; i++)
+            {
+                this.files[i] = new File(this.directory, "buffer" + i + ".raw");
+                try (RandomAccessFile file = new RandomAccessFile(this.files[i], "rw"))
+                {
+                    // the mapping stays valid after the file is closed
+                    this.buffers[i] = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, (long)this.stride * height);
+                }
+
+                this.bufferFrames[i] = new Mat(height, width, type, this.buffers[i], this.stride);
+                this.queuedBuffers.add(i);
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.writeError("unable to map camera buffer: " + ex.toString());
+            this.release();
+            return false;
+        }
+
+        // convert the images up front, so that capturing is a single copy into the buffer
+        this.images = new Mat[this.sourceImages.length];
+        for (int i = 0; i < this.sourceImages.length; i++)
+        {
+            Mat image = new Mat();
+            if (CvType.channels(type) == 1 && this.sourceImages[i].channels() == 3)
+            {
+                Imgproc.cvtColor(this.sourceImages[i], image, Imgproc.COLOR_BGR2GRAY);
+            }
+            else
+            {
+                this.sourceImages[i].copyTo(image);
+            }
+
+            if (image.cols() != width || image.rows() != height)
+            {
+                Imgproc.resize(image, image, new Size(width, height));
+            }
+
+            this.images[i] = image;
+        }
+
+        this.nextImage = 0;
+        return true;
+    }
+
+    @Override
+    public void updateSettings(float brightness, float exposure)
+    {
+    }
+
+    @Override
+    public boolean start()
+    {
+        if (this.bufferFrames == null)
+        {
+            return false;
+        }
+
+        this.nextFrameNanos = System.nanoTime() + this.frameIntervalNanos;
+        this.started = true;
+        return true;
+    }
+
+    @Override
+    public void stop()
+    {
+        this.started = false;
+    }
+
+    @Override
+    public void release()
+    {
+        this.started = false;
+        if (this.bufferFrames != null)
+        {
+            for (Mat frame : this.bufferFrames)
+            {
+                if (frame != null)
+                {
+                    frame.release();
+                }
+            }
+
+            this.bufferFrames = null;
+        }
+
+        if (this.images != null)
+        {
+            for (Mat image : this.images)
+            {
+                image.release();
+            }
+
+            this.images = null;
+        }
+
+        // mapped buffers are unmapped once they are garbage collected
+        this.buffers = null;
+        if (this.files != null)
+        {
+            for (File file : this.files)
+            {
+                if (file != null)
+                {
+                    file.delete();
+                }
+            }
+
+            this.files = null;
+        }
+    }
+
+    @Override
+    public int getBufferCount()
+    {
+        return this.bufferCount;
+    }
+
+    @Override
+    public ByteBuffer getBuffer(int index)
+    {
+        return this.buffers[index];
+    }
+
+    @Override
+    public int getStride()
+    {
+        return this.stride;
+    }
+
+    @Override
+    public int waitForBuffer(long timeoutMillis)
+        throws InterruptedException
+    {
+        if (!this.started)
+        {
+            Thread.sleep(timeoutMillis);
+            return -1;
+        }
+
+        // wait for the next frame to be due
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long frameNanos = this.nextFrameNanos;
+        if (frameNanos > deadline)
+        {
+            TimeUnit.NANOSECONDS.sleep(deadline - System.nanoTime());
+            return -1;
+        }
+
+        TimeUnit.NANOSECONDS.sleep(frameNanos - System.nanoTime());
+
+        // capture into the next queued buffer, if the caller has given us one back
+        Integer index = this.queuedBuffers.poll(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (index == null)
+        {
+            return -1;
+        }
+
+        this.nextFrameNanos = Math.max(frameNanos + this.frameIntervalNanos, System.nanoTime());
+        if (this.images.length > 0)
+        {
+            this.images[this.nextImage].copyTo(this.bufferFrames[index]);
+            this.nextImage = (this.nextImage + 1) % this.images.length;
+        }
+
+        this.captureTimes[index] = System.nanoTime();
+        return index;
+    }
+
+    @Override
+    public long getCaptureTime(int index)
+    {
+        return this.captureTimes[index];
+    }
+
+    @Override
+    public void requeueBuffer(int index)
+    {
+        this.queuedBuffers.offer(index);
+    }
+}
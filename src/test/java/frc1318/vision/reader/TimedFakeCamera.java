@@ -0,0 +1,229 @@
+package frc1318.vision.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import frc1318.libcamera.ImageFormat;
+import frc1318.vision.ILibCamera;
+
+public class TimedFakeCamera implements ILibCamera
+{
+    private static final long READ_TIMEOUT_MILLIS = 1000L;
+
+    private final int requestCount;
+
+    private Mat[] buffers;
+    private ArrayBlockingQueue<Integer> queuedRequests;
+    private ArrayBlockingQueue<Integer> completedRequests;
+
+    private long frameIntervalNanos;
+    private volatile boolean started;
+    private Thread sensorThread;
+
+    private volatile long capturedFrames;
+    private volatile long droppedFrames;
+
+    /**
+     * Initializes a new instance of the TimedFakeCamera class.
+     * TimedFakeCamera stands in for a libcamera camera without any hardware: a sensor thread completes one capture request at
+     * the configured frame rate, filling its buffer with the frame's sequence number (modulo 256), and read() copies out the
+     * oldest completed request and queues it again, as the binding does.  Like the real sensor, a frame is dropped when it
+     * comes due while every request is completed but not yet read.
+     * @param requestCount number of capture requests (buffers) the camera cycles through
+     */
+    public TimedFakeCamera(int requestCount)
+    {
+        this.requestCount = requestCount;
+
+        this.buffers = null;
+        this.queuedRequests = null;
+        this.completedRequests = null;
+
+        this.frameIntervalNanos = 0L;
+        this.started = false;
+        this.sensorThread = null;
+
+        this.capturedFrames = 0L;
+        this.droppedFrames = 0L;
+    }
+
+    @Override
+    public boolean configure(int width, int height, int framesPerSecond, ImageFormat format)
+    {
+        if (this.started)
+        {
+            return false;
+        }
+
+        this.releaseBuffers();
+
+        // YUV420 frames hold the Y plane followed by the quarter resolution U and V planes
+        int rows = format == ImageFormat.YUV420 ? height * 3 / 2 : height;
+        int type = format == ImageFormat.BGR ? CvType.CV_8UC3 : CvType.CV_8UC1;
+
+        this.frameIntervalNanos = 1000000000L / Math.max(1, framesPerSecond);
+        this.buffers = new Mat[this.requestCount];
+        this.queuedRequests = new ArrayBlockingQueue<Integer>(this.requestCount);
+        this.completedRequests = new ArrayBlockingQueue<Integer>(this.requestCount);
+        for (int i = 0; i < this.requestCount; i++)
+        {
+            this.buffers[i] = new Mat(rows, width, type);
+            this.queuedRequests.add(i);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void updateSettings(float brightness, float exposure)
+    {
+    }
+
+    @Override
+    public boolean start()
+    {
+        if (this.buffers == null)
+        {
+            return false;
+        }
+
+        if (!this.started)
+        {
+            this.started = true;
+            this.sensorThread = new Thread(this::runSensor, "TimedFakeCamera sensor");
+            this.sensorThread.start();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void stop()
+    {
+        this.started = false;
+        if (this.sensorThread != null)
+        {
+            this.sensorThread.interrupt();
+            try
+            {
+                this.sensorThread.join();
+            }
+            catch (InterruptedException ex)
+            {
+            }
+
+            this.sensorThread = null;
+        }
+
+        // like libcamera, stopping cancels any requests that haven't been read
+        if (this.completedRequests != null)
+        {
+            this.completedRequests.drainTo(this.queuedRequests);
+        }
+    }
+
+    @Override
+    public Mat read()
+    {
+        if (this.buffers == null)
+        {
+            return null;
+        }
+
+        Integer index;
+        try
+        {
+            index = this.completedRequests.poll(TimedFakeCamera.READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            return null;
+        }
+
+        if (index == null)
+        {
+            return null;
+        }
+
+        Mat frame = this.buffers[index].clone();
+        this.queuedRequests.offer(index);
+        return frame;
+    }
+
+    @Override
+    public void release()
+    {
+        this.stop();
+        this.releaseBuffers();
+    }
+
+    /**
+     * Gets the number of frames that the sensor has captured into a request
+     * @return captured frame count
+     */
+    public long getCapturedFrames()
+    {
+        return this.capturedFrames;
+    }
+
+    /**
+     * Gets the number of frames that the sensor dropped because no request was queued when they came due
+     * @return dropped frame count
+     */
+    public long getDroppedFrames()
+    {
+        return this.droppedFrames;
+    }
+
+    /**
+     * Run the sensor, completing a queued request (or dropping the frame) at the configured frame rate
+     */
+    private void runSensor()
+    {
+        long nextFrameNanos = System.nanoTime() + this.frameIntervalNanos;
+        while (this.started)
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(nextFrameNanos - System.nanoTime());
+            }
+            catch (InterruptedException ex)
+            {
+                break;
+            }
+
+            nextFrameNanos += this.frameIntervalNanos;
+
+            Integer index = this.queuedRequests.poll();
+            if (index == null)
+            {
+                this.droppedFrames++;
+                continue;
+            }
+
+            this.buffers[index].setTo(new Scalar(this.capturedFrames & 0xFF));
+            this.capturedFrames++;
+            this.completedRequests.offer(index);
+        }
+    }
+
+    /**
+     * Release the request buffers
+     */
+    private void releaseBuffers()
+    {
+        if (this.buffers != null)
+        {
+            for (Mat buffer : this.buffers)
+            {
+                buffer.release();
+            }
+
+            this.buffers = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package frc1318.vision.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+
+import frc1318.vision.CameraSettings;
+import frc1318.vision.controller.DefaultController;
+import frc1318.vision.helpers.Pair;
+
+public class ZeroCopyCameraReaderTest
+{
+    private static final int Width = 70;
+    private static final int Height = 48;
+
+    @Test
+    public void testFramesAreCameraBuffers()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        File directory = Files.createTempDirectory("buffers").toFile();
+        Mat dark = new Mat(ZeroCopyCameraReaderTest.Height, ZeroCopyCameraReaderTest.Width, CvType.CV_8UC1, new Scalar(10));
+        Mat bright = new Mat(ZeroCopyCameraReaderTest.Height, ZeroCopyCameraReaderTest.Width, CvType.CV_8UC1, new Scalar(200));
+
+        MappedFileBufferSource source = new MappedFileBufferSource(directory, 3, new Mat[] { dark, bright });
+        ZeroCopyCameraReader reader = new ZeroCopyCameraReader(new DefaultController(), source, "test");
+        reader.setSettings(new CameraSettings(-1.0, -1.0, ZeroCopyCameraReaderTest.Width, ZeroCopyCameraReaderTest.Height, 100));
+
+        Thread captureThread = new Thread(reader);
+        captureThread.start();
+        try
+        {
+            Pair<Mat, Long> frame = reader.getCurrentFrame();
+            assertNotNull(frame);
+            Mat image = frame.first;
+
+            // the frame is a header over the padded camera buffer, rather than a copy of it
+            assertEquals(128L, image.step1(0));
+            int matchingBuffers = 0;
+            for (int i = 0; i < source.getBufferCount(); i++)
+            {
+                byte original = source.getBuffer(i).get(0);
+                source.getBuffer(i).put(0, (byte)77);
+                if (image.get(0, 0)[0] == 77.0)
+                {
+                    matchingBuffers++;
+                }
+
+                source.getBuffer(i).put(0, original);
+            }
+
+            assertEquals(1, matchingBuffers);
+
+            // the camera keeps capturing into the other buffers, but not into the one we are holding
+            double value = image.get(ZeroCopyCameraReaderTest.Height - 1, ZeroCopyCameraReaderTest.Width - 1)[0];
+            Thread.sleep(100L);
+            assertEquals(value, image.get(ZeroCopyCameraReaderTest.Height - 1, ZeroCopyCameraReaderTest.Width - 1)[0]);
+
+            Pair<Mat, Long> nextFrame = reader.getCurrentFrame();
+            assertNotNull(nextFrame);
+            assertNotSame(image, nextFrame.first);
+
+            // once released, the buffers are captured into again
+            reader.releaseFrame(image);
+            reader.releaseFrame(nextFrame.first);
+            for (int i = 0; i < 10; i++)
+            {
+                Pair<Mat, Long> laterFrame = reader.getCurrentFrame();
+                assertNotNull(laterFrame);
+                reader.releaseFrame(laterFrame.first);
+            }
+        }
+        finally
+        {
+            reader.stop();
+            captureThread.join();
+            reader.close();
+
+            dark.release();
+            bright.release();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package frc1318.vision.writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.*;
+
+public class AsyncFrameStreamerTest
+{
+    @Test
+    public void testOfferDropsInsteadOfBlocking()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        SlowStreamer streamer = new SlowStreamer(320, 240, 0.0);
+        streamer.open();
+        try
+        {
+            Mat frame = new Mat(480, 640, CvType.CV_8UC1, new Scalar(1));
+
+            // one frame to encode and one waiting, then the streamer is full and drops frames rather than waiting
+            long startNanos = System.nanoTime();
+            assertTrue(streamer.offer(frame));
+            frame.setTo(new Scalar(2));
+            assertTrue(streamer.offer(frame));
+            frame.setTo(new Scalar(3));
+            assertFalse(streamer.offer(frame));
+            assertTrue(System.nanoTime() - startNanos < 40000000L);
+
+            // the frames were copied (and downscaled) when they were offered
+            frame.setTo(new Scalar(4));
+            Thread.sleep(250L);
+            assertEquals(2, streamer.getValues().size());
+            assertEquals(1.0, streamer.getValues().get(0).doubleValue());
+            assertEquals(2.0, streamer.getValues().get(1).doubleValue());
+            assertEquals(320, streamer.getWidth());
+
+            // and once they have been encoded, there is room again
+            assertTrue(streamer.offer(frame));
+            frame.release();
+        }
+        finally
+        {
+            streamer.close();
+        }
+    }
+
+    @Test
+    public void testOfferIsLimitedToFrameRate()
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        SlowStreamer streamer = new SlowStreamer(320, 240, 5.0);
+        streamer.open();
+        try
+        {
+            Mat frame = new Mat(240, 320, CvType.CV_8UC1, new Scalar(1));
+            assertTrue(streamer.offer(frame));
+            assertFalse(streamer.offer(frame));
+            frame.release();
+        }
+        finally
+        {
+            streamer.close();
+        }
+    }
+
+    @Test
+    public void testYuyvFramesAreStreamedAsLuma()
+        throws Exception
+    {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        SlowStreamer streamer = new SlowStreamer(320, 240, 0.0);
+        streamer.open();
+        try
+        {
+            // the stream can't encode two-channel frames, so only the luma of a YUYV frame is streamed (and downscaled)
+            Mat frame = new Mat(480, 640, CvType.CV_8UC2, new Scalar(7, 200));
+            assertTrue(streamer.offer(frame));
+            frame.release();
+
+            Thread.sleep(100L);
+            assertEquals(1, streamer.getValues().size());
+            assertEquals(7.0, streamer.getValues().get(0).doubleValue());
+            assertEquals(320, streamer.getWidth());
+            assertEquals(1, streamer.getChannels());
+        }
+        finally
+        {
+            streamer.close();
+        }
+    }
+
+    private static class SlowStreamer extends AsyncFrameStreamer
+    {
+        private final List<Double> values;
+        private volatile int width;
+        private volatile int channels;
+
+        SlowStreamer(int resolutionX, int resolutionY, double maxFramesPerSecond)
+        {
+            super("test", resolutionX, resolutionY, maxFramesPerSecond);
+
+            this.values = new ArrayList<Double>();
+            this.width = 0;
+            this.channels = 0;
+        }
+
+        @Override
+        public boolean open()
+        {
+            this.start();
+            return true;
+        }
+
+        @Override
+        protected void putFrame(Mat frame)
+        {
+            synchronized (this.values)
+            {
+                this.values.add(frame.get(0, 0)[0]);
+            }
+
+            this.width = frame.cols();
+            this.channels = frame.channels();
+            try
+            {
+                Thread.sleep(50L);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<Double> getValues()
+        {
+            synchronized (this.values)
+            {
+                return new ArrayList<Double>(this.values);
+            }
+        }
+
+        int getWidth()
+        {
+            return this.width;
+        }
+
+        int getChannels()
+        {
+            return this.channels;
+        }
+    }
+}